@@ -153,6 +153,42 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 	 */
 	@Parameter(property = "jacoco.jmx")
 	Boolean jmx;
+	/**
+	 * Maximum number of clients served at the same time when the output is
+	 * tcpserver. With more than one connection the commands of different
+	 * clients are executed concurrently.
+	 */
+	@Parameter(property = "jacoco.maxConnections")
+	Integer maxConnections;
+	/**
+	 * Interval in seconds for periodic dumps into timestamped files next to
+	 * the destfile when the output is file. 0 disables periodic dumps.
+	 */
+	@Parameter(property = "jacoco.dumpInterval")
+	Integer dumpInterval;
+	/**
+	 * Number of periodic dump files which are kept, 0 keeps all files.
+	 */
+	@Parameter(property = "jacoco.dumpKeep")
+	Integer dumpKeep;
+	/**
+	 * If set to true the execution data is reset after every periodic dump.
+	 */
+	@Parameter(property = "jacoco.dumpReset")
+	Boolean dumpReset;
+	/**
+	 * Port of the HTTP endpoint which serves execution data and a coverage
+	 * summary, 0 selects a free port. Without this parameter there is no HTTP
+	 * endpoint.
+	 */
+	@Parameter(property = "jacoco.httpPort")
+	Integer httpPort;
+	/**
+	 * Address the HTTP endpoint binds to, * binds to all local addresses.
+	 * Default is the loopback address.
+	 */
+	@Parameter(property = "jacoco.httpAddress")
+	String httpAddress;
 
 	@Override
 	public void executeMojo() {
@@ -228,6 +264,24 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 		if (jmx != null) {
 			agentOptions.setJmx(jmx.booleanValue());
 		}
+		if (maxConnections != null) {
+			agentOptions.setMaxConnections(maxConnections.intValue());
+		}
+		if (dumpInterval != null) {
+			agentOptions.setDumpInterval(dumpInterval.intValue());
+		}
+		if (dumpKeep != null) {
+			agentOptions.setDumpKeep(dumpKeep.intValue());
+		}
+		if (dumpReset != null) {
+			agentOptions.setDumpReset(dumpReset.booleanValue());
+		}
+		if (httpPort != null) {
+			agentOptions.setHttpPort(httpPort.intValue());
+		}
+		if (httpAddress != null) {
+			agentOptions.setHttpAddress(httpAddress);
+		}
 		return agentOptions;
 	}
 
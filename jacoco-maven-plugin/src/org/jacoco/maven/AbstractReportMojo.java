@@ -75,6 +75,17 @@ public abstract class AbstractReportMojo extends AbstractMojo
 	@Parameter
 	List<String> excludes;
 
+	/**
+	 * Number of threads used to analyze the class files and to render the HTML
+	 * report. With more than one thread class files and archives are read and
+	 * analyzed concurrently and the packages of the HTML report are rendered
+	 * concurrently.
+	 *
+	 * @since 0.8.7
+	 */
+	@Parameter(property = "jacoco.threads", defaultValue = "1")
+	int threads;
+
 	/**
 	 * Flag used to suppress execution.
 	 */
@@ -175,6 +186,7 @@ public abstract class AbstractReportMojo extends AbstractMojo
 			throws MavenReportException {
 		try {
 			final ReportSupport support = new ReportSupport(getLog());
+			support.setThreads(threads);
 			loadExecutionData(support);
 			addFormatters(support, locale);
 			final IReportVisitor visitor = support.initRootVisitor();
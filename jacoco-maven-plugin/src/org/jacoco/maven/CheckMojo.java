@@ -16,6 +16,7 @@ package org.jacoco.maven;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,6 +25,8 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.internal.diff.JsonReadUtil;
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.IReportVisitor;
 import org.jacoco.report.check.IViolationsOutput;
 import org.jacoco.report.check.Limit;
@@ -143,6 +146,22 @@ public class CheckMojo extends AbstractJacocoMojo implements IViolationsOutput {
 	@Parameter
 	private List<String> excludes;
 
+	/**
+	 * JSON file with the code diff of the changed classes and methods. If
+	 * specified only the changed classes are analyzed and the rules are
+	 * evaluated on the changed methods and, where the diff contains changed
+	 * lines, on the changed lines only.
+	 */
+	@Parameter(property = "jacoco.diffCodeFile")
+	private File diffCodeFile;
+
+	/**
+	 * Code diff of the changed classes and methods as JSON string, used if no
+	 * {@link #diffCodeFile} is specified.
+	 */
+	@Parameter(property = "jacoco.diffCode")
+	private String diffCode;
+
 	private boolean violations;
 
 	private boolean canCheckCoverage() {
@@ -178,9 +197,10 @@ public class CheckMojo extends AbstractJacocoMojo implements IViolationsOutput {
 		for (final RuleConfiguration r : rules) {
 			checkerrules.add(r.rule);
 		}
-		support.addRulesChecker(checkerrules, this);
 
 		try {
+			support.setMergeContext(loadDiffCode());
+			support.addRulesChecker(checkerrules, this);
 			final IReportVisitor visitor = support.initRootVisitor();
 			support.loadExecutionData(dataFile);
 			support.processProject(visitor, getProject(), includes, excludes);
@@ -200,6 +220,18 @@ public class CheckMojo extends AbstractJacocoMojo implements IViolationsOutput {
 		}
 	}
 
+	private MergeContext loadDiffCode() throws IOException {
+		final MergeContext context = new MergeContext();
+		if (diffCodeFile != null) {
+			getLog().info("Loading diff code file " + diffCodeFile);
+			context.setClassInfos(JsonReadUtil.readClassInfos(diffCodeFile));
+		} else if (diffCode != null && diffCode.length() > 0) {
+			context.setClassInfos(
+					JsonReadUtil.readClassInfos(new StringReader(diffCode)));
+		}
+		return context;
+	}
+
 	public void onViolation(final ICoverageNode node, final Rule rule,
 			final Limit limit, final String message) {
 		this.getLog().warn(message);
@@ -14,6 +14,7 @@ package org.jacoco.maven;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -60,6 +61,16 @@ public class MergeMojo extends AbstractJacocoMojo {
 	@Parameter(required = true)
 	private List<FileSet> fileSets;
 
+	/**
+	 * Number of threads used to read the execution data files. With more than
+	 * one thread the files are read concurrently and the results are merged
+	 * pairwise.
+	 *
+	 * @since 0.8.7
+	 */
+	@Parameter(property = "jacoco.threads", defaultValue = "1")
+	int threads;
+
 	@Override
 	protected void executeMojo()
 			throws MojoExecutionException, MojoFailureException {
@@ -87,6 +98,7 @@ public class MergeMojo extends AbstractJacocoMojo {
 	private void load(final ExecFileLoader loader)
 			throws MojoExecutionException {
 		final FileSetManager fileSetManager = new FileSetManager(getLog());
+		final List<File> files = new ArrayList<File>();
 		for (final FileSet fileSet : fileSets) {
 			for (final String includedFilename : fileSetManager
 					.getIncludedFiles(fileSet)) {
@@ -95,16 +107,17 @@ public class MergeMojo extends AbstractJacocoMojo {
 				if (inputFile.isDirectory()) {
 					continue;
 				}
-				try {
-					getLog().info("Loading execution data file "
-							+ inputFile.getAbsolutePath());
-					loader.load(inputFile);
-				} catch (final IOException e) {
-					throw new MojoExecutionException(
-							"Unable to read " + inputFile.getAbsolutePath(), e);
-				}
+				getLog().info("Loading execution data file "
+						+ inputFile.getAbsolutePath());
+				files.add(inputFile);
 			}
 		}
+		try {
+			loader.load(files, threads);
+		} catch (final IOException e) {
+			throw new MojoExecutionException(
+					"Unable to read execution data files", e);
+		}
 	}
 
 	private void save(final ExecFileLoader loader)
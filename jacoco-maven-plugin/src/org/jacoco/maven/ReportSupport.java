@@ -33,6 +33,7 @@ import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.FileMultiReportOutput;
 import org.jacoco.report.IReportGroupVisitor;
 import org.jacoco.report.IReportVisitor;
@@ -63,6 +64,8 @@ final class ReportSupport {
 	private final Log log;
 	private final ExecFileLoader loader;
 	private final List<IReportVisitor> formatters;
+	private int threads = 1;
+	private MergeContext mergeContext = new MergeContext();
 
 	/**
 	 * Construct a new instance with the given log output.
@@ -76,6 +79,29 @@ final class ReportSupport {
 		this.formatters = new ArrayList<IReportVisitor>();
 	}
 
+	/**
+	 * Sets the number of threads used to analyze class files and to render
+	 * HTML reports.
+	 *
+	 * @param threads
+	 *            number of analysis and rendering threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the context with the code diff of an incremental check. With a diff
+	 * only the changed classes are analyzed and rules checkers added
+	 * afterwards evaluate their limits on the changed code only.
+	 *
+	 * @param mergeContext
+	 *            context with the changed classes
+	 */
+	public void setMergeContext(final MergeContext mergeContext) {
+		this.mergeContext = mergeContext;
+	}
+
 	/**
 	 * Loads the given execution data file.
 	 *
@@ -108,6 +134,7 @@ final class ReportSupport {
 		final HTMLFormatter htmlFormatter = new HTMLFormatter();
 		htmlFormatter.setOutputEncoding(encoding);
 		htmlFormatter.setLocale(locale);
+		htmlFormatter.setThreads(threads);
 		if (footer != null) {
 			htmlFormatter.setFooterText(footer);
 		}
@@ -127,6 +154,7 @@ final class ReportSupport {
 			final IViolationsOutput output) {
 		final RulesChecker checker = new RulesChecker();
 		checker.setRules(rules);
+		checker.setMergeContext(mergeContext);
 		formatters.add(checker.createVisitor(output));
 	}
 
@@ -190,17 +218,19 @@ final class ReportSupport {
 			final String bundleName, final MavenProject project,
 			final List<String> includes, final List<String> excludes,
 			final ISourceFileLocator locator) throws IOException {
-		final CoverageBuilder builder = new CoverageBuilder();
+		final CoverageBuilder builder = new CoverageBuilder(mergeContext);
+		if (mergeContext.hasClassInfos()) {
+			builder.setClassInfos(mergeContext.getClassInfos());
+		}
 		final File classesDir = new File(
 				project.getBuild().getOutputDirectory());
 
 		if (classesDir.isDirectory()) {
 			final Analyzer analyzer = new Analyzer(
 					loader.getExecutionDataStore(), builder);
+			analyzer.setThreads(threads);
 			final FileFilter filter = new FileFilter(includes, excludes);
-			for (final File file : filter.getFiles(classesDir)) {
-				analyzer.analyzeAll(file);
-			}
+			analyzer.analyzeAll(filter.getFiles(classesDir));
 		}
 
 		final IBundleCoverage bundle = builder.getBundle(bundleName);
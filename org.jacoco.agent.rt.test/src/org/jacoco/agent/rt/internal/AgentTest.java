@@ -28,6 +28,7 @@ import javax.management.ObjectName;
 
 import org.jacoco.agent.rt.internal.output.FileOutput;
 import org.jacoco.agent.rt.internal.output.IAgentOutput;
+import org.jacoco.agent.rt.internal.output.NioTcpServerOutput;
 import org.jacoco.agent.rt.internal.output.NoneOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
@@ -70,6 +71,10 @@ public class AgentTest implements IExceptionLogger, IAgentOutput {
 		assertEquals(TcpServerOutput.class,
 				agent.createAgentOutput().getClass());
 
+		options.setMaxConnections(4);
+		assertEquals(NioTcpServerOutput.class,
+				agent.createAgentOutput().getClass());
+
 		options.setOutput(OutputMode.tcpclient);
 		assertEquals(TcpClientOutput.class,
 				agent.createAgentOutput().getClass());
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link HttpEndpoint}.
+ */
+public class HttpEndpointTest {
+
+	private ExceptionRecorder logger;
+
+	private RuntimeData data;
+
+	private boolean[] probes;
+
+	private HttpEndpoint endpoint;
+
+	@Before
+	public void setup() throws Exception {
+		logger = new ExceptionRecorder();
+		data = new RuntimeData();
+		data.setSessionId("stub\"id");
+		probes = data.getExecutionData(Long.valueOf(0x12345678), "Foo", 4)
+				.getProbes();
+		probes[1] = true;
+		data.getExecutionData(Long.valueOf(0x87654321L), "Bar", 2);
+		final AgentOptions options = new AgentOptions();
+		options.setHttpPort(0);
+		endpoint = new HttpEndpoint(options, data, logger);
+	}
+
+	@After
+	public void teardown() throws Exception {
+		endpoint.call();
+	}
+
+	private HttpURLConnection open(final String path) throws IOException {
+		return (HttpURLConnection) new URL(
+				"http://localhost:" + endpoint.getPort() + path)
+						.openConnection();
+	}
+
+	private static byte[] read(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1024];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+
+	private static ExecFileLoader load(final InputStream in)
+			throws IOException {
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(in);
+		return loader;
+	}
+
+	@Test
+	public void get_exec_should_return_execution_data() throws Exception {
+		final HttpURLConnection connection = open("/exec");
+
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("application/octet-stream",
+				connection.getContentType());
+		final ExecFileLoader loader = load(connection.getInputStream());
+		final SessionInfoStore sessions = loader.getSessionInfoStore();
+		assertEquals("stub\"id", sessions.getInfos().get(0).getId());
+		final ExecutionDataStore store = loader.getExecutionDataStore();
+		assertTrue(store.get(0x12345678).getProbes()[1]);
+		assertNull(store.get(0x87654321L));
+		assertTrue("No reset expected", probes[1]);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void post_exec_should_reset_execution_data() throws Exception {
+		final HttpURLConnection connection = open("/exec");
+		connection.setRequestMethod("POST");
+
+		assertEquals(200, connection.getResponseCode());
+		final ExecFileLoader loader = load(connection.getInputStream());
+		assertTrue(loader.getExecutionDataStore().get(0x12345678)
+				.getProbes()[1]);
+		assertFalse("Reset expected", probes[1]);
+	}
+
+	@Test
+	public void get_exec_should_compress_response() throws Exception {
+		final HttpURLConnection connection = open("/exec");
+		connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("gzip", connection.getContentEncoding());
+		final ExecFileLoader loader = load(
+				new GZIPInputStream(connection.getInputStream()));
+		assertTrue(loader.getExecutionDataStore().get(0x12345678)
+				.getProbes()[1]);
+	}
+
+	@Test
+	public void get_exec_should_return_deltas() throws Exception {
+		final HttpURLConnection first = open("/exec?delta=0");
+		assertEquals(200, first.getResponseCode());
+		assertEquals(1, load(first.getInputStream()).getExecutionDataStore()
+				.getContents().size());
+		final String generation = first
+				.getHeaderField(HttpEndpoint.GENERATION_HEADER);
+
+		final HttpURLConnection second = open("/exec?delta=" + generation);
+		assertEquals(200, second.getResponseCode());
+		assertTrue(load(second.getInputStream()).getExecutionDataStore()
+				.getContents().isEmpty());
+
+		probes[2] = true;
+		final HttpURLConnection third = open("/exec?delta="
+				+ second.getHeaderField(HttpEndpoint.GENERATION_HEADER));
+		assertEquals(200, third.getResponseCode());
+		assertTrue(load(third.getInputStream()).getExecutionDataStore()
+				.get(0x12345678).getProbes()[2]);
+	}
+
+	@Test
+	public void get_exec_should_reject_invalid_delta() throws Exception {
+		assertEquals(400, open("/exec?delta=x").getResponseCode());
+	}
+
+	@Test
+	public void get_summary_should_return_json() throws Exception {
+		final HttpURLConnection connection = open("/summary");
+
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("application/json; charset=UTF-8",
+				connection.getContentType());
+		final String json = new String(read(connection.getInputStream()),
+				"UTF-8");
+		assertTrue(json, json.startsWith("{\"sessionId\":\"stub\\\"id\","));
+		assertTrue(json, json.endsWith(
+				",\"classes\":2,\"hitClasses\":1,\"probes\":6,\"hitProbes\":1}"));
+	}
+
+	@Test
+	public void should_reject_unknown_path() throws Exception {
+		assertEquals(404, open("/exec/foo").getResponseCode());
+		assertEquals(404, open("/other").getResponseCode());
+	}
+
+	@Test
+	public void should_reject_unsupported_method() throws Exception {
+		final HttpURLConnection connection = open("/summary");
+		connection.setRequestMethod("DELETE");
+
+		assertEquals(405, connection.getResponseCode());
+	}
+
+	@Test
+	public void parseQuery_should_split_parameters() {
+		final Map<String, String> params = HttpEndpoint
+				.parseQuery("delta=12&reset");
+
+		assertEquals("12", params.get("delta"));
+		assertEquals("", params.get("reset"));
+		assertTrue(HttpEndpoint.parseQuery(null).isEmpty());
+	}
+
+}
@@ -13,13 +13,17 @@
 package org.jacoco.agent.rt.internal.output;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
+import org.jacoco.agent.rt.internal.ExceptionRecorder;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.tools.ExecFileLoader;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -62,6 +66,124 @@ public class FileOutputTest {
 				destFile.length() > 0);
 	}
 
+	@Test
+	public void testWritePeriodicDump() throws Exception {
+		File destFile = new File(folder.getRoot(), "jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		RuntimeData data = new RuntimeData();
+		boolean[] probes = data
+				.getExecutionData(Long.valueOf(0x12345678), "Foo", 3)
+				.getProbes();
+		probes[1] = true;
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		File dump = controller.writePeriodicDump();
+		controller.shutdown();
+
+		assertTrue(dump.getName()
+				.matches("jacoco-\\d{8}-\\d{6}-\\d{3}\\.exec"));
+		assertEquals(destFile.getParentFile(), dump.getParentFile());
+		assertFalse(new File(dump.getPath() + ".tmp").exists());
+		ExecFileLoader loader = new ExecFileLoader();
+		loader.load(dump);
+		assertTrue(loader.getExecutionDataStore().get(0x12345678)
+				.getProbes()[1]);
+		assertTrue("No reset expected", probes[1]);
+	}
+
+	@Test
+	public void testWritePeriodicDumpWithReset() throws Exception {
+		File destFile = new File(folder.getRoot(), "jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setDumpReset(true);
+		RuntimeData data = new RuntimeData();
+		boolean[] probes = data
+				.getExecutionData(Long.valueOf(0x12345678), "Foo", 3)
+				.getProbes();
+		probes[1] = true;
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		File dump = controller.writePeriodicDump();
+		controller.shutdown();
+
+		ExecFileLoader loader = new ExecFileLoader();
+		loader.load(dump);
+		assertTrue(loader.getExecutionDataStore().get(0x12345678)
+				.getProbes()[1]);
+		assertFalse("Reset expected", probes[1]);
+	}
+
+	@Test
+	public void testDeleteOldPeriodicDumps() throws Exception {
+		File destFile = new File(folder.getRoot(), "jacoco.exec");
+		folder.newFile("jacoco-20200101-000000-000.exec");
+		folder.newFile("jacoco-20200101-000000-001.exec");
+		folder.newFile("jacoco-20200101-000000-002.exec");
+		folder.newFile("jacoco-other.exec");
+		folder.newFile("other-20200101-000000-000.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setDumpKeep(2);
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, new RuntimeData());
+		File dump = controller.writePeriodicDump();
+		controller.shutdown();
+
+		String[] names = folder.getRoot().list();
+		Arrays.sort(names);
+		assertEquals(Arrays.asList("jacoco-20200101-000000-002.exec",
+				dump.getName(), "jacoco-other.exec", "jacoco.exec",
+				"other-20200101-000000-000.exec"), Arrays.asList(names));
+	}
+
+	@Test
+	public void testDeleteStaleTempFilesOnStartup() throws Exception {
+		File destFile = new File(folder.getRoot(), "jacoco.exec");
+		File stale = folder.newFile("jacoco-20200101-000000-000.exec.tmp");
+		stale.setLastModified(System.currentTimeMillis() - 3600 * 1000);
+		folder.newFile("jacoco-20200101-000000-001.exec.tmp");
+		File other = folder.newFile("other-20200101-000000-000.exec.tmp");
+		other.setLastModified(System.currentTimeMillis() - 3600 * 1000);
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setDumpInterval(3600);
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, new RuntimeData());
+		controller.shutdown();
+
+		String[] names = folder.getRoot().list();
+		Arrays.sort(names);
+		assertEquals(Arrays.asList("jacoco-20200101-000000-001.exec.tmp",
+				"jacoco.exec", "other-20200101-000000-000.exec.tmp"),
+				Arrays.asList(names));
+	}
+
+	@Test
+	public void testScheduledDumps() throws Exception {
+		File destFile = new File(folder.getRoot(), "jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setDumpInterval(1);
+		ExceptionRecorder recorder = new ExceptionRecorder();
+
+		FileOutput controller = new FileOutput(recorder);
+		controller.startup(options, new RuntimeData());
+		for (int i = 0; i < 500 && folder.getRoot().list().length < 2; i++) {
+			Thread.sleep(10);
+		}
+		controller.shutdown();
+
+		assertTrue("Periodic dump expected",
+				folder.getRoot().list().length >= 2);
+		recorder.assertNoException();
+	}
+
 	@Test(expected = IOException.class)
 	public void testInvalidDestFile() throws Exception {
 		AgentOptions options = new AgentOptions();
@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.Random;
+
+import org.jacoco.agent.rt.internal.ExceptionRecorder;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.JarTransfer;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.tools.ExecDumpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link NioTcpServerOutput}.
+ */
+public class NioTcpServerOutputTest {
+
+	private ExceptionRecorder logger;
+
+	private NioTcpServerOutput controller;
+
+	private RuntimeData data;
+
+	private File jar;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setup() throws Exception {
+		logger = new ExceptionRecorder();
+		controller = new NioTcpServerOutput(logger) {
+			@Override
+			protected File locate(final byte artifact) {
+				return artifact == RemoteControlWriter.BLOCK_DOWNBBZX ? jar
+						: null;
+			}
+		};
+		data = new RuntimeData();
+		data.setSessionId("stubid");
+		final AgentOptions options = new AgentOptions();
+		options.setPort(0);
+		options.setMaxConnections(2);
+		controller.startup(options, data);
+	}
+
+	@After
+	public void teardown() throws Exception {
+		controller.shutdown();
+	}
+
+	private class Client {
+
+		final Socket socket;
+
+		final RemoteControlWriter writer;
+
+		final RemoteControlReader reader;
+
+		final InputStream input;
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+
+		final SessionInfoStore sessions = new SessionInfoStore();
+
+		Client() throws IOException {
+			socket = new Socket(InetAddress.getByName(null),
+					controller.getLocalPort());
+			writer = new RemoteControlWriter(socket.getOutputStream());
+			input = new BufferedInputStream(socket.getInputStream());
+			reader = new RemoteControlReader(input);
+			reader.setExecutionDataVisitor(store);
+			reader.setSessionInfoVisitor(sessions);
+		}
+
+		void dump(final boolean reset) throws IOException {
+			writer.visitDumpCommand(true, reset);
+			assertTrue(reader.read());
+		}
+
+		void close() throws IOException {
+			socket.close();
+		}
+
+	}
+
+	private void waitForConnections(final int count)
+			throws InterruptedException {
+		for (int i = 0; i < 500
+				&& controller.getConnectionCount() != count; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, controller.getConnectionCount());
+	}
+
+	@Test
+	public void should_dump_to_concurrent_clients() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+
+		final Client c1 = new Client();
+		final Client c2 = new Client();
+		c1.writer.visitDumpCommand(true, false);
+		c2.writer.visitDumpCommand(true, false);
+		assertTrue(c2.reader.read());
+		assertTrue(c1.reader.read());
+
+		assertEquals("Foo", c1.store.get(0x12345678).getName());
+		assertEquals("Foo", c2.store.get(0x12345678).getName());
+		assertEquals("stubid", c1.sessions.getInfos().get(0).getId());
+		c1.close();
+		c2.close();
+		waitForConnections(0);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_dump_data_hit_before_concurrent_requests()
+			throws Exception {
+		final Client c1 = new Client();
+		final Client c2 = new Client();
+		for (int i = 0; i < 50; i++) {
+			data.getExecutionData(Long.valueOf(i), "Class" + i, 1)
+					.getProbes()[0] = true;
+			c1.writer.visitDumpCommand(true, false);
+			c2.writer.visitDumpCommand(true, false);
+			assertTrue(c1.reader.read());
+			assertTrue(c2.reader.read());
+
+			assertEquals(i + 1, c1.store.getContents().size());
+			assertEquals(i + 1, c2.store.getContents().size());
+		}
+		c1.close();
+		c2.close();
+		waitForConnections(0);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_reset_execution_data() throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes();
+		probes[0] = true;
+
+		final Client client = new Client();
+		client.writer.visitDumpCommand(false, true);
+		assertTrue(client.reader.read());
+
+		assertFalse(probes[0]);
+		assertTrue(client.store.getContents().isEmpty());
+		client.close();
+		waitForConnections(0);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_stream_large_dumps_in_chunks() throws Exception {
+		for (int i = 0; i < 2000; i++) {
+			data.getExecutionData(Long.valueOf(i), "Class" + i, 1000)
+					.getProbes()[i % 1000] = true;
+		}
+
+		final Client client = new Client();
+		client.dump(false);
+		client.dump(false);
+
+		assertEquals(2000, client.store.getContents().size());
+		assertTrue(client.store.get(1999).getProbes()[999]);
+		assertEquals(2, client.sessions.getInfos().size());
+		client.close();
+		waitForConnections(0);
+		logger.assertNoException();
+	}
+
+	@Test(timeout = 20000)
+	public void should_not_block_other_clients_while_client_does_not_read()
+			throws Exception {
+		for (int i = 0; i < 20000; i++) {
+			data.getExecutionData(Long.valueOf(i), "Class" + i, 2000)
+					.getProbes()[i % 2000] = true;
+		}
+		final Socket slow = new Socket();
+		slow.setReceiveBufferSize(1024);
+		slow.connect(new InetSocketAddress(InetAddress.getByName(null),
+				controller.getLocalPort()));
+		new RemoteControlWriter(slow.getOutputStream())
+				.visitDumpCommand(true, false);
+		// the worker of the slow client is blocked on its full output now
+		Thread.sleep(500);
+
+		data.getExecutionData(Long.valueOf(20000), "Late", 1)
+				.getProbes()[0] = true;
+		final Client client = new Client();
+		client.dump(false);
+
+		assertEquals(20001, client.store.getContents().size());
+		slow.close();
+		client.close();
+		waitForConnections(0);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_return_delta_generation() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+
+		final Client client = new Client();
+		client.writer.visitDeltaDumpCommand(-1);
+		assertTrue(client.reader.read());
+		final long generation = client.reader.getDeltaGeneration();
+		assertEquals(1, client.store.getContents().size());
+
+		final Client next = new Client();
+		next.writer.visitDeltaDumpCommand(generation);
+		assertTrue(next.reader.read());
+		assertTrue(next.store.getContents().isEmpty());
+		assertTrue(next.reader.getDeltaGeneration() > generation);
+		client.close();
+		next.close();
+		waitForConnections(0);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_serve_waiting_client_when_connection_closes()
+			throws Exception {
+		final Client c1 = new Client();
+		final Client c2 = new Client();
+		waitForConnections(2);
+
+		final Client c3 = new Client();
+		c3.writer.visitDumpCommand(true, false);
+		Thread.sleep(50);
+		assertEquals(2, controller.getConnectionCount());
+
+		c1.close();
+		assertTrue(c3.reader.read());
+		assertEquals(1, c3.sessions.getInfos().size());
+		c2.close();
+		c3.close();
+		waitForConnections(0);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void writeExecutionData_should_write_to_all_connections()
+			throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		final Client c1 = new Client();
+		final Client c2 = new Client();
+		waitForConnections(2);
+
+		controller.writeExecutionData(true);
+
+		assertTrue(c1.reader.read());
+		assertTrue(c2.reader.read());
+		assertEquals("Foo", c1.store.get(0x12345678).getName());
+		assertEquals("Foo", c2.store.get(0x12345678).getName());
+		assertFalse(data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0]);
+		c1.close();
+		c2.close();
+		waitForConnections(0);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void writeExecutionData_should_do_nothing_without_connections()
+			throws Exception {
+		controller.writeExecutionData(false);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_transfer_jar_with_download_header() throws Exception {
+		final byte[] content = new byte[3 * 1024 * 1024 + 17];
+		new Random(3).nextBytes(content);
+		jar = folder.newFile("source.jar");
+		final OutputStream out = new FileOutputStream(jar);
+		out.write(content);
+		out.close();
+		final File target = new File(folder.getRoot(), "target.jar");
+
+		new ExecDumpClient().downloadJar(InetAddress.getByName(null),
+				controller.getLocalPort(), RemoteControlWriter.BLOCK_DOWNBBZX,
+				target.getPath());
+
+		final byte[] actual = new byte[content.length];
+		final DataInputStream in = new DataInputStream(
+				new FileInputStream(target));
+		in.readFully(actual);
+		assertEquals(-1, in.read());
+		in.close();
+		assertArrayEquals(content, actual);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_keep_connection_after_download() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		jar = folder.newFile("source.jar");
+		final OutputStream out = new FileOutputStream(jar);
+		out.write(new byte[] { 1, 2, 3 });
+		out.close();
+
+		final Client client = new Client();
+		client.writer.visitDownloadCommand(RemoteControlWriter.BLOCK_DOWNBBZX,
+				1, JarTransfer.UNKNOWN_CHECKSUM);
+		assertTrue(client.reader.read());
+		assertEquals(3, client.reader.getDownloadLength());
+		assertEquals(1, client.reader.getDownloadOffset());
+		assertEquals(2, client.input.read());
+		assertEquals(3, client.input.read());
+		assertTrue(client.reader.read());
+		client.dump(false);
+
+		assertEquals("Foo", client.store.get(0x12345678).getName());
+		client.close();
+		waitForConnections(0);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_send_negative_length_for_missing_jar()
+			throws Exception {
+		final Client client = new Client();
+		client.writer.visitDownloadCommand(
+				RemoteControlWriter.BLOCK_DOWNWEBSITE, 0,
+				JarTransfer.UNKNOWN_CHECKSUM);
+		assertTrue(client.reader.read());
+		assertEquals(-1, client.reader.getDownloadLength());
+		client.close();
+		waitForConnections(0);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_log_invalid_header() throws Exception {
+		final Socket socket = new Socket(InetAddress.getByName(null),
+				controller.getLocalPort());
+		final OutputStream out = socket.getOutputStream();
+		out.write(0xca);
+		out.write(0xfe);
+		out.write(0xba);
+		out.write(0xbe);
+		out.flush();
+		// the agent closes the connection after its header
+		final InputStream in = socket.getInputStream();
+		while (in.read() != -1) {
+		}
+		logger.assertException(IOException.class,
+				"Invalid execution data file.");
+		socket.close();
+	}
+
+	@Test
+	public void getInetAddress_should_return_loopback_by_default()
+			throws UnknownHostException {
+		assertTrue(controller.getInetAddress(null).isLoopbackAddress());
+		assertNull(controller.getInetAddress("*"));
+	}
+
+}
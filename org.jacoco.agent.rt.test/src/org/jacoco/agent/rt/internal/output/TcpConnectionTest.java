@@ -158,6 +158,53 @@ public class TcpConnectionTest extends ExecutorTestBase {
 		f.get();
 	}
 
+	@Test
+	public void testRemoteDeltaDump() throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes();
+		probes[0] = true;
+		data.getExecutionData(Long.valueOf(0x11), "Bar", 1);
+
+		final RemoteControlWriter remoteWriter = new RemoteControlWriter(
+				mockConnection.getSocketB().getOutputStream());
+
+		final TcpConnection con = new TcpConnection(mockConnection.getSocketA(),
+				data);
+		con.init();
+
+		final Future<Void> f = executor.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				con.run();
+				return null;
+			}
+		});
+
+		assertBlocks(f);
+
+		final RemoteControlReader remoteReader = new RemoteControlReader(
+				mockConnection.getSocketB().getInputStream());
+		ExecutionDataStore execStore = new ExecutionDataStore();
+		remoteReader.setExecutionDataVisitor(execStore);
+		remoteReader.setSessionInfoVisitor(new SessionInfoStore());
+
+		remoteWriter.visitDeltaDumpCommand(0);
+		assertTrue(remoteReader.read());
+		assertEquals(1, execStore.getContents().size());
+		assertEquals("Foo", execStore.get(0x12345678).getName());
+		final long generation = remoteReader.getDeltaGeneration();
+
+		execStore = new ExecutionDataStore();
+		remoteReader.setExecutionDataVisitor(execStore);
+		remoteWriter.visitDeltaDumpCommand(generation);
+		assertTrue(remoteReader.read());
+		assertTrue(execStore.getContents().isEmpty());
+		assertTrue(remoteReader.getDeltaGeneration() > generation);
+
+		con.close();
+		f.get();
+	}
+
 	@Test
 	public void testLocalDump() throws Exception {
 		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
@@ -20,6 +20,7 @@ import java.util.concurrent.Callable;
 import org.jacoco.agent.rt.IAgent;
 import org.jacoco.agent.rt.internal.output.FileOutput;
 import org.jacoco.agent.rt.internal.output.IAgentOutput;
+import org.jacoco.agent.rt.internal.output.NioTcpServerOutput;
 import org.jacoco.agent.rt.internal.output.NoneOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
@@ -89,6 +90,8 @@ public class Agent implements IAgent {
 
 	private Callable<Void> jmxRegistration;
 
+	private Callable<Void> httpEndpoint;
+
 	/**
 	 * Creates a new agent with the given agent options.
 	 *
@@ -130,6 +133,9 @@ public class Agent implements IAgent {
 			if (options.getJmx()) {
 				jmxRegistration = new JmxRegistration(this);
 			}
+			if (options.getHttpPort() != -1) {
+				httpEndpoint = new HttpEndpoint(options, data, logger);
+			}
 		} catch (final Exception e) {
 			logger.logExeption(e);
 			throw e;
@@ -149,6 +155,9 @@ public class Agent implements IAgent {
 			if (jmxRegistration != null) {
 				jmxRegistration.call();
 			}
+			if (httpEndpoint != null) {
+				httpEndpoint.call();
+			}
 		} catch (final Exception e) {
 			logger.logExeption(e);
 		}
@@ -163,8 +172,11 @@ public class Agent implements IAgent {
 		final OutputMode controllerType = options.getOutput();
 		switch (controllerType) {
 		case file:
-			return new FileOutput();
+			return new FileOutput(logger);
 		case tcpserver:
+			if (options.getMaxConnections() > 1) {
+				return new NioTcpServerOutput(logger);
+			}
 			return new TcpServerOutput(logger);
 		case tcpclient:
 			return new TcpClientOutput(logger);
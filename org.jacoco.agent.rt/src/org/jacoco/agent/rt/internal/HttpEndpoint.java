@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Optional HTTP endpoint of the agent based on the HTTP server of the JDK. The
+ * requests are served by a small fixed thread pool, further requests wait
+ * until a thread is available. Access to the JDK server API is encapsulated in
+ * this class to allow the JaCoCo runtime on platforms without it.
+ * <ul>
+ * <li><code>GET /exec</code>: execution data in the exec file format</li>
+ * <li><code>POST /exec</code>: execution data, the runtime is reset
+ * afterwards</li>
+ * <li><code>GET /exec?delta=&lt;generation&gt;</code>: execution data of all
+ * classes with new hits since the given generation, the next generation is
+ * returned in the header <code>X-JaCoCo-Generation</code></li>
+ * <li><code>GET /summary</code>: JSON object with the session and the number
+ * of classes and probes with hits</li>
+ * </ul>
+ * Responses are gzip compressed if the client accepts it.
+ */
+class HttpEndpoint implements Callable<Void> {
+
+	/** Number of threads serving requests. */
+	static final int THREADS = 2;
+
+	/** Response header with the generation of a delta dump. */
+	static final String GENERATION_HEADER = "X-JaCoCo-Generation";
+
+	private final RuntimeData data;
+
+	private final IExceptionLogger logger;
+
+	private final ExecutorService executor;
+
+	private final HttpServer server;
+
+	HttpEndpoint(final AgentOptions options, final RuntimeData data,
+			final IExceptionLogger logger) throws Exception {
+		this.data = data;
+		this.logger = logger;
+		final String address = options.getHttpAddress();
+		server = HttpServer.create(new InetSocketAddress(
+				"*".equals(address) ? null : InetAddress.getByName(address),
+				options.getHttpPort()), 0);
+		executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r);
+				thread.setName(HttpEndpoint.class.getName());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+		server.createContext("/exec", new Handler() {
+			@Override
+			void handle(final HttpExchange exchange,
+					final Map<String, String> query) throws IOException {
+				exec(exchange, query);
+			}
+		});
+		server.createContext("/summary", new Handler() {
+			@Override
+			void handle(final HttpExchange exchange,
+					final Map<String, String> query) throws IOException {
+				summary(exchange);
+			}
+		});
+		start();
+	}
+
+	/**
+	 * The dispatcher thread of the server inherits the daemon flag of the
+	 * thread which starts the server, it must not keep the VM alive.
+	 */
+	private void start() throws InterruptedException {
+		final Thread starter = new Thread(new Runnable() {
+			public void run() {
+				server.start();
+			}
+		});
+		starter.setDaemon(true);
+		starter.start();
+		starter.join();
+	}
+
+	/**
+	 * @return local port of the server
+	 */
+	int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the server.
+	 */
+	public Void call() throws Exception {
+		server.stop(0);
+		executor.shutdownNow();
+		return null;
+	}
+
+	private void exec(final HttpExchange exchange,
+			final Map<String, String> query) throws IOException {
+		final String method = exchange.getRequestMethod();
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
+		final String delta = query.get("delta");
+		if ("POST".equals(method) && delta == null) {
+			data.collect(writer, writer, true);
+		} else if (!"GET".equals(method)) {
+			send(exchange, 405, "text/plain", bytes("Method not allowed."));
+			return;
+		} else if (delta != null) {
+			final long generation;
+			try {
+				generation = Long.parseLong(delta);
+			} catch (final NumberFormatException e) {
+				send(exchange, 400, "text/plain",
+						bytes("Invalid delta generation."));
+				return;
+			}
+			final long next = data.collectDelta(writer, writer, generation);
+			exchange.getResponseHeaders().set(GENERATION_HEADER,
+					Long.toString(next));
+		} else {
+			data.collect(writer, writer, false);
+		}
+		send(exchange, 200, "application/octet-stream", buffer.toByteArray());
+	}
+
+	private void summary(final HttpExchange exchange) throws IOException {
+		if (!"GET".equals(exchange.getRequestMethod())) {
+			send(exchange, 405, "text/plain", bytes("Method not allowed."));
+			return;
+		}
+		final Summary summary = new Summary();
+		data.collect(summary, summary, false);
+		send(exchange, 200, "application/json; charset=UTF-8",
+				bytes(summary.toJson()));
+	}
+
+	private void send(final HttpExchange exchange, final int status,
+			final String contentType, final byte[] content) throws IOException {
+		byte[] body = content;
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		if (acceptsGzip(exchange)) {
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+					content.length / 4 + 64);
+			final GZIPOutputStream gzip = new GZIPOutputStream(buffer);
+			gzip.write(content);
+			gzip.close();
+			body = buffer.toByteArray();
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+		exchange.sendResponseHeaders(status, body.length);
+		final OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	private static boolean acceptsGzip(final HttpExchange exchange) {
+		final List<String> values = exchange.getRequestHeaders()
+				.get("Accept-Encoding");
+		if (values != null) {
+			for (final String value : values) {
+				if (value.toLowerCase().contains("gzip")) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static byte[] bytes(final String s) throws IOException {
+		return s.getBytes("UTF-8");
+	}
+
+	static Map<String, String> parseQuery(final String query) {
+		final Map<String, String> params = new HashMap<String, String>();
+		if (query != null) {
+			for (final String param : query.split("&")) {
+				final int pos = param.indexOf('=');
+				if (pos == -1) {
+					params.put(param, "");
+				} else {
+					params.put(param.substring(0, pos),
+							param.substring(pos + 1));
+				}
+			}
+		}
+		return params;
+	}
+
+	private abstract class Handler implements HttpHandler {
+
+		public void handle(final HttpExchange exchange) throws IOException {
+			try {
+				final String path = exchange.getRequestURI().getPath();
+				if (!path.equals(exchange.getHttpContext().getPath())) {
+					send(exchange, 404, "text/plain", bytes("Not found."));
+					return;
+				}
+				handle(exchange,
+						parseQuery(exchange.getRequestURI().getRawQuery()));
+			} catch (final IOException e) {
+				logger.logExeption(e);
+				throw e;
+			} finally {
+				exchange.close();
+			}
+		}
+
+		abstract void handle(HttpExchange exchange, Map<String, String> query)
+				throws IOException;
+
+	}
+
+	/**
+	 * Counts classes and probes of a dump.
+	 */
+	static class Summary implements IExecutionDataVisitor, ISessionInfoVisitor {
+
+		private SessionInfo info;
+
+		private int classes;
+
+		private int hitClasses;
+
+		private long probes;
+
+		private long hitProbes;
+
+		public void visitSessionInfo(final SessionInfo info) {
+			this.info = info;
+		}
+
+		public void visitClassExecution(final ExecutionData data) {
+			classes++;
+			final boolean[] p = data.getProbes();
+			int hits = 0;
+			for (final boolean hit : p) {
+				if (hit) {
+					hits++;
+				}
+			}
+			probes += p.length;
+			hitProbes += hits;
+			if (hits > 0) {
+				hitClasses++;
+			}
+		}
+
+		String toJson() {
+			final StringBuilder json = new StringBuilder();
+			json.append("{\"sessionId\":");
+			appendString(json, info.getId());
+			json.append(",\"startTimeStamp\":")
+					.append(info.getStartTimeStamp());
+			json.append(",\"dumpTimeStamp\":").append(info.getDumpTimeStamp());
+			json.append(",\"classes\":").append(classes);
+			json.append(",\"hitClasses\":").append(hitClasses);
+			json.append(",\"probes\":").append(probes);
+			json.append(",\"hitProbes\":").append(hitProbes);
+			json.append('}');
+			return json.toString();
+		}
+
+		private static void appendString(final StringBuilder json,
+				final String value) {
+			json.append('"');
+			for (int i = 0; i < value.length(); i++) {
+				final char c = value.charAt(i);
+				if (c == '"' || c == '\\') {
+					json.append('\\').append(c);
+				} else if (c < 0x20) {
+					json.append(String.format("\\u%04x",
+							Integer.valueOf(c)));
+				} else {
+					json.append(c);
+				}
+			}
+			json.append('"');
+		}
+
+	}
+
+}
@@ -12,12 +12,30 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal.output;
 
+import static java.lang.String.format;
+
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.RuntimeData;
 
@@ -27,41 +45,224 @@ import org.jacoco.core.runtime.RuntimeData;
  * <ul>
  * <li>destfile</li>
  * <li>append</li>
+ * <li>dumpinterval</li>
+ * <li>dumpkeep</li>
+ * <li>dumpreset</li>
  * </ul>
+ * With a dump interval periodic dumps are written by a low priority
+ * background thread into new files next to the destfile, e.g.
+ * <code>jacoco-20210304-153012-042.exec</code>. The execution data is copied
+ * while the runtime is locked and written afterwards, so classes are only
+ * blocked during the copy. Probes are recorded without locks anyway.
  */
 public class FileOutput implements IAgentOutput {
 
+	private static final String TIMESTAMP_FORMAT = "yyyyMMdd-HHmmss-SSS";
+
+	private static final String TIMESTAMP_PATTERN = "\\d{8}-\\d{6}-\\d{3}";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * Temporary files modified more recently may belong to a dump of another
+	 * agent writing to the same folder.
+	 */
+	private static final long STALE_TEMP_MILLIS = 60 * 1000;
+
+	private final IExceptionLogger logger;
+
 	private RuntimeData data;
 
 	private File destFile;
 
 	private boolean append;
 
+	private boolean dumpReset;
+
+	private int dumpKeep;
+
+	private String dumpPrefix;
+
+	private String dumpSuffix;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * New controller instance which reports errors of periodic dumps to
+	 * {@link IExceptionLogger#SYSTEM_ERR}.
+	 */
+	public FileOutput() {
+		this(IExceptionLogger.SYSTEM_ERR);
+	}
+
+	/**
+	 * New controller instance.
+	 *
+	 * @param logger
+	 *            logger to use for errors of periodic dumps
+	 */
+	public FileOutput(final IExceptionLogger logger) {
+		this.logger = logger;
+	}
+
 	public final void startup(final AgentOptions options,
 			final RuntimeData data) throws IOException {
 		this.data = data;
 		this.destFile = new File(options.getDestfile()).getAbsoluteFile();
 		this.append = options.getAppend();
+		this.dumpReset = options.getDumpReset();
+		this.dumpKeep = options.getDumpKeep();
+		final String name = destFile.getName();
+		final int dot = name.lastIndexOf('.');
+		this.dumpPrefix = (dot == -1 ? name : name.substring(0, dot)) + "-";
+		this.dumpSuffix = dot == -1 ? "" : name.substring(dot);
 		final File folder = destFile.getParentFile();
 		if (folder != null) {
 			folder.mkdirs();
 		}
 		// Make sure we can write to the file:
 		openFile().close();
+		deleteStaleTempFiles();
+		final int interval = options.getDumpInterval();
+		if (interval > 0) {
+			startDumps(interval);
+		}
+	}
+
+	private void startDumps(final int interval) {
+		scheduler = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					public Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r);
+						thread.setName(FileOutput.class.getName() + "-dump");
+						thread.setPriority(Thread.MIN_PRIORITY);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					writePeriodicDump();
+				} catch (final Exception e) {
+					// 记录错误后继续下一次定时dump
+					logger.logExeption(e);
+				}
+			}
+		}, interval, interval, TimeUnit.SECONDS);
 	}
 
 	public void writeExecutionData(final boolean reset) throws IOException {
-		final OutputStream output = openFile();
+		final OutputStream output = new BufferedOutputStream(openFile());
 		try {
-			final ExecutionDataWriter writer = new ExecutionDataWriter(output);
-			data.collect(writer, writer, reset);
+			final Snapshot snapshot = new Snapshot();
+			data.collect(snapshot, snapshot, reset);
+			snapshot.writeTo(output);
 		} finally {
 			output.close();
 		}
 	}
 
-	public void shutdown() throws IOException {
-		// Nothing to do
+	/**
+	 * Writes the current execution data into a new timestamped file next to
+	 * the destfile and deletes old files exceeding the configured number of
+	 * files to keep. The file is written under a temporary name and renamed
+	 * when complete, so a process killed during the dump leaves no broken
+	 * file.
+	 *
+	 * @return the written file
+	 * @throws IOException
+	 *             in case of problems with the file
+	 */
+	File writePeriodicDump() throws IOException {
+		final File file = getDumpFile(new Date());
+		final File temp = new File(file.getPath() + TEMP_SUFFIX);
+		// the file is opened before collecting, so a reset never loses data
+		final OutputStream output = new BufferedOutputStream(
+				new FileOutputStream(temp));
+		boolean complete = false;
+		try {
+			try {
+				final Snapshot snapshot = new Snapshot();
+				data.collect(snapshot, snapshot, dumpReset);
+				snapshot.writeTo(output);
+			} finally {
+				output.close();
+			}
+			if (!temp.renameTo(file)) {
+				throw new IOException(
+						format("Can't rename %s to %s.", temp, file));
+			}
+			complete = true;
+		} finally {
+			if (!complete) {
+				temp.delete();
+			}
+		}
+		if (dumpKeep > 0) {
+			deleteOldDumps();
+		}
+		return file;
+	}
+
+	private File getDumpFile(final Date date) {
+		final String timestamp = new SimpleDateFormat(TIMESTAMP_FORMAT)
+				.format(date);
+		return new File(destFile.getParentFile(),
+				dumpPrefix + timestamp + dumpSuffix);
+	}
+
+	/**
+	 * Deletes temporary files of periodic dumps left behind by a process
+	 * which has been killed while writing a dump.
+	 */
+	private void deleteStaleTempFiles() {
+		final Pattern pattern = Pattern.compile(Pattern.quote(dumpPrefix)
+				+ TIMESTAMP_PATTERN + Pattern.quote(dumpSuffix + TEMP_SUFFIX));
+		final String[] names = destFile.getParentFile().list();
+		if (names == null) {
+			return;
+		}
+		final long stale = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+		for (final String name : names) {
+			if (pattern.matcher(name).matches()) {
+				final File temp = new File(destFile.getParentFile(), name);
+				if (temp.lastModified() < stale) {
+					temp.delete();
+				}
+			}
+		}
+	}
+
+	private void deleteOldDumps() throws IOException {
+		final Pattern pattern = Pattern.compile(Pattern.quote(dumpPrefix)
+				+ TIMESTAMP_PATTERN + Pattern.quote(dumpSuffix));
+		final String[] names = destFile.getParentFile().list();
+		if (names == null) {
+			return;
+		}
+		final List<String> dumps = new ArrayList<String>();
+		for (final String name : names) {
+			if (pattern.matcher(name).matches()) {
+				dumps.add(name);
+			}
+		}
+		// the timestamps sort in chronological order
+		Collections.sort(dumps);
+		for (int i = 0; i < dumps.size() - dumpKeep; i++) {
+			final File old = new File(destFile.getParentFile(), dumps.get(i));
+			if (!old.delete()) {
+				throw new IOException(format("Can't delete %s.", old));
+			}
+		}
+	}
+
+	public void shutdown() throws Exception {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			// a running dump is completed
+			scheduler.awaitTermination(60, TimeUnit.SECONDS);
+		}
 	}
 
 	private OutputStream openFile() throws IOException {
@@ -71,4 +272,37 @@ public class FileOutput implements IAgentOutput {
 		return file;
 	}
 
+	/**
+	 * Copy of the execution data taken while the runtime is locked. Writing
+	 * happens after the lock has been released.
+	 */
+	private static class Snapshot
+			implements IExecutionDataVisitor, ISessionInfoVisitor {
+
+		private SessionInfo info;
+
+		private final List<ExecutionData> classes = new ArrayList<ExecutionData>();
+
+		public void visitSessionInfo(final SessionInfo info) {
+			this.info = info;
+		}
+
+		public void visitClassExecution(final ExecutionData data) {
+			if (data.hasHits()) {
+				classes.add(new ExecutionData(data.getId(), data.getName(),
+						data.getProbes().clone()));
+			}
+		}
+
+		void writeTo(final OutputStream output) throws IOException {
+			final ExecutionDataWriter writer = new ExecutionDataWriter(output);
+			writer.visitSessionInfo(info);
+			for (final ExecutionData data : classes) {
+				writer.visitClassExecution(data);
+			}
+			writer.flush();
+		}
+
+	}
+
 }
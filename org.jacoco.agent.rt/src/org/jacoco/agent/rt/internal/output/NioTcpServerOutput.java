@@ -0,0 +1,936 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import static java.lang.String.format;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IncompatibleExecDataVersionException;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.JarTransfer;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Output that opens a non-blocking TCP server socket and serves multiple
+ * connections at the same time. A single selector thread accepts connections,
+ * parses the commands and writes the responses. Commands are executed on
+ * worker threads which pass their output to the selector thread in chunks
+ * through a bounded queue per connection. Execution data is collected into
+ * memory before it is passed on, so the runtime is never locked while a worker
+ * waits for its client. A slow client therefore only stalls its own worker.
+ * Concurrent dumps without reset share a single collected copy of the
+ * execution data, see {@link #collectShared()}.
+ * This controller uses the following agent options:
+ * <ul>
+ * <li>address</li>
+ * <li>port</li>
+ * <li>maxconnections</li>
+ * </ul>
+ */
+public class NioTcpServerOutput implements IAgentOutput {
+
+	/** Size of the chunks command output is passed to the selector thread. */
+	static final int CHUNK_SIZE = 8 * 1024;
+
+	/** Maximum number of chunks queued for a single connection. */
+	static final int MAX_CHUNKS = 4;
+
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+	private final IExceptionLogger logger;
+
+	/** connections which need attention of the selector thread */
+	private final Queue<Connection> pending = new ConcurrentLinkedQueue<Connection>();
+
+	private final Set<Connection> connections = Collections
+			.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+
+	private RuntimeData data;
+
+	private int maxConnections;
+
+	private Selector selector;
+
+	private ServerSocketChannel serverChannel;
+
+	private SelectionKey acceptKey;
+
+	private ThreadPoolExecutor workers;
+
+	private Thread worker;
+
+	private volatile boolean running;
+
+	/** guards the shared collection of dumps without reset */
+	private final Object dumpLock = new Object();
+
+	/** dump joined by requests arriving while another dump is collected */
+	private SharedDump nextDump;
+
+	private boolean collecting;
+
+	/**
+	 * New controller instance.
+	 *
+	 * @param logger
+	 *            logger to use in case of exceptions is spawned threads
+	 */
+	public NioTcpServerOutput(final IExceptionLogger logger) {
+		this.logger = logger;
+	}
+
+	public void startup(final AgentOptions options, final RuntimeData data)
+			throws IOException {
+		this.data = data;
+		this.maxConnections = options.getMaxConnections();
+		selector = Selector.open();
+		serverChannel = createServerChannel(options);
+		serverChannel.configureBlocking(false);
+		acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		// every connection executes at most one command at a time
+		workers = new ThreadPoolExecutor(maxConnections, maxConnections, 60,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					public Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r);
+						thread.setName(NioTcpServerOutput.class.getName()
+								+ "-command");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		workers.allowCoreThreadTimeOut(true);
+		running = true;
+		worker = new Thread(new Runnable() {
+			public void run() {
+				select();
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	public void shutdown() throws Exception {
+		running = false;
+		serverChannel.close();
+		selector.wakeup();
+		worker.join();
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Sends the current execution data to all open connections. The data is
+	 * collected only once, so with <code>reset</code> every connection gets
+	 * the same data. Returns after the data has been written to all
+	 * connections.
+	 *
+	 * @param reset
+	 *            if <code>true</code> execution data is cleared afterwards
+	 * @throws IOException
+	 *             in case of problems while writing to a connection
+	 */
+	public void writeExecutionData(final boolean reset) throws IOException {
+		final List<Connection> targets = new ArrayList<Connection>(
+				connections);
+		if (targets.isEmpty()) {
+			return;
+		}
+		final DumpBuffer dump = new DumpBuffer();
+		data.collect(dump.writer, dump.writer, reset);
+		for (final Connection connection : targets) {
+			connection.writeDump(dump);
+		}
+	}
+
+	/**
+	 * Collects the current execution data without reset. Requests arriving
+	 * while the data is collected for another connection wait for the end of
+	 * that collection and then share the next one. So every request gets data
+	 * collected after it has been received, but concurrent requests hold only
+	 * one copy of the execution data in memory.
+	 *
+	 * @return collected execution data, must not be modified
+	 * @throws IOException
+	 *             if the execution data could not be collected
+	 */
+	private DumpBuffer collectShared() throws IOException {
+		final SharedDump shared;
+		synchronized (dumpLock) {
+			if (nextDump == null) {
+				nextDump = new SharedDump();
+			}
+			shared = nextDump;
+			while (collecting && !shared.done) {
+				try {
+					dumpLock.wait();
+				} catch (final InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+			if (shared.done) {
+				return shared.get();
+			}
+			collecting = true;
+			nextDump = null;
+		}
+		try {
+			final DumpBuffer buffer = new DumpBuffer();
+			data.collect(buffer.writer, buffer.writer, false);
+			shared.buffer = buffer;
+		} catch (final IOException e) {
+			shared.failure = e;
+		} catch (final RuntimeException e) {
+			shared.failure = e;
+		} finally {
+			synchronized (dumpLock) {
+				collecting = false;
+				shared.done = true;
+				dumpLock.notifyAll();
+			}
+		}
+		return shared.get();
+	}
+
+	/**
+	 * Result of a single collection shared by all requests which joined it.
+	 * Only accessed while holding the dump lock or after <code>done</code>
+	 * has been observed under that lock.
+	 */
+	private static class SharedDump {
+
+		DumpBuffer buffer;
+
+		Exception failure;
+
+		boolean done;
+
+		DumpBuffer get() throws IOException {
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			}
+			if (failure != null) {
+				throw (RuntimeException) failure;
+			}
+			return buffer;
+		}
+
+	}
+
+	/**
+	 * Opens the server channel based on the given configuration. The backlog
+	 * is the maximum number of connections.
+	 *
+	 * @param options
+	 *            address, port and connection configuration
+	 * @return bound server channel
+	 * @throws IOException
+	 */
+	protected ServerSocketChannel createServerChannel(
+			final AgentOptions options) throws IOException {
+		final ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.socket().bind(
+					new InetSocketAddress(
+							getInetAddress(options.getAddress()),
+							options.getPort()),
+					options.getMaxConnections());
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel;
+	}
+
+	/**
+	 * Returns the jar file of the given download block type.
+	 *
+	 * @param artifact
+	 *            download block type
+	 * @return jar file or <code>null</code> if not available
+	 * @throws FileNotFoundException
+	 *             if the jar can't be found
+	 */
+	protected File locate(final byte artifact) throws FileNotFoundException {
+		return JarTransfer.locate(artifact);
+	}
+
+	/**
+	 * Returns the {@link InetAddress} object to open the server socket on.
+	 *
+	 * @param address
+	 *            address specified as a string
+	 * @return address to open the server socket
+	 * @throws UnknownHostException
+	 */
+	protected InetAddress getInetAddress(final String address)
+			throws UnknownHostException {
+		if ("*".equals(address)) {
+			return null;
+		} else {
+			return InetAddress.getByName(address);
+		}
+	}
+
+	/**
+	 * @return local port of the server channel
+	 */
+	int getLocalPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * @return number of open connections
+	 */
+	int getConnectionCount() {
+		return connections.size();
+	}
+
+	private void select() {
+		try {
+			while (running) {
+				selector.select();
+				Connection connection;
+				while ((connection = pending.poll()) != null) {
+					connection.resume();
+				}
+				final Iterator<SelectionKey> keys = selector.selectedKeys()
+						.iterator();
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key == acceptKey) {
+						accept();
+						continue;
+					}
+					connection = (Connection) key.attachment();
+					try {
+						if (key.isReadable()) {
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.write();
+						}
+					} catch (final IOException e) {
+						connection.fail(e);
+						connection.close();
+					}
+				}
+			}
+		} catch (final IOException e) {
+			if (running) {
+				logger.logExeption(e);
+			}
+		} finally {
+			for (final Connection connection : connections) {
+				connection.close();
+			}
+			try {
+				selector.close();
+			} catch (final IOException e) {
+				logger.logExeption(e);
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		final SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		final Connection connection = new Connection(channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ,
+				connection);
+		connections.add(connection);
+		connection.open();
+		if (connections.size() >= maxConnections) {
+			// further clients wait in the backlog until a connection closes
+			acceptKey.interestOps(0);
+		}
+	}
+
+	/**
+	 * State of a single client connection. Input is parsed and output is
+	 * written on the selector thread only, commands run on a worker thread.
+	 */
+	private class Connection {
+
+		private final SocketChannel channel;
+
+		private final ChunkOutputStream output = new ChunkOutputStream(this);
+
+		private final ByteBuffer input = ByteBuffer.allocate(64);
+
+		private RemoteControlWriter writer;
+
+		SelectionKey key;
+
+		private boolean header;
+
+		private ByteBuffer sending;
+
+		/** command in progress on a worker thread */
+		private volatile boolean busy;
+
+		/** close as soon as the output has been written */
+		private volatile boolean closeAfterOutput;
+
+		private volatile boolean closed;
+
+		Connection(final SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void open() throws IOException {
+			writer = new RemoteControlWriter(output);
+			writer.flush();
+		}
+
+		void read() throws IOException {
+			if (transfer(true) == -1) {
+				close();
+				return;
+			}
+			if (!busy) {
+				process();
+			}
+			updateInterest();
+		}
+
+		void write() throws IOException {
+			while (true) {
+				if (sending == null) {
+					sending = output.poll();
+					if (sending == null) {
+						final JarTransfer file = output.getFile();
+						if (file == null) {
+							break;
+						}
+						if (!transferFile(file)) {
+							return;
+						}
+						output.fileSent();
+						continue;
+					}
+				}
+				if (transfer(false) == -1) {
+					close();
+					return;
+				}
+				if (sending.hasRemaining()) {
+					// socket buffer is full, wait for the next write event
+					return;
+				}
+				output.recycle(sending);
+				sending = null;
+			}
+			output.signalDrained();
+			if (closeAfterOutput && !busy) {
+				close();
+				return;
+			}
+			updateInterest();
+		}
+
+		/**
+		 * Reads from or writes to the channel. A client which disconnects
+		 * without reading all responses is not an error of the agent, so
+		 * I/O problems just close the connection.
+		 */
+		private int transfer(final boolean read) {
+			try {
+				return read ? channel.read(input) : channel.write(sending);
+			} catch (final IOException e) {
+				return -1;
+			}
+		}
+
+		/**
+		 * Copies a file directly from the file system to the socket. Returns
+		 * <code>false</code> if the socket buffer is full or the connection
+		 * has been closed.
+		 */
+		private boolean transferFile(final JarTransfer file) {
+			try {
+				return file.transferSome(channel);
+			} catch (final IOException e) {
+				fail(e);
+				close();
+				return false;
+			}
+		}
+
+		/**
+		 * Called on the selector thread whenever a worker has produced output
+		 * or finished a command.
+		 */
+		void resume() {
+			if (closed) {
+				return;
+			}
+			try {
+				if (!busy) {
+					process();
+				}
+				updateInterest();
+			} catch (final IOException e) {
+				fail(e);
+				close();
+			}
+		}
+
+		private void updateInterest() {
+			if (closed || !key.isValid()) {
+				return;
+			}
+			int ops = 0;
+			if (!closeAfterOutput && (!busy || input.hasRemaining())) {
+				ops |= SelectionKey.OP_READ;
+			}
+			if (sending != null || output.hasChunks()) {
+				ops |= SelectionKey.OP_WRITE;
+			} else if (closeAfterOutput && !busy) {
+				close();
+				return;
+			}
+			key.interestOps(ops);
+		}
+
+		/**
+		 * Parses complete blocks from the input buffer. Parsing stops when a
+		 * command has been handed over to a worker thread.
+		 */
+		private void process() throws IOException {
+			input.flip();
+			try {
+				while (!busy && !closeAfterOutput && input.hasRemaining()) {
+					final int start = input.position();
+					final byte type = input.get();
+					if (!header && type != ExecutionDataWriter.BLOCK_HEADER) {
+						throw new IOException("Invalid execution data file.");
+					}
+					if (input.remaining() < payload(type)) {
+						// block not complete yet
+						input.position(start);
+						return;
+					}
+					dispatch(type);
+				}
+			} finally {
+				input.compact();
+			}
+		}
+
+		private int payload(final byte type) throws IOException {
+			switch (type) {
+			case ExecutionDataWriter.BLOCK_HEADER:
+				return 4;
+			case RemoteControlWriter.BLOCK_CMDDUMP:
+				return 2;
+			case RemoteControlWriter.BLOCK_CMDDELTADUMP:
+				return 8;
+			case RemoteControlWriter.BLOCK_CMDDOWNLOAD:
+				return 17;
+			case RemoteControlWriter.BLOCK_CMDOK:
+			case RemoteControlWriter.BLOCK_DOWNBBZX:
+			case RemoteControlWriter.BLOCK_DOWNREPORTVIEW:
+			case RemoteControlWriter.BLOCK_DOWNWEBSITE:
+				return 0;
+			default:
+				throw new IOException(format("Unknown block type %x.",
+						Byte.valueOf(type)));
+			}
+		}
+
+		private void dispatch(final byte type) throws IOException {
+			switch (type) {
+			case ExecutionDataWriter.BLOCK_HEADER:
+				if (input.getChar() != ExecutionDataWriter.MAGIC_NUMBER) {
+					throw new IOException("Invalid execution data file.");
+				}
+				final char version = input.getChar();
+				if (version != ExecutionDataWriter.FORMAT_VERSION) {
+					throw new IncompatibleExecDataVersionException(version);
+				}
+				header = true;
+				break;
+			case RemoteControlWriter.BLOCK_CMDDUMP:
+				final boolean dump = input.get() != 0;
+				final boolean reset = input.get() != 0;
+				execute(new Command() {
+					public void run() throws IOException {
+						if (dump && !reset) {
+							collectShared().writeBlocksTo(output);
+						} else if (dump) {
+							final DumpBuffer buffer = new DumpBuffer();
+							data.collect(buffer.writer, buffer.writer, reset);
+							buffer.writeBlocksTo(output);
+						} else if (reset) {
+							data.reset();
+						}
+						writer.sendCmdOk();
+					}
+				});
+				break;
+			case RemoteControlWriter.BLOCK_CMDDELTADUMP:
+				final long generation = input.getLong();
+				execute(new Command() {
+					public void run() throws IOException {
+						final DumpBuffer buffer = new DumpBuffer();
+						final long next = data.collectDelta(buffer.writer,
+								buffer.writer, generation);
+						buffer.writeBlocksTo(output);
+						writer.sendDeltaGeneration(next);
+						writer.sendCmdOk();
+					}
+				});
+				break;
+			case RemoteControlWriter.BLOCK_CMDDOWNLOAD:
+				final byte artifact = input.get();
+				final long offset = input.getLong();
+				final long checksum = input.getLong();
+				execute(new Command() {
+					public void run() throws IOException {
+						download(artifact, offset, checksum);
+					}
+				});
+				break;
+			case RemoteControlWriter.BLOCK_CMDOK:
+				break;
+			default:
+				// the jar is streamed as raw bytes, the client reads until
+				// the connection is closed
+				closeAfterOutput = true;
+				execute(new Command() {
+					public void run() throws IOException {
+						new RemoteControlReader(
+								new ByteArrayInputStream(new byte[0]), output)
+										.downJar(type);
+					}
+				});
+				break;
+			}
+		}
+
+		private void download(final byte artifact, final long offset,
+				final long checksum) throws IOException {
+			JarTransfer transfer;
+			try {
+				transfer = JarTransfer.open(locate(artifact), offset,
+						checksum);
+			} catch (final FileNotFoundException e) {
+				// the client reports the missing jar
+				transfer = null;
+			}
+			if (transfer == null) {
+				writer.sendDownloadHeader(-1, JarTransfer.UNKNOWN_CHECKSUM, 0);
+				writer.sendCmdOk();
+				return;
+			}
+			try {
+				transfer.sendHeader(writer);
+				writer.flush();
+				output.transfer(transfer);
+			} finally {
+				transfer.close();
+			}
+			writer.sendCmdOk();
+		}
+
+		private void execute(final Command command) {
+			busy = true;
+			workers.execute(new Runnable() {
+				public void run() {
+					try {
+						synchronized (writer) {
+							command.run();
+							writer.flush();
+						}
+					} catch (final IOException e) {
+						fail(e);
+						closeAfterOutput = true;
+					} catch (final RuntimeException e) {
+						// the execution data writers wrap IOExceptions
+						fail(e.getCause() instanceof IOException
+								? (IOException) e.getCause()
+								: new IOException(e));
+						closeAfterOutput = true;
+					} finally {
+						busy = false;
+						wakeup();
+					}
+				}
+			});
+		}
+
+		/**
+		 * Writes a dump collected by
+		 * {@link NioTcpServerOutput#writeExecutionData(boolean)} and waits
+		 * until it has been sent.
+		 */
+		void writeDump(final DumpBuffer dump) throws IOException {
+			try {
+				synchronized (writer) {
+					dump.writeBlocksTo(output);
+					writer.sendCmdOk();
+					writer.flush();
+				}
+				output.awaitDrained();
+			} catch (final IOException e) {
+				if (!closed) {
+					throw e;
+				}
+			}
+		}
+
+		void wakeup() {
+			pending.add(this);
+			selector.wakeup();
+		}
+
+		void fail(final IOException e) {
+			if (running && !closed) {
+				logger.logExeption(e);
+			}
+		}
+
+		void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			output.signalDrained();
+			key.cancel();
+			try {
+				channel.close();
+			} catch (final IOException e) {
+				logger.logExeption(e);
+			}
+			connections.remove(this);
+			if (running && acceptKey.isValid()) {
+				acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+			}
+		}
+
+		boolean isClosed() {
+			return closed;
+		}
+
+	}
+
+	/**
+	 * Execution data collected into memory while the runtime is locked. The
+	 * blocks are written to connections after the lock has been released.
+	 */
+	private static class DumpBuffer extends ByteArrayOutputStream {
+
+		private static final int HEADER = ExecutionDataWriter
+				.getFileHeader().length;
+
+		final ExecutionDataWriter writer;
+
+		DumpBuffer() throws IOException {
+			writer = new ExecutionDataWriter(this);
+		}
+
+		/**
+		 * Writes the collected blocks without the file header, which has
+		 * already been sent when the connection was opened.
+		 */
+		void writeBlocksTo(final OutputStream output) throws IOException {
+			output.write(buf, HEADER, count - HEADER);
+		}
+
+	}
+
+	private interface Command {
+
+		void run() throws IOException;
+
+	}
+
+	/**
+	 * Output stream of a connection. Data is collected in chunks of
+	 * {@link NioTcpServerOutput#CHUNK_SIZE} bytes which are queued for the
+	 * selector thread. Writers block while
+	 * {@link NioTcpServerOutput#MAX_CHUNKS} chunks are waiting to be sent.
+	 * Sent chunks are reused. Files are not copied into chunks, they are
+	 * transferred by the selector thread directly.
+	 */
+	private static class ChunkOutputStream extends OutputStream {
+
+		private final Connection connection;
+
+		private final BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<ByteBuffer>(
+				MAX_CHUNKS);
+
+		private final Queue<byte[]> free = new ConcurrentLinkedQueue<byte[]>();
+
+		/** chunks handed over but not completely sent yet */
+		private final AtomicInteger unsent = new AtomicInteger();
+
+		/** file to send after the queued chunks */
+		private volatile JarTransfer file;
+
+		private byte[] buffer = new byte[CHUNK_SIZE];
+
+		private int count;
+
+		ChunkOutputStream(final Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			if (count == buffer.length) {
+				handOver();
+			}
+			buffer[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(final byte[] b, int off, int len)
+				throws IOException {
+			while (len > 0) {
+				if (count == buffer.length) {
+					handOver();
+				}
+				final int n = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (count > 0) {
+				handOver();
+			}
+		}
+
+		private void handOver() throws IOException {
+			final ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, count);
+			final byte[] next = free.poll();
+			buffer = next == null ? new byte[CHUNK_SIZE] : next;
+			count = 0;
+			unsent.incrementAndGet();
+			try {
+				while (!chunks.offer(chunk, OFFER_TIMEOUT_MILLIS,
+						TimeUnit.MILLISECONDS)) {
+					checkOpen();
+				}
+			} catch (final InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			checkOpen();
+			connection.wakeup();
+		}
+
+		private void checkOpen() throws IOException {
+			if (connection.isClosed()) {
+				throw new IOException("Connection closed.");
+			}
+		}
+
+		ByteBuffer poll() {
+			return chunks.poll();
+		}
+
+		boolean hasChunks() {
+			return !chunks.isEmpty() || file != null;
+		}
+
+		/**
+		 * Hands the given file over to the selector thread and waits until it
+		 * has been sent completely.
+		 */
+		void transfer(final JarTransfer transfer) throws IOException {
+			flush();
+			unsent.incrementAndGet();
+			file = transfer;
+			connection.wakeup();
+			awaitDrained();
+		}
+
+		JarTransfer getFile() {
+			return file;
+		}
+
+		void fileSent() {
+			file = null;
+			unsent.decrementAndGet();
+		}
+
+		void recycle(final ByteBuffer chunk) {
+			free.add(chunk.array());
+			unsent.decrementAndGet();
+		}
+
+		synchronized void signalDrained() {
+			notifyAll();
+		}
+
+		synchronized void awaitDrained() throws IOException {
+			try {
+				while (unsent.get() > 0 && !connection.isClosed()) {
+					wait(OFFER_TIMEOUT_MILLIS);
+				}
+			} catch (final InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			checkOpen();
+		}
+
+	}
+
+}
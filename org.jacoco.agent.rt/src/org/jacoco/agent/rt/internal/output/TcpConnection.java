@@ -14,15 +14,19 @@ package org.jacoco.agent.rt.internal.output;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 import org.jacoco.core.data.ExecutionDataWriter;
 import org.jacoco.core.data.IncompatibleExecDataVersionException;
 import org.jacoco.core.internal.data.CompactDataInput;
 import org.jacoco.core.internal.data.CompactDataOutput;
 import org.jacoco.core.runtime.IRemoteCommandVisitor;
+import org.jacoco.core.runtime.JarTransfer;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
 import org.jacoco.core.runtime.RuntimeData;
@@ -120,4 +124,40 @@ class TcpConnection implements IRemoteCommandVisitor {
 		writer.sendCmdOk();
 	}
 
+	public void visitDeltaDumpCommand(final long generation)
+			throws IOException {
+		final long next = data.collectDelta(writer, writer, generation);
+		writer.sendDeltaGeneration(next);
+		writer.sendCmdOk();
+	}
+
+	public void visitDownloadCommand(final byte artifact, final long offset,
+			final long checksum) throws IOException {
+		JarTransfer transfer;
+		try {
+			transfer = JarTransfer.open(JarTransfer.locate(artifact), offset,
+					checksum);
+		} catch (final FileNotFoundException e) {
+			// the client reports the missing jar
+			transfer = null;
+		}
+		if (transfer == null) {
+			writer.sendDownloadHeader(-1, JarTransfer.UNKNOWN_CHECKSUM, 0);
+			writer.sendCmdOk();
+			return;
+		}
+		try {
+			transfer.sendHeader(writer);
+			writer.flush();
+			// Sockets of a ServerSocketChannel allow zero copy transfers
+			final WritableByteChannel target = socket.getChannel() != null
+					? socket.getChannel()
+					: Channels.newChannel(socket.getOutputStream());
+			transfer.transferTo(target);
+		} finally {
+			transfer.close();
+		}
+		writer.sendCmdOk();
+	}
+
 }
@@ -201,6 +201,73 @@ public class AbstractCoverageTask extends Task {
 		agentOptions.setClassDumpDir(dir.getAbsolutePath());
 	}
 
+	/**
+	 * Sets the maximum number of clients served at the same time when the
+	 * output method is tcp server. Default is <code>1</code>
+	 *
+	 * @param maxConnections
+	 *            maximum number of concurrent connections
+	 */
+	public void setMaxconnections(final int maxConnections) {
+		agentOptions.setMaxConnections(maxConnections);
+	}
+
+	/**
+	 * Sets the interval in seconds for periodic dumps into timestamped files
+	 * when the output method is file. Default is <code>0</code> (no periodic
+	 * dumps)
+	 *
+	 * @param dumpInterval
+	 *            dump interval in seconds
+	 */
+	public void setDumpinterval(final int dumpInterval) {
+		agentOptions.setDumpInterval(dumpInterval);
+	}
+
+	/**
+	 * Sets the number of periodic dump files which are kept. Default is
+	 * <code>0</code> (all files are kept)
+	 *
+	 * @param dumpKeep
+	 *            number of files to keep
+	 */
+	public void setDumpkeep(final int dumpKeep) {
+		agentOptions.setDumpKeep(dumpKeep);
+	}
+
+	/**
+	 * Sets whether execution data is reset after every periodic dump. Default
+	 * is <code>false</code>
+	 *
+	 * @param dumpReset
+	 *            <code>true</code> if execution data should be reset
+	 */
+	public void setDumpreset(final boolean dumpReset) {
+		agentOptions.setDumpReset(dumpReset);
+	}
+
+	/**
+	 * Sets the port of the HTTP endpoint which serves execution data and a
+	 * coverage summary. Default is <code>-1</code> (no HTTP endpoint)
+	 *
+	 * @param httpPort
+	 *            port to listen on, <code>0</code> for a free port
+	 */
+	public void setHttpport(final int httpPort) {
+		agentOptions.setHttpPort(httpPort);
+	}
+
+	/**
+	 * Sets the address the HTTP endpoint binds to, <code>*</code> for all
+	 * local addresses. Default is the loopback address
+	 *
+	 * @param address
+	 *            hostname or IP address
+	 */
+	public void setHttpaddress(final String address) {
+		agentOptions.setHttpAddress(address);
+	}
+
 	/**
 	 * Sets whether the agent should expose functionality via JMX.
 	 *
@@ -40,6 +40,10 @@ public class InstrumentTask extends Task {
 
 	private boolean removesignatures = true;
 
+	private int threads = 1;
+
+	private int window = 0;
+
 	/**
 	 * Sets the location of the instrumented classes.
 	 *
@@ -60,6 +64,28 @@ public class InstrumentTask extends Task {
 		this.removesignatures = removesignatures;
 	}
 
+	/**
+	 * Sets the number of threads used to instrument the entries of archives.
+	 * Default is 1.
+	 *
+	 * @param threads
+	 *            number of instrumentation threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the maximum number of archive entries held in memory when more than
+	 * one thread is used. Default is four entries per thread.
+	 *
+	 * @param window
+	 *            maximum number of entries in flight
+	 */
+	public void setWindow(final int window) {
+		this.window = window;
+	}
+
 	/**
 	 * This task accepts any number of class file resources.
 	 *
@@ -80,6 +106,8 @@ public class InstrumentTask extends Task {
 		final Instrumenter instrumenter = new Instrumenter(
 				new OfflineInstrumentationAccessGenerator());
 		instrumenter.setRemoveSignatures(removesignatures);
+		instrumenter.setThreads(threads);
+		instrumenter.setWindow(window);
 		final Iterator<?> resourceIterator = files.iterator();
 		while (resourceIterator.hasNext()) {
 			final Resource resource = (Resource) resourceIterator.next();
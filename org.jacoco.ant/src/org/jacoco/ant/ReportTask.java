@@ -39,7 +39,9 @@ import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.analysis.ICoverageNode;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.internal.diff.JsonReadUtil;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.FileMultiReportOutput;
 import org.jacoco.report.IMultiReportOutput;
 import org.jacoco.report.IReportGroupVisitor;
@@ -251,6 +253,7 @@ public class ReportTask extends Task {
 			formatter.setFooterText(footer);
 			formatter.setOutputEncoding(encoding);
 			formatter.setLocale(locale);
+			formatter.setThreads(threads);
 			return formatter.createVisitor(output);
 		}
 
@@ -352,6 +355,7 @@ public class ReportTask extends Task {
 		private boolean violations = false;
 		private boolean failOnViolation = true;
 		private String violationsPropery = null;
+		private File diffCodeFile = null;
 
 		/**
 		 * Creates and adds a new rule.
@@ -385,10 +389,29 @@ public class ReportTask extends Task {
 			this.violationsPropery = property;
 		}
 
+		/**
+		 * Sets a JSON file with the code diff of the changed classes and
+		 * methods. If specified the rules are evaluated on the changed methods
+		 * and, where the diff contains changed lines, on the changed lines
+		 * only.
+		 *
+		 * @param file
+		 *            code diff file
+		 */
+		public void setDiffCodeFile(final File file) {
+			this.diffCodeFile = file;
+		}
+
 		@Override
 		public IReportVisitor createVisitor() throws IOException {
 			final RulesChecker formatter = new RulesChecker();
 			formatter.setRules(rules);
+			if (diffCodeFile != null) {
+				final MergeContext context = new MergeContext();
+				context.setClassInfos(
+						JsonReadUtil.readClassInfos(diffCodeFile));
+				formatter.setMergeContext(context);
+			}
 			return formatter.createVisitor(this);
 		}
 
@@ -424,6 +447,21 @@ public class ReportTask extends Task {
 
 	private final List<FormatterElement> formatters = new ArrayList<FormatterElement>();
 
+	private int threads = 1;
+
+	/**
+	 * Sets the number of threads used to analyze class files and to render
+	 * HTML reports. With more than one thread class files and archives are
+	 * read and analyzed concurrently and the packages of HTML reports are
+	 * rendered concurrently. Default is 1.
+	 *
+	 * @param threads
+	 *            number of analysis and rendering threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
 	/**
 	 * Returns the nested resource collection for execution data files.
 	 *
@@ -564,9 +602,14 @@ public class ReportTask extends Task {
 			throws IOException {
 		final CoverageBuilder builder = new CoverageBuilder();
 		final Analyzer analyzer = new Analyzer(executionDataStore, builder);
+		analyzer.setThreads(threads);
+		final List<File> files = new ArrayList<File>();
 		for (final Iterator<?> i = group.classfiles.iterator(); i.hasNext();) {
 			final Resource resource = (Resource) i.next();
-			if (resource.isDirectory() && resource instanceof FileResource) {
+			if (threads > 1 && resource instanceof FileResource) {
+				files.add(((FileResource) resource).getFile());
+			} else if (resource.isDirectory()
+					&& resource instanceof FileResource) {
 				analyzer.analyzeAll(((FileResource) resource).getFile());
 			} else {
 				final InputStream in = resource.getInputStream();
@@ -574,6 +617,7 @@ public class ReportTask extends Task {
 				in.close();
 			}
 		}
+		analyzer.analyzeAll(files);
 		final IBundleCoverage bundle = builder.getBundle(group.name);
 		logBundleInfo(bundle, builder.getNoMatchClasses());
 		return bundle;
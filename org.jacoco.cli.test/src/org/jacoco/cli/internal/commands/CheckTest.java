@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.cli.internal.commands;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jacoco.cli.internal.CommandTestBase;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Check}.
+ */
+public class CheckTest extends CommandTestBase {
+
+	@Test
+	public void should_print_usage_when_no_options_are_given()
+			throws Exception {
+		execute("check");
+
+		assertFailure();
+		assertContains("\"--classfiles\"", err);
+		assertContains("java -jar jacococli.jar check [<execfiles> ...]", err);
+	}
+
+	@Test
+	public void should_fail_for_invalid_rule() throws Exception {
+		execute("check", "--classfiles", getClassPath(), "--rule",
+				"BUNDLE:FOO:COVEREDRATIO:0.8");
+
+		assertFailure();
+		assertContains("[ERROR] Invalid rule BUNDLE:FOO:COVEREDRATIO:0.8.",
+				err);
+	}
+
+	@Test
+	public void should_pass_when_limits_are_met() throws Exception {
+		execute("check", "--classfiles", getClassPath(), "--rule",
+				"BUNDLE:INSTRUCTION:MISSEDRATIO::100%");
+
+		assertOk();
+		assertContains("[WARN] No execution data files provided.", out);
+		assertContains("[INFO] All coverage checks have been met.", out);
+	}
+
+	@Test
+	public void should_report_violations_when_limits_are_not_met()
+			throws Exception {
+		execute("check", "--classfiles", getClassPath(), "--rule",
+				"BUNDLE:LINE:COVEREDRATIO:80%");
+
+		assertEquals(1, result);
+		assertContains(
+				"[WARN] Rule violated for bundle JaCoCo Coverage Report: lines covered ratio is 0.00, but expected minimum is 0.80",
+				err);
+		assertContains("[ERROR] Coverage checks have not been met.", err);
+	}
+
+	@Test
+	public void should_check_changed_methods_only_when_diff_is_provided()
+			throws Exception {
+		execute("check", "--classfiles", getClassPath(), "--rule",
+				"METHOD:LINE:COVEREDRATIO:80%", "--diffCode",
+				"[{\"classFile\": \"org/jacoco/cli/internal/commands/CheckTest\","
+						+ " \"methodInfos\": [{\"methodName\": \"should_fail_for_invalid_rule\","
+						+ " \"parameters\": []}], \"type\": \"MODIFY\"}]");
+
+		assertEquals(1, result);
+		assertContains("[INFO] Analyzed 1 classes.", out);
+		assertContains(
+				"[WARN] Rule violated for method org.jacoco.cli.internal.commands.CheckTest.should_fail_for_invalid_rule():",
+				err);
+		assertEquals(2, err.toString().split("\n").length);
+	}
+
+}
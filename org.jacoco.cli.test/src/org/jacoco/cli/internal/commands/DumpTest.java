@@ -23,6 +23,7 @@ import java.net.Socket;
 
 import org.jacoco.cli.internal.CommandTestBase;
 import org.jacoco.core.runtime.IRemoteCommandVisitor;
+import org.jacoco.core.runtime.JarTransfer;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
 import org.junit.After;
@@ -109,6 +110,17 @@ public class DumpTest extends CommandTestBase {
 					throws IOException {
 				writer.sendCmdOk();
 			}
+
+			public void visitDeltaDumpCommand(long generation)
+					throws IOException {
+				writer.sendCmdOk();
+			}
+
+			public void visitDownloadCommand(byte artifact, long offset,
+					long checksum) throws IOException {
+				writer.sendDownloadHeader(-1, JarTransfer.UNKNOWN_CHECKSUM, 0);
+				writer.sendCmdOk();
+			}
 		});
 		while (reader.read()) {
 		}
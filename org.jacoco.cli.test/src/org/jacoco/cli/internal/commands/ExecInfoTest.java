@@ -66,6 +66,18 @@ public class ExecInfoTest extends CommandTestBase {
 		assertContains("0000000000001234    2 of   3   foo/MyClass", out);
 	}
 
+	@Test
+	public void should_print_execution_data_info_with_packed_probes()
+			throws Exception {
+		File execfile = createExecFile();
+
+		execute("execinfo", "--packed", execfile.getAbsolutePath());
+
+		assertOk();
+		assertContains("Session \"testid\":", out);
+		assertContains("0000000000001234    2 of   3   foo/MyClass", out);
+	}
+
 	private File createExecFile() throws IOException {
 		File f = new File(tmp.getRoot(), "test.exec");
 		final FileOutputStream out = new FileOutputStream(f);
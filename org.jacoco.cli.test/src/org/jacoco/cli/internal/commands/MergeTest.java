@@ -75,6 +75,60 @@ public class MergeTest extends CommandTestBase {
 		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), names);
 	}
 
+	@Test
+	public void should_merge_exec_files_with_multiple_threads()
+			throws Exception {
+		File a = createExecFile("a");
+		File b = createExecFile("b");
+		File c = createExecFile("c");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--destfile", dest.getAbsolutePath(), "--threads",
+				"2", a.getAbsolutePath(), b.getAbsolutePath(),
+				c.getAbsolutePath());
+
+		assertOk();
+		assertContains("[INFO] Loading execution data file "
+				+ c.getAbsolutePath(), out);
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), names);
+	}
+
+	@Test
+	public void should_merge_exec_files_with_packed_probes() throws Exception {
+		File a = createExecFile("a");
+		File b = createExecFile("b");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--destfile", dest.getAbsolutePath(), "--packed",
+				a.getAbsolutePath(), b.getAbsolutePath());
+
+		assertOk();
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b")), names);
+	}
+
+	@Test
+	public void should_merge_exec_files_into_compressed_file()
+			throws Exception {
+		File a = createExecFile("a");
+		File b = createExecFile("b");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--destfile", dest.getAbsolutePath(), "--compress",
+				a.getAbsolutePath(), b.getAbsolutePath());
+
+		assertOk();
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b")), names);
+
+		File copy = new File(tmp.getRoot(), "copy.exec");
+		execute("merge", "--destfile", copy.getAbsolutePath(),
+				dest.getAbsolutePath());
+		assertOk();
+		assertEquals(names, loadExecFile(copy));
+	}
+
 	@Test
 	public void local_should_merge_exec_files() throws Exception {
 		File dest = new File("D:\\jacoco", "merged.exec");
@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.jacoco.cli.internal.commands;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.*;
@@ -19,6 +20,7 @@ import java.io.*;
 import org.jacoco.cli.internal.CommandTestBase;
 import org.jacoco.cli.internal.Main;
 import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.data.CompressedExecutionDataWriter;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataWriter;
 import org.junit.Rule;
@@ -143,6 +145,41 @@ public class ReportTest extends CommandTestBase {
 		assertTrue(csv.isFile());
 	}
 
+	@Test
+	public void should_create_streaming_reports_when_stream_option_is_provided()
+			throws Exception {
+		File xml = new File(tmp.getRoot(), "coverage.xml");
+		File csv = new File(tmp.getRoot(), "coverage.csv");
+
+		execute("report", "--classfiles", getClassPath(), "--stream", "--xml",
+				xml.getAbsolutePath(), "--csv", csv.getAbsolutePath());
+
+		assertOk();
+		assertContains("[INFO] Analyzing ", out);
+		assertTrue(xml.length() > 0);
+		assertTrue(csv.length() > 0);
+	}
+
+	@Test
+	public void should_load_compressed_exec_file_when_exec_index_is_requested()
+			throws Exception {
+		File exec = new File(tmp.getRoot(), "jacoco.exec");
+		final FileOutputStream execout = new FileOutputStream(exec);
+		new CompressedExecutionDataWriter(execout).flush();
+		execout.close();
+		File xml = new File(tmp.getRoot(), "coverage.xml");
+
+		execute("report", exec.getAbsolutePath(), "--classfiles",
+				getClassPath(), "--execIndex", "--xml", xml.getAbsolutePath());
+
+		assertOk();
+		assertContains(
+				"is compressed and can't be indexed, loading all execution data.",
+				out);
+		assertContains("[INFO] Loading execution data file ", out);
+		assertTrue(xml.isFile());
+	}
+
 	@Test
 	public void should_create_html_report_when_html_option_is_provided()
 			throws Exception {
@@ -169,6 +206,132 @@ public class ReportTest extends CommandTestBase {
 		assertTrue(html.isDirectory());
 	}
 
+	@Test
+	public void should_create_html_report_for_changed_code_only()
+			throws Exception {
+		File html = new File(tmp.getRoot(), "coverage");
+		execute("report", "--classfiles", getClassPath(), "--html",
+				html.getAbsolutePath(), "--diffOnly", "--diffCode",
+				"[{\"classFile\": \"org/jacoco/cli/internal/commands/ReportTest\","
+						+ " \"methodInfos\": [{\"methodName\": \"should_print_usage_when_no_options_are_given\","
+						+ " \"parameters\": []}], \"type\": \"MODIFY\"}]");
+
+		assertOk();
+		assertTrue(new File(html, "changes.html").isFile());
+		assertTrue(new File(html,
+				"org.jacoco.cli.internal.commands/ReportTest.html").isFile());
+		assertFalse(new File(html,
+				"org.jacoco.cli.internal.commands/MergeTest.html").exists());
+		assertFalse(new File(html, "org.jacoco.cli.internal").exists());
+	}
+
+	@Test
+	public void should_fail_when_diff_code_file_is_invalid() throws Exception {
+		File diff = new File(tmp.getRoot(), "diff.json");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(diff),
+				"UTF-8");
+		writer.write("[{\"classFile\":");
+		writer.close();
+		File xml = new File(tmp.getRoot(), "coverage.xml");
+
+		execute("report", "--classfiles", getClassPath(), "--xml",
+				xml.getAbsolutePath(), "--diffCodeFiles",
+				diff.getAbsolutePath());
+
+		assertFailure();
+		assertContains("[ERROR] Can't load diff code: Invalid diff code.",
+				err);
+		assertFalse(xml.exists());
+	}
+
+	@Test
+	public void should_fail_when_diff_code_file_is_missing()
+			throws Exception {
+		File diff = new File(tmp.getRoot(), "missing.json");
+
+		execute("report", "--classfiles", getClassPath(), "--diffCodeFiles",
+				diff.getAbsolutePath());
+
+		assertFailure();
+		assertContains("[ERROR] Can't load diff code: ", err);
+	}
+
+	@Test
+	public void should_use_merge_index_of_merged_exec_file() throws Exception {
+		File merged = new File(tmp.getRoot(), "merged.exec");
+		execute("report", "--classfiles", getClassPath(), "--fingerprints",
+				"--onlyMergeExec", "true", "--mergeExec",
+				merged.getAbsolutePath());
+		assertOk();
+
+		execute("report", "--classfiles", getClassPath(), "--fingerprints",
+				"--mergeExecfilepath", merged.getAbsolutePath(),
+				"--mergeClassfilepath", getClassPath());
+
+		assertOk();
+		assertContains("[INFO] Loading merge index ", out);
+	}
+
+	@Test
+	public void should_analyze_merge_classes_when_merge_index_is_out_of_date()
+			throws Exception {
+		File merged = new File(tmp.getRoot(), "merged.exec");
+		execute("report", "--classfiles", getClassPath(), "--fingerprints",
+				"--onlyMergeExec", "true", "--mergeExec",
+				merged.getAbsolutePath());
+		assertOk();
+		merged.setLastModified(merged.lastModified() - 10000);
+
+		execute("report", "--classfiles", getClassPath(), "--fingerprints",
+				"--mergeExecfilepath", merged.getAbsolutePath(),
+				"--mergeClassfilepath", getClassPath());
+
+		assertOk();
+		assertContains("is out of date, analyzing class files.", out);
+		assertContainsNot("[INFO] Loading merge index ", out);
+	}
+
+	@Test
+	public void should_analyze_merge_classes_when_merge_index_is_partial()
+			throws Exception {
+		File merged = new File(tmp.getRoot(), "merged.exec");
+		execute("report", "--classfiles", getClassPath(), "--fingerprints",
+				"--onlyMergeExec", "true", "--mergeExec",
+				merged.getAbsolutePath(), "--diffCode",
+				"[{\"classFile\": \"org/jacoco/cli/internal/commands/ReportTest\","
+						+ " \"methodInfos\": [], \"type\": \"MODIFY\"}]");
+		assertOk();
+
+		execute("report", "--classfiles", getClassPath(), "--fingerprints",
+				"--mergeExecfilepath", merged.getAbsolutePath(),
+				"--mergeClassfilepath", getClassPath());
+
+		assertOk();
+		assertContains("is partial, analyzing class files.", out);
+	}
+
+	@Test
+	public void should_analyze_merge_classes_when_merge_index_is_invalid()
+			throws Exception {
+		File merged = new File(tmp.getRoot(), "merged.exec");
+		execute("report", "--classfiles", getClassPath(), "--fingerprints",
+				"--onlyMergeExec", "true", "--mergeExec",
+				merged.getAbsolutePath());
+		assertOk();
+		Writer writer = new OutputStreamWriter(
+				new FileOutputStream(new File(tmp.getRoot(), "merged.exec.idx")),
+				"UTF-8");
+		writer.write("invalid");
+		writer.close();
+
+		execute("report", "--classfiles", getClassPath(), "--fingerprints",
+				"--mergeExecfilepath", merged.getAbsolutePath(),
+				"--mergeClassfilepath", getClassPath());
+
+		assertOk();
+		assertContains("[WARN] Can't read merge index ", out);
+	}
+
 	@Test
 	public void mytest() throws Exception {
 
@@ -182,12 +345,12 @@ public class ReportTest extends CommandTestBase {
 						+ "      \"classFile\": \"com/dr/application/app/controller/LoginController\",\n"
 						+ "      \"methodInfos\": [\n" + "        {\n"
 						+ "          \"methodName\": \"testInt\",\n"
-						+ "          \"parameters\": \"Map<String,Object>&List<String>&Set<Integer>\"\n"
+						+ "          \"parameters\": [\"Map<String,Object>\", \"List<String>\", \"Set<Integer>\"]\n"
 						+ "        },\n" + "        {\n"
 						+ "          \"methodName\": \"display\",\n"
-						+ "          \"parameters\": \"\"\n" + "        },\n"
+						+ "          \"parameters\": []\n" + "        },\n"
 						+ "        {\n" + "          \"methodName\": \"a\",\n"
-						+ "          \"parameters\": \"InnerClass\"\n"
+						+ "          \"parameters\": [\"InnerClass\"]\n"
 						+ "        }\n" + "      ],\n"
 						+ "      \"type\": \"MODIFY\"\n" + "    }\n" + "  ]");
 		// execute("report","D:\\jacoco\\jacoco-demo.exec", "--classfiles",
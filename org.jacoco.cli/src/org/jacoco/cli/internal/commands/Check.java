@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.cli.internal.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.cli.internal.Command;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.ElementType;
+import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.JsonReadUtil;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.MergeContext;
+import org.jacoco.report.StreamingCoverageBuilder;
+import org.jacoco.report.check.IViolationsOutput;
+import org.jacoco.report.check.Limit;
+import org.jacoco.report.check.Rule;
+import org.jacoco.report.check.RulesChecker;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+/**
+ * The <code>check</code> command.
+ */
+public class Check extends Command {
+
+	@Argument(usage = "list of JaCoCo *.exec files to read", metaVar = "<execfiles>")
+	List<File> execfiles = new ArrayList<File>();
+
+	@Option(name = "--classfiles", usage = "location of Java class files", metaVar = "<path>", required = true)
+	List<File> classfiles = new ArrayList<File>();
+
+	@Option(name = "--rule", usage = "limit to check as <element>:<counter>:<value>:<minimum>[:<maximum>], e.g. BUNDLE:LINE:COVEREDRATIO:80%", metaVar = "<limit>", required = true)
+	List<String> rules = new ArrayList<String>();
+
+	@Option(name = "--diffCode", usage = "input String for diff, only changed methods and lines are checked", metaVar = "<json>")
+	String diffCode;
+
+	@Option(name = "--diffCodeFiles", usage = "input file for diff, only changed methods and lines are checked", metaVar = "<path>")
+	String diffCodeFiles;
+
+	@Option(name = "--threads", usage = "number of threads to analyze class files (default 1)", metaVar = "<n>")
+	int threads = 1;
+
+	@Option(name = "--name", usage = "name of the checked bundle", metaVar = "<name>")
+	String name = "JaCoCo Coverage Report";
+
+	@Override
+	public String description() {
+		return "Check coverage limits by reading exec and Java class files without creating a report.";
+	}
+
+	@Override
+	public int execute(final PrintWriter out, final PrintWriter err)
+			throws IOException {
+		final List<Rule> checkRules = new ArrayList<Rule>();
+		for (final String rule : rules) {
+			final Rule r = parseRule(rule);
+			if (r == null) {
+				err.printf("[ERROR] Invalid rule %s.%n", rule);
+				return -1;
+			}
+			checkRules.add(r);
+		}
+		final ExecFileLoader loader = loadExecutionData(out);
+		final MergeContext context = new MergeContext();
+		loadDiffCode(out, context);
+
+		final RulesChecker checker = new RulesChecker();
+		checker.setRules(checkRules);
+		checker.setMergeContext(context);
+		final List<String> violations = new ArrayList<String>();
+		// 检查器只保留变更代码的覆盖率，不生成报告
+		final StreamingCoverageBuilder builder = new StreamingCoverageBuilder(
+				context);
+		builder.addVisitor(
+				checker.createStreamingVisitor(new IViolationsOutput() {
+					public void onViolation(final ICoverageNode node,
+							final Rule rule, final Limit limit,
+							final String message) {
+						violations.add(message);
+					}
+				}, name));
+		if (context.hasClassInfos()) {
+			// 设置差异代码后分析时跳过未变更的类
+			builder.setClassInfos(context.getClassInfos());
+		}
+		final Analyzer analyzer = new Analyzer(loader.getExecutionDataStore(),
+				builder);
+		analyzer.setThreads(threads);
+		analyzer.analyzeAll(classfiles);
+		out.printf("[INFO] Analyzed %s classes.%n",
+				Integer.valueOf(builder.getClassCount()));
+		builder.visitInfo(loader.getSessionInfoStore().getInfos());
+		builder.visitEnd();
+
+		if (violations.isEmpty()) {
+			out.println("[INFO] All coverage checks have been met.");
+			return 0;
+		}
+		for (final String message : violations) {
+			err.printf("[WARN] %s%n", message);
+		}
+		err.println("[ERROR] Coverage checks have not been met.");
+		return 1;
+	}
+
+	/**
+	 * Creates a rule with a single limit from the given specification.
+	 *
+	 * @param spec
+	 *            <code>element:counter:value:minimum[:maximum]</code>
+	 * @return rule with a single limit or <code>null</code> if the
+	 *         specification is invalid
+	 */
+	static Rule parseRule(final String spec) {
+		final String[] parts = spec.split(":", -1);
+		if (parts.length != 4 && parts.length != 5) {
+			return null;
+		}
+		final Rule rule = new Rule();
+		try {
+			rule.setElement(ElementType.valueOf(parts[0]));
+			final Limit limit = rule.createLimit();
+			limit.setCounter(parts[1]);
+			limit.setValue(parts[2]);
+			if (parts[3].length() > 0) {
+				limit.setMinimum(parts[3]);
+			}
+			if (parts.length == 5 && parts[4].length() > 0) {
+				limit.setMaximum(parts[4]);
+			}
+		} catch (final IllegalArgumentException e) {
+			return null;
+		}
+		return rule;
+	}
+
+	private ExecFileLoader loadExecutionData(final PrintWriter out)
+			throws IOException {
+		final ExecFileLoader loader = new ExecFileLoader();
+		if (execfiles.isEmpty()) {
+			out.println("[WARN] No execution data files provided.");
+		} else {
+			for (final File file : execfiles) {
+				out.printf("[INFO] Loading execution data file %s.%n",
+						file.getAbsolutePath());
+				loader.load(file);
+			}
+		}
+		return loader;
+	}
+
+	private void loadDiffCode(final PrintWriter out,
+			final MergeContext context) throws IOException {
+		final List<ClassInfoDto> classInfos;
+		if (null != this.diffCodeFiles && !"".equals(this.diffCodeFiles)) {
+			out.printf("[INFO] Loading diff code file %s.%n",
+					new File(this.diffCodeFiles).getAbsolutePath());
+			classInfos = JsonReadUtil
+					.readClassInfos(new File(this.diffCodeFiles));
+		} else if (null != this.diffCode && !"".equals(this.diffCode)) {
+			classInfos = JsonReadUtil
+					.readClassInfos(new StringReader(this.diffCode));
+		} else {
+			return;
+		}
+		context.setClassInfos(classInfos);
+	}
+
+}
@@ -24,9 +24,12 @@ import org.jacoco.cli.internal.Command;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.IPackedExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.PackedExecutionData;
 import org.jacoco.core.data.SessionInfo;
 import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
 
 /**
  * The <code>execinfo</code> command.
@@ -36,6 +39,9 @@ public class ExecInfo extends Command {
 	@Argument(usage = "list of JaCoCo *.exec files to read", metaVar = "<execfiles>")
 	List<File> execfiles = new ArrayList<File>();
 
+	@Option(name = "--packed", usage = "count hits on probes packed into bits")
+	boolean packed = false;
+
 	@Override
 	public String description() {
 		return "Print exec file content in human readable format.";
@@ -68,6 +74,19 @@ public class ExecInfo extends Command {
 						new Date(info.getDumpTimeStamp()));
 			}
 		});
+		if (packed) {
+			reader.setPackedExecutionDataVisitor(
+					new IPackedExecutionDataVisitor() {
+						public void visitPackedClassExecution(
+								final PackedExecutionData data) {
+							out.printf("%016x  %3d of %3d   %s%n",
+									Long.valueOf(data.getId()),
+									Integer.valueOf(data.getHitCount()),
+									Integer.valueOf(data.getProbeCount()),
+									data.getName());
+						}
+					});
+		}
 		reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
 			public void visitClassExecution(final ExecutionData data) {
 				out.printf("%016x  %3d of %3d   %s%n",
@@ -37,6 +37,12 @@ public class Instrument extends Command {
 	@Option(name = "--dest", usage = "path to write instrumented Java classes to", metaVar = "<dir>", required = true)
 	File dest;
 
+	@Option(name = "--threads", usage = "number of threads to instrument archive entries (default 1)", metaVar = "<n>")
+	int threads = 1;
+
+	@Option(name = "--window", usage = "maximum number of archive entries in memory with multiple threads (default 4 per thread)", metaVar = "<n>")
+	int window = 0;
+
 	@Argument(usage = "list of folder or files to instrument recusively", metaVar = "<sourcefiles>")
 	List<File> source = new ArrayList<File>();
 
@@ -53,6 +59,8 @@ public class Instrument extends Command {
 		final File absoluteDest = dest.getAbsoluteFile();
 		instrumenter = new Instrumenter(
 				new OfflineInstrumentationAccessGenerator());
+		instrumenter.setThreads(threads);
+		instrumenter.setWindow(window);
 		int total = 0;
 		for (final File s : source) {
 			if (s.isFile()) {
@@ -20,6 +20,7 @@ import java.util.List;
 
 import org.jacoco.cli.internal.Command;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.PackedExecFileLoader;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
@@ -34,6 +35,15 @@ public class Merge extends Command {
 	@Option(name = "--destfile", usage = "file to write merged execution data to", metaVar = "<path>", required = true)
 	File destfile;
 
+	@Option(name = "--threads", usage = "number of threads to read and merge exec files (default 1)", metaVar = "<n>")
+	int threads = 1;
+
+	@Option(name = "--packed", usage = "keep probes packed into bits while merging, files are read one after another")
+	boolean packed = false;
+
+	@Option(name = "--compress", usage = "write the compressed exec file format")
+	boolean compress = false;
+
 	@Override
 	public String description() {
 		return "Merges multiple exec files into a new one.";
@@ -42,10 +52,26 @@ public class Merge extends Command {
 	@Override
 	public int execute(final PrintWriter out, final PrintWriter err)
 			throws IOException {
+		if (packed) {
+			// 探针按位压缩后合并，写出时不再重新打包
+			final PackedExecFileLoader loader = new PackedExecFileLoader();
+			if (execfiles.isEmpty()) {
+				out.println("[WARN] No execution data files provided.");
+			}
+			for (final File file : execfiles) {
+				out.printf("[INFO] Loading execution data file %s.%n",
+						file.getAbsolutePath());
+				loader.load(file);
+			}
+			out.printf("[INFO] Writing execution data to %s.%n",
+					destfile.getAbsolutePath());
+			loader.save(destfile, true, compress);
+			return 0;
+		}
 		final ExecFileLoader loader = loadExecutionData(out);
 		out.printf("[INFO] Writing execution data to %s.%n",
 				destfile.getAbsolutePath());
-		loader.save(destfile, true);
+		loader.save(destfile, true, compress);
 		return 0;
 	}
 
@@ -58,9 +84,9 @@ public class Merge extends Command {
 			for (final File file : execfiles) {
 				out.printf("[INFO] Loading execution data file %s.%n",
 						file.getAbsolutePath());
-				// 开始加载exec文件，遍历多个文件加载
-				loader.load(file);
 			}
+			// 开始加载exec文件，多线程时并行读取后再两两合并
+			loader.load(execfiles, threads);
 		}
 		return loader;
 	}
@@ -19,8 +19,14 @@ import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.diff.ClassInfoDto;
 import org.jacoco.core.internal.diff.JsonReadUtil;
+import org.jacoco.core.tools.ExecFileIndex;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.MappedExecFileLoader;
+import org.jacoco.core.tools.PackedExecFileLoader;
+import org.jacoco.core.tools.MergeContext;
+import org.jacoco.core.tools.MergeIndex;
 import org.jacoco.report.*;
 import org.jacoco.report.csv.CSVFormatter;
 import org.jacoco.report.html.HTMLFormatter;
@@ -55,12 +61,30 @@ public class Report extends Command {
 	@Option(name = "--mergeClassfilepath", usage = "location of Java class files need to merge", metaVar = "<path>")
 	List<File> mergeClassfiles = new ArrayList<File>();;
 
+	@Option(name = "--fingerprints", usage = "identify instructions by 64 bit fingerprints when merging execfiles")
+	boolean fingerprints = false;
+
 	@Option(name = "--diffCode", usage = "input String for diff", metaVar = "<file>")
 	String diffCode;
 
 	@Option(name = "--diffCodeFiles", usage = "input file for diff", metaVar = "<path>")
 	String diffCodeFiles;
 
+	@Option(name = "--diffOnly", usage = "write HTML pages for the changed classes and methods of the diff only, source pages show the changed lines")
+	boolean diffOnly = false;
+
+	@Option(name = "--threads", usage = "number of threads to analyze class files and render HTML pages (default 1)", metaVar = "<n>")
+	int threads = 1;
+
+	@Option(name = "--packed", usage = "merge the exec files with probes packed into bits and unpack them once for the analysis")
+	boolean packed = false;
+
+	@Option(name = "--execIndex", usage = "read execution data of analyzed classes on demand from memory mapped exec files with a class id index (not used with --onlyMergeExec)")
+	boolean execIndex = false;
+
+	@Option(name = "--stream", usage = "write the XML and CSV reports while the class files are analyzed without keeping the coverage of all classes in memory (not used with --html)")
+	boolean stream;
+
 	@Option(name = "--tabwith", usage = "tab stop width for the source pages (default 4)", metaVar = "<n>")
 	int tabwidth = 4;
 
@@ -93,30 +117,121 @@ public class Report extends Command {
 	@Override
 	public int execute(final PrintWriter out, final PrintWriter err) throws IOException {
 		// 需要合并exec文件，同个方法就合并方法的指令的覆盖率
-		if (this.mergeExecfiles.size() != 0 && this.mergeClassfiles.size() != 0) {
+		// 指纹模式下如果上次合并保存了索引文件，直接加载索引，无需再分析老版本的class文件
+		final MergeContext context = new MergeContext();
+		// 差异代码只解析一次，无法读取或格式不正确时不生成报告
+		try {
+			loadDiffCode(out, context);
+		} catch (final IOException e) {
+			err.printf("[ERROR] Can't load diff code: %s%n", e.getMessage());
+			return -1;
+		}
+		if (!loadMergeIndex(out, context) && this.mergeExecfiles.size() != 0
+				&& this.mergeClassfiles.size() != 0) {
 			final ExecFileLoader loader = loadExecutionData(out, mergeExecfiles);
-			analyze(loader.getExecutionDataStore(), out, mergeClassfiles, true);
+			analyze(loader.getExecutionDataStore(), null, out, mergeClassfiles, true, null, context,
+					new CoverageBuilder(context));
 		}
 		try {
-			final ExecFileLoader loader = loadExecutionData(out, this.execfiles);
-			final IBundleCoverage bundle = analyze(loader.getExecutionDataStore(), out, classfiles, false);
+			final boolean onlyMerge = onlyMergeExec != null && onlyMergeExec.equals("true");
+			final MergeIndex mergeIndex = onlyMerge && fingerprints ? new MergeIndex() : null;
+			// 流式报告在分析每个类时直接写出，不保留整个bundle的覆盖率数据
+			final StreamingCoverageBuilder streaming = stream && html == null
+					&& !onlyMerge ? createStreamingBuilder(context) : null;
+			final CoverageBuilder builder = streaming != null ? streaming
+					: new CoverageBuilder(context);
+			final IBundleCoverage bundle;
+			final ExecFileLoader loader;
+			if (execIndex && !onlyMerge && isIndexable(out, this.execfiles)) {
+				// 按需读取被分析类的执行数据，不把整个exec文件加载到内存
+				loader = new ExecFileLoader();
+				final MappedExecFileLoader source = mapExecutionData(out,
+						this.execfiles);
+				try {
+					source.getSessionInfoStore()
+							.accept(loader.getSessionInfoStore());
+					bundle = analyze(loader.getExecutionDataStore(), source,
+							out, classfiles, false, mergeIndex, context,
+							builder);
+				} finally {
+					source.close();
+				}
+			} else {
+				loader = loadExecutionData(out, this.execfiles);
+				bundle = analyze(loader.getExecutionDataStore(), null, out,
+						classfiles, false, mergeIndex, context, builder);
+			}
 			// 只合并exec文件，不生成报告
-			if (onlyMergeExec != null && onlyMergeExec.equals("true")) {
-				loader.save(new File(mergeExec), false);
+			if (onlyMerge) {
+				final File mergeExecFile = new File(mergeExec);
+				loader.save(mergeExecFile, false);
+				final File indexFile = MergeIndex.fileFor(mergeExecFile);
+				if (mergeIndex != null) {
+					out.printf("[INFO] Writing merge index %s.%n",
+							indexFile.getAbsolutePath());
+					// 记录exec文件的长度和修改时间，增量分析只包含变更的类，标记为不完整
+					mergeIndex.setExecFile(mergeExecFile);
+					mergeIndex.setPartial(context.hasClassInfos());
+					mergeIndex.save(indexFile);
+				} else {
+					// 非指纹模式不生成索引，删除之前遗留的索引避免下次合并读到过期数据
+					indexFile.delete();
+				}
+			} else if (streaming != null) {
+				writeStreamingReports(streaming, loader, out);
 			} else {
-				writeReports(bundle, loader, out);
+				writeReports(bundle, loader, out, context);
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
-		} finally {
-			ExecFileLoader.instrunctionsThreadLocal.remove();
-			ExecFileLoader.classInfo.remove();
-			ExecFileLoader.classInfoDto.remove();
-			ExecFileLoader.probesMap.remove();
 		}
 		return 0;
 	}
 
+	/**
+	 * 加载上次合并时保存的合并索引，只支持指纹模式下合并单个exec文件。
+	 * 索引无法读取、与exec文件不一致或只包含部分类时不使用索引，重新分析class文件
+	 *
+	 * @param out
+	 * @param context
+	 * @return 是否加载了合并索引
+	 */
+	private boolean loadMergeIndex(final PrintWriter out,
+			final MergeContext context) {
+		if (!fingerprints || mergeExecfiles.size() != 1) {
+			return false;
+		}
+		final File execFile = mergeExecfiles.get(0);
+		final File indexFile = MergeIndex.fileFor(execFile);
+		if (!indexFile.isFile()) {
+			return false;
+		}
+		final MergeIndex index = new MergeIndex();
+		try {
+			index.load(indexFile);
+		} catch (final IOException e) {
+			out.printf("[WARN] Can't read merge index %s: %s%n",
+					indexFile.getAbsolutePath(), e.getMessage());
+			return false;
+		}
+		if (!index.isUpToDate(execFile)) {
+			out.printf(
+					"[INFO] Merge index %s is out of date, analyzing class files.%n",
+					indexFile.getAbsolutePath());
+			return false;
+		}
+		if (index.isPartial()) {
+			out.printf(
+					"[INFO] Merge index %s is partial, analyzing class files.%n",
+					indexFile.getAbsolutePath());
+			return false;
+		}
+		out.printf("[INFO] Loading merge index %s.%n",
+				indexFile.getAbsolutePath());
+		context.addAll(index);
+		return true;
+	}
+
 	/**
 	 * 加载exec文件
 	 *
@@ -129,6 +244,15 @@ public class Report extends Command {
 		final ExecFileLoader loader = new ExecFileLoader();
 		if (execfiles.isEmpty()) {
 			out.println("[WARN] No execution data files provided.");
+		} else if (packed) {
+			// 以位压缩的形式合并多个exec文件，分析前只展开一次
+			final PackedExecFileLoader packedLoader = new PackedExecFileLoader();
+			for (final File file : execfiles) {
+				out.printf("[INFO] Loading execution data file %s.%n",
+						file.getAbsolutePath());
+				packedLoader.load(file);
+			}
+			packedLoader.unpack(loader);
 		} else {
 			for (final File file : execfiles) {
 				out.printf("[INFO] Loading execution data file %s.%n",
@@ -139,24 +263,83 @@ public class Report extends Command {
 		return loader;
 	}
 
+	/**
+	 * 通过类id索引映射exec文件，索引保存在exec文件旁边，exec文件未变化时直接复用
+	 *
+	 * @param out
+	 * @return
+	 * @throws IOException
+	 */
+	private MappedExecFileLoader mapExecutionData(final PrintWriter out,
+			List<File> execfiles) throws IOException {
+		final MappedExecFileLoader loader = new MappedExecFileLoader();
+		if (execfiles.isEmpty()) {
+			out.println("[WARN] No execution data files provided.");
+		} else {
+			for (final File file : execfiles) {
+				out.printf("[INFO] Mapping execution data file %s.%n",
+						file.getAbsolutePath());
+				loader.load(file);
+			}
+		}
+		return loader;
+	}
+
+	/**
+	 * 检查exec文件能否建立索引，压缩格式的exec文件无法按需读取，改为整体加载
+	 *
+	 * @param out
+	 * @param execfiles
+	 * @return 所有exec文件都能建立索引
+	 * @throws IOException
+	 */
+	private boolean isIndexable(final PrintWriter out,
+			final List<File> execfiles) throws IOException {
+		for (final File file : execfiles) {
+			if (!ExecFileIndex.isIndexable(file)) {
+				out.printf(
+						"[INFO] Execution data file %s is compressed and can't be indexed, loading all execution data.%n",
+						file.getAbsolutePath());
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void loadDiffCode(final PrintWriter out,
+			final MergeContext context) throws IOException {
+		final List<ClassInfoDto> classInfos;
+		if (null != this.diffCodeFiles && !"".equals(this.diffCodeFiles)) {
+			out.printf("[INFO] Loading diff code file %s.%n",
+					new File(this.diffCodeFiles).getAbsolutePath());
+			// 流式解析，差异文件很大时也不需要把整个文件读入内存
+			classInfos = JsonReadUtil
+					.readClassInfos(new File(this.diffCodeFiles));
+		} else if (null != this.diffCode && !"".equals(this.diffCode)) {
+			classInfos = JsonReadUtil
+					.readClassInfos(new StringReader(this.diffCode));
+		} else {
+			return;
+		}
+		context.setClassInfos(classInfos);
+	}
+
 	private IBundleCoverage analyze(final ExecutionDataStore data,
-			final PrintWriter out, List<File> classfiles, boolean isOnlyAnaly)
-			throws IOException {
-		CoverageBuilder builder;
+			final MappedExecFileLoader source, final PrintWriter out, List<File> classfiles, boolean isOnlyAnaly,
+			MergeIndex mergeIndex, MergeContext context,
+			final CoverageBuilder builder) throws IOException {
 		// 如果有增量参数将其设置进去
-		if (null != this.diffCodeFiles) {
-			builder = new CoverageBuilder(JsonReadUtil.readJsonToString(this.diffCodeFiles));
-		} else if (null != this.diffCode) {
-			builder = new CoverageBuilder(this.diffCode);
-		} else {
-			builder = new CoverageBuilder();
+		if (context.hasClassInfos()) {
+			builder.setClassInfos(context.getClassInfos());
 		}
 		builder.setOnlyAnaly(isOnlyAnaly);
+		builder.setFingerprints(fingerprints);
+		builder.setMergeIndex(mergeIndex);
 		final Analyzer analyzer = new Analyzer(data, builder);
+		analyzer.setThreads(threads);
+		analyzer.setExecutionDataSource(source);
 		// class类用于类方法的比较，源码只用于最后的着色
-		for (final File f : classfiles) {
-			analyzer.analyzeAll(f);
-		}
+		analyzer.analyzeAll(classfiles);
 		printNoMatchWarning(builder.getNoMatchClasses(), out);
 		return builder.getBundle(name);
 	}
@@ -177,18 +360,48 @@ public class Report extends Command {
 	}
 
 	private void writeReports(final IBundleCoverage bundle,
-			final ExecFileLoader loader, final PrintWriter out)
-			throws IOException {
+			final ExecFileLoader loader, final PrintWriter out,
+			final MergeContext context) throws IOException {
 		out.printf("[INFO] Analyzing %s classes.%n",
 				Integer.valueOf(bundle.getClassCounter().getTotalCount()));
-		final IReportVisitor visitor = createReportVisitor();
+		final IReportVisitor visitor = createReportVisitor(context);
 		visitor.visitInfo(loader.getSessionInfoStore().getInfos(),
 				loader.getExecutionDataStore().getContents());
 		visitor.visitBundle(bundle, getSourceLocator());
 		visitor.visitEnd();
 	}
 
-	private IReportVisitor createReportVisitor() throws IOException {
+	private void writeStreamingReports(final StreamingCoverageBuilder builder,
+			final ExecFileLoader loader, final PrintWriter out)
+			throws IOException {
+		out.printf("[INFO] Analyzing %s classes.%n",
+				Integer.valueOf(builder.getClassCount()));
+		builder.visitInfo(loader.getSessionInfoStore().getInfos());
+		builder.visitEnd();
+	}
+
+	private StreamingCoverageBuilder createStreamingBuilder(
+			final MergeContext context) throws IOException {
+		final StreamingCoverageBuilder builder = new StreamingCoverageBuilder(
+				context);
+
+		if (xml != null) {
+			final XMLFormatter formatter = new XMLFormatter();
+			builder.addVisitor(formatter
+					.createStreamingVisitor(new FileOutputStream(xml), name));
+		}
+
+		if (csv != null) {
+			final CSVFormatter formatter = new CSVFormatter();
+			builder.addVisitor(formatter
+					.createStreamingVisitor(new FileOutputStream(csv), name));
+		}
+
+		return builder;
+	}
+
+	private IReportVisitor createReportVisitor(final MergeContext context)
+			throws IOException {
 		final List<IReportVisitor> visitors = new ArrayList<IReportVisitor>();
 
 		if (xml != null) {
@@ -203,6 +416,9 @@ public class Report extends Command {
 
 		if (html != null) {
 			final HTMLFormatter formatter = new HTMLFormatter();
+			formatter.setMergeContext(context);
+			formatter.setThreads(threads);
+			formatter.setChangedCodeOnly(diffOnly);
 			visitors.add(
 					formatter.createVisitor(new FileMultiReportOutput(html)));
 		}
@@ -15,6 +15,7 @@ package org.jacoco.core.analysis;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -36,10 +37,16 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
+import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.jacoco.core.internal.instr.ProbeArrayStrategyFactory;
 import org.jacoco.core.test.TargetLoader;
+import org.jacoco.core.tools.MappedExecFileLoader;
+import org.jacoco.core.tools.MergeContext;
 import org.junit.AssumptionViolatedException;
 import org.junit.Before;
 import org.junit.Rule;
@@ -164,12 +171,82 @@ public class AnalyzerTest {
 		final byte[] bytes = TargetLoader
 				.getClassDataAsBytes(AnalyzerTest.class);
 		executionData.get(Long.valueOf(CRC64.classId(bytes)),
-				"org/jacoco/core/analysis/AnalyzerTest", 200);
+				"org/jacoco/core/analysis/AnalyzerTest", 400);
 		analyzer.analyzeClass(bytes, "Test");
 		assertFalse(classes.get("org/jacoco/core/analysis/AnalyzerTest")
 				.isNoMatch());
 	}
 
+	@Test
+	public void analyzeClass_should_not_add_execution_data_for_classes_without_hits()
+			throws IOException {
+		analyzer.analyzeClass(
+				TargetLoader.getClassDataAsBytes(AnalyzerTest.class), "Test");
+
+		assertTrue(executionData.getContents().isEmpty());
+		assertEquals(0, classes.get("org/jacoco/core/analysis/AnalyzerTest")
+				.getInstructionCounter().getCoveredCount());
+	}
+
+	@Test
+	public void analyzeClass_should_add_execution_data_for_merged_hits()
+			throws IOException {
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		final MergeContext context = new MergeContext();
+		// 老版本的类全部命中
+		final ExecutionDataStore oldData = new ExecutionDataStore();
+		Arrays.fill(oldData.get(Long.valueOf(CRC64.classId(bytes)),
+				"org/jacoco/core/analysis/AnalyzerTest", 400).getProbes(),
+				true);
+		final CoverageBuilder oldBuilder = new CoverageBuilder(context);
+		oldBuilder.setOnlyAnaly(true);
+		new Analyzer(oldData, oldBuilder).analyzeClass(bytes, "Test");
+
+		final CoverageBuilder builder = new CoverageBuilder(context);
+		new Analyzer(executionData, builder).analyzeClass(bytes, "Test");
+
+		final ExecutionData data = executionData
+				.get(CRC64.classId(bytes));
+		assertNotNull(data);
+		assertTrue(data.hasHits());
+		assertEquals(ProbeArrayStrategyFactory
+				.getProbeCounter(InstrSupport.classReaderFor(bytes)).getCount(),
+				data.getProbes().length);
+	}
+
+	@Test
+	public void analyzeClass_should_read_execution_data_from_source()
+			throws IOException {
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		final boolean[] probes = new boolean[ProbeArrayStrategyFactory
+				.getProbeCounter(InstrSupport.classReaderFor(bytes))
+				.getCount()];
+		Arrays.fill(probes, true);
+		final File file = new File(folder.getRoot(), "jacoco.exec");
+		final OutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitClassExecution(new ExecutionData(CRC64.classId(bytes),
+				"org/jacoco/core/analysis/AnalyzerTest", probes));
+		writer.visitClassExecution(
+				new ExecutionData(0x10, "Other", new boolean[] { true }));
+		out.close();
+		final MappedExecFileLoader source = new MappedExecFileLoader();
+		source.load(file);
+
+		analyzer.setExecutionDataSource(source);
+		analyzer.analyzeClass(bytes, "Test");
+		source.close();
+
+		assertEquals(1, executionData.getContents().size());
+		assertNotNull(executionData.get(CRC64.classId(bytes)));
+		final IClassCoverage coverage = classes
+				.get("org/jacoco/core/analysis/AnalyzerTest");
+		assertFalse(coverage.isNoMatch());
+		assertEquals(0, coverage.getInstructionCounter().getMissedCount());
+	}
+
 	@Test
 	public void testAnalyzeClassNoIdMatch() throws IOException {
 		executionData.get(Long.valueOf(0),
@@ -437,6 +514,70 @@ public class AnalyzerTest {
 		}
 	}
 
+	@Test
+	public void analyzeAll_should_analyze_folders_in_parallel()
+			throws IOException {
+		createClassfile("bin1", Analyzer.class);
+		createClassfile("bin2", AnalyzerTest.class);
+		createClassfile("bin2/sub", CoverageBuilder.class);
+		analyzer.setThreads(4);
+
+		final int count = analyzer.analyzeAll(Arrays.asList(
+				new File(folder.getRoot(), "bin1"),
+				new File(folder.getRoot(), "bin2")));
+
+		assertEquals(3, count);
+		assertClasses("org/jacoco/core/analysis/Analyzer",
+				"org/jacoco/core/analysis/AnalyzerTest",
+				"org/jacoco/core/analysis/CoverageBuilder");
+	}
+
+	@Test
+	public void analyzeAll_should_analyze_zip_in_parallel() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(buffer);
+		for (final Class<?> c : new Class<?>[] { Analyzer.class,
+				AnalyzerTest.class, CoverageBuilder.class }) {
+			zip.putNextEntry(new ZipEntry(c.getName().replace('.', '/')
+					+ ".class"));
+			zip.write(TargetLoader.getClassDataAsBytes(c));
+		}
+		zip.finish();
+		analyzer.setThreads(4);
+
+		final int count = analyzer.analyzeAll(
+				new ByteArrayInputStream(buffer.toByteArray()), "test.zip");
+
+		assertEquals(3, count);
+		assertClasses("org/jacoco/core/analysis/Analyzer",
+				"org/jacoco/core/analysis/AnalyzerTest",
+				"org/jacoco/core/analysis/CoverageBuilder");
+		assertTrue(executionData.getContents().isEmpty());
+	}
+
+	@Test
+	public void analyzeAll_should_report_broken_class_in_parallel()
+			throws IOException {
+		createClassfile("bin1", Analyzer.class);
+		final File file = new File(folder.getRoot(), "bin2/broken.class");
+		file.getParentFile().mkdirs();
+		final byte[] brokenclass = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		brokenclass[10] = 0x23;
+		final OutputStream out = new FileOutputStream(file);
+		out.write(brokenclass);
+		out.close();
+		analyzer.setThreads(4);
+
+		try {
+			analyzer.analyzeAll(folder.getRoot());
+			fail("expected exception");
+		} catch (IOException e) {
+			assertEquals(String.format("Error while analyzing %s.",
+					file.getPath()), e.getMessage());
+		}
+	}
+
 	private void createClassfile(final String dir, final Class<?> source)
 			throws IOException {
 		File file = new File(folder.getRoot(), dir);
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CompressedExecutionDataWriter} and the compressed
+ * format support of {@link ExecutionDataReader}.
+ */
+public class CompressedExecutionDataWriterTest {
+
+	private ByteArrayOutputStream buffer;
+
+	private ExecutionDataStore store;
+
+	private SessionInfoStore sessions;
+
+	private Random random;
+
+	@Before
+	public void setup() {
+		buffer = new ByteArrayOutputStream();
+		store = new ExecutionDataStore();
+		sessions = new SessionInfoStore();
+		random = new Random(7);
+	}
+
+	private boolean[] createProbes(final int size) {
+		final boolean[] probes = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			probes[i] = random.nextBoolean();
+		}
+		probes[0] = true;
+		return probes;
+	}
+
+	private void writeSessions(final ExecutionDataWriter writer,
+			final int sessionCount, final int classCount) throws IOException {
+		for (int s = 0; s < sessionCount; s++) {
+			writer.visitSessionInfo(new SessionInfo("session" + s, s, s + 1));
+			for (int c = 0; c < classCount; c++) {
+				writer.visitClassExecution(new ExecutionData(c,
+						"org/example/package/SomeClass" + c,
+						createProbes(c % 100 + 1)));
+			}
+		}
+		writer.flush();
+	}
+
+	private ExecutionDataReader createReader(final byte[] content) {
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(content));
+		reader.setExecutionDataVisitor(store);
+		reader.setSessionInfoVisitor(sessions);
+		return reader;
+	}
+
+	@Test
+	public void should_write_header_with_compressed_version()
+			throws IOException {
+		new CompressedExecutionDataWriter(buffer).flush();
+
+		assertArrayEquals(new byte[] { 0x01, (byte) 0xC0, (byte) 0xC0, 0x11,
+				0x07 }, buffer.toByteArray());
+	}
+
+	@Test
+	public void should_read_same_content_as_uncompressed_format()
+			throws IOException {
+		writeSessions(new CompressedExecutionDataWriter(buffer, 1024), 3, 200);
+		random = new Random(7);
+		final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		writeSessions(new ExecutionDataWriter(plain), 3, 200);
+
+		assertFalse(createReader(buffer.toByteArray()).read());
+		final ExecutionDataStore compressedStore = store;
+		final SessionInfoStore compressedSessions = sessions;
+		store = new ExecutionDataStore();
+		sessions = new SessionInfoStore();
+		assertFalse(createReader(plain.toByteArray()).read());
+
+		assertEquals(3, compressedSessions.getInfos().size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(sessions.getInfos().get(i).getId(),
+					compressedSessions.getInfos().get(i).getId());
+		}
+		assertEquals(200, store.getContents().size());
+		for (final ExecutionData data : store.getContents()) {
+			final ExecutionData actual = compressedStore.get(data.getId());
+			assertEquals(data.getName(), actual.getName());
+			assertArrayEquals(data.getProbes(), actual.getProbes());
+		}
+		assertTrue(buffer.size() < plain.size() / 2);
+	}
+
+	private byte[] createBlock(final int length, final int compressedLength,
+			final int content) throws IOException {
+		new CompressedExecutionDataWriter(buffer).flush();
+		final CompactDataOutput out = new CompactDataOutput(buffer);
+		out.writeByte(ExecutionDataWriter.BLOCK_COMPRESSED);
+		out.writeVarInt(length);
+		out.writeVarInt(compressedLength);
+		out.write(new byte[content]);
+		return buffer.toByteArray();
+	}
+
+	@Test(expected = IOException.class)
+	public void should_reject_negative_block_length() throws IOException {
+		createReader(createBlock(-1, 10, 10)).read();
+	}
+
+	@Test(expected = IOException.class)
+	public void should_reject_block_length_above_maximum()
+			throws IOException {
+		createReader(createBlock(
+				CompressedExecutionDataWriter.MAX_BLOCK_LENGTH + 1, 1024 * 1024,
+				0)).read();
+	}
+
+	@Test(expected = IOException.class)
+	public void should_reject_compressed_length_above_block_length()
+			throws IOException {
+		createReader(createBlock(10, 1000, 0)).read();
+	}
+
+	@Test(expected = IOException.class)
+	public void should_reject_block_length_above_deflate_ratio()
+			throws IOException {
+		createReader(createBlock(1024 * 1024, 10, 10)).read();
+	}
+
+	@Test(expected = EOFException.class)
+	public void should_fail_on_truncated_block() throws IOException {
+		createReader(createBlock(8 * 1024 * 1024, 1024 * 1024, 100)).read();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void should_reject_block_size_above_maximum() throws IOException {
+		new CompressedExecutionDataWriter(buffer,
+				CompressedExecutionDataWriter.MAX_BLOCK_LENGTH);
+	}
+
+	@Test
+	public void should_write_class_names_once() throws IOException {
+		final CompressedExecutionDataWriter writer = new CompressedExecutionDataWriter(
+				buffer);
+		writer.visitClassExecution(
+				new ExecutionData(1, "Foo", new boolean[] { true }));
+		writer.visitClassExecution(
+				new ExecutionData(1, "Foo", new boolean[] { true }));
+		writer.flush();
+
+		assertFalse(createReader(buffer.toByteArray()).read());
+		assertEquals("Foo", store.get(1).getName());
+	}
+
+	@Test
+	public void should_write_pending_block_on_flush_only() throws IOException {
+		final CompressedExecutionDataWriter writer = new CompressedExecutionDataWriter(
+				buffer);
+		writer.visitSessionInfo(new SessionInfo("id", 1, 2));
+		assertEquals(5, buffer.size());
+
+		writer.flush();
+
+		assertTrue(buffer.size() > 5);
+	}
+
+	@Test
+	public void should_not_write_classes_without_hits() throws IOException {
+		final CompressedExecutionDataWriter writer = new CompressedExecutionDataWriter(
+				buffer);
+		writer.visitClassExecution(
+				new ExecutionData(1, "Foo", new boolean[] { false }));
+		writer.visitPackedClassExecution(new PackedExecutionData(2, "Bar", 3));
+		writer.flush();
+
+		assertEquals(5, buffer.size());
+	}
+
+	@Test
+	public void should_read_concatenated_files() throws IOException {
+		final CompressedExecutionDataWriter first = new CompressedExecutionDataWriter(
+				buffer);
+		first.visitClassExecution(
+				new ExecutionData(1, "Foo", new boolean[] { true, false }));
+		first.flush();
+		final CompressedExecutionDataWriter second = new CompressedExecutionDataWriter(
+				buffer);
+		second.visitClassExecution(
+				new ExecutionData(2, "Bar", new boolean[] { true }));
+		second.visitClassExecution(
+				new ExecutionData(1, "Foo", new boolean[] { false, true }));
+		second.flush();
+		final ExecutionDataWriter plain = new ExecutionDataWriter(buffer);
+		plain.visitClassExecution(
+				new ExecutionData(3, "Baz", new boolean[] { true }));
+
+		assertFalse(createReader(buffer.toByteArray()).read());
+
+		assertEquals("Bar", store.get(2).getName());
+		assertEquals("Baz", store.get(3).getName());
+		assertArrayEquals(new boolean[] { true, true },
+				store.get(1).getProbes());
+	}
+
+	@Test
+	public void should_read_packed_probes() throws IOException {
+		final boolean[] probes = createProbes(130);
+		final CompressedExecutionDataWriter writer = new CompressedExecutionDataWriter(
+				buffer);
+		writer.visitPackedClassExecution(
+				PackedExecutionData.pack(new ExecutionData(5, "Foo", probes)));
+		writer.flush();
+
+		final PackedExecutionDataStore packed = new PackedExecutionDataStore();
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(buffer.toByteArray()));
+		reader.setPackedExecutionDataVisitor(packed);
+		assertFalse(reader.read());
+
+		assertArrayEquals(probes, packed.get(5).unpack().getProbes());
+	}
+
+	@Test
+	public void should_fail_on_invalid_name_index() throws IOException {
+		final ByteArrayOutputStream records = new ByteArrayOutputStream();
+		final CompactDataOutput out = new CompactDataOutput(records);
+		out.writeByte(ExecutionDataWriter.BLOCK_EXECUTIONDATA);
+		out.writeLong(1);
+		out.writeVarInt(1);
+		final ExecutionDataWriter header = new ExecutionDataWriter(buffer);
+		writeCompressedBlock(header, records.toByteArray());
+
+		try {
+			createReader(buffer.toByteArray()).read();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Invalid class name index 1.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void should_fail_on_corrupt_block() throws IOException {
+		final ExecutionDataWriter header = new ExecutionDataWriter(buffer);
+		header.out.writeByte(ExecutionDataWriter.BLOCK_COMPRESSED);
+		header.out.writeVarInt(10);
+		header.out.writeVarInt(3);
+		header.out.write(new byte[] { 1, 2, 3 });
+
+		try {
+			createReader(buffer.toByteArray()).read();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Invalid compressed block.", e.getMessage());
+		}
+	}
+
+	private void writeCompressedBlock(final ExecutionDataWriter writer,
+			final byte[] content) throws IOException {
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		final DeflaterOutputStream deflater = new DeflaterOutputStream(
+				compressed);
+		deflater.write(content);
+		deflater.close();
+		writer.out.writeByte(ExecutionDataWriter.BLOCK_COMPRESSED);
+		writer.out.writeVarInt(content.length);
+		writer.out.writeVarInt(compressed.size());
+		compressed.writeTo(writer.out);
+	}
+
+}
@@ -283,6 +283,43 @@ public class ExecutionDataReaderWriterTest {
 		assertArrayEquals(data, store.get(123).getProbes());
 	}
 
+	@Test
+	public void testPackedClass() throws IOException {
+		final boolean[] data = createData(185);
+		writer.visitClassExecution(new ExecutionData(123, "Sample", data));
+		final PackedExecutionDataStore packed = new PackedExecutionDataStore();
+		final ExecutionDataReader reader = createReader();
+		reader.setPackedExecutionDataVisitor(packed);
+
+		assertFalse(reader.read());
+
+		assertEquals(185, packed.get(123).getProbeCount());
+		assertArrayEquals(data, packed.get(123).unpack().getProbes());
+	}
+
+	@Test
+	public void testWritePackedClass() throws IOException {
+		final boolean[] data = createData(185);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		createWriter(expected).visitClassExecution(
+				new ExecutionData(123, "Sample", data.clone()));
+
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		createWriter(actual).visitPackedClassExecution(PackedExecutionData
+				.pack(new ExecutionData(123, "Sample", data)));
+
+		assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+	}
+
+	@Test
+	public void testWritePackedNoHitClass() throws IOException {
+		writer.visitPackedClassExecution(
+				new PackedExecutionData(123, "Sample", 5));
+
+		assertFalse(createReaderWithVisitors().read());
+		assertTrue(store.getContents().isEmpty());
+	}
+
 	@Test(expected = RuntimeException.class)
 	public void testExecutionDataIOException() throws IOException {
 		final boolean[] broken = new boolean[1];
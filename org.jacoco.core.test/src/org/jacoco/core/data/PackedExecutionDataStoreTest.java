@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PackedExecutionDataStore}.
+ */
+public class PackedExecutionDataStoreTest {
+
+	private PackedExecutionDataStore store;
+
+	@Before
+	public void setup() {
+		store = new PackedExecutionDataStore();
+	}
+
+	@Test
+	public void testPut() {
+		final PackedExecutionData data = new PackedExecutionData(1000,
+				"Sample", 3, new long[] { 0x4 });
+
+		store.put(data);
+
+		assertSame(data, store.get(1000));
+		assertNull(store.get(1001));
+		assertEquals(1, store.getContents().size());
+	}
+
+	@Test
+	public void testMergeAndSubtractLikeExecutionDataStore() {
+		final Random random = new Random(17);
+		final ExecutionDataStore expected = new ExecutionDataStore();
+		final ExecutionDataStore expectedSubtrahend = new ExecutionDataStore();
+		final PackedExecutionDataStore subtrahend = new PackedExecutionDataStore();
+		for (int i = 0; i < 300; i++) {
+			final int id = random.nextInt(40);
+			final boolean[] probes = new boolean[id * 5 + 1];
+			for (int p = 0; p < probes.length; p++) {
+				probes[p] = random.nextInt(4) == 0;
+			}
+			final ExecutionData data = new ExecutionData(id, "Class" + id,
+					probes);
+			if (i % 3 == 0) {
+				expectedSubtrahend.put(copy(data));
+				subtrahend.visitClassExecution(data);
+			} else {
+				expected.put(copy(data));
+				store.visitClassExecution(data);
+			}
+		}
+		expected.subtract(expectedSubtrahend);
+		store.subtract(subtrahend);
+
+		final List<ExecutionData> actual = new ArrayList<ExecutionData>();
+		store.acceptUnpacked(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				actual.add(data);
+			}
+		});
+		final List<ExecutionData> contents = new ArrayList<ExecutionData>(
+				expected.getContents());
+		assertEquals(contents.size(), actual.size());
+		for (int i = 0; i < contents.size(); i++) {
+			assertEquals(contents.get(i).getId(), actual.get(i).getId());
+			assertArrayEquals(contents.get(i).getProbes(),
+					actual.get(i).getProbes());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNegative() {
+		store.put(new PackedExecutionData(1000, "Sample1", 3));
+		store.put(new PackedExecutionData(1000, "Sample2", 3));
+	}
+
+	@Test
+	public void testSubtractUnknown() {
+		store.subtract(new PackedExecutionData(1000, "Sample", 3));
+
+		assertNull(store.get(1000));
+	}
+
+	@Test
+	public void testAccept() {
+		store.put(new PackedExecutionData(1000, "Sample", 3));
+		final List<PackedExecutionData> output = new ArrayList<PackedExecutionData>();
+
+		store.accept(new IPackedExecutionDataVisitor() {
+			public void visitPackedClassExecution(
+					final PackedExecutionData data) {
+				output.add(data);
+			}
+		});
+
+		assertEquals(1, output.size());
+		assertSame(store.get(1000), output.get(0));
+	}
+
+	private static ExecutionData copy(final ExecutionData data) {
+		return new ExecutionData(data.getId(), data.getName(),
+				data.getProbes().clone());
+	}
+
+}
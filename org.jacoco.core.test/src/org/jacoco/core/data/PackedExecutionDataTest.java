@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PackedExecutionData}.
+ */
+public class PackedExecutionDataTest {
+
+	private final Random random = new Random(13);
+
+	private boolean[] randomProbes(final int length) {
+		final boolean[] probes = new boolean[length];
+		for (int i = 0; i < length; i++) {
+			probes[i] = random.nextBoolean();
+		}
+		return probes;
+	}
+
+	@Test
+	public void testCreateEmpty() {
+		final PackedExecutionData e = new PackedExecutionData(5, "Example",
+				65);
+		assertEquals(5, e.getId());
+		assertEquals("Example", e.getName());
+		assertEquals(65, e.getProbeCount());
+		assertEquals(2, e.getWords().length);
+		assertFalse(e.hasHits());
+		assertEquals(0, e.getHitCount());
+	}
+
+	@Test
+	public void testPackUnpack() {
+		for (final int length : new int[] { 0, 1, 63, 64, 65, 130 }) {
+			final boolean[] probes = randomProbes(length);
+			final PackedExecutionData packed = PackedExecutionData
+					.pack(new ExecutionData(7, "Foo", probes.clone()));
+
+			final ExecutionData unpacked = packed.unpack();
+
+			assertEquals(7, unpacked.getId());
+			assertEquals("Foo", unpacked.getName());
+			assertArrayEquals(probes, unpacked.getProbes());
+			int hits = 0;
+			for (int i = 0; i < length; i++) {
+				assertEquals(Boolean.valueOf(probes[i]),
+						Boolean.valueOf(packed.getProbe(i)));
+				hits += probes[i] ? 1 : 0;
+			}
+			assertEquals(hits, packed.getHitCount());
+			assertEquals(Boolean.valueOf(hits > 0),
+					Boolean.valueOf(packed.hasHits()));
+		}
+	}
+
+	@Test
+	public void testMergeLikeExecutionData() {
+		for (final boolean flag : new boolean[] { true, false }) {
+			final boolean[] a = randomProbes(150);
+			final boolean[] b = randomProbes(150);
+			final ExecutionData expected = new ExecutionData(3, "Foo",
+					a.clone());
+			expected.merge(new ExecutionData(3, "Foo", b.clone()), flag);
+
+			final PackedExecutionData actual = PackedExecutionData
+					.pack(new ExecutionData(3, "Foo", a));
+			final PackedExecutionData other = PackedExecutionData
+					.pack(new ExecutionData(3, "Foo", b));
+			actual.merge(other, flag);
+
+			assertArrayEquals(expected.getProbes(),
+					actual.unpack().getProbes());
+			assertArrayEquals(b, other.unpack().getProbes());
+		}
+	}
+
+	@Test
+	public void testMerge() {
+		final PackedExecutionData a = new PackedExecutionData(3, "Foo", 2,
+				new long[] { 0x1 });
+
+		a.merge(new PackedExecutionData(3, "Foo", 2, new long[] { 0x2 }));
+
+		assertEquals(0x3, a.getWords()[0]);
+	}
+
+	@Test
+	public void testAssertCompatibility() {
+		final PackedExecutionData e = new PackedExecutionData(5, "Example",
+				3);
+		e.assertCompatibility(5, "Example", 3);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAssertCompatibilityNegative1() {
+		new PackedExecutionData(5, "Example", 3).assertCompatibility(55,
+				"Example", 3);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAssertCompatibilityNegative2() {
+		new PackedExecutionData(5, "Example", 3).assertCompatibility(5,
+				"Exxxample", 3);
+	}
+
+	@Test
+	public void testAssertCompatibilityNegative3() {
+		try {
+			new PackedExecutionData(5, "Example", 3)
+					.merge(new PackedExecutionData(5, "Example", 4));
+		} catch (IllegalStateException e) {
+			assertEquals(
+					"Incompatible execution data for class Example with id 0000000000000005.",
+					e.getMessage());
+			return;
+		}
+		assertTrue("IllegalStateException expected", false);
+	}
+
+	@Test
+	public void testToString() {
+		assertEquals("PackedExecutionData[name=Example, id=0000000000000005]",
+				new PackedExecutionData(5, "Example", 3).toString());
+	}
+
+}
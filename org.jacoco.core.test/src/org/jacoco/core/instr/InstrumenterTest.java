@@ -523,4 +523,111 @@ public class InstrumenterTest {
 		assertNull(zipin.getNextEntry());
 	}
 
+	@Test
+	public void instrumentAll_should_create_identical_zip_in_parallel()
+			throws IOException {
+		final byte[] zip = createMixedZip(true);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		final int expectedCount = instrumenter.instrumentAll(
+				new ByteArrayInputStream(zip), expected, "Test");
+
+		instrumenter.setThreads(4);
+		instrumenter.setWindow(3);
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		final int count = instrumenter.instrumentAll(
+				new ByteArrayInputStream(zip), actual, "Test");
+
+		assertEquals(expectedCount, count);
+		assertEquals(41, count);
+		assertSameEntries(expected.toByteArray(), actual.toByteArray());
+	}
+
+	/**
+	 * Compares order, method and content of all entries. The entry time stamps
+	 * are set when the entries are written and may differ.
+	 */
+	private static void assertSameEntries(final byte[] expected,
+			final byte[] actual) throws IOException {
+		final ZipInputStream expectedIn = new ZipInputStream(
+				new ByteArrayInputStream(expected));
+		final ZipInputStream actualIn = new ZipInputStream(
+				new ByteArrayInputStream(actual));
+		ZipEntry entry;
+		while ((entry = expectedIn.getNextEntry()) != null) {
+			final ZipEntry actualEntry = actualIn.getNextEntry();
+			assertEquals(entry.getName(), actualEntry.getName());
+			assertEquals(entry.getMethod(), actualEntry.getMethod());
+			final byte[] expectedContent = InputStreams.readFully(expectedIn);
+			final byte[] actualContent = InputStreams.readFully(actualIn);
+			if (entry.getName().endsWith(".jar")) {
+				assertSameEntries(expectedContent, actualContent);
+			} else {
+				assertArrayEquals(entry.getName(), expectedContent,
+						actualContent);
+			}
+		}
+		assertNull(actualIn.getNextEntry());
+	}
+
+	@Test
+	public void instrumentAll_should_report_broken_class_in_parallel()
+			throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ZipOutputStream zipout = new ZipOutputStream(buffer);
+		for (int i = 0; i < 10; i++) {
+			zipout.putNextEntry(new ZipEntry("Test" + i + ".class"));
+			zipout.write(TargetLoader.getClassDataAsBytes(getClass()));
+		}
+		zipout.putNextEntry(new ZipEntry("Broken.class"));
+		final byte[] brokenclass = TargetLoader.getClassDataAsBytes(getClass());
+		brokenclass[10] = 0x23;
+		zipout.write(brokenclass);
+		zipout.finish();
+
+		instrumenter.setThreads(4);
+		try {
+			instrumenter.instrumentAll(
+					new ByteArrayInputStream(buffer.toByteArray()),
+					new ByteArrayOutputStream(), "test.zip");
+			fail();
+		} catch (IOException e) {
+			assertEquals("Error while instrumenting test.zip@Broken.class.",
+					e.getMessage());
+		}
+	}
+
+	private byte[] createMixedZip(final boolean nested) throws IOException {
+		final byte[] classBytes = TargetLoader.getClassDataAsBytes(getClass());
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ZipOutputStream zipout = new ZipOutputStream(buffer);
+		zipout.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+		zipout.write(("Manifest-Version: 1.0\r\n\r\n"
+				+ "Name: Test.class\r\nSHA-256-Digest: abc\r\n\r\n")
+						.getBytes("UTF-8"));
+		zipout.putNextEntry(new ZipEntry("META-INF/ALIAS.SF"));
+		for (int i = 0; i < 20; i++) {
+			ZipEntry entry = new ZipEntry("Test" + i + ".class");
+			if (i % 3 == 0) {
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(classBytes.length);
+				CRC32 crc = new CRC32();
+				crc.update(classBytes);
+				entry.setCrc(crc.getValue());
+			}
+			zipout.putNextEntry(entry);
+			zipout.write(classBytes);
+		}
+		zipout.putNextEntry(new ZipEntry("readme.txt"));
+		zipout.write("Hello".getBytes("UTF-8"));
+		if (nested) {
+			zipout.putNextEntry(new ZipEntry("lib/nested.jar"));
+			zipout.write(createMixedZip(false));
+		} else {
+			zipout.putNextEntry(new ZipEntry("Empty.class"));
+			zipout.write(createClass(Opcodes.V1_8));
+		}
+		zipout.finish();
+		return buffer.toByteArray();
+	}
+
 }
@@ -14,6 +14,7 @@ package org.jacoco.core.internal.analysis;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 import org.jacoco.core.analysis.ICounter;
 import org.junit.Before;
@@ -38,6 +39,17 @@ public class LineImplTest {
 		assertEquals(ICounter.EMPTY, line.getStatus());
 	}
 
+	@Test
+	public void testGetInstance() {
+		assertSame(LineImpl.EMPTY, LineImpl.getInstance(0, 0, 0, 0));
+		assertSame(LineImpl.getInstance(8, 8, 4, 4),
+				LineImpl.getInstance(8, 8, 4, 4));
+		line = LineImpl.getInstance(9, 300, 1, 5);
+		assertEquals(CounterImpl.getInstance(9, 300),
+				line.getInstructionCounter());
+		assertEquals(CounterImpl.getInstance(1, 5), line.getBranchCounter());
+	}
+
 	@Test
 	public void testIncrement1() {
 		line = line.increment(CounterImpl.getInstance(1, 2),
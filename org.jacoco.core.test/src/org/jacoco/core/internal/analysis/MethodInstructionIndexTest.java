@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MethodInstructionIndex}.
+ */
+public class MethodInstructionIndexTest {
+
+	private static Instruction insn(final String sign, final int probe) {
+		final Instruction i = new Instruction(1, sign);
+		i.setProbeIndex(probe);
+		return i;
+	}
+
+	@Test
+	public void should_calculate_probe_range() {
+		final MethodInstructionIndex index = new MethodInstructionIndex(
+				Arrays.asList(insn("a", 0), insn("b", 5), insn("c", 2)));
+
+		assertEquals(3, index.getCount());
+		assertEquals(2, index.getFirstProbe());
+		assertEquals(5, index.getLastProbe());
+	}
+
+	@Test
+	public void should_return_no_probe_when_method_has_no_probes() {
+		final MethodInstructionIndex index = new MethodInstructionIndex(
+				Collections.singletonList(insn("a", 0)));
+
+		assertEquals(MethodInstructionIndex.NO_PROBE, index.getFirstProbe());
+		assertEquals(MethodInstructionIndex.NO_PROBE, index.getLastProbe());
+	}
+
+	@Test
+	public void get_should_return_instruction_by_signature() {
+		final Instruction a = insn("a", 0);
+		final MethodInstructionIndex index = new MethodInstructionIndex(
+				Arrays.asList(a, insn("b", 0)));
+
+		assertSame(a, index.get("a"));
+		assertNull(index.get("x"));
+	}
+
+	@Test
+	public void matches_should_ignore_instruction_order() {
+		final MethodInstructionIndex i1 = new MethodInstructionIndex(
+				Arrays.asList(insn("a", 0), insn("b", 0)));
+		final MethodInstructionIndex i2 = new MethodInstructionIndex(
+				Arrays.asList(insn("b", 0), insn("a", 0)));
+
+		assertEquals(i1.getFingerprint(), i2.getFingerprint());
+		assertTrue(i1.matches(i2));
+	}
+
+	@Test
+	public void matches_should_return_false_for_different_signatures() {
+		final MethodInstructionIndex i1 = new MethodInstructionIndex(
+				Arrays.asList(insn("a", 0), insn("b", 0)));
+		final MethodInstructionIndex i2 = new MethodInstructionIndex(
+				Arrays.asList(insn("a", 0), insn("c", 0)));
+
+		assertFalse(i1.matches(i2));
+	}
+
+	@Test
+	public void matches_should_return_false_for_duplicate_signatures() {
+		final MethodInstructionIndex i1 = new MethodInstructionIndex(
+				Arrays.asList(insn("a", 0), insn("a", 0)));
+		final MethodInstructionIndex i2 = new MethodInstructionIndex(
+				Arrays.asList(insn("a", 0), insn("b", 0)));
+
+		assertFalse(i1.matches(i2));
+		assertFalse(i2.matches(i1));
+	}
+
+	@Test
+	public void merge_should_merge_probes_and_branches() {
+		final Instruction a = insn("a", 1);
+		final Instruction b = insn("b", 3);
+		final MethodInstructionIndex now = new MethodInstructionIndex(
+				Arrays.asList(a, b));
+		final Instruction oa = insn("a", 4);
+		oa.addBranch(true, 0);
+		final MethodInstructionIndex other = new MethodInstructionIndex(
+				Arrays.asList(oa, insn("b", 6)));
+		final boolean[] probes = new boolean[4];
+		final boolean[] otherProbes = new boolean[] { false, false, false,
+				false, true, true, false };
+
+		now.merge(other, probes, otherProbes);
+
+		assertArrayEquals(new boolean[] { false, true, true, false }, probes);
+		assertEquals(CounterImpl.COUNTER_0_1, a.getInstructionCounter());
+		assertEquals(CounterImpl.COUNTER_1_0, b.getInstructionCounter());
+	}
+
+	private static Instruction insn(final long fingerprint, final int probe) {
+		final Instruction i = new Instruction(1, fingerprint);
+		i.setProbeIndex(probe);
+		return i;
+	}
+
+	@Test
+	public void get_should_return_instruction_by_fingerprint() {
+		final Instruction a = insn(42L, 0);
+		final MethodInstructionIndex index = new MethodInstructionIndex(
+				Arrays.asList(insn(-7L, 0), a));
+
+		assertSame(a, index.get(42L));
+		assertNull(index.get(43L));
+		assertNull(index.get("a"));
+	}
+
+	@Test
+	public void matches_should_compare_fingerprints() {
+		final MethodInstructionIndex i1 = new MethodInstructionIndex(
+				Arrays.asList(insn(1L, 0), insn(2L, 0)));
+		final MethodInstructionIndex i2 = new MethodInstructionIndex(
+				Arrays.asList(insn(2L, 0), insn(1L, 0)));
+		final MethodInstructionIndex i3 = new MethodInstructionIndex(
+				Arrays.asList(insn(1L, 0), insn(3L, 0)));
+
+		assertTrue(i1.matches(i2));
+		assertFalse(i1.matches(i3));
+	}
+
+	@Test
+	public void matches_should_return_false_for_duplicate_fingerprints() {
+		final MethodInstructionIndex i1 = new MethodInstructionIndex(
+				Arrays.asList(insn(1L, 0), insn(1L, 0)));
+
+		assertFalse(i1.matches(i1));
+	}
+
+	@Test
+	public void matches_should_return_false_for_different_modes() {
+		final MethodInstructionIndex i1 = new MethodInstructionIndex(
+				Collections.singletonList(insn("a", 0)));
+		final MethodInstructionIndex i2 = new MethodInstructionIndex(
+				Collections.singletonList(insn(1L, 0)));
+
+		assertFalse(i1.matches(i2));
+		assertFalse(i2.matches(i1));
+	}
+
+	@Test
+	public void merge_should_merge_branches_by_fingerprint() {
+		final Instruction a = insn(5L, 0);
+		final Instruction b = insn(9L, 0);
+		final MethodInstructionIndex now = new MethodInstructionIndex(
+				Arrays.asList(a, b));
+		final Instruction ob = insn(9L, 0);
+		ob.addBranch(true, 0);
+		final MethodInstructionIndex other = new MethodInstructionIndex(
+				Arrays.asList(ob, insn(5L, 0)));
+
+		now.merge(other, null, null);
+
+		assertEquals(CounterImpl.COUNTER_1_0, a.getInstructionCounter());
+		assertEquals(CounterImpl.COUNTER_0_1, b.getInstructionCounter());
+	}
+
+	@Test
+	public void read_should_restore_written_index() throws IOException {
+		final Instruction a = insn(5L, 2);
+		a.addBranch(true, 1);
+		final MethodInstructionIndex index = new MethodInstructionIndex(
+				Arrays.asList(a, insn(9L, 4), insn(-3L, 0)));
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final CompactDataOutput out = new CompactDataOutput(buffer);
+		index.write(out);
+		out.flush();
+
+		final MethodInstructionIndex restored = MethodInstructionIndex
+				.read(new CompactDataInput(
+						new ByteArrayInputStream(buffer.toByteArray())));
+
+		assertEquals(3, restored.getCount());
+		assertEquals(2, restored.getFirstProbe());
+		assertEquals(4, restored.getLastProbe());
+		assertEquals(index.getFingerprint(), restored.getFingerprint());
+		assertTrue(restored.matches(index));
+		assertEquals(CounterImpl.COUNTER_0_1,
+				restored.get(5L).getInstructionCounter());
+		assertEquals(CounterImpl.COUNTER_1_0,
+				restored.get(9L).getInstructionCounter());
+	}
+
+	@Test
+	public void read_should_restore_method_without_probes()
+			throws IOException {
+		final MethodInstructionIndex index = new MethodInstructionIndex(
+				Collections.singletonList(insn(1L, 0)));
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final CompactDataOutput out = new CompactDataOutput(buffer);
+		index.write(out);
+		out.flush();
+
+		final MethodInstructionIndex restored = MethodInstructionIndex
+				.read(new CompactDataInput(
+						new ByteArrayInputStream(buffer.toByteArray())));
+
+		assertEquals(MethodInstructionIndex.NO_PROBE, restored.getFirstProbe());
+		assertEquals(MethodInstructionIndex.NO_PROBE, restored.getLastProbe());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void write_should_throw_IllegalStateException_in_string_mode()
+			throws IOException {
+		final MethodInstructionIndex index = new MethodInstructionIndex(
+				Collections.singletonList(insn("a", 0)));
+
+		index.write(new CompactDataOutput(new ByteArrayOutputStream()));
+	}
+
+}
@@ -89,6 +89,35 @@ public class SourceNodeImplTest {
 				node.getLine(12).getInstructionCounter());
 	}
 
+	@Test
+	public void testIncrementLinesBeyondPackedLimit() {
+		final SourceNodeImpl node = new SourceNodeImpl(ElementType.CLASS,
+				"Foo");
+		node.increment(CounterImpl.getInstance(200, 0),
+				CounterImpl.getInstance(0, 3), 10);
+		node.increment(CounterImpl.getInstance(100, 1000),
+				CounterImpl.getInstance(0, 300), 10);
+		node.increment(CounterImpl.getInstance(254, 254),
+				CounterImpl.getInstance(254, 254), 11);
+		node.increment(CounterImpl.getInstance(1, 0), CounterImpl.COUNTER_0_0,
+				10);
+
+		assertEquals(CounterImpl.getInstance(301, 1000),
+				node.getLine(10).getInstructionCounter());
+		assertEquals(CounterImpl.getInstance(0, 303),
+				node.getLine(10).getBranchCounter());
+		assertEquals(CounterImpl.getInstance(254, 254),
+				node.getLine(11).getInstructionCounter());
+		assertEquals(CounterImpl.getInstance(254, 254),
+				node.getLine(11).getBranchCounter());
+		assertEquals(CounterImpl.getInstance(0, 2), node.getLineCounter());
+
+		node.ensureCapacity(1, 20);
+		assertEquals(CounterImpl.getInstance(301, 1000),
+				node.getLine(10).getInstructionCounter());
+		assertEquals(LineImpl.EMPTY, node.getLine(1));
+	}
+
 	@Test
 	public void testIncrementLine1_1() {
 		testIncrementLine(0, 0, 0, 0, 0, 0);
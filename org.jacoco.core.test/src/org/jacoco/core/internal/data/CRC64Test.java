@@ -13,6 +13,7 @@
 package org.jacoco.core.internal.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 import java.io.UnsupportedEncodingException;
 
@@ -95,4 +96,20 @@ public class CRC64Test {
 		assertEquals(0xD8016B38AAD48308L, sum);
 	}
 
+	@Test
+	public void update_int_should_be_equal_to_little_endian_bytes() {
+		assertEquals(
+				CRC64.classId(new byte[] { 0x78, 0x56, 0x34, 0x12 }),
+				CRC64.update(0, 0x12345678));
+	}
+
+	@Test
+	public void update_string_should_include_length() {
+		final long a_b = CRC64.update(CRC64.update(0, "a"), "b");
+		final long ab = CRC64.update(0, "ab");
+
+		assertNotEquals(a_b, ab);
+		assertEquals(ab, CRC64.update(0, "ab"));
+	}
+
 }
@@ -12,11 +12,15 @@
  *******************************************************************************/
 package org.jacoco.core.internal.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -106,6 +110,47 @@ public class CompactDataInputOutputTest {
 				true);
 	}
 
+	@Test
+	public void testPackedWords() throws IOException {
+		final Random random = new Random(11);
+		for (final int length : new int[] { 0, 1, 7, 8, 63, 64, 65, 200 }) {
+			final boolean[] values = new boolean[length];
+			final long[] words = new long[(length + 63) / 64];
+			for (int i = 0; i < length; i++) {
+				values[i] = random.nextBoolean();
+				if (values[i]) {
+					words[i / 64] |= 1L << (i % 64);
+				}
+			}
+			testPackedWords(values, words);
+		}
+	}
+
+	private void testPackedWords(boolean[] values, long[] words)
+			throws IOException {
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		new CompactDataOutput(expected).writeBooleanArray(values);
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		new CompactDataOutput(actual).writePackedBooleanArray(values.length,
+				words);
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+		final CompactDataInput input = new CompactDataInput(
+				new ByteArrayInputStream(expected.toByteArray()));
+		final int length = input.readVarInt();
+		assertEquals(values.length, length);
+		assertArrayEquals(words, input.readPackedBooleanArray(length));
+		assertEquals(-1, input.read());
+	}
+
+	@Test
+	public void testPackedWordsIgnoreUnusedBits() throws IOException {
+		final CompactDataInput input = new CompactDataInput(
+				new ByteArrayInputStream(new byte[] { (byte) 0xFF }));
+
+		assertArrayEquals(new long[] { 0x07 }, input.readPackedBooleanArray(3));
+	}
+
 	private void testPackedBoolean(boolean... values) throws IOException {
 		out.writeBooleanArray(values);
 		out.close();
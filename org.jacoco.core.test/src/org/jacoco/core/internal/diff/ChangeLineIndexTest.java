@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ChangeLineIndex}.
+ */
+public class ChangeLineIndexTest {
+
+	private static ChangeLine line(final String type, final Integer start,
+			final Integer end) {
+		final ChangeLine l = new ChangeLine();
+		l.setType(type);
+		l.setStartLineNum(start);
+		l.setEndLineNum(end);
+		return l;
+	}
+
+	private static ChangeLine line(final String type, final int start,
+			final int end) {
+		return line(type, Integer.valueOf(start), Integer.valueOf(end));
+	}
+
+	@Test
+	public void of_should_return_empty_index_without_lines() {
+		assertSame(ChangeLineIndex.EMPTY, ChangeLineIndex.of(null));
+		assertSame(ChangeLineIndex.EMPTY,
+				ChangeLineIndex.of(Collections.<ChangeLine> emptyList()));
+		assertSame(ChangeLineIndex.EMPTY, ChangeLineIndex
+				.of(Collections.singletonList(line("insert", null, null))));
+		assertTrue(ChangeLineIndex.EMPTY.isEmpty());
+		assertFalse(ChangeLineIndex.EMPTY.contains(1));
+	}
+
+	@Test
+	public void getType_should_return_type_of_range() {
+		final ChangeLineIndex index = ChangeLineIndex.of(Arrays.asList(
+				line("insert", 10, 12), line("replace", 3, 3)));
+
+		assertNull(index.getType(2));
+		assertEquals("replace", index.getType(3));
+		assertNull(index.getType(4));
+		assertEquals("insert", index.getType(10));
+		assertEquals("insert", index.getType(12));
+		assertNull(index.getType(13));
+		assertFalse(index.contains(9));
+		assertTrue(index.contains(11));
+	}
+
+	@Test
+	public void getType_should_prefer_first_listed_range() {
+		final ChangeLineIndex index = ChangeLineIndex.of(Arrays.asList(
+				line("insert", 5, 6), line("replace", 1, 10)));
+
+		assertEquals("replace", index.getType(4));
+		assertEquals("insert", index.getType(5));
+		assertEquals("insert", index.getType(6));
+		assertEquals("replace", index.getType(7));
+	}
+
+	@Test
+	public void getRange_should_return_sorted_disjoint_ranges() {
+		final ChangeLineIndex index = ChangeLineIndex.of(Arrays.asList(
+				line("insert", 10, 12), line("insert", 13, 14),
+				line("replace", 3, 3)));
+
+		assertEquals(2, index.getRangeCount());
+		assertEquals(3, index.getRangeStart(0));
+		assertEquals(3, index.getRangeEnd(0));
+		assertEquals(10, index.getRangeStart(1));
+		assertEquals(14, index.getRangeEnd(1));
+		assertEquals(0, ChangeLineIndex.EMPTY.getRangeCount());
+	}
+
+	@Test
+	public void contains_should_handle_ranges_without_type() {
+		final ChangeLineIndex index = ChangeLineIndex
+				.of(Collections.singletonList(line(null, 1, 1)));
+
+		assertTrue(index.contains(1));
+		assertNull(index.getType(1));
+	}
+
+	@Test
+	public void contains_should_handle_extreme_line_numbers() {
+		final ChangeLineIndex index = ChangeLineIndex.of(Collections
+				.singletonList(line("insert", 1, Integer.MAX_VALUE)));
+
+		assertTrue(index.contains(Integer.MAX_VALUE));
+		assertFalse(index.contains(0));
+	}
+
+	@Test
+	public void getType_should_behave_like_linear_scan() {
+		final Random random = new Random(42);
+		final String[] types = { "insert", "replace", "delete" };
+		for (int run = 0; run < 50; run++) {
+			final List<ChangeLine> lines = new ArrayList<ChangeLine>();
+			for (int i = random.nextInt(20); i > 0; i--) {
+				final int start = random.nextInt(100);
+				lines.add(line(types[random.nextInt(types.length)], start,
+						start + random.nextInt(15) - 2));
+			}
+			final ChangeLineIndex index = ChangeLineIndex.of(lines);
+			for (int nr = 0; nr < 120; nr++) {
+				assertEquals(scan(lines, nr), index.getType(nr));
+			}
+		}
+	}
+
+	private static String scan(final List<ChangeLine> lines, final int nr) {
+		for (final ChangeLine l : lines) {
+			if (l.getStartLineNum().intValue() <= nr
+					&& l.getEndLineNum().intValue() >= nr) {
+				return l.getType();
+			}
+		}
+		return null;
+	}
+
+}
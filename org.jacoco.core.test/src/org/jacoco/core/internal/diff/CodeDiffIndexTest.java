@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.objectweb.asm.Type;
+
+/**
+ * Unit tests for {@link CodeDiffIndex}.
+ */
+public class CodeDiffIndexTest {
+
+	private static MethodInfoDto method(final String name,
+			final String... params) {
+		final MethodInfoDto dto = new MethodInfoDto();
+		dto.setMethodName(name);
+		dto.setParameters(Arrays.asList(params));
+		return dto;
+	}
+
+	private static ClassInfoDto classInfo(final String classFile,
+			final String type, final MethodInfoDto... methods) {
+		final ClassInfoDto dto = new ClassInfoDto();
+		dto.setClassFile(classFile);
+		dto.setType(type);
+		dto.setMethodInfos(Arrays.asList(methods));
+		return dto;
+	}
+
+	@Test
+	public void should_be_empty_without_classes() {
+		assertTrue(new CodeDiffIndex(null).isEmpty());
+		assertTrue(new CodeDiffIndex(Collections.<ClassInfoDto> emptyList())
+				.isEmpty());
+		assertFalse(new CodeDiffIndex(null).containsClass("Foo"));
+	}
+
+	@Test
+	public void containsClass_should_match_inner_classes_by_outer_class() {
+		final CodeDiffIndex index = new CodeDiffIndex(
+				Collections.singletonList(classInfo("org/Foo", "MODIFY")));
+
+		assertTrue(index.containsClass("org/Foo"));
+		assertTrue(index.containsClass("org/Foo$1"));
+		assertTrue(index.containsClass("org/Foo$Inner$2"));
+		assertFalse(index.containsClass("org/Foo2"));
+		assertFalse(index.containsClass("org/Bar$Foo"));
+		assertFalse(index.containsClass(null));
+	}
+
+	@Test
+	public void getClassEntry_should_return_entry_listed_first() {
+		final CodeDiffIndex index = new CodeDiffIndex(Arrays.asList(
+				classInfo("org/Foo", "MODIFY", method("a")),
+				classInfo("org/Foo$Inner", "ADD"),
+				classInfo("org/Foo", "ADD")));
+
+		assertSame(index.getClassEntry("org/Foo"),
+				index.getClassEntry("org/Foo$Inner"));
+		assertFalse(index.containsMethod("org/Foo$Inner", "b", "()V"));
+		assertNull(index.getClassEntry("org/Bar"));
+	}
+
+	@Test
+	public void containsMethod_should_match_all_methods_of_added_class() {
+		final CodeDiffIndex index = new CodeDiffIndex(
+				Collections.singletonList(classInfo("org/Foo", "ADD")));
+
+		assertTrue(index.containsMethod("org/Foo", "any", "()V"));
+		assertTrue(index.containsMethod("org/Foo$1", "<init>", "()V"));
+	}
+
+	@Test
+	public void containsMethod_should_match_name_and_parameters() {
+		final CodeDiffIndex index = new CodeDiffIndex(Collections
+				.singletonList(classInfo("org/Foo", "MODIFY",
+						method("run"), method("add", "int a", "String b"),
+						method("add", "List<String> list"))));
+
+		assertTrue(index.containsMethod("org/Foo", "run", "()V"));
+		assertTrue(index.containsMethod("org/Foo", "add",
+				"(ILjava/lang/String;)V"));
+		assertTrue(index.containsMethod("org/Foo", "add",
+				"(Ljava/util/List;)Z"));
+		assertFalse(index.containsMethod("org/Foo", "add", "(I)V"));
+		assertFalse(index.containsMethod("org/Foo", "run", "(I)V"));
+		assertFalse(index.containsMethod("org/Foo", "other", "()V"));
+		assertFalse(index.containsMethod("org/Bar", "run", "()V"));
+	}
+
+	@Test
+	public void containsMethod_should_match_lambdas_by_enclosing_method() {
+		final CodeDiffIndex index = new CodeDiffIndex(Collections
+				.singletonList(classInfo("org/Foo", "MODIFY", method("run"))));
+
+		assertTrue(index.containsMethod("org/Foo", "lambda$run$0",
+				"(Ljava/lang/Object;)V"));
+		assertFalse(index.containsMethod("org/Foo", "lambda$other$1", "()V"));
+		assertFalse(index.containsMethod("org/Foo", "lambda$", "()V"));
+	}
+
+	@Test
+	public void matchParams_should_use_simple_type_names() {
+		assertTrue(match("(Ljava/util/Map$Entry;)V", "Map.Entry e"));
+		assertTrue(match("([Ljava/lang/String;)V", "String[] args"));
+		assertTrue(match("([[I)V", "int[][] m"));
+		assertTrue(match("(JZ)V", "long l", "boolean b"));
+		assertFalse(match("([I)V", "int i"));
+		assertFalse(match("(I)V", "long l"));
+		assertFalse(match("(II)V", "int a"));
+		assertFalse(match("(I)V", "int a", "int b"));
+	}
+
+	@Test
+	public void matchParams_should_behave_like_split_based_matching() {
+		final String[] descs = { "()V", "(I)V", "([I)V", "([[J)V",
+				"(Ljava/lang/String;)V", "([Ljava/lang/String;)V",
+				"(Ljava/util/Map$Entry;)V", "([Ljava/util/Map$Entry;)V",
+				"(Lscala/Foo$;)V", "([Lscala/Foo$;)V", "(La/b$$c;)V",
+				"(LFoo;ID)V" };
+		final String[][] params = { {}, { "int a" }, { "int[] a" },
+				{ "long[][] a" }, { "String s" }, { "String[] s" },
+				{ "Entry e" }, { "Entry[] e" }, { "Foo f" }, { "[] f" },
+				{ "c x" }, { "Foo f", "int i", "double d" } };
+		for (final String desc : descs) {
+			for (final String[] p : params) {
+				assertEquals(desc + Arrays.toString(p),
+						Boolean.valueOf(reference(p, desc)),
+						Boolean.valueOf(CodeDiffIndex.matchParams(p, desc)));
+			}
+		}
+	}
+
+	private static boolean match(final String desc, final String... params) {
+		return CodeDiffIndex.matchParams(params, desc);
+	}
+
+	/**
+	 * Parameter matching as implemented before the index was introduced.
+	 */
+	private static boolean reference(final String[] diffParams,
+			final String desc) {
+		final Type[] argumentTypes = Type.getArgumentTypes(desc);
+		if (diffParams.length == 0 && argumentTypes.length == 0) {
+			return true;
+		}
+		if (diffParams.length > 0
+				&& argumentTypes.length == diffParams.length) {
+			for (int i = 0; i < argumentTypes.length; i++) {
+				final String[] args = argumentTypes[i].getClassName()
+						.split("\\.");
+				String arg = args[args.length - 1];
+				if (arg.contains("$")) {
+					arg = arg.split("\\$")[arg.split("\\$").length - 1];
+				}
+				if (!diffParams[i].contains(arg)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+}
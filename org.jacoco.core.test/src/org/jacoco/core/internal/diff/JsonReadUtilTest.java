@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link JsonReadUtil}.
+ */
+public class JsonReadUtilTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String JSON = "[{\"classFile\":\"org/Foo\","
+			+ "\"type\":\"MODIFY\",\"methodInfos\":["
+			+ "{\"methodName\":\"a\",\"parameters\":[\"String s\"],\"author\":\"alice\"},"
+			+ "{\"methodName\":\"b\",\"parameters\":[\"String s\"],\"author\":\"alice\"}],"
+			+ "\"lines\":[{\"type\":\"insert\",\"startLineNum\":3,\"endLineNum\":5}]},"
+			+ "{\"classFile\":\"org/Bar\",\"type\":\"MODIFY\"},"
+			+ "{\"classFile\":\"org/Baz\",\"type\":\"ADD\",\"methodInfos\":[]}]";
+
+	@Test
+	public void readClassInfos_should_parse_classes_with_methods()
+			throws IOException {
+		final List<ClassInfoDto> infos = JsonReadUtil
+				.readClassInfos(new StringReader(JSON));
+
+		assertEquals(2, infos.size());
+		final ClassInfoDto foo = infos.get(0);
+		assertEquals("org/Foo", foo.getClassFile());
+		assertEquals("MODIFY", foo.getType());
+		assertEquals(2, foo.getMethodInfos().size());
+		assertEquals("a", foo.getMethodInfos().get(0).getMethodName());
+		assertEquals(Integer.valueOf(3),
+				foo.getLines().get(0).getStartLineNum());
+		assertEquals("org/Baz", infos.get(1).getClassFile());
+	}
+
+	@Test
+	public void readClassInfos_should_share_equal_strings() throws IOException {
+		final List<ClassInfoDto> infos = JsonReadUtil
+				.readClassInfos(new StringReader(JSON));
+
+		final MethodInfoDto a = infos.get(0).getMethodInfos().get(0);
+		final MethodInfoDto b = infos.get(0).getMethodInfos().get(1);
+		assertSame(a.getAuthor(), b.getAuthor());
+		assertSame(a.getParameters().get(0), b.getParameters().get(0));
+	}
+
+	@Test
+	public void readClassInfos_should_accept_null() throws IOException {
+		assertTrue(JsonReadUtil.readClassInfos(new StringReader("null"))
+				.isEmpty());
+	}
+
+	@Test
+	public void readClassInfos_should_read_file() throws IOException {
+		final File file = folder.newFile("diff.json");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(JSON.getBytes("UTF-8"));
+		out.close();
+
+		assertEquals(2, JsonReadUtil.readClassInfos(file).size());
+	}
+
+	@Test(expected = IOException.class)
+	public void readClassInfos_should_throw_IOException_for_invalid_json()
+			throws IOException {
+		JsonReadUtil.readClassInfos(new StringReader("[{\"classFile\":"));
+	}
+
+}
@@ -53,6 +53,13 @@ public class AgentOptionsTest {
 		assertEquals(AgentOptions.DEFAULT_PORT, options.getPort());
 		assertNull(options.getClassDumpDir());
 		assertFalse(options.getJmx());
+		assertEquals(AgentOptions.DEFAULT_MAXCONNECTIONS,
+				options.getMaxConnections());
+		assertEquals(0, options.getDumpInterval());
+		assertEquals(0, options.getDumpKeep());
+		assertFalse(options.getDumpReset());
+		assertEquals(-1, options.getHttpPort());
+		assertNull(options.getHttpAddress());
 
 		assertEquals("", options.toString());
 	}
@@ -401,6 +408,81 @@ public class AgentOptionsTest {
 		assertTrue(options.getJmx());
 	}
 
+	@Test
+	public void testGetMaxConnections() {
+		AgentOptions options = new AgentOptions("maxconnections=8");
+		assertEquals(8, options.getMaxConnections());
+	}
+
+	@Test
+	public void testSetMaxConnections() {
+		AgentOptions options = new AgentOptions();
+		options.setMaxConnections(4);
+		assertEquals(4, options.getMaxConnections());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseInvalidMaxConnections() {
+		new AgentOptions("maxconnections=0");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidMaxConnections() {
+		AgentOptions options = new AgentOptions();
+		options.setMaxConnections(0);
+	}
+
+	@Test
+	public void testGetDumpOptions() {
+		AgentOptions options = new AgentOptions(
+				"dumpinterval=60,dumpkeep=5,dumpreset=true");
+		assertEquals(60, options.getDumpInterval());
+		assertEquals(5, options.getDumpKeep());
+		assertTrue(options.getDumpReset());
+	}
+
+	@Test
+	public void testSetDumpOptions() {
+		AgentOptions options = new AgentOptions();
+		options.setDumpInterval(30);
+		options.setDumpKeep(2);
+		options.setDumpReset(true);
+		assertEquals("dumpinterval=30,dumpkeep=2,dumpreset=true",
+				options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseInvalidDumpInterval() {
+		new AgentOptions("dumpinterval=-1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidDumpKeep() {
+		AgentOptions options = new AgentOptions();
+		options.setDumpKeep(-1);
+	}
+
+	@Test
+	public void testGetHttpOptions() {
+		AgentOptions options = new AgentOptions(
+				"httpport=8080,httpaddress=*");
+		assertEquals(8080, options.getHttpPort());
+		assertEquals("*", options.getHttpAddress());
+	}
+
+	@Test
+	public void testSetHttpOptions() {
+		AgentOptions options = new AgentOptions();
+		options.setHttpPort(0);
+		options.setHttpAddress("localhost");
+		assertEquals("httpport=0,httpaddress=localhost", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseInvalidHttpPort() {
+		new AgentOptions("httpport=-2");
+	}
+
 	@Test
 	public void testGetVMArgumentWithNoOptions() {
 		AgentOptions options = new AgentOptions();
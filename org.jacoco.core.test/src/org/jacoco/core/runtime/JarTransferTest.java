@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link JarTransfer}.
+ */
+public class JarTransferTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final byte[] content = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+	private File createFile(final byte[] bytes) throws IOException {
+		final File file = new File(folder.getRoot(), "test.jar");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(bytes);
+		out.close();
+		return file;
+	}
+
+	private long crc(final byte[] bytes) {
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+
+	private byte[] transfer(final JarTransfer transfer) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			transfer.transferTo(Channels.newChannel(out));
+		} finally {
+			transfer.close();
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void open_should_return_null_for_missing_file() throws IOException {
+		assertNull(JarTransfer.open(null, 0, JarTransfer.UNKNOWN_CHECKSUM));
+		assertNull(JarTransfer.open(new File(folder.getRoot(), "missing.jar"),
+				0, JarTransfer.UNKNOWN_CHECKSUM));
+	}
+
+	@Test
+	public void transferTo_should_copy_complete_file() throws IOException {
+		final JarTransfer transfer = JarTransfer.open(createFile(content), 0,
+				JarTransfer.UNKNOWN_CHECKSUM);
+
+		assertEquals(8, transfer.getLength());
+		assertEquals(crc(content), transfer.getChecksum());
+		assertEquals(0, transfer.getOffset());
+		assertArrayEquals(content, transfer(transfer));
+	}
+
+	@Test
+	public void open_should_resume_at_offset() throws IOException {
+		final JarTransfer transfer = JarTransfer.open(createFile(content), 5,
+				crc(content));
+
+		assertEquals(5, transfer.getOffset());
+		assertArrayEquals(new byte[] { 6, 7, 8 }, transfer(transfer));
+	}
+
+	@Test
+	public void open_should_restart_when_checksum_does_not_match()
+			throws IOException {
+		final JarTransfer transfer = JarTransfer.open(createFile(content), 5,
+				crc(content) + 1);
+
+		assertEquals(0, transfer.getOffset());
+		assertArrayEquals(content, transfer(transfer));
+	}
+
+	@Test
+	public void open_should_restart_when_offset_exceeds_file()
+			throws IOException {
+		final JarTransfer transfer = JarTransfer.open(createFile(content), 9,
+				JarTransfer.UNKNOWN_CHECKSUM);
+
+		assertEquals(0, transfer.getOffset());
+		transfer.close();
+	}
+
+	@Test
+	public void open_should_update_checksum_of_modified_file()
+			throws IOException {
+		final File file = createFile(content);
+		JarTransfer.open(file, 0, JarTransfer.UNKNOWN_CHECKSUM).close();
+		final byte[] modified = Arrays.copyOf(content, 12);
+		createFile(modified);
+
+		final JarTransfer transfer = JarTransfer.open(file, 0,
+				JarTransfer.UNKNOWN_CHECKSUM);
+
+		assertEquals(crc(modified), transfer.getChecksum());
+		transfer.close();
+	}
+
+	@Test
+	public void sendHeader_should_write_download_header() throws IOException {
+		final JarTransfer transfer = JarTransfer.open(createFile(content), 2,
+				JarTransfer.UNKNOWN_CHECKSUM);
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final RemoteControlWriter writer = new RemoteControlWriter(buffer);
+
+		transfer.sendHeader(writer);
+		transfer.close();
+
+		final RemoteControlReader reader = new RemoteControlReader(
+				new ByteArrayInputStream(buffer.toByteArray()));
+		reader.read();
+		assertTrue(reader.hasDownloadHeader());
+		assertEquals(8, reader.getDownloadLength());
+		assertEquals(crc(content), reader.getDownloadChecksum());
+		assertEquals(2, reader.getDownloadOffset());
+	}
+
+	@Test
+	public void findJar_should_fail_without_sofa_home() {
+		assumeTrue(System.getenv("SOFA_HOME") == null);
+		try {
+			JarTransfer.findJar("com.yss.ams.bbzx");
+			fail("FileNotFoundException expected");
+		} catch (FileNotFoundException e) {
+			assertEquals("Environment variable SOFA_HOME is not set.",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void checksum_should_calculate_crc32() throws IOException {
+		assertEquals(crc(content), JarTransfer.checksum(createFile(content)));
+	}
+
+}
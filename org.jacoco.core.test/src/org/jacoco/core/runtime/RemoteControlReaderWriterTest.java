@@ -15,6 +15,7 @@ package org.jacoco.core.runtime;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -80,11 +81,151 @@ public class RemoteControlReaderWriterTest
 			public void visitDumpCommand(boolean dump, boolean reset) {
 				calls.append("cmd(" + dump + "," + reset + ")");
 			}
+
+			public void visitDeltaDumpCommand(long generation) {
+				fail();
+			}
+
+			public void visitDownloadCommand(byte artifact, long offset,
+					long checksum) {
+				fail();
+			}
 		});
 		assertFalse(reader.read());
 		assertEquals("cmd(" + doDump + "," + doReset + ")", calls.toString());
 	}
 
+	@Test
+	public void testVisitDeltaDump() throws IOException {
+		writer.visitDeltaDumpCommand(0x123456789AL);
+		final RemoteControlReader reader = createReader();
+		final StringBuilder calls = new StringBuilder();
+		reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+
+			public void visitDumpCommand(boolean dump, boolean reset) {
+				fail();
+			}
+
+			public void visitDeltaDumpCommand(long generation) {
+				calls.append("delta(" + Long.toHexString(generation) + ")");
+			}
+
+			public void visitDownloadCommand(byte artifact, long offset,
+					long checksum) {
+				fail();
+			}
+		});
+		assertFalse(reader.read());
+		assertEquals("delta(123456789a)", calls.toString());
+	}
+
+	@Test
+	public void testVisitDeltaDumpDefault() throws IOException {
+		writer.visitDeltaDumpCommand(0x123456789AL);
+		final RemoteControlReader reader = createReader();
+		final StringBuilder calls = new StringBuilder();
+		reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+
+			public void visitDumpCommand(boolean dump, boolean reset) {
+				calls.append("cmd(" + dump + "," + reset + ")");
+			}
+
+			public void visitDownloadCommand(byte artifact, long offset,
+					long checksum) {
+				fail();
+			}
+		});
+		assertFalse(reader.read());
+		assertEquals("cmd(true,false)", calls.toString());
+	}
+
+	@Test(expected = IOException.class)
+	public void testNoRemoteCommandVisitorForDeltaDump() throws IOException {
+		writer.visitDeltaDumpCommand(1);
+		final RemoteControlReader reader = createReader();
+		reader.read();
+	}
+
+	@Test
+	public void testSendDeltaGeneration() throws IOException {
+		writer.sendDeltaGeneration(42);
+		writer.sendCmdOk();
+		final RemoteControlReader reader = createReader();
+		assertEquals(-1, reader.getDeltaGeneration());
+		assertTrue(reader.read());
+		assertEquals(42, reader.getDeltaGeneration());
+	}
+
+	@Test
+	public void testVisitDownload() throws IOException {
+		writer.visitDownloadCommand(RemoteControlWriter.BLOCK_DOWNBBZX, 1024,
+				0xCAFEBABEL);
+		final RemoteControlReader reader = createReader();
+		final StringBuilder calls = new StringBuilder();
+		reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+
+			public void visitDumpCommand(boolean dump, boolean reset) {
+				fail();
+			}
+
+			public void visitDeltaDumpCommand(long generation) {
+				fail();
+			}
+
+			public void visitDownloadCommand(byte artifact, long offset,
+					long checksum) {
+				calls.append("download(" + Integer.toHexString(artifact) + ","
+						+ offset + "," + Long.toHexString(checksum) + ")");
+			}
+		});
+		assertFalse(reader.read());
+		assertEquals("download(50,1024,cafebabe)", calls.toString());
+	}
+
+	@Test(expected = IOException.class)
+	public void testVisitDownloadDefault() throws IOException {
+		writer.visitDownloadCommand(RemoteControlWriter.BLOCK_DOWNBBZX, 0,
+				JarTransfer.UNKNOWN_CHECKSUM);
+		final RemoteControlReader reader = createReader();
+		reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+
+			public void visitDumpCommand(boolean dump, boolean reset) {
+				fail();
+			}
+		});
+		reader.read();
+	}
+
+	@Test(expected = IOException.class)
+	public void testNoRemoteCommandVisitorForDownload() throws IOException {
+		writer.visitDownloadCommand(RemoteControlWriter.BLOCK_DOWNBBZX, 0,
+				JarTransfer.UNKNOWN_CHECKSUM);
+		final RemoteControlReader reader = createReader();
+		reader.read();
+	}
+
+	@Test
+	public void testSendDownloadHeader() throws IOException {
+		writer.sendDownloadHeader(3, 0x1234, 1);
+		buffer.write(new byte[] { 7, 8 });
+		writer.sendCmdOk();
+		final ByteArrayInputStream in = new ByteArrayInputStream(
+				buffer.toByteArray());
+		final RemoteControlReader reader = new RemoteControlReader(in);
+		assertFalse(reader.hasDownloadHeader());
+
+		assertTrue(reader.read());
+
+		assertTrue(reader.hasDownloadHeader());
+		assertEquals(3, reader.getDownloadLength());
+		assertEquals(0x1234, reader.getDownloadChecksum());
+		assertEquals(1, reader.getDownloadOffset());
+		assertEquals(7, in.read());
+		assertEquals(8, in.read());
+		assertTrue(reader.read());
+		assertEquals(-1, in.read());
+	}
+
 	@Test
 	public void testSendCmdOk() throws IOException {
 		writer.sendCmdOk();
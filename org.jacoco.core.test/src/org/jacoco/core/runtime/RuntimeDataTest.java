@@ -18,7 +18,10 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 
 import org.jacoco.core.test.TargetLoader;
 import org.junit.Before;
@@ -100,6 +103,147 @@ public class RuntimeDataTest {
 		assertEquals("testsession", storage.getSessionInfo().getId());
 	}
 
+	@Test
+	public void testCollectDeltaInitial() {
+		data.setSessionId("testsession");
+		data.getExecutionData(Long.valueOf(123), "Foo", 2).getProbes()[1] = true;
+		data.getExecutionData(Long.valueOf(456), "Bar", 2);
+
+		data.collectDelta(storage, storage, 0);
+
+		storage.assertSize(1);
+		assertNotNull(storage.getData(123));
+		assertEquals("testsession", storage.getSessionInfo().getId());
+	}
+
+	@Test
+	public void testCollectDeltaOnlyNewHits() {
+		final boolean[] foo = data.getExecutionData(Long.valueOf(123), "Foo",
+				2).getProbes();
+		final boolean[] bar = data.getExecutionData(Long.valueOf(456), "Bar",
+				2).getProbes();
+		foo[0] = true;
+		bar[0] = true;
+		final long g1 = data.collectDelta(storage, storage, 0);
+		storage.assertSize(2);
+
+		storage = new TestStorage();
+		final long g2 = data.collectDelta(storage, storage, g1);
+		storage.assertSize(0);
+
+		bar[1] = true;
+		storage = new TestStorage();
+		final long g3 = data.collectDelta(storage, storage, g2);
+		storage.assertSize(1);
+		assertSame(bar, storage.getData(456).getProbes());
+		assertTrue(g1 < g2 && g2 < g3);
+	}
+
+	@Test
+	public void testCollectDeltaMultipleClients() {
+		final boolean[] foo = data.getExecutionData(Long.valueOf(123), "Foo",
+				2).getProbes();
+		final long clientA = data.collectDelta(storage, storage, 0);
+		foo[0] = true;
+		data.collectDelta(new TestStorage(), new TestStorage(), 0);
+
+		// the hit was reported to another client, but not to this one
+		data.collectDelta(storage, storage, clientA);
+		storage.assertSize(1);
+	}
+
+	@Test
+	public void testCollectDeltaUnknownGeneration() {
+		data.getExecutionData(Long.valueOf(123), "Foo", 1).getProbes()[0] = true;
+		final long g = data.collectDelta(storage, storage, 0);
+
+		storage = new TestStorage();
+		data.collectDelta(storage, storage, g + 100);
+
+		storage.assertSize(1);
+	}
+
+	@Test
+	public void testCollectDeltaAfterReset() {
+		final boolean[] foo = data.getExecutionData(Long.valueOf(123), "Foo",
+				1).getProbes();
+		foo[0] = true;
+		final long g = data.collectDelta(storage, storage, 0);
+		data.reset();
+		foo[0] = true;
+
+		storage = new TestStorage();
+		data.collectDelta(storage, storage, g);
+
+		storage.assertSize(1);
+	}
+
+	@Test
+	public void testGetExecutionDataManyClasses() {
+		for (int i = 0; i < 10000; i++) {
+			data.getExecutionData(Long.valueOf(i * 31L), "Foo" + i, 1)
+					.getProbes()[0] = true;
+		}
+		for (int i = 0; i < 10000; i++) {
+			assertTrue(data.getExecutionData(Long.valueOf(i * 31L),
+					"Foo" + i, 1).getProbes()[0]);
+		}
+
+		data.collect(storage, storage, true);
+
+		storage.assertSize(10000);
+		assertEquals("Foo42", storage.getData(42 * 31L).getName());
+		assertFalse(data.getExecutionData(Long.valueOf(42 * 31L), "Foo42", 1)
+				.getProbes()[0]);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testGetExecutionDataIncompatible() {
+		data.getExecutionData(Long.valueOf(123), "Foo", 1);
+		data.getExecutionData(Long.valueOf(123), "Foo", 2);
+	}
+
+	@Test
+	public void testGetExecutionDataConcurrent() throws Exception {
+		final int threads = 8;
+		final int classes = 2000;
+		final boolean[][][] results = new boolean[threads][classes][];
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			workers.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < classes; i++) {
+						results[thread][i] = data.getExecutionData(
+								Long.valueOf(i), "Foo" + i, 2).getProbes();
+					}
+				}
+			});
+		}
+		for (final Thread t : workers) {
+			t.start();
+		}
+		start.countDown();
+		for (final Thread t : workers) {
+			t.join();
+		}
+
+		for (int i = 0; i < classes; i++) {
+			for (int t = 1; t < threads; t++) {
+				assertSame(results[0][i], results[t][i]);
+			}
+		}
+		data.collect(storage, storage, false);
+		storage.assertSize(classes);
+	}
+
 	@Test
 	public void testEquals() {
 		assertTrue(data.equals(data));
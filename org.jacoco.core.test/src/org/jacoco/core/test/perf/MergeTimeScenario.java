@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.test.perf;
+
+import java.util.concurrent.Callable;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.test.TargetLoader;
+import org.jacoco.core.tools.MergeContext;
+
+/**
+ * Scenario to measure the time taken to merge the coverage of two versions of
+ * a class. Instruction fingerprints are compared with string signatures as
+ * reference.
+ */
+public class MergeTimeScenario extends TimedScenario {
+
+	private final Class<?> target;
+
+	private final int count;
+
+	protected MergeTimeScenario(Class<?> target, int count) {
+		super(String.format("merging %s classes with fingerprints",
+				Integer.valueOf(count)));
+		this.target = target;
+		this.count = count;
+	}
+
+	@Override
+	protected Callable<Void> getInstrumentedCallable() throws Exception {
+		return createCallable(true);
+	}
+
+	@Override
+	protected Callable<Void> getReferenceCallable() throws Exception {
+		return createCallable(false);
+	}
+
+	private Callable<Void> createCallable(final boolean fingerprints)
+			throws Exception {
+		final byte[] bytes = TargetLoader.getClassDataAsBytes(target);
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				final MergeContext context = new MergeContext();
+				for (int i = 0; i < count; i++) {
+					analyze(bytes, true, fingerprints, context);
+					analyze(bytes, false, fingerprints, context);
+				}
+				return null;
+			}
+		};
+	}
+
+	private void analyze(final byte[] bytes, final boolean onlyAnaly,
+			final boolean fingerprints, final MergeContext context)
+			throws Exception {
+		final CoverageBuilder builder = new CoverageBuilder(context);
+		builder.setOnlyAnaly(onlyAnaly);
+		builder.setFingerprints(fingerprints);
+		new Analyzer(new ExecutionDataStore(), builder).analyzeClass(bytes,
+				target.getName());
+	}
+}
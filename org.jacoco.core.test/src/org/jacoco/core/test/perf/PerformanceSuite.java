@@ -33,6 +33,8 @@ public class PerformanceSuite implements IPerfScenario {
 		new InstrumentationSizeSzenario(Target03.class).run(output);
 		new InstrumentationTimeScenario(Target03.class, 1000).run(output);
 		new AnalysisTimeScenario(Target03.class, 1000).run(output);
+		new MergeTimeScenario(Target03.class, 1000).run(output);
+		new RuntimeStartupScenario(200, 60000).run(output);
 	}
 
 	public static void main(String[] args) throws Exception {
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.test.perf;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Scenario to measure the time taken when many threads initialize instrumented
+ * classes at the same time, e.g. at application server startup. Every class
+ * requests its probe array through {@link RuntimeData#equals(Object)} like
+ * instrumented code does. A runtime which serializes all requests on a single
+ * {@link ExecutionDataStore} is used as reference.
+ */
+public class RuntimeStartupScenario extends TimedScenario {
+
+	private final int threads;
+
+	private final int classes;
+
+	private final Long[] ids;
+
+	private final String[] names;
+
+	protected RuntimeStartupScenario(final int threads, final int classes) {
+		super(String.format("initializing %s classes on %s threads",
+				Integer.valueOf(classes), Integer.valueOf(threads)));
+		this.threads = threads;
+		this.classes = classes;
+		this.ids = new Long[classes];
+		this.names = new String[classes];
+		for (int i = 0; i < classes; i++) {
+			ids[i] = Long.valueOf(i * 0x9E3779B97F4A7C15L);
+			names[i] = "Class" + i;
+		}
+	}
+
+	@Override
+	protected Callable<Void> getInstrumentedCallable() throws Exception {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				run(new RuntimeData());
+				return null;
+			}
+		};
+	}
+
+	@Override
+	protected Callable<Void> getReferenceCallable() throws Exception {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				run(new GlobalLockRuntimeData());
+				return null;
+			}
+		};
+	}
+
+	private void run(final Object runtime) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					// every thread initializes its share of the classes and
+					// requests some already initialized ones again
+					for (int i = offset; i < classes * 2; i += threads) {
+						final int c = i % classes;
+						runtime.equals(new Object[] { ids[c], names[c],
+								Integer.valueOf(4) });
+					}
+				}
+			};
+			workers[t].start();
+		}
+		start.countDown();
+		for (final Thread w : workers) {
+			w.join();
+		}
+	}
+
+	/**
+	 * Runtime data access through a single global lock.
+	 */
+	private static class GlobalLockRuntimeData {
+
+		private final ExecutionDataStore store = new ExecutionDataStore();
+
+		@Override
+		public boolean equals(final Object o) {
+			final Object[] args = (Object[]) o;
+			synchronized (store) {
+				args[0] = store.get((Long) args[0], (String) args[1],
+						((Integer) args[2]).intValue()).getProbes();
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+
+	}
+
+}
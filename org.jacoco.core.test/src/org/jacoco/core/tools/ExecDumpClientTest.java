@@ -12,28 +12,45 @@
  *******************************************************************************/
 package org.jacoco.core.tools;
 
+import static java.lang.String.format;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
 
 import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.runtime.IRemoteCommandVisitor;
+import org.jacoco.core.runtime.JarTransfer;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Unit tests for {@link ExecDumpClient}.
@@ -45,9 +62,16 @@ public class ExecDumpClientTest {
 
 	private boolean dumpRequested;
 	private boolean resetRequested;
+	private long generationRequested = -1;
+
+	private final List<Long> offsetsRequested = Collections
+			.synchronizedList(new ArrayList<Long>());
 
 	private ServerSocket server;
 
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
 	@Before
 	public void setup() {
 		callbacks = new ArrayList<String>();
@@ -128,6 +152,21 @@ public class ExecDumpClientTest {
 		assertTrue(resetRequested);
 	}
 
+	@Test
+	public void testDelta() throws IOException {
+		client.setDelta(true);
+		client.setGeneration(7);
+		int port = createExecServer();
+		ExecFileLoader loader = client.dump((String) null, port);
+		assertFalse(dumpRequested);
+		assertEquals(7, generationRequested);
+		assertEquals(8, client.getGeneration());
+
+		List<SessionInfo> infos = loader.getSessionInfoStore().getInfos();
+		assertEquals(1, infos.size());
+		assertEquals("TestId", infos.get(0).getId());
+	}
+
 	@Test
 	public void should_throw_IOException_when_server_closes_connection_without_response()
 			throws IOException {
@@ -140,6 +179,245 @@ public class ExecDumpClientTest {
 		}
 	}
 
+	@Test
+	public void downloadJar_should_write_verified_file() throws IOException {
+		final File jar = createJar(100000);
+		final File target = new File(folder.getRoot(), "download.jar");
+		int port = createDownloadServer(jar, -1);
+
+		client.downloadJar(InetAddress.getByName(null), port,
+				RemoteControlWriter.BLOCK_DOWNBBZX, target.getPath());
+
+		assertArrayEquals(content(jar), content(target));
+		assertEquals(Arrays.asList(Long.valueOf(0)), offsetsRequested);
+		assertFalse(new File(target.getPath() + ".part").exists());
+	}
+
+	@Test
+	public void downloadJar_should_resume_partial_file() throws IOException {
+		final File jar = createJar(100000);
+		final File target = new File(folder.getRoot(), "download.jar");
+		final OutputStream part = new FileOutputStream(
+				target.getPath() + ".part");
+		part.write(content(jar), 0, 30000);
+		part.close();
+		int port = createDownloadServer(jar, -1);
+
+		client.downloadJar(InetAddress.getByName(null), port,
+				RemoteControlWriter.BLOCK_DOWNBBZX, target.getPath());
+
+		assertArrayEquals(content(jar), content(target));
+		assertEquals(Arrays.asList(Long.valueOf(30000)), offsetsRequested);
+	}
+
+	@Test
+	public void downloadJar_should_restart_partial_file_of_changed_jar()
+			throws IOException {
+		final File jar = createJar(100000);
+		final File target = new File(folder.getRoot(), "download.jar");
+		final byte[] old = new byte[50000];
+		new Random(7).nextBytes(old);
+		final OutputStream part = new FileOutputStream(
+				target.getPath() + ".part");
+		part.write(old, 0, 30000);
+		part.close();
+		final DataOutputStream crc = new DataOutputStream(
+				new FileOutputStream(target.getPath() + ".part.crc"));
+		crc.writeLong(checksum(old));
+		crc.close();
+		int port = createDownloadServer(jar, -1);
+
+		client.downloadJar(InetAddress.getByName(null), port,
+				RemoteControlWriter.BLOCK_DOWNBBZX, target.getPath());
+
+		assertArrayEquals(content(jar), content(target));
+		assertEquals(Arrays.asList(Long.valueOf(30000)), offsetsRequested);
+		assertFalse(new File(target.getPath() + ".part").exists());
+		assertFalse(new File(target.getPath() + ".part.crc").exists());
+	}
+
+	@Test
+	public void downloadJar_should_store_checksum_of_partial_file()
+			throws IOException {
+		final File jar = createJar(100000);
+		final File target = new File(folder.getRoot(), "download.jar");
+		client.setRetryCount(0);
+		int port = createDownloadServer(jar, 40000);
+
+		try {
+			client.downloadJar(InetAddress.getByName(null), port,
+					RemoteControlWriter.BLOCK_DOWNBBZX, target.getPath());
+			fail("exception expected");
+		} catch (IOException e) {
+			// connection dropped
+		}
+
+		final DataInputStream crc = new DataInputStream(
+				new FileInputStream(target.getPath() + ".part.crc"));
+		assertEquals(checksum(content(jar)), crc.readLong());
+		crc.close();
+	}
+
+	@Test
+	public void downloadJar_should_resume_after_connection_loss()
+			throws IOException {
+		final File jar = createJar(100000);
+		final File target = new File(folder.getRoot(), "download.jar");
+		client.setRetryCount(1);
+		client.setRetryDelay(0);
+		int port = createDownloadServer(jar, 40000);
+
+		client.downloadJar(InetAddress.getByName(null), port,
+				RemoteControlWriter.BLOCK_DOWNBBZX, target.getPath());
+
+		assertArrayEquals(content(jar), content(target));
+		assertEquals(Arrays.asList(Long.valueOf(0), Long.valueOf(40000)),
+				offsetsRequested);
+		assertEquals(Arrays.asList("onConnecting", "onConnectionFailure",
+				"onConnecting"), callbacks);
+	}
+
+	@Test
+	public void downloadJar_should_delete_corrupt_file() throws IOException {
+		final File jar = createJar(1000);
+		final File target = new File(folder.getRoot(), "download.jar");
+		final File part = new File(target.getPath() + ".part");
+		final OutputStream out = new FileOutputStream(part);
+		out.write(new byte[500]);
+		out.close();
+		int port = createDownloadServer(jar, -1);
+
+		try {
+			client.downloadJar(InetAddress.getByName(null), port,
+					RemoteControlWriter.BLOCK_DOWNBBZX, target.getPath());
+			fail("exception expected");
+		} catch (IOException e) {
+			assertEquals(format("Checksum mismatch of downloaded file %s.",
+					target), e.getMessage());
+		}
+		assertFalse(part.exists());
+		assertFalse(target.exists());
+	}
+
+	@Test
+	public void downloadJar_should_fail_when_jar_not_available()
+			throws IOException {
+		final File target = new File(folder.getRoot(), "download.jar");
+		client.setRetryCount(3);
+		int port = createDownloadServer(null, -1);
+
+		try {
+			client.downloadJar(InetAddress.getByName(null), port,
+					RemoteControlWriter.BLOCK_DOWNBBZX, target.getPath());
+			fail("exception expected");
+		} catch (FileNotFoundException e) {
+			assertEquals("Jar of type 50 not available.", e.getMessage());
+		}
+		assertEquals(Arrays.asList("onConnecting"), callbacks);
+	}
+
+	private File createJar(final int size) throws IOException {
+		final byte[] content = new byte[size];
+		new Random(5).nextBytes(content);
+		final File file = folder.newFile("source.jar");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(content);
+		out.close();
+		return file;
+	}
+
+	private static long checksum(final byte[] content) {
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+		return crc.getValue();
+	}
+
+	private static byte[] content(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1024];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Serves downloads of the given file. If <code>dropAfter</code> is not
+	 * negative the first connection is closed after this number of bytes.
+	 */
+	private int createDownloadServer(final File jar, final long dropAfter)
+			throws IOException {
+		server = new ServerSocket(0, 0, InetAddress.getByName(null));
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					boolean drop = dropAfter >= 0;
+					while (true) {
+						final Socket socket = server.accept();
+						try {
+							handleDownload(socket, jar, drop ? dropAfter : -1);
+						} catch (IOException e) {
+							// dropped connection
+						}
+						drop = false;
+					}
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}).start();
+		return server.getLocalPort();
+	}
+
+	private void handleDownload(final Socket socket, final File jar,
+			final long dropAfter) throws IOException {
+		final OutputStream out = socket.getOutputStream();
+		final RemoteControlWriter writer = new RemoteControlWriter(out);
+		final RemoteControlReader reader = new RemoteControlReader(
+				socket.getInputStream());
+		reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+			public void visitDumpCommand(boolean dump, boolean reset) {
+				fail();
+			}
+
+			public void visitDeltaDumpCommand(long generation) {
+				fail();
+			}
+
+			public void visitDownloadCommand(byte artifact, long offset,
+					long checksum) throws IOException {
+				offsetsRequested.add(Long.valueOf(offset));
+				final JarTransfer transfer = JarTransfer.open(jar, offset,
+						checksum);
+				if (transfer == null) {
+					writer.sendDownloadHeader(-1, JarTransfer.UNKNOWN_CHECKSUM,
+							0);
+					writer.sendCmdOk();
+					return;
+				}
+				transfer.sendHeader(writer);
+				if (dropAfter >= 0) {
+					out.write(content(jar), (int) transfer.getOffset(),
+							(int) dropAfter);
+					transfer.close();
+					socket.close();
+					return;
+				}
+				transfer.transferTo(Channels.newChannel(out));
+				transfer.close();
+				writer.sendCmdOk();
+			}
+		});
+		try {
+			reader.read();
+		} finally {
+			socket.close();
+		}
+	}
+
 	private int getFreePort() throws IOException {
 		final ServerSocket server = new ServerSocket(0, 0,
 				InetAddress.getByName(null));
@@ -178,6 +456,19 @@ public class ExecDumpClientTest {
 				}
 				writer.sendCmdOk();
 			}
+
+			public void visitDeltaDumpCommand(long generation)
+					throws IOException {
+				generationRequested = generation;
+				writer.visitSessionInfo(new SessionInfo("TestId", 100, 200));
+				writer.sendDeltaGeneration(generation + 1);
+				writer.sendCmdOk();
+			}
+
+			public void visitDownloadCommand(byte artifact, long offset,
+					long checksum) {
+				fail();
+			}
 		});
 		reader.read();
 	}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.jacoco.core.data.CompressedExecutionDataWriter;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ExecFileIndex}.
+ */
+public class ExecFileIndexTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File createExecFile() throws IOException {
+		final File file = new File(folder.getRoot(), "jacoco.exec");
+		final OutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo("s1", 1, 2));
+		writer.visitClassExecution(new ExecutionData(0x30, "c/C",
+				new boolean[] { true, false }));
+		writer.visitClassExecution(new ExecutionData(0x10, "a/A",
+				new boolean[] { false, true, true }));
+		// a second dump appended to the same file
+		new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo("s2", 3, 4));
+		writer.visitClassExecution(new ExecutionData(0x30, "c/C",
+				new boolean[] { false, true }));
+		out.close();
+		return file;
+	}
+
+	@Test
+	public void fileFor_should_append_suffix() {
+		assertEquals(new File("a/jacoco.exec.cidx"),
+				ExecFileIndex.fileFor(new File("a/jacoco.exec")));
+	}
+
+	@Test
+	public void build_should_index_blocks_sorted_by_id() throws IOException {
+		final File file = createExecFile();
+
+		final ExecFileIndex index = ExecFileIndex.build(file);
+
+		assertEquals(3, index.getEntryCount());
+		assertEquals(0x10, index.getId(0));
+		assertEquals(0x30, index.getId(1));
+		assertEquals(0x30, index.getId(2));
+		assertTrue(index.getOffset(1) < index.getOffset(2));
+		assertEquals(0, index.find(0x10));
+		assertEquals(1, index.find(0x30));
+		assertEquals(-1, index.find(0x20));
+		assertEquals(-1, index.find(0x40));
+		assertEquals(2, index.getSessionInfos().size());
+		assertEquals("s2", index.getSessionInfos().get(1).getId());
+	}
+
+	@Test
+	public void write_should_be_readable() throws IOException {
+		final File file = createExecFile();
+		final ExecFileIndex index = ExecFileIndex.build(file);
+
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		index.write(buffer);
+		final ExecFileIndex copy = ExecFileIndex
+				.read(new ByteArrayInputStream(buffer.toByteArray()));
+
+		assertEquals(3, copy.getEntryCount());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(index.getId(i), copy.getId(i));
+			assertEquals(index.getOffset(i), copy.getOffset(i));
+			assertEquals(index.getLength(i), copy.getLength(i));
+		}
+		assertEquals("s1", copy.getSessionInfos().get(0).getId());
+		assertEquals(4, copy.getSessionInfos().get(1).getDumpTimeStamp());
+		assertTrue(copy.isUpToDate(file));
+	}
+
+	@Test
+	public void load_should_create_and_reuse_sidecar_file() throws IOException {
+		final File file = createExecFile();
+		final File indexFile = ExecFileIndex.fileFor(file);
+
+		ExecFileIndex.load(file);
+		assertTrue(indexFile.isFile());
+		final long written = indexFile.lastModified();
+		assertEquals(3, ExecFileIndex.load(file).getEntryCount());
+		assertEquals(written, indexFile.lastModified());
+	}
+
+	@Test
+	public void load_should_rebuild_stale_sidecar_file() throws IOException {
+		final File file = createExecFile();
+		ExecFileIndex.load(file);
+
+		final OutputStream out = new FileOutputStream(file, true);
+		new ExecutionDataWriter(out).visitClassExecution(
+				new ExecutionData(0x20, "b/B", new boolean[] { true }));
+		out.close();
+		assertFalse(ExecFileIndex.read(ExecFileIndex.fileFor(file))
+				.isUpToDate(file));
+
+		final ExecFileIndex index = ExecFileIndex.load(file);
+		assertEquals(4, index.getEntryCount());
+		assertEquals(1, index.find(0x20));
+		assertTrue(ExecFileIndex.read(ExecFileIndex.fileFor(file))
+				.isUpToDate(file));
+	}
+
+	@Test
+	public void build_should_fail_on_truncated_file() throws IOException {
+		final File file = new File(folder.getRoot(), "truncated.exec");
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		new ExecutionDataWriter(buffer).visitClassExecution(new ExecutionData(
+				0x10, "a/A", new boolean[] { true, false, true }));
+		final OutputStream out = new FileOutputStream(file);
+		out.write(buffer.toByteArray(), 0, buffer.size() - 1);
+		out.close();
+
+		try {
+			ExecFileIndex.build(file);
+			fail("IOException expected");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void build_should_fail_on_compressed_file() throws IOException {
+		final File file = new File(folder.getRoot(), "compressed.exec");
+		final OutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new CompressedExecutionDataWriter(
+				out);
+		writer.visitClassExecution(new ExecutionData(0x10, "a/A",
+				new boolean[] { true }));
+		writer.flush();
+		out.close();
+
+		try {
+			ExecFileIndex.build(file);
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Compressed execution data files can't be indexed.",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void isIndexable_should_return_true_for_uncompressed_file()
+			throws IOException {
+		assertTrue(ExecFileIndex.isIndexable(createExecFile()));
+	}
+
+	@Test
+	public void isIndexable_should_return_false_for_compressed_file()
+			throws IOException {
+		final File file = new File(folder.getRoot(), "compressed.exec");
+		final OutputStream out = new FileOutputStream(file);
+		new CompressedExecutionDataWriter(out).flush();
+		out.close();
+
+		assertFalse(ExecFileIndex.isIndexable(file));
+	}
+
+	@Test
+	public void isIndexable_should_return_true_for_empty_file()
+			throws IOException {
+		assertTrue(ExecFileIndex.isIndexable(folder.newFile("empty.exec")));
+	}
+
+	@Test(expected = IOException.class)
+	public void build_should_fail_on_invalid_file() throws IOException {
+		final File file = new File(folder.getRoot(), "invalid.exec");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(new byte[] { 0x11, 0x00 });
+		out.close();
+
+		ExecFileIndex.build(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void read_should_fail_on_invalid_header() throws IOException {
+		ExecFileIndex.read(new ByteArrayInputStream(new byte[] { 0x01, 0x00,
+				0x00, 0x00, 0x00 }));
+	}
+
+}
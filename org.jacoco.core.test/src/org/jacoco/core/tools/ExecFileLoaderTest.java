@@ -12,8 +12,11 @@
  *******************************************************************************/
 package org.jacoco.core.tools;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -21,6 +24,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.jacoco.core.data.ExecutionData;
@@ -79,6 +84,71 @@ public class ExecFileLoaderTest {
 		loader.load(file);
 	}
 
+	@Test
+	public void testLoadFilesParallel() throws IOException {
+		final List<File> files = new ArrayList<File>();
+		final ExecFileLoader expected = new ExecFileLoader();
+		for (int i = 0; i < 23; i++) {
+			final File file = new File(sourceFolder.getRoot(), i + ".exec");
+			final FileOutputStream out = new FileOutputStream(file);
+			final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+			// same dump time stamps, so the order of the files matters
+			writer.visitSessionInfo(new SessionInfo("s" + i, 1, i % 3));
+			for (int c = 0; c < 10; c++) {
+				final boolean[] probes = new boolean[c + 1];
+				probes[(i + c) % probes.length] = true;
+				writer.visitClassExecution(
+						new ExecutionData(c, "Class" + c, probes));
+			}
+			out.close();
+			files.add(file);
+			expected.load(file);
+		}
+
+		loader.load(files, 4);
+
+		final ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+		expected.save(expectedBytes);
+		final ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+		loader.save(actualBytes);
+		assertArrayEquals(expectedBytes.toByteArray(),
+				actualBytes.toByteArray());
+	}
+
+	@Test
+	public void testLoadFilesParallelIncompatible() throws IOException {
+		final List<File> files = new ArrayList<File>();
+		for (int i = 0; i < 8; i++) {
+			files.add(createFile("a"));
+		}
+		final File file = new File(sourceFolder.getRoot(), "other.exec");
+		final FileOutputStream out = new FileOutputStream(file);
+		new ExecutionDataWriter(out).visitClassExecution(
+				new ExecutionData(1, "a", new boolean[] { true, false }));
+		out.close();
+		files.add(file);
+
+		try {
+			loader.load(files, 3);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			assertEquals(
+					"Incompatible execution data for class a with id 0000000000000001.",
+					e.getMessage());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testLoadFilesParallelBrokenContent() throws IOException {
+		final File file = new File(sourceFolder.getRoot(), "broken.exec");
+		final FileWriter writer = new FileWriter(file);
+		writer.write("Invalid Content");
+		writer.close();
+
+		loader.load(Arrays.asList(createFile("a"), file, createFile("bb")),
+				3);
+	}
+
 	@Test
 	public void testSaveFile() throws IOException {
 		final File file = new File(sourceFolder.getRoot(), "target.exec");
@@ -104,6 +174,16 @@ public class ExecFileLoaderTest {
 		assertFileContents(file, "a", "bb");
 	}
 
+	@Test
+	public void testSaveFileCompressedAppend() throws IOException {
+		final File file = createFile("a");
+
+		loader.load(createFile("bb"));
+		loader.save(file, true, true);
+
+		assertFileContents(file, "a", "bb");
+	}
+
 	@Test
 	public void testCreateSubfolders() throws IOException {
 		final File file = new File(sourceFolder.getRoot(), "a/b/c/target.exec");
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MappedExecFileLoader}.
+ */
+public class MappedExecFileLoaderTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private MappedExecFileLoader loader;
+
+	@After
+	public void teardown() throws IOException {
+		if (loader != null) {
+			loader.close();
+		}
+	}
+
+	private File createFile(final String name, final ExecutionData... data)
+			throws IOException {
+		final File file = new File(folder.getRoot(), name);
+		final OutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo(name, 1, 2));
+		for (final ExecutionData d : data) {
+			writer.visitClassExecution(d);
+		}
+		out.close();
+		return file;
+	}
+
+	@Test
+	public void get_should_return_data_of_single_class() throws IOException {
+		loader = new MappedExecFileLoader();
+		loader.load(createFile("a.exec",
+				new ExecutionData(0x10, "a/A", new boolean[] { true, false }),
+				new ExecutionData(0x20, "b/B", new boolean[] { false })));
+
+		final ExecutionData data = loader.get(0x10);
+
+		assertEquals("a/A", data.getName());
+		assertArrayEquals(new boolean[] { true, false }, data.getProbes());
+		assertNull(loader.get(0x30));
+		assertEquals(1, loader.getSessionInfoStore().getInfos().size());
+	}
+
+	@Test
+	public void get_should_merge_blocks_of_all_files() throws IOException {
+		loader = new MappedExecFileLoader();
+		loader.load(createFile("a.exec",
+				new ExecutionData(0x10, "a/A",
+						new boolean[] { true, false, false }),
+				new ExecutionData(0x10, "a/A",
+						new boolean[] { false, false, true })));
+		loader.load(createFile("b.exec", new ExecutionData(0x10, "a/A",
+				new boolean[] { false, true, false })));
+
+		assertArrayEquals(new boolean[] { true, true, true },
+				loader.get(0x10).getProbes());
+		assertEquals(2, loader.getSessionInfoStore().getInfos().size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void get_should_fail_on_incompatible_blocks() throws IOException {
+		loader = new MappedExecFileLoader();
+		loader.load(createFile("a.exec",
+				new ExecutionData(0x10, "a/A", new boolean[] { true }),
+				new ExecutionData(0x10, "a/A", new boolean[] { true, true })));
+
+		loader.get(0x10);
+	}
+
+	@Test
+	public void get_should_read_blocks_across_segments() throws IOException {
+		final Random random = new Random(7);
+		final ExecutionData[] data = new ExecutionData[200];
+		final ExecutionDataStore expected = new ExecutionDataStore();
+		for (int i = 0; i < data.length; i++) {
+			final boolean[] probes = new boolean[random.nextInt(100) + 1];
+			for (int p = 0; p < probes.length; p++) {
+				probes[p] = random.nextBoolean();
+			}
+			// the writer skips classes without hits
+			probes[0] = true;
+			data[i] = new ExecutionData(random.nextLong(), "Class" + i,
+					probes);
+			expected.put(new ExecutionData(data[i].getId(), "Class" + i,
+					probes.clone()));
+		}
+		// tiny segments, so many blocks span two of them
+		loader = new MappedExecFileLoader(64);
+		loader.load(createFile("a.exec", data));
+
+		for (final ExecutionData e : expected.getContents()) {
+			final ExecutionData actual = loader.get(e.getId());
+			assertEquals(e.getName(), actual.getName());
+			assertArrayEquals(e.getProbes(), actual.getProbes());
+		}
+	}
+
+}
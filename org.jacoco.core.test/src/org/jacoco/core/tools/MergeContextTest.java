@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.internal.analysis.Instruction;
+import org.jacoco.core.internal.analysis.MethodInstructionIndex;
+import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.MethodInfoDto;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MergeContext}.
+ */
+public class MergeContextTest {
+
+	private MergeContext context;
+
+	@Before
+	public void setup() {
+		context = new MergeContext();
+	}
+
+	private static MethodInstructionIndex index(final long fingerprint) {
+		return new MethodInstructionIndex(
+				Collections.singletonList(new Instruction(1, fingerprint)));
+	}
+
+	private static MethodInfoDto method(final String name,
+			final String author) {
+		final MethodInfoDto dto = new MethodInfoDto();
+		dto.setMethodName(name);
+		dto.setAuthor(author);
+		return dto;
+	}
+
+	private static ClassInfoDto classInfo(final String classFile,
+			final MethodInfoDto... methods) {
+		final ClassInfoDto dto = new ClassInfoDto();
+		dto.setClassFile(classFile);
+		dto.setMethodInfos(methods == null ? null : Arrays.asList(methods));
+		return dto;
+	}
+
+	@Test
+	public void should_have_no_content_initially() {
+		assertFalse(context.hasMergeData());
+		assertFalse(context.hasClassInfos());
+		assertNull(context.getMethods("Foo"));
+		assertNull(context.getProbes("Foo"));
+		assertNull(context.getClassInfos());
+		assertNull(context.getClassInfo("Foo"));
+		assertNull(context.getMethodInfos("Foo"));
+	}
+
+	@Test
+	public void addMethod_should_group_methods_by_class() {
+		final MethodInstructionIndex m1 = index(1L);
+		final MethodInstructionIndex m2 = index(2L);
+
+		context.addMethod("Foo", "m1", m1);
+		context.addMethod("Foo", "m2", m2);
+
+		assertTrue(context.hasMergeData());
+		assertEquals(2, context.getMethods("Foo").size());
+		assertSame(m1, context.getMethods("Foo").get("m1"));
+		assertSame(m2, context.getMethods("Foo").get("m2"));
+	}
+
+	@Test
+	public void setProbes_should_remove_probes_when_null() {
+		final boolean[] probes = new boolean[] { true };
+		context.setProbes("Foo", probes);
+		assertSame(probes, context.getProbes("Foo"));
+
+		context.setProbes("Foo", null);
+
+		assertNull(context.getProbes("Foo"));
+	}
+
+	@Test
+	public void addAll_should_add_content_of_merge_index() {
+		final MergeIndex index = new MergeIndex();
+		index.addMethod(1, "Foo", new boolean[] { true, false }, "m",
+				index(1L));
+
+		context.addAll(index);
+
+		assertEquals(1, context.getMethods("Foo").size());
+		assertArrayEquals(new boolean[] { true, false },
+				context.getProbes("Foo"));
+	}
+
+	@Test
+	public void setClassInfos_should_ignore_classes_without_methods() {
+		context.setClassInfos(Arrays.asList(
+				classInfo("org/Foo", method("a", "alice"),
+						method("a", "bob"), method("b", null)),
+				classInfo("org/Bar", (MethodInfoDto[]) null)));
+
+		assertTrue(context.hasClassInfos());
+		assertEquals(1, context.getClassInfos().size());
+		assertEquals("org/Foo", context.getClassInfo("org/Foo").getClassFile());
+		assertNull(context.getClassInfo("org/Bar"));
+		assertEquals(2, context.getMethodInfos("org/Foo").get("a").size());
+		assertEquals("alice",
+				context.getMethodInfos("org/Foo").get("a").get(0).getAuthor());
+		assertNull(context.getMethodInfos("org/Bar"));
+	}
+
+	@Test
+	public void addMethod_should_be_thread_safe() throws Exception {
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t * 1000;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						context.addMethod("Foo", String.valueOf(offset + i),
+								index(i));
+					}
+				}
+			});
+		}
+		for (final Thread t : threads) {
+			t.start();
+		}
+		for (final Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(4000, context.getMethods("Foo").size());
+	}
+
+}
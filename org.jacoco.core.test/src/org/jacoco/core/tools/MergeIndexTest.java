@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.jacoco.core.internal.analysis.Instruction;
+import org.jacoco.core.internal.analysis.MethodInstructionIndex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MergeIndex}.
+ */
+public class MergeIndexTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static MethodInstructionIndex index(final long... fingerprints) {
+		final Instruction[] instructions = new Instruction[fingerprints.length];
+		for (int i = 0; i < fingerprints.length; i++) {
+			instructions[i] = new Instruction(1, fingerprints[i]);
+			instructions[i].setProbeIndex(i + 1);
+		}
+		return new MethodInstructionIndex(Arrays.asList(instructions));
+	}
+
+	private static MergeIndex createIndex() {
+		final MergeIndex index = new MergeIndex();
+		final boolean[] probes = new boolean[] { false, true, false };
+		index.addMethod(0x10, "foo/Bar", probes, "1m()V", index(1L, 2L));
+		index.addMethod(0x10, "foo/Bar", probes, "1n()V", index(3L));
+		index.addMethod(0x20, "foo/Baz", null, "1m()V", index(4L));
+		return index;
+	}
+
+	@Test
+	public void fileFor_should_append_suffix() {
+		assertEquals(new File("a/merged.exec.idx"),
+				MergeIndex.fileFor(new File("a/merged.exec")));
+	}
+
+	@Test
+	public void getInstructions_should_return_methods_by_class_name() {
+		final MergeIndex index = createIndex();
+
+		final Map<String, Map<String, MethodInstructionIndex>> instructions = index
+				.getInstructions();
+
+		assertEquals(2, index.getClassCount());
+		assertEquals(2, instructions.get("foo/Bar").size());
+		assertEquals(1, instructions.get("foo/Baz").size());
+	}
+
+	@Test
+	public void getProbes_should_skip_classes_without_probes() {
+		final Map<String, boolean[]> probes = createIndex().getProbes();
+
+		assertArrayEquals(new boolean[] { false, true, false },
+				probes.get("foo/Bar"));
+		assertFalse(probes.containsKey("foo/Baz"));
+	}
+
+	@Test
+	public void read_should_restore_written_index() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		createIndex().write(buffer);
+
+		final MergeIndex restored = new MergeIndex();
+		restored.read(new ByteArrayInputStream(buffer.toByteArray()));
+
+		assertEquals(2, restored.getClassCount());
+		final Map<String, MethodInstructionIndex> methods = restored
+				.getInstructions().get("foo/Bar");
+		assertTrue(methods.get("1m()V").matches(index(2L, 1L)));
+		assertTrue(methods.get("1n()V").matches(index(3L)));
+		assertEquals(1, methods.get("1m()V").getFirstProbe());
+		assertEquals(2, methods.get("1m()V").getLastProbe());
+		assertArrayEquals(new boolean[] { false, true, false },
+				restored.getProbes().get("foo/Bar"));
+		assertNull(restored.getProbes().get("foo/Baz"));
+	}
+
+	@Test
+	public void load_should_restore_saved_index() throws IOException {
+		final File file = new File(folder.getRoot(), "sub/merged.exec.idx");
+		createIndex().save(file);
+
+		final MergeIndex restored = new MergeIndex();
+		restored.load(file);
+
+		assertEquals(2, restored.getClassCount());
+	}
+
+	@Test
+	public void load_should_restore_exec_file_attributes() throws IOException {
+		final File execfile = folder.newFile("merged.exec");
+		execfile.setLastModified(1000000L);
+		final MergeIndex index = createIndex();
+		index.setExecFile(execfile);
+		index.save(MergeIndex.fileFor(execfile));
+
+		final MergeIndex restored = new MergeIndex();
+		restored.load(MergeIndex.fileFor(execfile));
+
+		assertTrue(restored.isUpToDate(execfile));
+		assertFalse(restored.isPartial());
+	}
+
+	@Test
+	public void isUpToDate_should_return_false_when_exec_file_changed()
+			throws IOException {
+		final File execfile = folder.newFile("merged.exec");
+		execfile.setLastModified(1000000L);
+		final MergeIndex index = createIndex();
+		index.setExecFile(execfile);
+
+		execfile.setLastModified(2000000L);
+
+		assertFalse(index.isUpToDate(execfile));
+	}
+
+	@Test
+	public void isUpToDate_should_return_false_without_exec_file()
+			throws IOException {
+		assertFalse(createIndex().isUpToDate(folder.newFile("merged.exec")));
+	}
+
+	@Test
+	public void read_should_restore_partial_flag() throws IOException {
+		final MergeIndex index = createIndex();
+		index.setPartial(true);
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		index.write(buffer);
+
+		final MergeIndex restored = new MergeIndex();
+		restored.read(new ByteArrayInputStream(buffer.toByteArray()));
+
+		assertTrue(restored.isPartial());
+	}
+
+	@Test(expected = IOException.class)
+	public void read_should_throw_IOException_for_invalid_header()
+			throws IOException {
+		new MergeIndex().read(new ByteArrayInputStream(new byte[] { 0x01,
+				(byte) 0xC0, (byte) 0xC0, 0x10, 0x07 }));
+	}
+
+	@Test(expected = IOException.class)
+	public void read_should_throw_IOException_for_unknown_block()
+			throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		new MergeIndex().write(buffer);
+		buffer.write(0x7F);
+
+		new MergeIndex().read(new ByteArrayInputStream(buffer.toByteArray()));
+	}
+
+	@Test
+	public void read_should_accept_empty_index() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		new MergeIndex().write(buffer);
+
+		final MergeIndex restored = new MergeIndex();
+		restored.read(new ByteArrayInputStream(buffer.toByteArray()));
+
+		assertEquals(0, restored.getClassCount());
+		assertTrue(restored.getInstructions().isEmpty());
+		assertEquals(Collections.emptyMap(), restored.getProbes());
+	}
+
+}
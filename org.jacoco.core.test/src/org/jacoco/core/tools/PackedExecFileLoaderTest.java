@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link PackedExecFileLoader}.
+ */
+public class PackedExecFileLoaderTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File createFile(final int index, final Random random)
+			throws IOException {
+		final File file = new File(folder.getRoot(), index + ".exec");
+		final FileOutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo("s" + index, 1, 2));
+		for (int c = 0; c < 20; c++) {
+			final boolean[] probes = new boolean[c * 7 + 1];
+			for (int p = 0; p < probes.length; p++) {
+				probes[p] = random.nextInt(5) == 0;
+			}
+			writer.visitClassExecution(
+					new ExecutionData(c, "Class" + c, probes));
+		}
+		out.close();
+		return file;
+	}
+
+	@Test
+	public void save_should_write_same_content_as_ExecFileLoader()
+			throws IOException {
+		final Random random = new Random(19);
+		final ExecFileLoader expected = new ExecFileLoader();
+		final PackedExecFileLoader packed = new PackedExecFileLoader();
+		for (int i = 0; i < 5; i++) {
+			final File file = createFile(i, random);
+			expected.load(file);
+			packed.load(file);
+		}
+
+		final ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+		expected.save(expectedBytes);
+		final ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+		packed.save(actualBytes);
+
+		assertArrayEquals(expectedBytes.toByteArray(),
+				actualBytes.toByteArray());
+	}
+
+	@Test
+	public void unpack_should_copy_content() throws IOException {
+		final Random random = new Random(23);
+		final File file = createFile(0, random);
+		final ExecFileLoader expected = new ExecFileLoader();
+		expected.load(file);
+		final PackedExecFileLoader packed = new PackedExecFileLoader();
+		packed.load(file);
+
+		final ExecFileLoader actual = new ExecFileLoader();
+		packed.unpack(actual);
+
+		assertEquals(expected.getSessionInfoStore().getInfos().size(),
+				actual.getSessionInfoStore().getInfos().size());
+		assertEquals(expected.getExecutionDataStore().getContents().size(),
+				actual.getExecutionDataStore().getContents().size());
+		for (final ExecutionData data : expected.getExecutionDataStore()
+				.getContents()) {
+			assertArrayEquals(data.getProbes(), actual.getExecutionDataStore()
+					.get(data.getId()).getProbes());
+		}
+	}
+
+	@Test
+	public void save_should_create_file() throws IOException {
+		final File file = createFile(0, new Random(29));
+		final PackedExecFileLoader packed = new PackedExecFileLoader();
+		packed.load(file);
+		final File target = new File(folder.getRoot(), "a/b/merged.exec");
+
+		packed.save(target, false);
+
+		final ExecFileLoader expected = new ExecFileLoader();
+		expected.load(file);
+		final ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+		expected.save(expectedBytes);
+		final InputStream in = new FileInputStream(target);
+		final ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1) {
+			actualBytes.write(b);
+		}
+		in.close();
+		assertArrayEquals(expectedBytes.toByteArray(),
+				actualBytes.toByteArray());
+	}
+
+}
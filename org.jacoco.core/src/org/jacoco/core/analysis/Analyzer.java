@@ -16,8 +16,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
@@ -33,12 +41,13 @@ import org.jacoco.core.internal.analysis.ClassCoverageImpl;
 import org.jacoco.core.internal.analysis.Instruction;
 import org.jacoco.core.internal.analysis.StringPool;
 import org.jacoco.core.internal.data.CRC64;
-import org.jacoco.core.internal.diff.ClassInfoDto;
-import org.jacoco.core.internal.diff.CodeDiffUtil;
+import org.jacoco.core.internal.diff.CodeDiffIndex;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
 import org.jacoco.core.internal.instr.InstrSupport;
-import org.jacoco.core.internal.instr.ProbeArrayStrategyFactory;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.MappedExecFileLoader;
+import org.jacoco.core.tools.MergeContext;
+import org.jacoco.core.tools.MergeIndex;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Opcodes;
@@ -64,7 +73,16 @@ public class Analyzer {
 
 	private final StringPool stringPool;
 
-	private List<ClassInfoDto> classInfos;
+	private MergeIndex mergeIndex;
+
+	private MergeContext mergeContext;
+
+	private MappedExecFileLoader executionDataSource;
+
+	private int threads = 1;
+
+	/** Parallel analysis in progress or <code>null</code> */
+	private volatile ParallelAnalysis parallel;
 
 	/**
 	 * Creates a new analyzer reporting to the given output.
@@ -82,6 +100,36 @@ public class Analyzer {
 		this.stringPool = new StringPool();
 	}
 
+	/**
+	 * Sets the number of threads used to analyze class files. With more than
+	 * one thread the <code>analyzeAll()</code> methods read files and archive
+	 * entries on I/O threads and analyze the classes on a work-stealing pool.
+	 * The calls to the {@link ICoverageVisitor} are serialized in this case,
+	 * but may happen on any thread and in any order. Every
+	 * <code>analyzeAll()</code> call returns after all classes found have been
+	 * analyzed. The default is <code>1</code>, i.e. all classes are analyzed
+	 * on the calling thread.
+	 *
+	 * @param threads
+	 *            number of analysis threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets a source for execution data which is not contained in the
+	 * execution data store. The data of a class is read from the source when
+	 * the class is analyzed and added to the store, so only the execution data
+	 * of analyzed classes is ever held in memory.
+	 *
+	 * @param source
+	 *            mapped exec files or <code>null</code>
+	 */
+	public void setExecutionDataSource(final MappedExecFileLoader source) {
+		this.executionDataSource = source;
+	}
+
 	/**
 	 * Creates an ASM class visitor for analysis.
 	 *
@@ -89,36 +137,82 @@ public class Analyzer {
 	 *            id of the class calculated with {@link CRC64}
 	 * @param className
 	 *            VM name of the class
+	 * @param diffClass
+	 *            changed class of an incremental report or <code>null</code>
 	 * @return ASM visitor to write class definition to
 	 */
 	private ClassVisitor createAnalyzingVisitor(final long classid,
-			final String className, boolean onlyAnaly,ClassReader reader) {
-		final ExecutionData data = executionData.get(classid);
-		final boolean[] probes;
-		final boolean noMatch;
-		if (data == null) {
-			int probeCount = ProbeArrayStrategyFactory.getProbeCounter(reader).getCount();
-			probes = new boolean[probeCount];
-			ExecutionData addEmptyExecutionData=new ExecutionData(classid,className,probes);
-			executionData.put(addEmptyExecutionData);
-			noMatch = false;
-		} else {
-			probes = data.getProbes();
-			noMatch = false;
-		}
+			final String className, boolean onlyAnaly, boolean fingerprints,
+			final CodeDiffIndex.ClassEntry diffClass) {
+		final ExecutionData data = getExecutionData(classid);
+		// 没有执行数据的类不再预先遍历类计算探针数量，也不往store中放空数据，
+		// 只有合并到老版本的命中时ClassAnalyzer才分配探针数组
+		final boolean[] probes = data == null ? null : data.getProbes();
+		final boolean noMatch = false;
 		final ClassCoverageImpl coverage = new ClassCoverageImpl(className, classid, noMatch);
-		final ClassAnalyzer analyzer = new ClassAnalyzer(coverage, probes, stringPool, this.classInfos, onlyAnaly) {
+		final ClassAnalyzer analyzer = new ClassAnalyzer(coverage, probes, stringPool, diffClass, onlyAnaly, fingerprints) {
 			@Override
 			public void visitEnd() {
 				super.visitEnd();
+				if (data == null && getProbes() != null) {
+					putExecutionData(new ExecutionData(classid, className,
+							getProbes()));
+				}
 				// class级别的覆盖率，把instructions的覆盖率写入行SourceNodeImpl的行覆盖率，
 				// 在生成报告时候通过指令行的覆盖率来染色
-				coverageVisitor.visitCoverage(coverage);
+				visitCoverage(coverage);
 			}
 		};
+		analyzer.setMergeIndex(mergeIndex);
+		analyzer.setMergeContext(mergeContext);
 		return new ClassProbesAdapter(analyzer, false);
 	}
 
+	// 并行分析时执行数据和覆盖率结果会被多个线程访问，需要加锁
+	private ExecutionData getExecutionData(final long classid) {
+		if (parallel == null) {
+			return lookupExecutionData(classid);
+		}
+		synchronized (executionData) {
+			return lookupExecutionData(classid);
+		}
+	}
+
+	private ExecutionData lookupExecutionData(final long classid) {
+		ExecutionData data = executionData.get(classid);
+		if (data == null && executionDataSource != null) {
+			try {
+				data = executionDataSource.get(classid);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (data != null) {
+				executionData.put(data);
+			}
+		}
+		return data;
+	}
+
+	private void putExecutionData(final ExecutionData data) {
+		if (parallel == null) {
+			executionData.put(data);
+			return;
+		}
+		synchronized (executionData) {
+			executionData.put(data);
+		}
+	}
+
+	private void visitCoverage(final IClassCoverage coverage) {
+		if (parallel == null) {
+			coverageVisitor.visitCoverage(coverage);
+			return;
+		}
+		synchronized (coverageVisitor) {
+			coverageVisitor.visitCoverage(coverage);
+		}
+	}
+
 	private void analyzeClass(final byte[] source) {
 		final long classId = CRC64.classId(source);
 		final ClassReader reader = InstrSupport.classReaderFor(source);
@@ -129,16 +223,23 @@ public class Analyzer {
 			return;
 		}
 		boolean isOnlyAnaly = false;
+		boolean fingerprints = false;
+		CodeDiffIndex diffIndex = null;
 		if (this.coverageVisitor instanceof CoverageBuilder) {
-			this.classInfos = ((CoverageBuilder) this.coverageVisitor)
-					.getClassInfos();
+			diffIndex = ((CoverageBuilder) this.coverageVisitor)
+					.getDiffIndex();
 			isOnlyAnaly = ((CoverageBuilder) this.coverageVisitor).onlyAnaly;
+			fingerprints = ((CoverageBuilder) this.coverageVisitor).fingerprints;
+			this.mergeIndex = ((CoverageBuilder) this.coverageVisitor).mergeIndex;
+			this.mergeContext = ((CoverageBuilder) this.coverageVisitor)
+					.getMergeContext();
 		}
 		// 字段不为空说明是增量覆盖
-		if (null != this.classInfos && !this.classInfos.isEmpty()) {
-			// 如果没有匹配到增量代码就无需解析类
-			if (!CodeDiffUtil.checkClassIn(reader.getClassName(),
-					this.classInfos)) {
+		CodeDiffIndex.ClassEntry diffClass = null;
+		if (null != diffIndex && !diffIndex.isEmpty()) {
+			// 如果没有匹配到增量代码就无需解析类，匹配到的变更类交给ClassAnalyzer过滤方法
+			diffClass = diffIndex.getClassEntry(reader.getClassName());
+			if (null == diffClass) {
 				return;
 			}
 		}
@@ -146,7 +247,7 @@ public class Analyzer {
 		// visitEnd钩子方法里面实现的是coverageVisitor.visitCoverage(coverage);
 		// 所以先走的ClassAnalyzer的方法，在ClassAnalyzer调用visitEnd的时候调用coverageVisitor.visitCoverage(coverage);
 		// ClassAnalyzer的CoverageBuilder builder最终分析指令覆盖级别信息，再推理方法更大的级别
-		final ClassVisitor visitor = createAnalyzingVisitor(classId,reader.getClassName(), isOnlyAnaly,reader);
+		final ClassVisitor visitor = createAnalyzingVisitor(classId,reader.getClassName(), isOnlyAnaly, fingerprints, diffClass);
 		// 重点，开始解析类里面的方法，逐个方法遍历
 		reader.accept(visitor, 0);
 	}
@@ -217,6 +318,20 @@ public class Analyzer {
 	 */
 	public int analyzeAll(final InputStream input, final String location)
 			throws IOException {
+		if (threads > 1 && parallel == null) {
+			final ParallelAnalysis analysis = new ParallelAnalysis();
+			try {
+				analysis.run(input, location);
+				return analysis.await();
+			} finally {
+				analysis.shutdown();
+			}
+		}
+		return analyzeStream(input, location);
+	}
+
+	private int analyzeStream(final InputStream input, final String location)
+			throws IOException {
 		final ContentTypeDetector detector;
 		try {
 			detector = new ContentTypeDetector(input);
@@ -226,7 +341,11 @@ public class Analyzer {
 		switch (detector.getType()) {
 		// 编译后的类
 		case ContentTypeDetector.CLASSFILE:
-			analyzeClass(detector.getInputStream(), location);
+			if (parallel != null) {
+				parallel.submitClass(detector.getInputStream(), location);
+			} else {
+				analyzeClass(detector.getInputStream(), location);
+			}
 			return 1;
 		case ContentTypeDetector.ZIPFILE:
 			return analyzeZip(detector.getInputStream(), location);
@@ -251,6 +370,9 @@ public class Analyzer {
 	 *             if the file can't be read or a class can't be analyzed
 	 */
 	public int analyzeAll(final File file) throws IOException {
+		if (threads > 1 && parallel == null) {
+			return analyzeAll(Collections.singletonList(file));
+		}
 		int count = 0;
 		// 如果是文件夹递归找到文件再进行解析
 		if (file.isDirectory()) {
@@ -269,6 +391,38 @@ public class Analyzer {
 		return count;
 	}
 
+	/**
+	 * Analyzes all class files contained in the given files or folders. Class
+	 * files as well as ZIP files are considered. Folders are searched
+	 * recursively. With more than one thread all files are processed
+	 * concurrently.
+	 *
+	 * @param files
+	 *            files or folders to look for class files
+	 * @return number of class files found
+	 * @throws IOException
+	 *             if a file can't be read or a class can't be analyzed
+	 * @see #setThreads(int)
+	 */
+	public int analyzeAll(final Collection<File> files) throws IOException {
+		if (threads <= 1 || parallel != null) {
+			int count = 0;
+			for (final File file : files) {
+				count += analyzeAll(file);
+			}
+			return count;
+		}
+		final ParallelAnalysis analysis = new ParallelAnalysis();
+		try {
+			for (final File file : files) {
+				analysis.submitFile(file);
+			}
+			return analysis.await();
+		} finally {
+			analysis.shutdown();
+		}
+	}
+
 	/**
 	 * Analyzes all classes from the given class path. Directories containing
 	 * class files as well as archive files are considered.
@@ -285,13 +439,13 @@ public class Analyzer {
 	 */
 	public int analyzeAll(final String path, final File basedir)
 			throws IOException {
-		int count = 0;
 		final StringTokenizer st = new StringTokenizer(path,
 				File.pathSeparator);
+		final List<File> files = new ArrayList<File>();
 		while (st.hasMoreTokens()) {
-			count += analyzeAll(new File(basedir, st.nextToken()));
+			files.add(new File(basedir, st.nextToken()));
 		}
-		return count;
+		return analyzeAll(files);
 	}
 
 	private int analyzeZip(final InputStream input, final String location)
@@ -300,7 +454,7 @@ public class Analyzer {
 		ZipEntry entry;
 		int count = 0;
 		while ((entry = nextEntry(zip, location)) != null) {
-			count += analyzeAll(zip, location + "@" + entry.getName());
+			count += analyzeStream(zip, location + "@" + entry.getName());
 		}
 		return count;
 	}
@@ -322,7 +476,7 @@ public class Analyzer {
 		} catch (final IOException e) {
 			throw analyzerError(location, e);
 		}
-		return analyzeAll(gzipInputStream, location);
+		return analyzeStream(gzipInputStream, location);
 	}
 
 	private int analyzePack200(final InputStream input, final String location)
@@ -333,7 +487,171 @@ public class Analyzer {
 		} catch (final IOException e) {
 			throw analyzerError(location, e);
 		}
-		return analyzeAll(unpackedInput, location);
+		return analyzeStream(unpackedInput, location);
+	}
+
+
+	/**
+	 * A single parallel <code>analyzeAll()</code> call. Files and archive
+	 * entries are read on a fixed I/O pool, the classes are analyzed on a
+	 * work-stealing pool. The number of class buffers waiting for analysis is
+	 * bounded, so reading never runs far ahead of the analysis.
+	 */
+	private final class ParallelAnalysis {
+
+		private final ExecutorService io;
+
+		private final ForkJoinPool workers;
+
+		private final Semaphore window;
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		private int pending;
+
+		private IOException failure;
+
+		ParallelAnalysis() {
+			io = Executors.newFixedThreadPool(Math.min(threads, 4),
+					new ThreadFactory() {
+						private final AtomicInteger id = new AtomicInteger();
+
+						public Thread newThread(final Runnable r) {
+							final Thread thread = new Thread(r,
+									"jacoco-analyzer-io-" + id.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			workers = new ForkJoinPool(threads);
+			window = new Semaphore(threads * 16);
+			parallel = this;
+		}
+
+		/**
+		 * Reads the given input on the calling thread and analyzes the
+		 * contained classes on the pool.
+		 */
+		void run(final InputStream input, final String location)
+				throws IOException {
+			count.addAndGet(analyzeStream(input, location));
+		}
+
+		void submitFile(final File file) {
+			submit(io, () -> {
+				if (failed()) {
+					return;
+				}
+				if (file.isDirectory()) {
+					for (final File f : file.listFiles()) {
+						submitFile(f);
+					}
+				} else {
+					final InputStream in = new FileInputStream(file);
+					try {
+						count.addAndGet(analyzeStream(in, file.getPath()));
+					} finally {
+						in.close();
+					}
+				}
+			});
+		}
+
+		void submitClass(final InputStream input, final String location)
+				throws IOException {
+			final byte[] buffer;
+			try {
+				buffer = InputStreams.readFully(input);
+			} catch (final IOException e) {
+				throw analyzerError(location, e);
+			}
+			window.acquireUninterruptibly();
+			final boolean submitted = submit(workers, () -> {
+				try {
+					if (!failed()) {
+						analyzeClass(buffer, location);
+					}
+				} finally {
+					window.release();
+				}
+			});
+			if (!submitted) {
+				window.release();
+			}
+		}
+
+		private boolean submit(final Executor executor, final Task task) {
+			synchronized (this) {
+				if (failure != null) {
+					return false;
+				}
+				pending++;
+			}
+			executor.execute(() -> {
+				try {
+					task.run();
+				} catch (final IOException e) {
+					fail(e);
+				} catch (final RuntimeException e) {
+					fail(analyzerError("class files", e));
+				} finally {
+					done();
+				}
+			});
+			return true;
+		}
+
+		private synchronized boolean failed() {
+			return failure != null;
+		}
+
+		private synchronized void fail(final IOException e) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+
+		private synchronized void done() {
+			if (--pending == 0) {
+				notifyAll();
+			}
+		}
+
+		/**
+		 * Waits until all submitted files and classes have been processed.
+		 *
+		 * @return number of class files found
+		 */
+		synchronized int await() throws IOException {
+			boolean interrupted = false;
+			while (pending > 0) {
+				try {
+					wait();
+				} catch (final InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return count.get();
+		}
+
+		void shutdown() {
+			parallel = null;
+			io.shutdown();
+			workers.shutdown();
+		}
+
+	}
+
+	private interface Task {
+
+		void run() throws IOException;
+
 	}
 
 }
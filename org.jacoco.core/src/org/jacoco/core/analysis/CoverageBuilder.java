@@ -12,18 +12,18 @@
  *******************************************************************************/
 package org.jacoco.core.analysis;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import javafx.scene.Group;
+import com.google.gson.JsonSyntaxException;
 import org.jacoco.core.internal.analysis.BundleCoverageImpl;
 import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
 import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.CodeDiffIndex;
 import org.jacoco.core.internal.diff.JsonReadUtil;
-import org.jacoco.core.internal.diff.MethodInfoDto;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.MergeContext;
+import org.jacoco.core.tools.MergeIndex;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Builder for hierarchical {@link ICoverageNode} structures from single
@@ -60,35 +60,96 @@ public class CoverageBuilder implements ICoverageVisitor {
 
 	public boolean onlyAnaly = false;
 
+	public boolean isFingerprints() {
+		return fingerprints;
+	}
+
+	public void setFingerprints(boolean fingerprints) {
+		this.fingerprints = fingerprints;
+	}
+
+	/**
+	 * 指纹模式，合并时用64位指令指纹代替字符串签名，减少内存占用
+	 */
+	public boolean fingerprints = false;
+
+	public MergeIndex getMergeIndex() {
+		return mergeIndex;
+	}
+
+	public void setMergeIndex(MergeIndex mergeIndex) {
+		this.mergeIndex = mergeIndex;
+	}
+
+	/**
+	 * 合并索引，不为空时在指纹模式下记录合并后每个方法的指令索引
+	 */
+	public MergeIndex mergeIndex;
+
+	/**
+	 * 合并及增量上下文，在分析和生成报告之间共享
+	 */
+	private final MergeContext mergeContext;
+
+	private CodeDiffIndex diffIndex;
+
+	private List<ClassInfoDto> diffIndexSource;
+
 	/**
 	 * Create a new builder.
 	 */
 	public CoverageBuilder() {
+		this(new MergeContext());
+	}
+
+	/**
+	 * Create a new builder which uses the given context.
+	 *
+	 * @param mergeContext
+	 *            context of the report job
+	 */
+	public CoverageBuilder(final MergeContext mergeContext) {
 		this.classes = new HashMap<String, IClassCoverage>();
 		this.sourcefiles = new HashMap<String, ISourceFileCoverage>();
+		this.mergeContext = mergeContext;
 	}
 
 	public CoverageBuilder(String classList) {
-		this.classes = new HashMap<String, IClassCoverage>();
-		this.sourcefiles = new HashMap<String, ISourceFileCoverage>();
+		this(classList, new MergeContext());
+	}
+
+	/**
+	 * Create a new builder for an incremental report which uses the given
+	 * context.
+	 *
+	 * @param classList
+	 *            changed classes as JSON
+	 * @param mergeContext
+	 *            context of the report job, receives the changed classes
+	 */
+	public CoverageBuilder(String classList, final MergeContext mergeContext) {
+		this(mergeContext);
 		if (null != classList && !"".equals(classList)) {
-			Gson gson = new Gson();
-			classInfos = gson.fromJson(classList,
-					new TypeToken<List<ClassInfoDto>>() {
-					}.getType());
-			Map<String, Map<String, List<MethodInfoDto>>> map = new HashMap<>();
-			classInfos=classInfos.stream().filter(i->i.getMethodInfos()!=null).collect(Collectors.toList());
-			for (ClassInfoDto dto : classInfos) {
-				Map<String, List<MethodInfoDto>> methodInfoMap = dto
-						.getMethodInfos().stream().collect(Collectors
-								.groupingBy(MethodInfoDto::getMethodName));
-				map.put(dto.getClassFile(), methodInfoMap);
+			final List<ClassInfoDto> list;
+			try {
+				list = JsonReadUtil.readClassInfos(new StringReader(classList));
+			} catch (IOException e) {
+				throw new JsonSyntaxException(e);
 			}
-			ExecFileLoader.classInfoDto.set(classInfos);
-			ExecFileLoader.classInfo.set(map);
+			mergeContext.setClassInfos(list);
+			classInfos = mergeContext.getClassInfos();
 		}
 	}
 
+	/**
+	 * Returns the context of the report job.
+	 *
+	 * @return merge and diff context
+	 */
+	public MergeContext getMergeContext() {
+		return mergeContext;
+	}
+
 	public List<ClassInfoDto> getClassInfos() {
 		return classInfos;
 	}
@@ -97,6 +158,25 @@ public class CoverageBuilder implements ICoverageVisitor {
 		this.classInfos = classInfos;
 	}
 
+	/**
+	 * Returns the lookup index over the changed classes of an incremental
+	 * report. The index is built once for the current changed classes.
+	 *
+	 * @return index of the changed classes, empty for a full report
+	 */
+	public synchronized CodeDiffIndex getDiffIndex() {
+		final List<ClassInfoDto> infos = classInfos;
+		if (infos != null && infos == mergeContext.getClassInfos()) {
+			return mergeContext.getDiffIndex();
+		}
+		// classInfos可能被直接赋值，列表变化时重建索引
+		if (diffIndex == null || diffIndexSource != infos) {
+			diffIndex = new CodeDiffIndex(infos);
+			diffIndexSource = infos;
+		}
+		return diffIndex;
+	}
+
 	/**
 	 * Returns all class nodes currently contained in this builder.
 	 *
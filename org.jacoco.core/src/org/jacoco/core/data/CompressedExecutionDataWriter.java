@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Serialization of execution data into the compressed variant of the binary
+ * format. The header carries
+ * {@link ExecutionDataWriter#COMPRESSED_FORMAT_VERSION}. Session infos and
+ * execution data are collected into blocks which are written deflated as
+ * {@link ExecutionDataWriter#BLOCK_COMPRESSED}:
+ *
+ * <pre>
+ * BLOCK_COMPRESSED  varint uncompressed length
+ *                   varint compressed length
+ *                   deflated records
+ * </pre>
+ *
+ * Inside a block session infos are stored as in the uncompressed format. For
+ * execution data the class name is replaced by an index into a string table
+ * which spans the whole stream until the next header: an index equal to the
+ * current table size is followed by the name which is appended to the table.
+ * So every class name is written once only, even if the class is contained in
+ * many sessions.
+ * <p>
+ * The last block is written on {@link #flush()}, which therefore must be
+ * called before the underlying stream is closed.
+ */
+public class CompressedExecutionDataWriter extends ExecutionDataWriter {
+
+	/** Default number of uncompressed bytes collected for a block. */
+	public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+	/**
+	 * Maximum number of uncompressed bytes of a block accepted by
+	 * {@link ExecutionDataReader}. Larger lengths are treated as corrupt data.
+	 */
+	public static final int MAX_BLOCK_LENGTH = 64 * 1024 * 1024;
+
+	private final int blockSize;
+
+	private final ByteArrayOutputStream buffer;
+
+	private final CompactDataOutput block;
+
+	private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+	/**
+	 * Creates a new writer based on the given output stream with the default
+	 * block size.
+	 *
+	 * @param output
+	 *            binary stream to write execution data to
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public CompressedExecutionDataWriter(final OutputStream output)
+			throws IOException {
+		this(output, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a new writer based on the given output stream.
+	 *
+	 * @param output
+	 *            binary stream to write execution data to
+	 * @param blockSize
+	 *            number of uncompressed bytes after which a block is written,
+	 *            at most half of {@link #MAX_BLOCK_LENGTH} to leave room for
+	 *            the class which completes a block
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public CompressedExecutionDataWriter(final OutputStream output,
+			final int blockSize) throws IOException {
+		super(output, COMPRESSED_FORMAT_VERSION);
+		if (blockSize > MAX_BLOCK_LENGTH / 2) {
+			throw new IllegalArgumentException(
+					"Block size must not exceed " + MAX_BLOCK_LENGTH / 2 + ".");
+		}
+		this.blockSize = blockSize;
+		this.buffer = new ByteArrayOutputStream(blockSize + 1024);
+		this.block = new CompactDataOutput(buffer);
+	}
+
+	/**
+	 * Writes the pending block and flushes the underlying stream.
+	 *
+	 * @throws IOException
+	 *             if the underlying stream can't be written
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeBlock();
+		super.flush();
+	}
+
+	@Override
+	public void visitSessionInfo(final SessionInfo info) {
+		try {
+			block.writeByte(BLOCK_SESSIONINFO);
+			block.writeUTF(info.getId());
+			block.writeLong(info.getStartTimeStamp());
+			block.writeLong(info.getDumpTimeStamp());
+			blockWritten();
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void visitClassExecution(final ExecutionData data) {
+		if (data.hasHits()) {
+			try {
+				writeClassHeader(data.getId(), data.getName());
+				block.writeBooleanArray(data.getProbes());
+				blockWritten();
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	@Override
+	public void visitPackedClassExecution(final PackedExecutionData data) {
+		if (data.hasHits()) {
+			try {
+				writeClassHeader(data.getId(), data.getName());
+				block.writePackedBooleanArray(data.getProbeCount(),
+						data.getWords());
+				blockWritten();
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private void writeClassHeader(final long id, final String name)
+			throws IOException {
+		block.writeByte(BLOCK_EXECUTIONDATA);
+		block.writeLong(id);
+		final Integer index = names.get(name);
+		if (index == null) {
+			final int next = names.size();
+			names.put(name, Integer.valueOf(next));
+			block.writeVarInt(next);
+			block.writeUTF(name);
+		} else {
+			block.writeVarInt(index.intValue());
+		}
+	}
+
+	private void blockWritten() throws IOException {
+		if (buffer.size() >= blockSize) {
+			writeBlock();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		if (buffer.size() == 0) {
+			return;
+		}
+		block.flush();
+		final byte[] content = buffer.toByteArray();
+		buffer.reset();
+		final Deflater deflater = new Deflater();
+		try {
+			deflater.setInput(content);
+			deflater.finish();
+			final ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+					content.length / 4 + 64);
+			final byte[] chunk = new byte[8 * 1024];
+			while (!deflater.finished()) {
+				compressed.write(chunk, 0, deflater.deflate(chunk));
+			}
+			out.writeByte(BLOCK_COMPRESSED);
+			out.writeVarInt(content.length);
+			out.writeVarInt(compressed.size());
+			compressed.writeTo(out);
+		} finally {
+			deflater.end();
+		}
+	}
+
+}
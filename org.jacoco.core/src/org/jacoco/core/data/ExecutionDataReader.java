@@ -15,9 +15,14 @@ package org.jacoco.core.data;
 import static java.lang.String.format;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import org.jacoco.core.internal.data.CompactDataInput;
 import org.jacoco.core.internal.data.CompactDataOutput;
+import org.jacoco.core.runtime.JarTransfer;
 import org.jacoco.core.runtime.RemoteControlWriter;
 
 /**
@@ -25,6 +30,15 @@ import org.jacoco.core.runtime.RemoteControlWriter;
  */
 public class ExecutionDataReader {
 
+	/** Deflate can't compress data by more than this factor. */
+	private static final int MAX_DEFLATE_RATIO = 1032;
+
+	/** Upper bound of the bytes deflate adds to incompressible data. */
+	private static final int MAX_DEFLATE_OVERHEAD = 64;
+
+	/** Bytes allocated at once while reading a compressed block. */
+	private static final int READ_CHUNK = 64 * 1024;
+
 	/**
 	 * Underlying data input
 	 */
@@ -34,8 +48,12 @@ public class ExecutionDataReader {
 
 	private IExecutionDataVisitor executionDataVisitor = null;
 
+	private IPackedExecutionDataVisitor packedExecutionDataVisitor = null;
+
 	private boolean firstBlock = true;
 
+	private final List<String> names = new ArrayList<String>();
+
 	private CompactDataOutput out;
 
 	/**
@@ -76,6 +94,20 @@ public class ExecutionDataReader {
 		this.executionDataVisitor = visitor;
 	}
 
+	/**
+	 * Sets an listener for execution data with packed probes. If set, the
+	 * probes are passed as read from the stream without unpacking them and
+	 * the listener set with
+	 * {@link #setExecutionDataVisitor(IExecutionDataVisitor)} is not used.
+	 *
+	 * @param visitor
+	 *            visitor to retrieve packed execution data events
+	 */
+	public void setPackedExecutionDataVisitor(
+			final IPackedExecutionDataVisitor visitor) {
+		this.packedExecutionDataVisitor = visitor;
+	}
+
 	/**
 	 * Reads all data and reports it to the corresponding visitors. The stream
 	 * is read until its end or a command confirmation has been sent.
@@ -119,54 +151,41 @@ public class ExecutionDataReader {
 	}
 
 	public boolean downJar(byte type) throws IOException {
-		String jarFile;
 		switch (type) {
 		case RemoteControlWriter.BLOCK_DOWNBBZX:
-			jarFile = getJarFilepath("com.yss.ams.bbzx");
-			downLoadJar(jarFile);
-			return true;
 		case RemoteControlWriter.BLOCK_DOWNREPORTVIEW:
-			jarFile = getJarFilepath("com.yss.ams.ReportViewer");
-			downLoadJar(jarFile);
-			return true;
 		case RemoteControlWriter.BLOCK_DOWNWEBSITE:
-			jarFile = getJarFilepath("com.yss.ams.website");
-			downLoadJar(jarFile);
+			final File jarFile = JarTransfer.locate(type);
+			downLoadJar(jarFile == null ? null : jarFile.getAbsolutePath());
 			return true;
 		default:
 			return false;
 		}
 	}
 
+	// 旧的下载方式没有长度和校验，只把jar原样写出，新的客户端使用BLOCK_CMDDOWNLOAD
 	private void downLoadJar(String filename) throws IOException {
 		if (filename != null) {
-			FileInputStream fis = new FileInputStream(filename);
-			byte[] buffer = new byte[1024];
-			int bytesRead;
-			while ((bytesRead = fis.read(buffer)) != -1) {
-				out.write(buffer, 0, bytesRead);
+			final FileInputStream fis = new FileInputStream(filename);
+			try {
+				final byte[] buffer = new byte[64 * 1024];
+				int bytesRead;
+				while ((bytesRead = fis.read(buffer)) != -1) {
+					out.write(buffer, 0, bytesRead);
+				}
+				out.flush();
+			} finally {
+				fis.close();
 			}
 		}
 	}
 
 	public String getJarFilepath(String jarName) {
-		String sofaHome = System.getenv("SOFA_HOME");
-		System.out.println("从环境变量读取到的sofa_home=" + sofaHome);
-		String dir = sofaHome + File.separator + "soft" + File.separator
-				+ "tomcat" + File.separator + "webapps" + File.separator
-				+ "sofa" + File.separator + "WEB-INF" + File.separator
-				+ "sofa-container" + File.separator + "repository"
-				+ File.separator + "sofa";
-		File f = new File(dir);
-		if (!f.exists() || !f.isDirectory()) {
+		try {
+			return JarTransfer.findJar(jarName).getAbsolutePath();
+		} catch (final FileNotFoundException e) {
 			return null;
 		}
-		for (File file : new File(dir).listFiles()) {
-			if (file.getName().startsWith(jarName)) {
-				return file.getAbsolutePath();
-			}
-		}
-		return null;
 	}
 
 	/**
@@ -185,11 +204,15 @@ public class ExecutionDataReader {
 			readHeader();
 			return true;
 		case ExecutionDataWriter.BLOCK_SESSIONINFO:
-			readSessionInfo();
+			readSessionInfo(in);
 			return true;
 		case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
 			// 入口在这里
-			readExecutionData();
+			final long id = in.readLong();
+			readExecutionData(in, id, in.readUTF());
+			return true;
+		case ExecutionDataWriter.BLOCK_COMPRESSED:
+			readCompressedBlock();
 			return true;
 		default:
 			throw new IOException(
@@ -202,29 +225,120 @@ public class ExecutionDataReader {
 			throw new IOException("Invalid execution data file.");
 		}
 		final char version = in.readChar();
-		if (version != ExecutionDataWriter.FORMAT_VERSION) {
+		if (version != ExecutionDataWriter.FORMAT_VERSION
+				&& version != ExecutionDataWriter.COMPRESSED_FORMAT_VERSION) {
 			throw new IncompatibleExecDataVersionException(version);
 		}
+		// 每个文件头开始一个新的类名表（合并后的文件可能包含多个文件头）
+		names.clear();
+	}
+
+	private void readCompressedBlock() throws IOException {
+		final int length = in.readVarInt();
+		final int compressedLength = in.readVarInt();
+		// 长度来自文件内容，分配内存前先校验，损坏的文件不会导致内存溢出
+		if (length < 0 || length > CompressedExecutionDataWriter.MAX_BLOCK_LENGTH
+				|| compressedLength < 0 || compressedLength > length
+						+ (length >> 10) + MAX_DEFLATE_OVERHEAD
+				|| length > (long) compressedLength * MAX_DEFLATE_RATIO) {
+			throw new IOException("Invalid compressed block.");
+		}
+		final byte[] compressed = readBlockContent(compressedLength);
+		final byte[] content = new byte[length];
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			if (inflater.inflate(content) != length
+					|| !inflater.finished()) {
+				throw new IOException("Invalid compressed block.");
+			}
+		} catch (final DataFormatException e) {
+			throw new IOException("Invalid compressed block.", e);
+		} finally {
+			inflater.end();
+		}
+		final CompactDataInput block = new CompactDataInput(
+				new ByteArrayInputStream(content));
+		int type;
+		while ((type = block.read()) != -1) {
+			switch ((byte) type) {
+			case ExecutionDataWriter.BLOCK_SESSIONINFO:
+				readSessionInfo(block);
+				break;
+			case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
+				final long id = block.readLong();
+				readExecutionData(block, id, readName(block));
+				break;
+			default:
+				throw new IOException(format("Unknown block type %x.",
+						Byte.valueOf((byte) type)));
+			}
+		}
+	}
+
+	/**
+	 * Reads the given number of bytes in chunks, so a truncated stream fails
+	 * before a buffer of the declared length has been allocated.
+	 */
+	private byte[] readBlockContent(final int length) throws IOException {
+		byte[] content = new byte[Math.min(length, READ_CHUNK)];
+		int count = 0;
+		while (count < length) {
+			if (count == content.length) {
+				final byte[] grown = new byte[(int) Math.min(length,
+						2L * content.length)];
+				System.arraycopy(content, 0, grown, 0, count);
+				content = grown;
+			}
+			final int n = in.read(content, count, content.length - count);
+			if (n == -1) {
+				throw new EOFException();
+			}
+			count += n;
+		}
+		return content;
 	}
 
-	private void readSessionInfo() throws IOException {
+	private String readName(final CompactDataInput input) throws IOException {
+		final int index = input.readVarInt();
+		if (index == names.size()) {
+			final String name = input.readUTF();
+			names.add(name);
+			return name;
+		}
+		if (index < 0 || index > names.size()) {
+			throw new IOException(format("Invalid class name index %s.",
+					Integer.valueOf(index)));
+		}
+		return names.get(index);
+	}
+
+	private void readSessionInfo(final CompactDataInput input)
+			throws IOException {
 		if (sessionInfoVisitor == null) {
 			throw new IOException("No session info visitor.");
 		}
-		final String id = in.readUTF();
-		final long start = in.readLong();
-		final long dump = in.readLong();
+		final String id = input.readUTF();
+		final long start = input.readLong();
+		final long dump = input.readLong();
 		sessionInfoVisitor.visitSessionInfo(new SessionInfo(id, start, dump));
 	}
 
-	private void readExecutionData() throws IOException {
-		if (executionDataVisitor == null) {
+	private void readExecutionData(final CompactDataInput input,
+			final long id, final String name) throws IOException {
+		if (executionDataVisitor == null
+				&& packedExecutionDataVisitor == null) {
 			throw new IOException("No execution data visitor.");
 		}
-		final long id = in.readLong();
-		final String name = in.readUTF();
+		if (packedExecutionDataVisitor != null) {
+			final int probeCount = input.readVarInt();
+			packedExecutionDataVisitor.visitPackedClassExecution(
+					new PackedExecutionData(id, name, probeCount,
+							input.readPackedBooleanArray(probeCount)));
+			return;
+		}
 		// 从流中获取探针信息
-		final boolean[] probes = in.readBooleanArray();
+		final boolean[] probes = input.readBooleanArray();
 		executionDataVisitor
 				.visitClassExecution(new ExecutionData(id, name, probes));
 	}
@@ -22,16 +22,24 @@ import org.jacoco.core.internal.data.CompactDataOutput;
  * Serialization of execution data into binary streams.
  */
 public class ExecutionDataWriter
-		implements ISessionInfoVisitor, IExecutionDataVisitor {
+		implements ISessionInfoVisitor, IExecutionDataVisitor,
+		IPackedExecutionDataVisitor {
 
 	/**
 	 * File format version, will be incremented for each incompatible change.
 	 */
 	public static final char FORMAT_VERSION;
 
+	/**
+	 * File format version of the compressed variant written by
+	 * {@link CompressedExecutionDataWriter}.
+	 */
+	public static final char COMPRESSED_FORMAT_VERSION;
+
 	static {
 		// Runtime initialize to ensure javac does not inline the value.
 		FORMAT_VERSION = 0x1007;
+		COMPRESSED_FORMAT_VERSION = 0x1107;
 	}
 
 	/** Magic number in header for file format identification. */
@@ -48,6 +56,9 @@ public class ExecutionDataWriter
 
 	public static final byte BLOCK_DOWNJAR = 0x12;
 
+	/** Block identifier for a compressed block of multiple records. */
+	public static final byte BLOCK_COMPRESSED = 0x13;
+
 	/** Underlying data output */
 	protected final CompactDataOutput out;
 
@@ -62,20 +73,37 @@ public class ExecutionDataWriter
 	 *             if the header can't be written
 	 */
 	public ExecutionDataWriter(final OutputStream output) throws IOException {
+		this(output, FORMAT_VERSION);
+	}
+
+	/**
+	 * Creates a new writer with the given format version in the header.
+	 *
+	 * @param output
+	 *            binary stream to write execution data to
+	 * @param version
+	 *            format version written to the header
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	protected ExecutionDataWriter(final OutputStream output,
+			final char version) throws IOException {
 		this.out = new CompactDataOutput(output);
-		writeHeader();
+		writeHeader(version);
 	}
 
 	/**
 	 * Writes an file header to identify the stream and its protocol version.
 	 *
+	 * @param version
+	 *            format version
 	 * @throws IOException
 	 *             if the header can't be written
 	 */
-	private void writeHeader() throws IOException {
+	private void writeHeader(final char version) throws IOException {
 		out.writeByte(BLOCK_HEADER);
 		out.writeChar(MAGIC_NUMBER);
-		out.writeChar(FORMAT_VERSION);
+		out.writeChar(version);
 	}
 
 	/**
@@ -112,6 +140,20 @@ public class ExecutionDataWriter
 		}
 	}
 
+	public void visitPackedClassExecution(final PackedExecutionData data) {
+		if (data.hasHits()) {
+			try {
+				out.writeByte(BLOCK_EXECUTIONDATA);
+				out.writeLong(data.getId());
+				out.writeUTF(data.getName());
+				out.writePackedBooleanArray(data.getProbeCount(),
+						data.getWords());
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
 	/**
 	 * Returns the first bytes of a file that represents a valid execution data
 	 * file. In any case every execution data file starts with the three bytes
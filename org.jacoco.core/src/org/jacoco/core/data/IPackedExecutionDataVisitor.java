@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+/**
+ * Interface for data output of execution data with packed probes.
+ *
+ * @see PackedExecutionData
+ */
+public interface IPackedExecutionDataVisitor {
+
+	/**
+	 * Provides packed execution data for a class.
+	 *
+	 * @param data
+	 *            packed execution data for a class
+	 */
+	void visitPackedClassExecution(PackedExecutionData data);
+
+}
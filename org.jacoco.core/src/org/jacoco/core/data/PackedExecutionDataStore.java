@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory data store for {@link PackedExecutionData}. Like
+ * {@link ExecutionDataStore} data provided multiple times for the same class
+ * is merged. Plain {@link ExecutionData} is packed when it is added. The
+ * content is emitted in the same order as by an {@link ExecutionDataStore}
+ * with the same classes. A instance of this class is not thread safe.
+ */
+public final class PackedExecutionDataStore
+		implements IPackedExecutionDataVisitor, IExecutionDataVisitor {
+
+	private final Map<Long, PackedExecutionData> entries = new HashMap<Long, PackedExecutionData>();
+
+	/**
+	 * Adds the given {@link PackedExecutionData} object into the store. If
+	 * there is already execution data with this same class id, this structure
+	 * is merged with the given one.
+	 *
+	 * @param data
+	 *            execution data to add or merge
+	 * @throws IllegalStateException
+	 *             if the given object is not compatible to a corresponding
+	 *             one, that is already contained
+	 * @see PackedExecutionData#assertCompatibility(long, String, int)
+	 */
+	public void put(final PackedExecutionData data)
+			throws IllegalStateException {
+		final Long id = Long.valueOf(data.getId());
+		final PackedExecutionData entry = entries.get(id);
+		if (entry == null) {
+			entries.put(id, data);
+		} else {
+			entry.merge(data);
+		}
+	}
+
+	/**
+	 * Subtracts the probes in the given {@link PackedExecutionData} object
+	 * from the corresponding entry in this store, if any.
+	 *
+	 * @param data
+	 *            execution data to subtract
+	 * @throws IllegalStateException
+	 *             if the given object is not compatible to a corresponding
+	 *             one, that is already contained
+	 */
+	public void subtract(final PackedExecutionData data)
+			throws IllegalStateException {
+		final PackedExecutionData entry = entries
+				.get(Long.valueOf(data.getId()));
+		if (entry != null) {
+			entry.merge(data, false);
+		}
+	}
+
+	/**
+	 * Subtracts all probes in the given store from this store.
+	 *
+	 * @param store
+	 *            store to subtract
+	 * @see #subtract(PackedExecutionData)
+	 */
+	public void subtract(final PackedExecutionDataStore store) {
+		for (final PackedExecutionData data : store.getContents()) {
+			subtract(data);
+		}
+	}
+
+	/**
+	 * Returns the entry with the given id if it exists in this store.
+	 *
+	 * @param id
+	 *            class id
+	 * @return execution data or <code>null</code>
+	 */
+	public PackedExecutionData get(final long id) {
+		return entries.get(Long.valueOf(id));
+	}
+
+	/**
+	 * Returns a collection that represents current contents of the store.
+	 *
+	 * @return current contents
+	 */
+	public Collection<PackedExecutionData> getContents() {
+		return new ArrayList<PackedExecutionData>(entries.values());
+	}
+
+	/**
+	 * Writes the content of the store to the given visitor interface.
+	 *
+	 * @param visitor
+	 *            interface to write content to
+	 */
+	public void accept(final IPackedExecutionDataVisitor visitor) {
+		for (final PackedExecutionData data : getContents()) {
+			visitor.visitPackedClassExecution(data);
+		}
+	}
+
+	/**
+	 * Writes the unpacked content of the store to the given visitor
+	 * interface.
+	 *
+	 * @param visitor
+	 *            interface to write content to
+	 */
+	public void acceptUnpacked(final IExecutionDataVisitor visitor) {
+		for (final PackedExecutionData data : getContents()) {
+			visitor.visitClassExecution(data.unpack());
+		}
+	}
+
+	// === IPackedExecutionDataVisitor ===
+
+	public void visitPackedClassExecution(final PackedExecutionData data) {
+		put(data);
+	}
+
+	// === IExecutionDataVisitor ===
+
+	public void visitClassExecution(final ExecutionData data) {
+		put(PackedExecutionData.pack(data));
+	}
+
+}
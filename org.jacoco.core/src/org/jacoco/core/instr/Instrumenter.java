@@ -12,10 +12,20 @@
  *******************************************************************************/
 package org.jacoco.core.instr;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -47,6 +57,13 @@ public class Instrumenter {
 
 	private final SignatureRemover signatureRemover;
 
+	private int threads = 1;
+
+	private int window = 0;
+
+	/** Pool of a parallel instrumentation in progress or <code>null</code> */
+	private volatile ExecutorService pool;
+
 	/**
 	 * Creates a new instance based on the given runtime.
 	 *
@@ -71,6 +88,33 @@ public class Instrumenter {
 		signatureRemover.setActive(flag);
 	}
 
+	/**
+	 * Sets the number of threads used to instrument the entries of ZIP
+	 * archives. With more than one thread the entries are read and written on
+	 * the calling thread, while the class files and nested archives are
+	 * instrumented on a pool. The resulting archive is identical to the one
+	 * created with a single thread. The default is <code>1</code>.
+	 *
+	 * @param threads
+	 *            number of instrumentation threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the maximum number of archive entries which are held in memory at
+	 * the same time when instrumenting with more than one thread. The default
+	 * is four times the number of threads.
+	 *
+	 * @param window
+	 *            maximum number of entries in flight
+	 * @see #setThreads(int)
+	 */
+	public void setWindow(final int window) {
+		this.window = window;
+	}
+
 	private byte[] instrument(final byte[] source) {
 		final long classId = CRC64.classId(source);
 		final ClassReader reader = InstrSupport.classReaderFor(source);
@@ -212,6 +256,9 @@ public class Instrumenter {
 
 	private int instrumentZip(final InputStream input,
 			final OutputStream output, final String name) throws IOException {
+		if (threads > 1 && pool == null) {
+			return instrumentZipParallel(input, output, name);
+		}
 		final ZipInputStream zipin = new ZipInputStream(input);
 		final ZipOutputStream zipout = new ZipOutputStream(output);
 		ZipEntry entry;
@@ -234,12 +281,7 @@ public class Instrumenter {
 				// mandatory entry size and CRC
 				final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 				count += filterOrInstrument(zipin, buffer, name, entryName);
-				final byte[] bytes = buffer.toByteArray();
-				newEntry.setSize(bytes.length);
-				newEntry.setCompressedSize(bytes.length);
-				newEntry.setCrc(crc(bytes));
-				zipout.putNextEntry(newEntry);
-				zipout.write(bytes);
+				putStoredEntry(zipout, newEntry, buffer.toByteArray());
 				break;
 			default:
 				throw new AssertionError(entry.getMethod());
@@ -250,6 +292,142 @@ public class Instrumenter {
 		return count;
 	}
 
+	private static void putStoredEntry(final ZipOutputStream zipout,
+			final ZipEntry entry, final byte[] bytes) throws IOException {
+		entry.setSize(bytes.length);
+		entry.setCompressedSize(bytes.length);
+		entry.setCrc(crc(bytes));
+		zipout.putNextEntry(entry);
+		zipout.write(bytes);
+	}
+
+	/**
+	 * Instrumented content of a single archive entry.
+	 */
+	private static final class InstrumentedEntry {
+
+		final ZipEntry entry;
+
+		final byte[] content;
+
+		final int count;
+
+		InstrumentedEntry(final ZipEntry entry, final byte[] content,
+				final int count) {
+			this.entry = entry;
+			this.content = content;
+			this.count = count;
+		}
+
+	}
+
+	/**
+	 * Reads the entries on the calling thread, instruments them on the pool
+	 * and writes the results in the original order. At most
+	 * <code>window</code> entries are in flight, the oldest entry is written
+	 * before the next one is read. Nested archives are instrumented
+	 * sequentially within their task.
+	 */
+	private int instrumentZipParallel(final InputStream input,
+			final OutputStream output, final String name) throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					private final AtomicInteger id = new AtomicInteger();
+
+					public Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r,
+								"jacoco-instrumenter-" + id.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		pool = executor;
+		try {
+			final int limit = window > 0 ? window : threads * 4;
+			final ZipInputStream zipin = new ZipInputStream(input);
+			final ZipOutputStream zipout = new ZipOutputStream(output);
+			final Deque<Future<InstrumentedEntry>> inflight = new ArrayDeque<Future<InstrumentedEntry>>();
+			ZipEntry entry;
+			int count = 0;
+			while ((entry = nextEntry(zipin, name)) != null) {
+				final String entryName = entry.getName();
+				if (signatureRemover.removeEntry(entryName)) {
+					continue;
+				}
+				final ZipEntry newEntry = new ZipEntry(entryName);
+				newEntry.setMethod(entry.getMethod());
+				final byte[] source = readEntry(zipin,
+						name + "@" + entryName);
+				inflight.add(executor.submit(() -> {
+					final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+					final int c = filterOrInstrument(
+							new ByteArrayInputStream(source), buffer, name,
+							entryName);
+					return new InstrumentedEntry(newEntry,
+							buffer.toByteArray(), c);
+				}));
+				while (inflight.size() >= limit) {
+					count += writeEntry(zipout, await(inflight.poll()));
+				}
+			}
+			while (!inflight.isEmpty()) {
+				count += writeEntry(zipout, await(inflight.poll()));
+			}
+			zipout.finish();
+			return count;
+		} finally {
+			pool = null;
+			executor.shutdownNow();
+		}
+	}
+
+	private byte[] readEntry(final InputStream input, final String name)
+			throws IOException {
+		try {
+			return InputStreams.readFully(input);
+		} catch (final IOException e) {
+			throw instrumentError(name, e);
+		}
+	}
+
+	private static InstrumentedEntry await(
+			final Future<InstrumentedEntry> future) throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private static int writeEntry(final ZipOutputStream zipout,
+			final InstrumentedEntry result) throws IOException {
+		switch (result.entry.getMethod()) {
+		case ZipEntry.DEFLATED:
+			zipout.putNextEntry(result.entry);
+			zipout.write(result.content);
+			break;
+		case ZipEntry.STORED:
+			putStoredEntry(zipout, result.entry, result.content);
+			break;
+		default:
+			throw new AssertionError(result.entry.getMethod());
+		}
+		zipout.closeEntry();
+		return result.count;
+	}
+
 	private int filterOrInstrument(final InputStream in, final OutputStream out,
 			final String name, final String entryName) throws IOException {
 		if (signatureRemover.filterEntry(entryName, in, out)) {
@@ -15,18 +15,16 @@ package org.jacoco.core.internal.analysis;
 import org.jacoco.core.internal.analysis.filter.Filters;
 import org.jacoco.core.internal.analysis.filter.IFilter;
 import org.jacoco.core.internal.analysis.filter.IFilterContext;
-import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.CodeDiffIndex;
 import org.jacoco.core.internal.flow.ClassProbesVisitor;
 import org.jacoco.core.internal.flow.MethodProbesVisitor;
 import org.jacoco.core.internal.instr.InstrSupport;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.MergeContext;
+import org.jacoco.core.tools.MergeIndex;
 import org.objectweb.asm.*;
-import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.JumpInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.util.*;
-import java.util.stream.Collector;
 
 /**
  * Analyzes the structure of a class.
@@ -36,7 +34,10 @@ public class ClassAnalyzer extends ClassProbesVisitor
 
     private final ClassCoverageImpl coverage;
 
-    private final boolean[] probes;
+    private boolean[] probes;
+
+    // 类没有执行数据时探针数组为null，只有合并到老版本的命中时才按需分配
+    private final boolean lazyProbes;
 
     private final StringPool stringPool;
 
@@ -47,10 +48,16 @@ public class ClassAnalyzer extends ClassProbesVisitor
     private String sourceDebugExtension;
     // 只收集方法中的指令的覆盖率，在收集到指令后退出后面的分析流程
     private boolean onlyAnaly = false;
+    // 指纹模式，用64位指纹代替字符串签名标识指令
+    private boolean fingerprints = false;
+    // 记录合并后的指令索引，用于保存合并索引文件，为null时不记录
+    private MergeIndex mergeIndex;
+    // 合并上下文，保存老版本的指令索引和探针，为null时不合并
+    private MergeContext mergeContext;
     /**
-     * 变更类信息
+     * 变更类信息，为null时不过滤方法
      */
-    private List<ClassInfoDto> classInfos;
+    private CodeDiffIndex.ClassEntry diffClass;
 
     private final IFilter filter;
 
@@ -66,27 +73,65 @@ public class ClassAnalyzer extends ClassProbesVisitor
                          final boolean[] probes, final StringPool stringPool) {
         this.coverage = coverage;
         this.probes = probes;
+        this.lazyProbes = probes == null;
         this.stringPool = stringPool;
         this.filter = Filters.all();
     }
 
     public ClassAnalyzer(final ClassCoverageImpl coverage,
                          final boolean[] probes, final StringPool stringPool,
-                         List<ClassInfoDto> classInfos, boolean onlyAnaly) {
+                         CodeDiffIndex.ClassEntry diffClass, boolean onlyAnaly) {
         this.coverage = coverage;
         this.probes = probes;
+        this.lazyProbes = probes == null;
         this.stringPool = stringPool;
         this.filter = Filters.all();
-        this.classInfos = classInfos;
+        this.diffClass = diffClass;
         this.onlyAnaly = onlyAnaly;
     }
 
-    public List<ClassInfoDto> getClassInfos() {
-        return classInfos;
+    public ClassAnalyzer(final ClassCoverageImpl coverage,
+                         final boolean[] probes, final StringPool stringPool,
+                         CodeDiffIndex.ClassEntry diffClass, boolean onlyAnaly,
+                         boolean fingerprints) {
+        this(coverage, probes, stringPool, diffClass, onlyAnaly);
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Returns the probes of the analyzed class. For a class without execution
+     * data a probe array is only created if hits of a previous version have
+     * been merged into it, sized to the total probe count once the class has
+     * been visited completely.
+     *
+     * @return probes or <code>null</code> if the class has no hits
+     */
+    public boolean[] getProbes() {
+        return probes;
+    }
+
+    public CodeDiffIndex.ClassEntry getDiffClass() {
+        return diffClass;
+    }
+
+    public void setDiffClass(CodeDiffIndex.ClassEntry diffClass) {
+        this.diffClass = diffClass;
+    }
+
+    public MergeIndex getMergeIndex() {
+        return mergeIndex;
+    }
+
+    public void setMergeIndex(MergeIndex mergeIndex) {
+        this.mergeIndex = mergeIndex;
+    }
+
+    public MergeContext getMergeContext() {
+        return mergeContext;
     }
 
-    public void setClassInfos(List<ClassInfoDto> classInfos) {
-        this.classInfos = classInfos;
+    public void setMergeContext(MergeContext mergeContext) {
+        this.mergeContext = mergeContext;
     }
 
     @Override
@@ -123,10 +168,12 @@ public class ClassAnalyzer extends ClassProbesVisitor
 
         InstrSupport.assertNotInstrumented(name, coverage.getName());
 
-        final InstructionsBuilder builder = new InstructionsBuilder(probes);
+        // 按需分配的探针数组只包含合并进来的老版本命中，当前版本的指令都未执行
+        final InstructionsBuilder builder = new InstructionsBuilder(
+                lazyProbes ? null : probes);
 
         // 对方法解析完毕后的一个钩子方法，从visitMethod的mv对象调用过来
-        return new MethodAnalyzer(builder) {
+        return new MethodAnalyzer(builder, fingerprints) {
 
             @Override
             public void accept(final MethodNode methodNode,
@@ -140,85 +187,41 @@ public class ClassAnalyzer extends ClassProbesVisitor
                         methodSign += s;
                     }
                 }
-                Map<String, Map<String, Map<String, Instruction>>> instrunctions = ExecFileLoader.instrunctionsThreadLocal.get();
-                Map<String, boolean[]> probesMap = ExecFileLoader.probesMap.get();
                 if (onlyAnaly) {
-                    Map<String, Map<String, Instruction>> methodInstructions = new HashMap<>();
-                    Map<String, Instruction> instructionMap = new HashMap<>();
-                    Map<AbstractInsnNode, Instruction> builderInstructions = builder.getInstructions();
-                    for (Instruction instruction : builderInstructions.values()) {
-                        instructionMap.put(instruction.getSign(), instruction);
-                    }
-                    methodInstructions.put(methodSign, instructionMap);
-                    if (instrunctions == null) {
-                        instrunctions = new HashMap<>();
-                        instrunctions.put(coverage.getName(), methodInstructions);
-                        ExecFileLoader.instrunctionsThreadLocal.set(instrunctions);
-                    } else {
-                        if (instrunctions.containsKey(coverage.getName())) {
-                            instrunctions.get(coverage.getName()).put(methodSign, instructionMap);
-                        } else {
-                            instrunctions.put(coverage.getName(), methodInstructions);
-                        }
-                    }
-                    if (probesMap == null) {
-                        probesMap = new HashMap<>();
-                        probesMap.put(coverage.getName(), probes);
-                        ExecFileLoader.probesMap.set(probesMap);
-                    } else {
-                        probesMap.put(coverage.getName(), probes);
+                    // 预先计算方法的指令索引和指纹，合并时无需再遍历老版本的指令
+                    if (mergeContext != null) {
+                        mergeContext.addMethod(coverage.getName(), methodSign,
+                                new MethodInstructionIndex(builder.getInstructions().values()));
+                        mergeContext.setProbes(coverage.getName(), probes);
                     }
                     return;
                 }
+                MethodInstructionIndex nowIndex = null;
                 // 如果存在已有的覆盖率数据，则合并method的指令覆盖率
-                if (instrunctions != null && instrunctions.containsKey(coverage.getName())) {
+                Map<String, MethodInstructionIndex> mergeMethods = mergeContext == null ? null : mergeContext.getMethods(coverage.getName());
+                if (mergeMethods != null) {
                     // 合并method的指令数据
-                    Map<String, Instruction> mergeInstructionMap = instrunctions.get(coverage.getName()).get(methodSign);
+                    MethodInstructionIndex mergeIndex = mergeMethods.get(methodSign);
                     // 通过指令判断是否为同一个方法，所有指令签名一样的情况下判断是一样的
-                    Map<AbstractInsnNode, Instruction> nowInstructions = builder.getInstructionsNotWireJumps();
-                    if (mergeInstructionMap != null && mergeInstructionMap.size() == nowInstructions.size()) {
-                        boolean isSameMethod = true;
-                        for (final Instruction instruction : mergeInstructionMap.values()) {
-                            Optional<Instruction> optionalInstruction = nowInstructions.values().stream().filter(i -> i.getSign().equals(instruction.getSign())).findAny();
-                            if (!optionalInstruction.isPresent()) {
-                                isSameMethod = false;
-                                break;
-                            }
-                        }
-                        // 同一个方法
-                        if (isSameMethod) {
-                            //合并exec新方案--直接合并两个probes对应的探针
-                            Map<String, boolean[]> mergeProbesMap = ExecFileLoader.probesMap.get();
-                            Optional<Instruction> instructionOptional = nowInstructions.values().stream().filter(i -> i.getProbeIndex() > 0).min(Comparator.comparingInt(Instruction::getProbeIndex));
-                            if (probes != null && instructionOptional.isPresent()) {
-                                int probeStrart = instructionOptional.get().getProbeIndex();
-                                int probeEnd = nowInstructions.values().stream().filter(i -> i.getProbeIndex() > 0).max(Comparator.comparingInt(Instruction::getProbeIndex)).get().getProbeIndex();
-                                int mergeProbeStart = mergeInstructionMap.values().stream().filter(i -> i.getProbeIndex() > 0).min(Comparator.comparingInt(Instruction::getProbeIndex)).get().getProbeIndex();
-                                int mergeProbeEnd = mergeInstructionMap.values().stream().filter(i -> i.getProbeIndex() > 0).max(Comparator.comparingInt(Instruction::getProbeIndex)).get().getProbeIndex();
-                                //jacoco是以方法级别进行插桩的，所以理论上同个方法的探针的长度是一样的
-                                assert probeEnd - probeStrart == mergeProbeEnd - mergeProbeStart;
-                                if (mergeProbesMap != null && mergeProbesMap.containsKey(coverage.getName())) {
-                                    boolean[] mergeProbes = mergeProbesMap.get(coverage.getName());
-                                    int currentIndex = mergeProbeStart;
-                                    for (int k = probeStrart; k < probeEnd; k++) {
-                                        if (mergeProbes[currentIndex]) {
-                                            probes[k] = true;
-                                        }
-                                        currentIndex++;
-                                    }
-                                }
-                            }
-                            //合并指令
-                            for (AbstractInsnNode key : nowInstructions.keySet()) {
-                                Instruction instruction = nowInstructions.get(key);
-                                //合并指令
-                                Instruction other = mergeInstructionMap.get(instruction.getSign());
-                                Instruction merge = instruction.mergeNew(other);
-                                nowInstructions.put(key, merge);
+                    if (mergeIndex != null && mergeIndex.getCount() == builder.getInstructionsNotWireJumps().size()) {
+                        nowIndex = new MethodInstructionIndex(builder.getInstructionsNotWireJumps().values());
+                        // 同一个方法，直接合并两个probes对应的探针以及指令
+                        if (nowIndex.matches(mergeIndex)) {
+                            boolean[] mergeProbes = mergeContext.getProbes(coverage.getName());
+                            if (lazyProbes && isCovered(mergeIndex, mergeProbes)) {
+                                ensureProbes(nowIndex.getLastProbe() + 1);
                             }
+                            nowIndex.merge(mergeIndex, probes, mergeProbes);
                         }
                     }
                 }
+                // 记录当前版本的指令索引，指令对象在addMethodCoverage中连线后即为合并后的覆盖率，保存索引时再写出
+                if (ClassAnalyzer.this.mergeIndex != null && fingerprints) {
+                    if (nowIndex == null) {
+                        nowIndex = new MethodInstructionIndex(builder.getInstructionsNotWireJumps().values());
+                    }
+                    ClassAnalyzer.this.mergeIndex.addMethod(coverage.getId(), coverage.getName(), probes, methodSign, nowIndex);
+                }
                 addMethodCoverage(stringPool.get(name), stringPool.get(desc), stringPool.get(signature), builder, methodNode);
             }
         };
@@ -251,9 +254,36 @@ public class ClassAnalyzer extends ClassProbesVisitor
         return super.visitField(access, name, desc, signature, value);
     }
 
+    private static boolean isCovered(final MethodInstructionIndex index,
+                                     final boolean[] probes) {
+        if (probes == null || index.getFirstProbe() == MethodInstructionIndex.NO_PROBE) {
+            return false;
+        }
+        for (int k = index.getFirstProbe(); k < index.getLastProbe(); k++) {
+            if (probes[k]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void ensureProbes(final int length) {
+        if (probes == null) {
+            probes = new boolean[length];
+        } else if (probes.length < length) {
+            probes = Arrays.copyOf(probes, length);
+        }
+    }
+
     @Override
     public void visitTotalProbeCount(final int count) {
-        // nothing to do
+        // 按需分配的探针数组在类解析完后才知道最终长度
+        if (lazyProbes && probes != null) {
+            probes = Arrays.copyOf(probes, count);
+            if (mergeIndex != null && fingerprints) {
+                mergeIndex.setProbes(coverage.getId(), probes);
+            }
+        }
     }
 
     // IFilterContext implementation
@@ -68,6 +68,9 @@ public class Instruction {
     // 指令签名，判断method内的指令是否同一个指令，line不考虑，只考虑指令操作码，值和顺序是否一样
     private String sign;
 
+    // 指令指纹，指纹模式下代替sign，用64位的CRC64值标识指令，减少字符串的内存占用
+    private long fingerprint;
+
     public int getProbeIndex() {
         return probeIndex;
     }
@@ -98,6 +101,13 @@ public class Instruction {
 
     }
 
+    public Instruction(final int line, long fingerprint) {
+        this.line = line;
+        this.branches = 0;
+        this.coveredBranches = new BitSet();
+        this.fingerprint = fingerprint;
+    }
+
     /**
      * Adds a branch to this instruction which execution status is indirectly
      * derived from the execution status of the target instruction. In case the
@@ -163,6 +173,10 @@ public class Instruction {
         return sign;
     }
 
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
     /**
      * Merges information about covered branches of this instruction with
      * another instruction.
@@ -173,7 +173,14 @@ public class InstructionsBuilder {
     }
 
     void addInstruction(final AbstractInsnNode node, String sign, int probeId) {
-        final Instruction insn = new Instruction(currentLine, sign);
+        addInstruction(node, new Instruction(currentLine, sign), probeId);
+    }
+
+    void addInstruction(final AbstractInsnNode node, long fingerprint, int probeId) {
+        addInstruction(node, new Instruction(currentLine, fingerprint), probeId);
+    }
+
+    private void addInstruction(final AbstractInsnNode node, final Instruction insn, int probeId) {
         final int labelCount = currentLabel.size();
         if (labelCount > 0) {
             for (int i = labelCount; --i >= 0; ) {
@@ -216,10 +223,8 @@ public class InstructionsBuilder {
      */
     void addProbe(final int probeId, final int branch) {
         final boolean executed = probes != null && probes[probeId];
-        // 记录指令probeId
-        if (probes != null) {
-            currentInsn.setProbeIndex(probeId);
-        }
+        // 记录指令probeId，没有执行数据的类也要记录，合并时按探针区间复制老版本的命中
+        currentInsn.setProbeIndex(probeId);
         currentInsn.addBranch(executed, branch);
     }
 
@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.jacoco.core.internal.analysis;
 
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.internal.flow.*;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
@@ -20,10 +21,6 @@ import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.TryCatchBlockNode;
 
-import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * A {@link MethodProbesVisitor} that builds the {@link Instruction}s of a
  * method to calculate the detailed execution status.
@@ -39,15 +36,46 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 
 	private int currentNo = 0;
 
-	private static final String separator = "#";
+	private static final char separator = '#';
 
 	private int currentProbeId = 0;
 
+	/**
+	 * If <code>true</code> instructions are identified by 64 bit fingerprints
+	 * instead of string signatures.
+	 */
+	private final boolean fingerprints;
+
+	/**
+	 * Signature of the current instruction in string mode.
+	 */
+	private final StringBuilder sign = new StringBuilder();
+
+	/**
+	 * Signature of the current instruction in fingerprint mode.
+	 */
+	private long fingerprint = 0;
+
 	/**
 	 * New instance that uses the given builder.
 	 */
 	MethodAnalyzer(final InstructionsBuilder builder) {
+		this(builder, false);
+	}
+
+	/**
+	 * New instance that uses the given builder.
+	 *
+	 * @param builder
+	 *            builder for the instructions of the method
+	 * @param fingerprints
+	 *            if <code>true</code> instructions are identified by 64 bit
+	 *            fingerprints instead of string signatures
+	 */
+	MethodAnalyzer(final InstructionsBuilder builder,
+			final boolean fingerprints) {
 		this.builder = builder;
+		this.fingerprints = fingerprints;
 	}
 
 	@Override
@@ -71,6 +99,47 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 		methodVisitor.visitEnd();
 	}
 
+	// 指令签名，判断method内的指令是否同一个指令，只考虑指令操作码，值和顺序是否一样
+	private MethodAnalyzer sign(final int value) {
+		if (fingerprints) {
+			fingerprint = CRC64.update(fingerprint, value);
+		} else {
+			sign.append(value).append(separator);
+		}
+		return this;
+	}
+
+	private MethodAnalyzer sign(final String value) {
+		if (fingerprints) {
+			fingerprint = CRC64.update(fingerprint, value);
+		} else {
+			sign.append(value).append(separator);
+		}
+		return this;
+	}
+
+	private MethodAnalyzer sign(final boolean value) {
+		return sign(value ? 1 : 0);
+	}
+
+	private MethodAnalyzer sign(final Label label) {
+		return sign(LabelInfo.isMultiTarget(label))
+				.sign(LabelInfo.isSuccessor(label))
+				.sign(LabelInfo.isDone(label))
+				.sign(LabelInfo.isMethodInvocationLine(label));
+	}
+
+	private void addInstruction(final int probeId) {
+		sign(currentNo);
+		if (fingerprints) {
+			builder.addInstruction(currentNode, fingerprint, probeId);
+			fingerprint = 0;
+		} else {
+			builder.addInstruction(currentNode, sign.toString(), probeId);
+			sign.setLength(0);
+		}
+	}
+
 	@Override
 	public void visitLabel(final Label label) {
 		builder.addLabel(label);
@@ -84,88 +153,65 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 
 	@Override
 	public void visitInsn(final int opcode) {
-		String sign = opcode + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		sign(opcode).addInstruction(currentProbeId);
 	}
 
 	@Override
 	public void visitIntInsn(final int opcode, final int operand) {
-		String sign = opcode + separator + operand + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		sign(opcode).sign(operand).addInstruction(currentProbeId);
 	}
 
 	@Override
 	public void visitVarInsn(final int opcode, final int var) {
-		String sign = opcode + separator + var + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		sign(opcode).sign(var).addInstruction(currentProbeId);
 	}
 
 	@Override
 	public void visitTypeInsn(final int opcode, final String type) {
-		String sign = opcode + separator + type + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		sign(opcode).sign(type).addInstruction(currentProbeId);
 	}
 
 	@Override
 	public void visitFieldInsn(final int opcode, final String owner,
 			final String name, final String desc) {
-		String sign = opcode + separator + owner + separator + name + separator
-				+ desc + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		sign(opcode).sign(owner).sign(name).sign(desc)
+				.addInstruction(currentProbeId);
 	}
 
 	@Override
 	public void visitMethodInsn(final int opcode, final String owner,
 			final String name, final String desc, final boolean itf) {
-		String sign = opcode + separator + owner + separator + name + separator
-				+ desc + separator + itf + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		sign(opcode).sign(owner).sign(name).sign(desc).sign(itf)
+				.addInstruction(currentProbeId);
 	}
 
 	@Override
 	public void visitInvokeDynamicInsn(final String name, final String desc,
 			final Handle bsm, final Object... bsmArgs) {
-		StringBuilder signBuilder = new StringBuilder();
+		sign(name).sign(desc).sign(bsm.toString());
 		if (bsmArgs != null) {
 			for (int i = 0; i < bsmArgs.length; i++) {
-				signBuilder.append(separator)
-						.append(bsmArgs[i].getClass().getName());
+				sign(bsmArgs[i].getClass().getName());
 			}
 		}
-		String sign = name + separator + desc + separator + bsm.toString()
-				+ separator + signBuilder.toString() + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		addInstruction(currentProbeId);
 	}
 
 	@Override
 	public void visitJumpInsn(final int opcode, final Label label) {
-		String sign = opcode + separator + getLableString(label) + separator
-				+ currentNo;
-		builder.addInstruction(currentNode, sign, LabelInfo.getProbeId(label));
+		sign(opcode).sign(label).addInstruction(LabelInfo.getProbeId(label));
 		builder.addJump(label, 1);
 	}
 
-	public String getLableString(Label label) {
-		boolean multiTarget = LabelInfo.isMultiTarget(label);
-		boolean isSuccessor = LabelInfo.isSuccessor(label);
-		boolean isDone = LabelInfo.isDone(label);
-		boolean isMethodInvocationLile = LabelInfo
-				.isMethodInvocationLine(label);
-		return multiTarget + separator + isSuccessor + separator + isDone
-				+ separator + isMethodInvocationLile;
-	}
-
 	@Override
 	public void visitLdcInsn(final Object cst) {
 		// cst是一个常量类型
-		String sign = cst.toString() + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		sign(cst.toString()).addInstruction(currentProbeId);
 	}
 
 	@Override
 	public void visitIincInsn(final int var, final int increment) {
-		String sign = var + separator + increment + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		sign(var).sign(increment).addInstruction(currentProbeId);
 	}
 
 	@Override
@@ -181,12 +227,11 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 	}
 
 	private void visitSwitchInsn(final Label dflt, final Label[] labels) {
-		String label1 = getLableString(dflt);
+		sign(dflt);
 		for (final Label l : labels) {
-			label1 += separator + getLableString(l);
+			sign(l);
 		}
-		String sign = label1 + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		addInstruction(currentProbeId);
 		LabelInfo.resetDone(labels);
 		int branch = 0;
 		builder.addJump(dflt, branch);
@@ -202,8 +247,7 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 
 	@Override
 	public void visitMultiANewArrayInsn(final String desc, final int dims) {
-		String sign = desc + separator + dims + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		sign(desc).sign(dims).addInstruction(currentProbeId);
 	}
 
 	@Override
@@ -215,16 +259,14 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 	@Override
 	public void visitJumpInsnWithProbe(final int opcode, final Label label,
 			final int probeId, final IFrame frame) {
-		String sign = opcode + separator + getLableString(label) + separator
-				+ frame.getClass().getName() + currentNo;
-		builder.addInstruction(currentNode, sign, probeId);
+		sign(opcode).sign(label).sign(frame.getClass().getName())
+				.addInstruction(probeId);
 		builder.addProbe(probeId, 1);
 	}
 
 	@Override
 	public void visitInsnWithProbe(final int opcode, final int probeId) {
-		String sign = opcode + separator + currentNo;
-		builder.addInstruction(currentNode, sign, probeId);
+		sign(opcode).addInstruction(probeId);
 		builder.addProbe(probeId, 0);
 	}
 
@@ -242,12 +284,11 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 
 	private void visitSwitchInsnWithProbes(final Label dflt,
 			final Label[] labels) {
-		String label1 = getLableString(dflt);
+		sign(dflt);
 		for (final Label l : labels) {
-			label1 += separator + getLableString(l);
+			sign(l);
 		}
-		String sign = label1 + separator + currentNo;
-		builder.addInstruction(currentNode, sign, currentProbeId);
+		addInstruction(currentProbeId);
 		LabelInfo.resetDone(dflt);
 		LabelInfo.resetDone(labels);
 		int branch = 0;
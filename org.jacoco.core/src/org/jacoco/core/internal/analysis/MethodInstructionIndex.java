@@ -0,0 +1,351 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Index over the {@link Instruction}s of a single method which is used to
+ * merge the coverage of the same method from two different versions of a
+ * class. Instructions are indexed by their identity, additionally a
+ * fingerprint of all identities and the probe range of the method are
+ * calculated once when the index is created. This allows to decide whether
+ * two versions of a method are identical and to merge their coverage in time
+ * linear to the number of instructions.
+ * <p>
+ * Instructions are either identified by their string signature or, in
+ * fingerprint mode, by a 64 bit fingerprint. In fingerprint mode the
+ * fingerprints are kept in a sorted primitive array.
+ */
+public final class MethodInstructionIndex {
+
+	/** Marker for methods without instructions that carry a probe. */
+	public static final int NO_PROBE = -1;
+
+	private static final Comparator<Instruction> BY_FINGERPRINT = new Comparator<Instruction>() {
+		public int compare(final Instruction i1, final Instruction i2) {
+			final long f1 = i1.getFingerprint();
+			final long f2 = i2.getFingerprint();
+			return f1 < f2 ? -1 : (f1 == f2 ? 0 : 1);
+		}
+	};
+
+	/** Instructions by signature in string mode, otherwise <code>null</code> */
+	private final Map<String, Instruction> signs;
+
+	/** Sorted fingerprints in fingerprint mode, otherwise <code>null</code> */
+	private final long[] fingerprints;
+
+	/** Instructions in the order of {@link #fingerprints} */
+	private final Instruction[] sorted;
+
+	private final int count;
+
+	private final boolean unique;
+
+	private final long fingerprint;
+
+	private final int firstProbe;
+
+	private final int lastProbe;
+
+	/**
+	 * Creates a new index for the given instructions of a method. The mode is
+	 * derived from the instructions: if they carry no string signature they
+	 * are indexed by their fingerprints.
+	 *
+	 * @param instructions
+	 *            all instructions of the method
+	 */
+	public MethodInstructionIndex(final Collection<Instruction> instructions) {
+		this.count = instructions.size();
+		int first = NO_PROBE;
+		int last = NO_PROBE;
+		boolean fingerprintMode = true;
+		for (final Instruction i : instructions) {
+			final int probe = i.getProbeIndex();
+			// 与原有逻辑保持一致，probeIndex为0的指令不参与探针区间计算
+			if (probe > 0) {
+				if (first == NO_PROBE || probe < first) {
+					first = probe;
+				}
+				if (probe > last) {
+					last = probe;
+				}
+			}
+			if (i.getSign() != null) {
+				fingerprintMode = false;
+			}
+		}
+		this.firstProbe = first;
+		this.lastProbe = last;
+		if (fingerprintMode) {
+			this.signs = null;
+			this.sorted = instructions.toArray(new Instruction[count]);
+			Arrays.sort(sorted, BY_FINGERPRINT);
+			this.fingerprints = new long[count];
+			for (int i = 0; i < count; i++) {
+				fingerprints[i] = sorted[i].getFingerprint();
+			}
+			this.unique = isUnique(fingerprints);
+			this.fingerprint = fingerprint(fingerprints);
+		} else {
+			this.fingerprints = null;
+			this.sorted = null;
+			this.signs = new HashMap<String, Instruction>(count * 4 / 3 + 1);
+			for (final Instruction i : instructions) {
+				signs.put(i.getSign(), i);
+			}
+			long fp = 0;
+			for (final String sign : signs.keySet()) {
+				fp += mix(sign == null ? 0 : sign.hashCode());
+			}
+			this.unique = signs.size() == count;
+			this.fingerprint = fp;
+		}
+	}
+
+	private MethodInstructionIndex(final Instruction[] sorted,
+			final int firstProbe, final int lastProbe) {
+		this.signs = null;
+		this.sorted = sorted;
+		this.count = sorted.length;
+		this.fingerprints = new long[count];
+		for (int i = 0; i < count; i++) {
+			fingerprints[i] = sorted[i].getFingerprint();
+		}
+		this.unique = isUnique(fingerprints);
+		this.fingerprint = fingerprint(fingerprints);
+		this.firstProbe = firstProbe;
+		this.lastProbe = lastProbe;
+	}
+
+	private static boolean isUnique(final long[] sortedFingerprints) {
+		for (int i = 1; i < sortedFingerprints.length; i++) {
+			if (sortedFingerprints[i] == sortedFingerprints[i - 1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long fingerprint(final long[] fingerprints) {
+		long fp = 0;
+		for (final long f : fingerprints) {
+			fp += mix(f);
+		}
+		return fp;
+	}
+
+	private static long mix(final long h) {
+		long z = (h + 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns the number of instructions this index was created from.
+	 *
+	 * @return number of instructions
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the order independent fingerprint over all distinct instruction
+	 * identities of the method.
+	 *
+	 * @return fingerprint of the method
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the smallest probe index of the method or {@link #NO_PROBE}.
+	 *
+	 * @return first probe index
+	 */
+	public int getFirstProbe() {
+		return firstProbe;
+	}
+
+	/**
+	 * Returns the largest probe index of the method or {@link #NO_PROBE}.
+	 *
+	 * @return last probe index
+	 */
+	public int getLastProbe() {
+		return lastProbe;
+	}
+
+	/**
+	 * Returns the instruction with the given signature in string mode.
+	 *
+	 * @param sign
+	 *            instruction signature
+	 * @return instruction or <code>null</code>
+	 */
+	public Instruction get(final String sign) {
+		return signs == null ? null : signs.get(sign);
+	}
+
+	/**
+	 * Returns the instruction with the given fingerprint in fingerprint mode.
+	 *
+	 * @param fingerprint
+	 *            instruction fingerprint
+	 * @return instruction or <code>null</code>
+	 */
+	public Instruction get(final long fingerprint) {
+		if (fingerprints == null) {
+			return null;
+		}
+		final int idx = Arrays.binarySearch(fingerprints, fingerprint);
+		return idx < 0 ? null : sorted[idx];
+	}
+
+	/**
+	 * Checks whether the given index has been created from the same method,
+	 * i.e. both methods consist of exactly the same instruction identities.
+	 *
+	 * @param other
+	 *            index of the method from the other class version
+	 * @return <code>true</code> if both indexes describe the same method
+	 */
+	public boolean matches(final MethodInstructionIndex other) {
+		if (other.count != count || !unique || !other.unique
+				|| other.fingerprint != fingerprint) {
+			return false;
+		}
+		if (fingerprints != null) {
+			return Arrays.equals(fingerprints, other.fingerprints);
+		}
+		if (other.signs == null) {
+			return false;
+		}
+		for (final String sign : other.signs.keySet()) {
+			if (!signs.containsKey(sign)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Merges the coverage of the given method into this method. Probes of the
+	 * other method are copied into the probe range of this method and the
+	 * covered branches of every instruction are merged with the instruction of
+	 * the same identity. Must only be called if {@link #matches} returned
+	 * <code>true</code>.
+	 *
+	 * @param other
+	 *            index of the same method from the other class version
+	 * @param probes
+	 *            probes of the current class or <code>null</code>
+	 * @param otherProbes
+	 *            probes of the other class version or <code>null</code>
+	 */
+	public void merge(final MethodInstructionIndex other,
+			final boolean[] probes, final boolean[] otherProbes) {
+		if (probes != null && otherProbes != null && firstProbe != NO_PROBE
+				&& other.firstProbe != NO_PROBE) {
+			// jacoco是以方法级别进行插桩的，所以理论上同个方法的探针的长度是一样的
+			assert lastProbe - firstProbe == other.lastProbe - other.firstProbe;
+			int otherIndex = other.firstProbe;
+			for (int k = firstProbe; k < lastProbe; k++) {
+				if (otherProbes[otherIndex]) {
+					probes[k] = true;
+				}
+				otherIndex++;
+			}
+		}
+		if (fingerprints != null) {
+			// 指纹已排序，相同下标即为同一条指令
+			for (int i = 0; i < count; i++) {
+				sorted[i].mergeNew(other.sorted[i]);
+			}
+		} else {
+			for (final Instruction i : signs.values()) {
+				i.mergeNew(other.get(i.getSign()));
+			}
+		}
+	}
+
+	/**
+	 * Writes this index in fingerprint mode to the given output. The covered
+	 * branches of every instruction are written as they are at the time of
+	 * this call.
+	 *
+	 * @param out
+	 *            output to write to
+	 * @throws IOException
+	 *             if the index can't be written
+	 * @throws IllegalStateException
+	 *             if this index is not in fingerprint mode
+	 */
+	public void write(final CompactDataOutput out) throws IOException {
+		if (fingerprints == null) {
+			throw new IllegalStateException(
+					"Only fingerprint indexes can be written.");
+		}
+		out.writeVarInt(count);
+		out.writeVarInt(firstProbe + 1);
+		out.writeVarInt(lastProbe + 1);
+		for (final Instruction i : sorted) {
+			out.writeLong(i.getFingerprint());
+			final byte[] covered = i.coveredBranches.toByteArray();
+			out.writeVarInt(covered.length);
+			out.write(covered);
+		}
+	}
+
+	/**
+	 * Reads an index which has been written with
+	 * {@link #write(CompactDataOutput)}.
+	 *
+	 * @param in
+	 *            input to read from
+	 * @return index in fingerprint mode
+	 * @throws IOException
+	 *             if the index can't be read
+	 */
+	public static MethodInstructionIndex read(final CompactDataInput in)
+			throws IOException {
+		final int count = in.readVarInt();
+		final int firstProbe = in.readVarInt() - 1;
+		final int lastProbe = in.readVarInt() - 1;
+		final Instruction[] sorted = new Instruction[count];
+		for (int i = 0; i < count; i++) {
+			final Instruction insn = new Instruction(
+					ISourceNode.UNKNOWN_LINE, in.readLong());
+			final byte[] covered = new byte[in.readVarInt()];
+			in.readFully(covered);
+			insn.coveredBranches.or(BitSet.valueOf(covered));
+			sorted[i] = insn;
+		}
+		return new MethodInstructionIndex(sorted, firstProbe, lastProbe);
+	}
+
+}
@@ -12,21 +12,38 @@
  *******************************************************************************/
 package org.jacoco.core.internal.analysis;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.jacoco.core.analysis.CoverageNodeImpl;
 import org.jacoco.core.analysis.ICounter;
 import org.jacoco.core.analysis.ILine;
 import org.jacoco.core.analysis.ISourceNode;
 
 /**
- * Implementation of {@link ISourceNode}.
+ * Implementation of {@link ISourceNode}. The counters of every line are packed
+ * into a single <code>int</code> with 8 bits for missed instructions, covered
+ * instructions, missed branches and covered branches. {@link ILine} objects are
+ * only created when a line is requested. The rare lines with larger values are
+ * kept as {@link LineImpl} objects in a separate map.
  */
 public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 
-	private LineImpl[] lines;
+	/** Max counter value which is packed into a line */
+	private static final int PACKED_LIMIT = 0xFE;
+
+	/** Marks lines kept in {@link #overflow} */
+	private static final int OVERFLOW = -1;
+
+	/** packed lines, 0 for empty lines */
+	private int[] lines;
 
 	/** first line number in {@link #lines} */
 	private int offset;
 
+	/** lines with a counter value beyond {@link #PACKED_LIMIT} */
+	private Map<Integer, LineImpl> overflow;
+
 	/**
 	 * Create a new source node implementation instance.
 	 *
@@ -57,13 +74,13 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 		}
 		if (lines == null) {
 			offset = first;
-			lines = new LineImpl[last - first + 1];
+			lines = new int[last - first + 1];
 		} else {
 			final int newFirst = Math.min(getFirstLine(), first);
 			final int newLast = Math.max(getLastLine(), last);
 			final int newLength = newLast - newFirst + 1;
 			if (newLength > lines.length) {
-				final LineImpl[] newLines = new LineImpl[newLength];
+				final int[] newLines = new int[newLength];
 				System.arraycopy(lines, 0, newLines, offset - newFirst,
 						lines.length);
 				offset = newFirst;
@@ -124,10 +141,43 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 	private void incrementLine(final ICounter instructions,
 			final ICounter branches, final int line) {
 		ensureCapacity(line, line);
-		final LineImpl l = getLine(line);
-		final int oldTotal = l.getInstructionCounter().getTotalCount();
-		final int oldCovered = l.getInstructionCounter().getCoveredCount();
-		lines[line - offset] = l.increment(instructions, branches);
+		final int index = line - offset;
+		final int packed = lines[index];
+		final int oldMissed;
+		final int oldCovered;
+		int bm;
+		int bc;
+		if (packed == OVERFLOW) {
+			final LineImpl l = overflow.get(Integer.valueOf(line));
+			oldMissed = l.getInstructionCounter().getMissedCount();
+			oldCovered = l.getInstructionCounter().getCoveredCount();
+			bm = l.getBranchCounter().getMissedCount();
+			bc = l.getBranchCounter().getCoveredCount();
+		} else {
+			oldMissed = field(packed, 0);
+			oldCovered = field(packed, 8);
+			bm = field(packed, 16);
+			bc = field(packed, 24);
+		}
+		final int oldTotal = oldMissed + oldCovered;
+		final int im = oldMissed + instructions.getMissedCount();
+		final int ic = oldCovered + instructions.getCoveredCount();
+		bm += branches.getMissedCount();
+		bc += branches.getCoveredCount();
+		if (im <= PACKED_LIMIT && ic <= PACKED_LIMIT && bm <= PACKED_LIMIT
+				&& bc <= PACKED_LIMIT) {
+			lines[index] = im | ic << 8 | bm << 16 | bc << 24;
+			if (packed == OVERFLOW) {
+				overflow.remove(Integer.valueOf(line));
+			}
+		} else {
+			if (overflow == null) {
+				overflow = new HashMap<Integer, LineImpl>();
+			}
+			overflow.put(Integer.valueOf(line),
+					LineImpl.getInstance(im, ic, bm, bc));
+			lines[index] = OVERFLOW;
+		}
 
 		// Increment line counter:
 		if (instructions.getTotalCount() > 0) {
@@ -163,8 +213,16 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 		if (lines == null || nr < getFirstLine() || nr > getLastLine()) {
 			return LineImpl.EMPTY;
 		}
-		final LineImpl line = lines[nr - offset];
-		return line == null ? LineImpl.EMPTY : line;
+		final int packed = lines[nr - offset];
+		if (packed == OVERFLOW) {
+			return overflow.get(Integer.valueOf(nr));
+		}
+		return LineImpl.getInstance(field(packed, 0), field(packed, 8),
+				field(packed, 16), field(packed, 24));
+	}
+
+	private static int field(final int packed, final int shift) {
+		return packed >>> shift & 0xFF;
 	}
 
 }
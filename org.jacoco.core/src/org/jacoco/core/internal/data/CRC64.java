@@ -79,6 +79,43 @@ public final class CRC64 {
 		return sum;
 	}
 
+	/**
+	 * Updates given checksum by the four bytes of the given value.
+	 *
+	 * @param sum
+	 *            initial checksum value
+	 * @param value
+	 *            value to update the checksum with
+	 * @return updated checksum value
+	 */
+	public static long update(long sum, final int value) {
+		sum = update(sum, (byte) value);
+		sum = update(sum, (byte) (value >>> 8));
+		sum = update(sum, (byte) (value >>> 16));
+		return update(sum, (byte) (value >>> 24));
+	}
+
+	/**
+	 * Updates given checksum by the length and the characters of the given
+	 * string.
+	 *
+	 * @param sum
+	 *            initial checksum value
+	 * @param value
+	 *            string to update the checksum with
+	 * @return updated checksum value
+	 */
+	public static long update(long sum, final String value) {
+		final int length = value.length();
+		sum = update(sum, length);
+		for (int i = 0; i < length; i++) {
+			final char c = value.charAt(i);
+			sum = update(sum, (byte) c);
+			sum = update(sum, (byte) (c >>> 8));
+		}
+		return sum;
+	}
+
 	/**
 	 * Calculates class identifier for the given class bytes.
 	 *
@@ -69,4 +69,31 @@ public class CompactDataInput extends DataInputStream {
 		return value;
 	}
 
+	/**
+	 * Reads the content of a boolean array written by
+	 * {@link CompactDataOutput#writeBooleanArray(boolean[])} into bits of
+	 * <code>long</code> words without unpacking it. Bit <code>i % 64</code> of
+	 * word <code>i / 64</code> holds element <code>i</code>. The length of the
+	 * array has to be read with {@link #readVarInt()} before.
+	 *
+	 * @param length
+	 *            length of the array
+	 * @return packed array
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public long[] readPackedBooleanArray(final int length) throws IOException {
+		final long[] words = new long[(length + 63) >>> 6];
+		final byte[] bytes = new byte[(length + 7) >>> 3];
+		readFully(bytes);
+		for (int i = 0; i < bytes.length; i++) {
+			words[i >>> 3] |= (bytes[i] & 0xFFL) << ((i & 7) << 3);
+		}
+		if ((length & 63) != 0) {
+			// the unused bits of the last byte are not defined
+			words[words.length - 1] &= (1L << length) - 1;
+		}
+		return words;
+	}
+
 }
@@ -81,4 +81,27 @@ public class CompactDataOutput extends DataOutputStream {
 		}
 	}
 
+	/**
+	 * Writes a boolean array which is packed into bits of <code>long</code>
+	 * words. Bit <code>i % 64</code> of word <code>i / 64</code> holds element
+	 * <code>i</code>. The result is the same as for
+	 * {@link #writeBooleanArray(boolean[])} with the unpacked array.
+	 *
+	 * @param length
+	 *            length of the array
+	 * @param words
+	 *            packed array
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public void writePackedBooleanArray(final int length, final long[] words)
+			throws IOException {
+		writeVarInt(length);
+		final byte[] bytes = new byte[(length + 7) >>> 3];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (words[i >>> 3] >>> ((i & 7) << 3));
+		}
+		write(bytes);
+	}
+
 }
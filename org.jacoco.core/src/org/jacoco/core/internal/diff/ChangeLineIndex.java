@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Immutable lookup structure over the changed lines of a single source file.
+ * The {@link ChangeLine} ranges are compiled into sorted, disjoint intervals
+ * once, so the change type of a line is found with a binary search. If ranges
+ * overlap, the range listed first in the diff determines the type.
+ */
+public final class ChangeLineIndex {
+
+	/** Index without any changed lines. */
+	public static final ChangeLineIndex EMPTY = new ChangeLineIndex(
+			new int[0], new int[0], new String[0]);
+
+	private final int[] starts;
+
+	private final int[] ends;
+
+	private final String[] types;
+
+	private ChangeLineIndex(final int[] starts, final int[] ends,
+			final String[] types) {
+		this.starts = starts;
+		this.ends = ends;
+		this.types = types;
+	}
+
+	/**
+	 * Compiles the given changed line ranges.
+	 *
+	 * @param lines
+	 *            changed line ranges in diff order, may be <code>null</code>
+	 * @return index over the ranges
+	 */
+	public static ChangeLineIndex of(final List<ChangeLine> lines) {
+		if (lines == null || lines.isEmpty()) {
+			return EMPTY;
+		}
+		final List<int[]> ranges = new ArrayList<int[]>(lines.size());
+		for (int i = 0; i < lines.size(); i++) {
+			final ChangeLine l = lines.get(i);
+			if (l == null || l.getStartLineNum() == null
+					|| l.getEndLineNum() == null) {
+				continue;
+			}
+			final int start = l.getStartLineNum().intValue();
+			final int end = l.getEndLineNum().intValue();
+			if (start <= end) {
+				ranges.add(new int[] { start, end, i });
+			}
+		}
+		if (ranges.isEmpty()) {
+			return EMPTY;
+		}
+		return sweep(lines, ranges);
+	}
+
+	/**
+	 * Splits the ranges at all boundaries and assigns every elementary
+	 * interval the type of the first listed range which covers it.
+	 */
+	private static ChangeLineIndex sweep(final List<ChangeLine> lines,
+			final List<int[]> ranges) {
+		final int n = ranges.size();
+		// 边界点：起始行和结束行的下一行，long避免Integer.MAX_VALUE溢出
+		final long[] bounds = new long[2 * n];
+		for (int i = 0; i < n; i++) {
+			bounds[2 * i] = ranges.get(i)[0];
+			bounds[2 * i + 1] = ranges.get(i)[1] + 1L;
+		}
+		Arrays.sort(bounds);
+		final int[][] byStart = ranges.toArray(new int[n][]);
+		Arrays.sort(byStart, new Comparator<int[]>() {
+			public int compare(final int[] r1, final int[] r2) {
+				return r1[0] < r2[0] ? -1 : (r1[0] == r2[0] ? 0 : 1);
+			}
+		});
+		// 当前覆盖的区间，按在diff中的顺序排列，取第一个
+		final TreeSet<int[]> active = new TreeSet<int[]>(
+				new Comparator<int[]>() {
+					public int compare(final int[] r1, final int[] r2) {
+						return r1[2] - r2[2];
+					}
+				});
+		final int[] starts = new int[2 * n];
+		final int[] ends = new int[2 * n];
+		final String[] types = new String[2 * n];
+		int size = 0;
+		int next = 0;
+		for (int b = 0; b < bounds.length - 1; b++) {
+			final long from = bounds[b];
+			final long to = bounds[b + 1] - 1;
+			if (to < from) {
+				continue;
+			}
+			while (next < n && byStart[next][0] <= from) {
+				active.add(byStart[next++]);
+			}
+			// 已结束的区间在取第一个时才移除
+			while (!active.isEmpty() && active.first()[1] < from) {
+				active.pollFirst();
+			}
+			if (active.isEmpty()) {
+				continue;
+			}
+			final String type = lines.get(active.first()[2]).getType();
+			if (size > 0 && ends[size - 1] == from - 1
+					&& equal(types[size - 1], type)) {
+				ends[size - 1] = (int) to;
+			} else {
+				starts[size] = (int) from;
+				ends[size] = (int) to;
+				types[size] = type;
+				size++;
+			}
+		}
+		return new ChangeLineIndex(Arrays.copyOf(starts, size),
+				Arrays.copyOf(ends, size), Arrays.copyOf(types, size));
+	}
+
+	private static boolean equal(final String s1, final String s2) {
+		return s1 == null ? s2 == null : s1.equals(s2);
+	}
+
+	/**
+	 * Checks whether this index contains no changed lines.
+	 *
+	 * @return <code>true</code> if no line has been changed
+	 */
+	public boolean isEmpty() {
+		return starts.length == 0;
+	}
+
+	/**
+	 * Checks whether the given line has been changed.
+	 *
+	 * @param line
+	 *            line number
+	 * @return <code>true</code> if the line is within a changed range
+	 */
+	public boolean contains(final int line) {
+		return find(line) >= 0;
+	}
+
+	/**
+	 * Returns the change type of the given line.
+	 *
+	 * @param line
+	 *            line number
+	 * @return type of the first range covering the line or <code>null</code>
+	 *         if the line has not been changed
+	 */
+	public String getType(final int line) {
+		final int idx = find(line);
+		return idx < 0 ? null : types[idx];
+	}
+
+	/**
+	 * Returns the number of disjoint ranges of changed lines.
+	 *
+	 * @return number of ranges
+	 */
+	public int getRangeCount() {
+		return starts.length;
+	}
+
+	/**
+	 * Returns the first line of the given range. Ranges are sorted by their
+	 * first line.
+	 *
+	 * @param range
+	 *            index of the range
+	 * @return first changed line of the range
+	 */
+	public int getRangeStart(final int range) {
+		return starts[range];
+	}
+
+	/**
+	 * Returns the last line of the given range.
+	 *
+	 * @param range
+	 *            index of the range
+	 * @return last changed line of the range
+	 */
+	public int getRangeEnd(final int range) {
+		return ends[range];
+	}
+
+	private int find(final int line) {
+		int idx = Arrays.binarySearch(starts, line);
+		if (idx < 0) {
+			idx = -idx - 2;
+		}
+		return idx >= 0 && line <= ends[idx] ? idx : -1;
+	}
+
+}
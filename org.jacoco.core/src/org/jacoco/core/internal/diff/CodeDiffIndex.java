@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable lookup structure over the changed classes of an incremental
+ * report. The index is built once from the code diff and answers whether a
+ * class or method is part of the diff with hash lookups only, instead of
+ * scanning all changed classes for every class and method visited.
+ * <p>
+ * Classes are indexed by their class file name, methods by their name. The
+ * parameters of every changed method are split into an array once, the
+ * parameter types of a method descriptor are matched against them without
+ * creating intermediate strings. Lambda methods (<code>lambda$name$0</code>)
+ * are resolved against the same method name table. The lookup semantics are
+ * the same as in {@link CodeDiffUtil}.
+ */
+public final class CodeDiffIndex {
+
+	private static final String OPERATE_ADD = "ADD";
+
+	private static final String LAMBDA = "lambda$";
+
+	private static final String[] NO_PARAMS = new String[0];
+
+	private final Map<String, ClassEntry> classes;
+
+	/**
+	 * Changed class of the diff with its changed methods.
+	 */
+	public static final class ClassEntry {
+
+		/** Position in the diff, the first matching class wins */
+		private final int order;
+
+		private final boolean added;
+
+		private final Map<String, String[][]> methods;
+
+		ClassEntry(final int order, final ClassInfoDto dto) {
+			this.order = order;
+			this.added = OPERATE_ADD.equals(dto.getType());
+			final Map<String, List<String[]>> grouped = new HashMap<String, List<String[]>>();
+			if (dto.getMethodInfos() != null) {
+				for (final MethodInfoDto m : dto.getMethodInfos()) {
+					if (m.getMethodName() == null) {
+						continue;
+					}
+					List<String[]> params = grouped.get(m.getMethodName());
+					if (params == null) {
+						params = new ArrayList<String[]>(1);
+						grouped.put(m.getMethodName(), params);
+					}
+					params.add(m.getParameters() == null ? NO_PARAMS
+							: m.getParameters().toArray(NO_PARAMS));
+				}
+			}
+			final Map<String, String[][]> table = new HashMap<String, String[][]>(
+					grouped.size() * 4 / 3 + 1);
+			for (final Map.Entry<String, List<String[]>> e : grouped
+					.entrySet()) {
+				table.put(e.getKey(),
+						e.getValue().toArray(new String[e.getValue().size()][]));
+			}
+			this.methods = table;
+		}
+
+		/**
+		 * Checks whether the given method of this class is part of the diff.
+		 *
+		 * @param methodName
+		 *            name of the method
+		 * @param desc
+		 *            descriptor of the method
+		 * @return <code>true</code> if the method has been changed
+		 */
+		public boolean containsMethod(final String methodName,
+				final String desc) {
+			if (methodName == null) {
+				return false;
+			}
+			// 如果是新增类，不用匹配方法
+			if (added) {
+				return true;
+			}
+			final String[][] candidates = methods.get(methodName);
+			if (candidates != null) {
+				for (final String[] params : candidates) {
+					if (matchParams(params, desc)) {
+						return true;
+					}
+				}
+			}
+			// lambda表达式按其所在方法的名称匹配，如lambda$main$0对应main
+			if (methodName.contains(LAMBDA)) {
+				final int start = methodName.indexOf('$') + 1;
+				int end = methodName.indexOf('$', start);
+				if (end == -1) {
+					end = methodName.length();
+				}
+				return methods.containsKey(methodName.substring(start, end));
+			}
+			return false;
+		}
+
+	}
+
+	/**
+	 * Creates an index over the given changed classes.
+	 *
+	 * @param classInfos
+	 *            changed classes, may be <code>null</code>
+	 */
+	public CodeDiffIndex(final List<ClassInfoDto> classInfos) {
+		if (classInfos == null || classInfos.isEmpty()) {
+			this.classes = Collections.emptyMap();
+			return;
+		}
+		final Map<String, ClassEntry> map = new HashMap<String, ClassEntry>(
+				classInfos.size() * 4 / 3 + 1);
+		int order = 0;
+		for (final ClassInfoDto dto : classInfos) {
+			final String classFile = dto.getClassFile();
+			if (classFile != null && !map.containsKey(classFile)) {
+				map.put(classFile, new ClassEntry(order, dto));
+			}
+			order++;
+		}
+		this.classes = map;
+	}
+
+	/**
+	 * Checks whether this index contains no changed classes. An empty index
+	 * means that a full report is created.
+	 *
+	 * @return <code>true</code> if there are no changed classes
+	 */
+	public boolean isEmpty() {
+		return classes.isEmpty();
+	}
+
+	/**
+	 * Returns the entry of the diff which applies to the given class. Inner
+	 * and anonymous classes also match the entry of their outermost class,
+	 * if both match the entry listed first in the diff is returned.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 * @return entry of the changed class or <code>null</code>
+	 */
+	public ClassEntry getClassEntry(final String className) {
+		if (className == null || classes.isEmpty()) {
+			return null;
+		}
+		final ClassEntry exact = classes.get(className);
+		final int idx = className.indexOf('$');
+		if (idx == -1) {
+			return exact;
+		}
+		final ClassEntry outer = classes.get(className.substring(0, idx));
+		if (exact == null) {
+			return outer;
+		}
+		return outer != null && outer.order < exact.order ? outer : exact;
+	}
+
+	/**
+	 * Checks whether the given class is part of the diff.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 * @return <code>true</code> if the class or its outermost class has been
+	 *         changed
+	 */
+	public boolean containsClass(final String className) {
+		return getClassEntry(className) != null;
+	}
+
+	/**
+	 * Checks whether the given method is part of the diff.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 * @param methodName
+	 *            name of the method
+	 * @param desc
+	 *            descriptor of the method
+	 * @return <code>true</code> if the method has been changed
+	 */
+	public boolean containsMethod(final String className,
+			final String methodName, final String desc) {
+		final ClassEntry entry = getClassEntry(className);
+		return entry != null && entry.containsMethod(methodName, desc);
+	}
+
+	/**
+	 * Matches the parameters of a changed method against a method
+	 * descriptor. Both must have the same number of parameters and the
+	 * simple name of every parameter type, e.g. <code>String</code>,
+	 * <code>int[]</code> or <code>Entry</code> for
+	 * <code>java.util.Map$Entry</code>, must be contained in the source
+	 * declaration of the parameter at the same position.
+	 *
+	 * @param params
+	 *            source declarations of the parameters, e.g.
+	 *            <code>String a</code>
+	 * @param desc
+	 *            method descriptor
+	 * @return <code>true</code> if the parameters match
+	 */
+	public static boolean matchParams(final String[] params,
+			final String desc) {
+		int pos = desc.indexOf('(') + 1;
+		int i = 0;
+		while (desc.charAt(pos) != ')') {
+			if (i == params.length) {
+				return false;
+			}
+			int dims = 0;
+			while (desc.charAt(pos) == '[') {
+				dims++;
+				pos++;
+			}
+			final String param = params[i++];
+			final char c = desc.charAt(pos);
+			if (c == 'L') {
+				int end = desc.indexOf(';', pos);
+				final int next = end + 1;
+				// 与Type.getClassName().split()保持一致，去掉包名和外部类名
+				if (dims == 0) {
+					while (end > pos + 1 && desc.charAt(end - 1) == '$') {
+						end--;
+					}
+				}
+				int start = end;
+				while (start > pos + 1) {
+					final char p = desc.charAt(start - 1);
+					if (p == '/' || p == '$') {
+						break;
+					}
+					start--;
+				}
+				if (!contains(param, desc, start, end, dims)) {
+					return false;
+				}
+				pos = next;
+			} else {
+				final String primitive = primitiveName(c);
+				if (!contains(param, primitive, 0, primitive.length(),
+						dims)) {
+					return false;
+				}
+				pos++;
+			}
+		}
+		return i == params.length;
+	}
+
+	private static String primitiveName(final char c) {
+		switch (c) {
+		case 'Z':
+			return "boolean";
+		case 'C':
+			return "char";
+		case 'B':
+			return "byte";
+		case 'S':
+			return "short";
+		case 'I':
+			return "int";
+		case 'F':
+			return "float";
+		case 'J':
+			return "long";
+		case 'D':
+			return "double";
+		default:
+			return "void";
+		}
+	}
+
+	/**
+	 * Checks whether <code>source</code> contains the region
+	 * <code>name[start, end)</code> followed by <code>dims</code> times
+	 * <code>[]</code>.
+	 */
+	private static boolean contains(final String source, final String name,
+			final int start, final int end, final int dims) {
+		final int len = end - start;
+		final int total = len + 2 * dims;
+		for (int p = 0; p + total <= source.length(); p++) {
+			if (source.regionMatches(p, name, start, len)
+					&& brackets(source, p + len, dims)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean brackets(final String source, final int pos,
+			final int dims) {
+		for (int d = 0; d < dims; d++) {
+			if (source.charAt(pos + 2 * d) != '['
+					|| source.charAt(pos + 2 * d + 1) != ']') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
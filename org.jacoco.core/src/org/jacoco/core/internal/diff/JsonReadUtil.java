@@ -14,6 +14,15 @@ package org.jacoco.core.internal.diff;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 /**
  * @Package: org.jacoco.core.internal.diff
@@ -35,10 +44,11 @@ public class JsonReadUtil {
 		String jsonStr = "";
 		try (Reader reader = new InputStreamReader(
 				new FileInputStream(filePath), StandardCharsets.UTF_8)) {
-			int ch = 0;
+			final char[] buffer = new char[8192];
+			int n;
 			StringBuilder sb = new StringBuilder();
-			while ((ch = reader.read()) != -1) {
-				sb.append((char) ch);
+			while ((n = reader.read(buffer)) != -1) {
+				sb.append(buffer, 0, n);
 			}
 			jsonStr = sb.toString();
 			return jsonStr;
@@ -47,8 +57,85 @@ public class JsonReadUtil {
 		}
 	}
 
-	public static void main(String[] args) {
-		readJsonToString("/Users/rayduan/jacoco/a.json");
+	/**
+	 * 流式读取本地差异代码json文件，不把整个文件读入内存
+	 *
+	 * @param file
+	 *            差异代码文件
+	 * @return 变更类，没有方法信息的类会被忽略
+	 * @throws IOException
+	 *             文件无法读取或者格式不正确
+	 */
+	public static List<ClassInfoDto> readClassInfos(File file)
+			throws IOException {
+		try (Reader reader = new InputStreamReader(new FileInputStream(file),
+				StandardCharsets.UTF_8)) {
+			return readClassInfos(reader);
+		}
+	}
+
+	/**
+	 * 流式解析差异代码json，数组中的类逐个反序列化，重复的字符串只保留一份
+	 *
+	 * @param reader
+	 *            json内容
+	 * @return 变更类，没有方法信息的类会被忽略
+	 * @throws IOException
+	 *             内容无法读取或者格式不正确
+	 */
+	public static List<ClassInfoDto> readClassInfos(Reader reader)
+			throws IOException {
+		final Gson gson = new Gson();
+		final JsonReader in = new JsonReader(reader);
+		final List<ClassInfoDto> result = new ArrayList<ClassInfoDto>();
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return result;
+		}
+		final Map<String, String> pool = new HashMap<String, String>();
+		in.beginArray();
+		while (in.hasNext()) {
+			final ClassInfoDto dto;
+			try {
+				dto = gson.fromJson(in, ClassInfoDto.class);
+			} catch (JsonParseException e) {
+				throw new IOException("Invalid diff code.", e);
+			}
+			if (dto != null && dto.getMethodInfos() != null) {
+				intern(dto, pool);
+				result.add(dto);
+			}
+		}
+		in.endArray();
+		return result;
+	}
+
+	private static void intern(ClassInfoDto dto, Map<String, String> pool) {
+		dto.setType(intern(dto.getType(), pool));
+		for (MethodInfoDto m : dto.getMethodInfos()) {
+			m.setMethodName(intern(m.getMethodName(), pool));
+			m.setAuthor(intern(m.getAuthor(), pool));
+			m.setCommitMessage(intern(m.getCommitMessage(), pool));
+			final List<String> params = m.getParameters();
+			if (params != null) {
+				for (int i = 0; i < params.size(); i++) {
+					params.set(i, intern(params.get(i), pool));
+				}
+			}
+		}
+		if (dto.getLines() != null) {
+			for (ChangeLine line : dto.getLines()) {
+				line.setType(intern(line.getType(), pool));
+			}
+		}
+	}
+
+	private static String intern(String s, Map<String, String> pool) {
+		if (s == null) {
+			return null;
+		}
+		final String existing = pool.putIfAbsent(s, s);
+		return existing == null ? s : existing;
 	}
 
 }
@@ -13,15 +13,12 @@
 package org.jacoco.core.internal.flow;
 
 import org.jacoco.core.internal.analysis.ClassAnalyzer;
-import org.jacoco.core.internal.diff.ClassInfoDto;
-import org.jacoco.core.internal.diff.CodeDiffUtil;
+import org.jacoco.core.internal.diff.CodeDiffIndex;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.commons.AnalyzerAdapter;
 
-import java.util.List;
-
 /**
  * A {@link org.objectweb.asm.ClassVisitor} that calculates probes for every
  * method.
@@ -72,14 +69,13 @@ public class ClassProbesAdapter extends ClassVisitor
 		final MethodProbesVisitor mv = cv.visitMethod(access, name, desc,
 				signature, exceptions);
 		if (null != mv) {
-			List<ClassInfoDto> classInfos = null;
+			CodeDiffIndex.ClassEntry diffClass = null;
 			if (cv instanceof ClassAnalyzer) {
-				classInfos = ((ClassAnalyzer) cv).getClassInfos();
+				diffClass = ((ClassAnalyzer) cv).getDiffClass();
 			}
 			// 增量代码，有点绕，由于参数定义成final,无法第二次指定,代码无法简化
-			if (null != classInfos && !classInfos.isEmpty()) {
-				if (CodeDiffUtil.checkMethodIn(this.name, name, desc,
-						classInfos)) {
+			if (null != diffClass) {
+				if (diffClass.containsMethod(name, desc)) {
 					methodProbes = mv;
 				} else {
 					methodProbes = EMPTY_METHOD_PROBES_VISITOR;
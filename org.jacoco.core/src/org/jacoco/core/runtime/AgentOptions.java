@@ -189,10 +189,62 @@ public final class AgentOptions {
 	 */
 	public static final String JMX = "jmx";
 
+	/**
+	 * Maximum number of clients the tcpserver serves at the same time. With
+	 * more than one connection a non-blocking server is used which executes
+	 * the commands of different clients concurrently. Every dump is collected
+	 * into memory before it is sent, so concurrent dumps with reset or delta
+	 * dumps hold up to one copy of the execution data per connection, while
+	 * concurrent dumps without reset share a single copy. Default is defined
+	 * by {@link #DEFAULT_MAXCONNECTIONS}.
+	 */
+	public static final String MAXCONNECTIONS = "maxconnections";
+
+	/**
+	 * Default value for the "maxconnections" agent option.
+	 */
+	public static final int DEFAULT_MAXCONNECTIONS = 1;
+
+	/**
+	 * Interval in seconds for periodic dumps when the output is
+	 * <code>file</code>. Every dump is written to a new file next to the
+	 * destfile with a timestamp inserted before the file extension. Default
+	 * is <code>0</code> (no periodic dumps).
+	 */
+	public static final String DUMPINTERVAL = "dumpinterval";
+
+	/**
+	 * Number of periodic dump files which are kept, older files are deleted.
+	 * Default is <code>0</code> (all files are kept).
+	 */
+	public static final String DUMPKEEP = "dumpkeep";
+
+	/**
+	 * Specifies whether execution data is reset after every periodic dump, so
+	 * every file only contains the coverage since the previous dump. All files
+	 * must be merged to get the complete coverage. Default is
+	 * <code>false</code>.
+	 */
+	public static final String DUMPRESET = "dumpreset";
+
+	/**
+	 * Port of the optional HTTP endpoint which serves execution data and a
+	 * coverage summary, <code>0</code> selects a free port. Default is
+	 * <code>-1</code> (no HTTP endpoint).
+	 */
+	public static final String HTTPPORT = "httpport";
+
+	/**
+	 * Address the HTTP endpoint binds to, <code>*</code> binds to all local
+	 * addresses. Default is the loopback address.
+	 */
+	public static final String HTTPADDRESS = "httpaddress";
+
 	private static final Collection<String> VALID_OPTIONS = Arrays.asList(
 			DESTFILE, APPEND, INCLUDES, EXCLUDES, EXCLCLASSLOADER,
 			INCLBOOTSTRAPCLASSES, INCLNOLOCATIONCLASSES, SESSIONID, DUMPONEXIT,
-			OUTPUT, ADDRESS, PORT, CLASSDUMPDIR, JMX);
+			OUTPUT, ADDRESS, PORT, CLASSDUMPDIR, JMX, MAXCONNECTIONS,
+			DUMPINTERVAL, DUMPKEEP, DUMPRESET, HTTPPORT, HTTPADDRESS);
 
 	private final Map<String, String> options;
 
@@ -250,6 +302,10 @@ public final class AgentOptions {
 
 	private void validateAll() {
 		validatePort(getPort());
+		validateMaxConnections(getMaxConnections());
+		validateDumpInterval(getDumpInterval());
+		validateDumpKeep(getDumpKeep());
+		validateHttpPort(getHttpPort());
 		getOutput();
 	}
 
@@ -259,6 +315,33 @@ public final class AgentOptions {
 		}
 	}
 
+	private void validateMaxConnections(final int maxConnections) {
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException(
+					"maxconnections must be at least 1");
+		}
+	}
+
+	private void validateDumpInterval(final int dumpInterval) {
+		if (dumpInterval < 0) {
+			throw new IllegalArgumentException(
+					"dumpinterval must not be negative");
+		}
+	}
+
+	private void validateDumpKeep(final int dumpKeep) {
+		if (dumpKeep < 0) {
+			throw new IllegalArgumentException("dumpkeep must not be negative");
+		}
+	}
+
+	private void validateHttpPort(final int httpPort) {
+		if (httpPort < -1) {
+			throw new IllegalArgumentException(
+					"httpport must be positive or -1");
+		}
+	}
+
 	/**
 	 * Returns the output file location.
 	 *
@@ -465,6 +548,132 @@ public final class AgentOptions {
 		setOption(PORT, port);
 	}
 
+	/**
+	 * Returns the maximum number of clients served at the same time when the
+	 * output is <code>tcpserver</code>.
+	 *
+	 * @return maximum number of concurrent connections
+	 */
+	public int getMaxConnections() {
+		return getOption(MAXCONNECTIONS, DEFAULT_MAXCONNECTIONS);
+	}
+
+	/**
+	 * Sets the maximum number of clients served at the same time when the
+	 * output is <code>tcpserver</code>.
+	 *
+	 * @param maxConnections
+	 *            maximum number of concurrent connections, at least 1
+	 */
+	public void setMaxConnections(final int maxConnections) {
+		validateMaxConnections(maxConnections);
+		setOption(MAXCONNECTIONS, maxConnections);
+	}
+
+	/**
+	 * Returns the interval in seconds for periodic dumps when the output is
+	 * <code>file</code>.
+	 *
+	 * @return dump interval in seconds, <code>0</code> for no periodic dumps
+	 */
+	public int getDumpInterval() {
+		return getOption(DUMPINTERVAL, 0);
+	}
+
+	/**
+	 * Sets the interval in seconds for periodic dumps when the output is
+	 * <code>file</code>.
+	 *
+	 * @param dumpInterval
+	 *            dump interval in seconds, <code>0</code> for no periodic
+	 *            dumps
+	 */
+	public void setDumpInterval(final int dumpInterval) {
+		validateDumpInterval(dumpInterval);
+		setOption(DUMPINTERVAL, dumpInterval);
+	}
+
+	/**
+	 * Returns the number of periodic dump files which are kept.
+	 *
+	 * @return number of files, <code>0</code> if all files are kept
+	 */
+	public int getDumpKeep() {
+		return getOption(DUMPKEEP, 0);
+	}
+
+	/**
+	 * Sets the number of periodic dump files which are kept.
+	 *
+	 * @param dumpKeep
+	 *            number of files, <code>0</code> to keep all files
+	 */
+	public void setDumpKeep(final int dumpKeep) {
+		validateDumpKeep(dumpKeep);
+		setOption(DUMPKEEP, dumpKeep);
+	}
+
+	/**
+	 * Returns whether execution data is reset after every periodic dump.
+	 *
+	 * @return <code>true</code>, if execution data is reset
+	 */
+	public boolean getDumpReset() {
+		return getOption(DUMPRESET, false);
+	}
+
+	/**
+	 * Sets whether execution data is reset after every periodic dump.
+	 *
+	 * @param dumpReset
+	 *            <code>true</code>, if execution data should be reset
+	 */
+	public void setDumpReset(final boolean dumpReset) {
+		setOption(DUMPRESET, dumpReset);
+	}
+
+	/**
+	 * Returns the port of the HTTP endpoint.
+	 *
+	 * @return port to listen on, <code>-1</code> if there is no HTTP endpoint
+	 */
+	public int getHttpPort() {
+		return getOption(HTTPPORT, -1);
+	}
+
+	/**
+	 * Sets the port of the HTTP endpoint.
+	 *
+	 * @param httpPort
+	 *            port to listen on, <code>0</code> for a free port or
+	 *            <code>-1</code> for no HTTP endpoint
+	 */
+	public void setHttpPort(final int httpPort) {
+		validateHttpPort(httpPort);
+		setOption(HTTPPORT, httpPort);
+	}
+
+	/**
+	 * Returns the address the HTTP endpoint binds to.
+	 *
+	 * @return hostname or IP address, <code>*</code> for all local addresses
+	 *         or <code>null</code> for the loopback address
+	 */
+	public String getHttpAddress() {
+		return getOption(HTTPADDRESS, null);
+	}
+
+	/**
+	 * Sets the address the HTTP endpoint binds to.
+	 *
+	 * @param address
+	 *            hostname or IP address, <code>*</code> for all local
+	 *            addresses or <code>null</code> for the loopback address
+	 */
+	public void setHttpAddress(final String address) {
+		setOption(HTTPADDRESS, address);
+	}
+
 	/**
 	 * Gets the hostname or IP address to listen to when output is
 	 * <code>tcpserver</code> or connect to when output is
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jacoco.core.data.ExecutionData;
+
+/**
+ * Remembers which probes of a runtime have already been reported by delta
+ * dumps. Every delta dump creates a new generation. A class is stamped with
+ * the generation of the dump which first observed one of its current hits, so
+ * a client which has seen generation <code>n</code> only needs the classes
+ * stamped later than <code>n</code>. This works for any number of clients
+ * polling with different generations.
+ * <p>
+ * Probes only change from <code>false</code> to <code>true</code> until the
+ * runtime is reset, so a class got new hits exactly when its number of hit
+ * probes increased. Only this number is kept per class, not a copy of the
+ * probes.
+ * <p>
+ * Generations are counted from a base derived from the creation time of the
+ * runtime. Generations issued by a different runtime instance, e.g. before a
+ * restart of the JVM, are therefore not mistaken for known ones.
+ * <p>
+ * Instances are not thread safe, the runtime calls them while holding all
+ * locks of its execution data.
+ */
+final class DeltaTracker {
+
+	private static class Entry {
+
+		int hits;
+
+		long generation;
+
+	}
+
+	/** entries only exist for classes with hits */
+	private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+
+	private final long base;
+
+	private long generation;
+
+	DeltaTracker() {
+		base = System.currentTimeMillis() << 16;
+		generation = base;
+	}
+
+	/**
+	 * Starts a new generation.
+	 *
+	 * @return the new generation
+	 */
+	long next() {
+		return ++generation;
+	}
+
+	/**
+	 * Checks whether the given generation has been issued by this tracker
+	 * before the current generation.
+	 *
+	 * @param g
+	 *            generation supplied by a client
+	 * @return <code>true</code> if the generation is known
+	 */
+	boolean isKnown(final long g) {
+		return g > base && g < generation;
+	}
+
+	/**
+	 * Counts the hit probes of the given class and stamps the class with the
+	 * current generation if the count increased since the last dump.
+	 *
+	 * @param data
+	 *            execution data of a class
+	 * @return generation of the last dump which observed new hits or
+	 *         <code>0</code> if the class never had hits
+	 */
+	long update(final ExecutionData data) {
+		final boolean[] probes = data.getProbes();
+		int hits = 0;
+		for (final boolean p : probes) {
+			if (p) {
+				hits++;
+			}
+		}
+		final Long id = Long.valueOf(data.getId());
+		Entry entry = entries.get(id);
+		if (hits == 0) {
+			return entry == null ? 0 : entry.generation;
+		}
+		if (entry == null) {
+			entry = new Entry();
+			entries.put(id, entry);
+		}
+		if (hits > entry.hits) {
+			entry.hits = hits;
+			entry.generation = generation;
+		}
+		return entry.generation;
+	}
+
+	/**
+	 * Forgets all hit counts. Must be called whenever the probes are reset, so
+	 * hits recorded afterwards are detected again.
+	 */
+	void reset() {
+		entries.clear();
+	}
+
+}
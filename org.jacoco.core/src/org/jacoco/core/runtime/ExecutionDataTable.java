@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+
+/**
+ * Concurrent table for the execution data of a runtime, keyed by the
+ * primitive class id. The ids are spread over a fixed number of stripes. Each
+ * stripe is an open addressing hash table which is only modified while the
+ * stripe's lock is held. Lookups of existing entries do not lock at all, so
+ * classes initialized concurrently on many threads do not wait for each other.
+ * <p>
+ * Entries are never moved within a table and never removed, a stripe which
+ * grows publishes a new table. A lookup without lock therefore either finds
+ * the entry or falls back to the locked path. {@link ExecutionData} only has
+ * final fields and is safely published this way.
+ */
+final class ExecutionDataTable {
+
+	private static final int STRIPE_BITS = 6;
+
+	private static final int STRIPES = 1 << STRIPE_BITS;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final Stripe[] stripes;
+
+	ExecutionDataTable() {
+		stripes = new Stripe[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	private static final class Table {
+
+		final ExecutionData[] values;
+
+		Table(final int capacity) {
+			values = new ExecutionData[capacity];
+		}
+
+		ExecutionData find(final long id, final int hash) {
+			final int mask = values.length - 1;
+			int i = hash & mask;
+			ExecutionData entry;
+			while ((entry = values[i]) != null) {
+				// the id is a final field and can be read without lock
+				if (entry.getId() == id) {
+					return entry;
+				}
+				i = (i + 1) & mask;
+			}
+			return null;
+		}
+
+		void insert(final ExecutionData entry, final int hash) {
+			final int mask = values.length - 1;
+			int i = hash & mask;
+			while (values[i] != null) {
+				i = (i + 1) & mask;
+			}
+			values[i] = entry;
+		}
+
+	}
+
+	private static final class Stripe extends ReentrantLock {
+
+		private static final long serialVersionUID = 1L;
+
+		volatile Table table = new Table(INITIAL_CAPACITY);
+
+		int size;
+
+		ExecutionData getOrCreate(final long id, final int hash,
+				final String name, final int probecount) {
+			lock();
+			try {
+				ExecutionData entry = table.find(id, hash);
+				if (entry == null) {
+					entry = new ExecutionData(id, name, probecount);
+					if (++size * 4 > table.values.length * 3) {
+						grow();
+					}
+					table.insert(entry, hash);
+				}
+				return entry;
+			} finally {
+				unlock();
+			}
+		}
+
+		private void grow() {
+			final Table old = table;
+			final Table t = new Table(old.values.length << 1);
+			for (final ExecutionData e : old.values) {
+				if (e != null) {
+					t.insert(e, hash(e.getId()) >>> STRIPE_BITS);
+				}
+			}
+			table = t;
+		}
+
+	}
+
+	private static int hash(final long id) {
+		final long h = id * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Returns the execution data for the given class, a new entry is created
+	 * if there is none yet.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 * @param probecount
+	 *            probe data length
+	 * @return execution data
+	 */
+	ExecutionData get(final long id, final String name, final int probecount) {
+		final int hash = hash(id);
+		final Stripe stripe = stripes[hash & (STRIPES - 1)];
+		final int slot = hash >>> STRIPE_BITS;
+		ExecutionData entry = stripe.table.find(id, slot);
+		if (entry == null) {
+			entry = stripe.getOrCreate(id, slot, name, probecount);
+		}
+		entry.assertCompatibility(id, name, probecount);
+		return entry;
+	}
+
+	/**
+	 * Locks all stripes, no new entries can be added until
+	 * {@link #unlockAll()} is called.
+	 */
+	void lockAll() {
+		for (final Stripe s : stripes) {
+			s.lock();
+		}
+	}
+
+	/**
+	 * Releases the locks taken by {@link #lockAll()}.
+	 */
+	void unlockAll() {
+		for (int i = STRIPES - 1; i >= 0; i--) {
+			stripes[i].unlock();
+		}
+	}
+
+	/**
+	 * Writes all entries to the given visitor. The caller must hold all locks
+	 * to get a consistent snapshot.
+	 *
+	 * @param visitor
+	 *            visitor to write entries to
+	 */
+	void accept(final IExecutionDataVisitor visitor) {
+		for (final Stripe s : stripes) {
+			for (final ExecutionData e : s.table.values) {
+				if (e != null) {
+					visitor.visitClassExecution(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resets the probes of all entries. The entries itself are not removed.
+	 * The caller must hold all locks.
+	 */
+	void reset() {
+		for (final Stripe s : stripes) {
+			for (final ExecutionData e : s.table.values) {
+				if (e != null) {
+					e.reset();
+				}
+			}
+		}
+	}
+
+}
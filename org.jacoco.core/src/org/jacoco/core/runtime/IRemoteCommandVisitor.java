@@ -31,4 +31,46 @@ public interface IRemoteCommandVisitor {
 	 */
 	void visitDumpCommand(boolean dump, boolean reset) throws IOException;
 
+	/**
+	 * Requests a dump of the classes which received new hits since the given
+	 * generation. The response is completed with the new generation which can
+	 * be passed to the next request. The default implementation answers with
+	 * a regular dump without reset for receivers which do not support delta
+	 * dumps.
+	 *
+	 * @param generation
+	 *            generation returned by the previous delta dump or
+	 *            <code>0</code> to request all classes with hits
+	 * @throws IOException
+	 *             in case of problems with the remote connection
+	 */
+	default void visitDeltaDumpCommand(final long generation)
+			throws IOException {
+		// Without delta support all classes are dumped. As no generation is
+		// sent, the next request of the client will get all classes again.
+		visitDumpCommand(true, false);
+	}
+
+	/**
+	 * Requests the download of a jar file. The response is a download header
+	 * followed by the raw content of the file from the returned offset, see
+	 * {@link JarTransfer}. The default implementation rejects the request for
+	 * receivers which do not support downloads.
+	 *
+	 * @param artifact
+	 *            download block type identifying the jar
+	 * @param offset
+	 *            length of a partial copy to resume or <code>0</code>
+	 * @param checksum
+	 *            checksum of the complete file returned by a previous
+	 *            request or {@link JarTransfer#UNKNOWN_CHECKSUM}
+	 * @throws IOException
+	 *             in case of problems with the remote connection or if the
+	 *             receiver does not support downloads
+	 */
+	default void visitDownloadCommand(final byte artifact, final long offset,
+			final long checksum) throws IOException {
+		throw new IOException("Download of jar files is not supported.");
+	}
+
 }
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Transfer of a jar file for the download command of the remote control
+ * protocol. The response starts with a header block holding the length and
+ * the CRC32 checksum of the complete file and the offset the transfer starts
+ * at, followed by the raw bytes from this offset to the end of the file. A
+ * client which lost the connection can resume at the length of its partial
+ * copy. If the checksum sent by the client does not match the current file
+ * the transfer starts at the beginning again.
+ * <p>
+ * The content is copied with {@link FileChannel#transferTo(long, long,
+ * WritableByteChannel)}, which avoids copies in user space for socket
+ * channels. Checksums are cached as long as length and modification time of a
+ * file do not change.
+ */
+public final class JarTransfer implements Closeable {
+
+	/** Checksum value of a client which does not know the checksum yet. */
+	public static final long UNKNOWN_CHECKSUM = -1;
+
+	private static final Map<String, long[]> CHECKSUMS = new ConcurrentHashMap<String, long[]>();
+
+	private final FileChannel channel;
+
+	private final long length;
+
+	private final long checksum;
+
+	private final long offset;
+
+	private long position;
+
+	private JarTransfer(final FileChannel channel, final long length,
+			final long checksum, final long offset) {
+		this.channel = channel;
+		this.length = length;
+		this.checksum = checksum;
+		this.offset = offset;
+		this.position = offset;
+	}
+
+	/**
+	 * Prepares the transfer of the given file.
+	 *
+	 * @param file
+	 *            file to transfer or <code>null</code>
+	 * @param offset
+	 *            offset requested by the client
+	 * @param checksum
+	 *            checksum of the file known by the client or
+	 *            {@link #UNKNOWN_CHECKSUM}
+	 * @return transfer which must be closed or <code>null</code> if the file
+	 *         does not exist
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static JarTransfer open(final File file, final long offset,
+			final long checksum) throws IOException {
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+		final long actual = cachedChecksum(file);
+		final FileChannel channel = new FileInputStream(file).getChannel();
+		final long length = channel.size();
+		final boolean resume = offset > 0 && offset <= length
+				&& (checksum == UNKNOWN_CHECKSUM || checksum == actual);
+		return new JarTransfer(channel, length, actual, resume ? offset : 0);
+	}
+
+	/**
+	 * Returns the jar file of the given download command block type. The jars
+	 * are searched in the sofa repository of the installation the
+	 * environment variable <code>SOFA_HOME</code> points to.
+	 *
+	 * @param artifact
+	 *            one of the download block types of
+	 *            {@link RemoteControlWriter}
+	 * @return jar file or <code>null</code> for other block types
+	 * @throws FileNotFoundException
+	 *             if the jar can't be found in the sofa repository
+	 */
+	public static File locate(final byte artifact)
+			throws FileNotFoundException {
+		switch (artifact) {
+		case RemoteControlWriter.BLOCK_DOWNBBZX:
+			return findJar("com.yss.ams.bbzx");
+		case RemoteControlWriter.BLOCK_DOWNREPORTVIEW:
+			return findJar("com.yss.ams.ReportViewer");
+		case RemoteControlWriter.BLOCK_DOWNWEBSITE:
+			return findJar("com.yss.ams.website");
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Searches the sofa repository for a jar with the given name prefix.
+	 *
+	 * @param jarName
+	 *            prefix of the file name
+	 * @return jar file
+	 * @throws FileNotFoundException
+	 *             if <code>SOFA_HOME</code> is not set or the repository
+	 *             contains no such jar
+	 */
+	public static File findJar(final String jarName)
+			throws FileNotFoundException {
+		final String sofaHome = System.getenv("SOFA_HOME");
+		if (sofaHome == null) {
+			throw new FileNotFoundException(
+					"Environment variable SOFA_HOME is not set.");
+		}
+		final String dir = sofaHome + File.separator + "soft" + File.separator
+				+ "tomcat" + File.separator + "webapps" + File.separator
+				+ "sofa" + File.separator + "WEB-INF" + File.separator
+				+ "sofa-container" + File.separator + "repository"
+				+ File.separator + "sofa";
+		final File[] files = new File(dir).listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				if (file.getName().startsWith(jarName)) {
+					return file;
+				}
+			}
+		}
+		throw new FileNotFoundException(
+				String.format("No jar %s found in %s.", jarName, dir));
+	}
+
+	/**
+	 * Calculates the CRC32 checksum of the given file.
+	 *
+	 * @param file
+	 *            file to read
+	 * @return checksum of the file content
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static long checksum(final File file) throws IOException {
+		final CRC32 crc = new CRC32();
+		final FileChannel channel = new FileInputStream(file).getChannel();
+		try {
+			final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		} finally {
+			channel.close();
+		}
+		return crc.getValue();
+	}
+
+	private static long cachedChecksum(final File file) throws IOException {
+		final String key = file.getAbsolutePath();
+		final long length = file.length();
+		final long modified = file.lastModified();
+		final long[] entry = CHECKSUMS.get(key);
+		if (entry != null && entry[0] == length && entry[1] == modified) {
+			return entry[2];
+		}
+		final long value = checksum(file);
+		CHECKSUMS.put(key, new long[] { length, modified, value });
+		return value;
+	}
+
+	/**
+	 * @return length of the complete file
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return checksum of the complete file
+	 */
+	public long getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * @return offset the transfer starts at
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Writes the header block of the response.
+	 *
+	 * @param writer
+	 *            writer of the connection
+	 * @throws IOException
+	 *             in case of problems with the remote connection
+	 */
+	public void sendHeader(final RemoteControlWriter writer)
+			throws IOException {
+		writer.sendDownloadHeader(length, checksum, offset);
+	}
+
+	/**
+	 * Transfers as many bytes as the target accepts without blocking.
+	 *
+	 * @param target
+	 *            channel to write to
+	 * @return <code>true</code> if the complete content has been transferred
+	 * @throws IOException
+	 *             in case of problems with the file or the target
+	 */
+	public boolean transferSome(final WritableByteChannel target)
+			throws IOException {
+		if (position < length) {
+			final long n = channel.transferTo(position, length - position,
+					target);
+			if (n == 0 && channel.size() <= position) {
+				throw new EOFException("File truncated during transfer.");
+			}
+			position += n;
+		}
+		return position == length;
+	}
+
+	/**
+	 * Transfers the remaining content to the given blocking target.
+	 *
+	 * @param target
+	 *            channel to write to
+	 * @throws IOException
+	 *             in case of problems with the file or the target
+	 */
+	public void transferTo(final WritableByteChannel target)
+			throws IOException {
+		while (!transferSome(target)) {
+			// blocking targets accept at least one byte per call
+		}
+	}
+
+	/**
+	 * Closes the file.
+	 *
+	 * @throws IOException
+	 *             if the file can't be closed
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
@@ -25,6 +25,16 @@ public class RemoteControlReader extends ExecutionDataReader {
 
 	private IRemoteCommandVisitor remoteCommandVisitor;
 
+	private long deltaGeneration = -1;
+
+	private long downloadLength = -1;
+
+	private long downloadChecksum = JarTransfer.UNKNOWN_CHECKSUM;
+
+	private long downloadOffset;
+
+	private boolean downloadHeader;
+
 	/**
 	 * Create a new read based on the given input stream.
 	 *
@@ -48,6 +58,22 @@ public class RemoteControlReader extends ExecutionDataReader {
 		case RemoteControlWriter.BLOCK_CMDDUMP:
 			readDumpCommand();
 			return true;
+		case RemoteControlWriter.BLOCK_CMDDELTADUMP:
+			readDeltaDumpCommand();
+			return true;
+		case RemoteControlWriter.BLOCK_DELTAGENERATION:
+			deltaGeneration = in.readLong();
+			return true;
+		case RemoteControlWriter.BLOCK_CMDDOWNLOAD:
+			readDownloadCommand();
+			return true;
+		case RemoteControlWriter.BLOCK_DOWNLOADHEADER:
+			downloadLength = in.readLong();
+			downloadChecksum = in.readLong();
+			downloadOffset = in.readLong();
+			downloadHeader = true;
+			// the raw content follows, the caller reads it from the stream
+			return false;
 		case RemoteControlWriter.BLOCK_CMDOK:
 			return false;
 		default:
@@ -65,6 +91,55 @@ public class RemoteControlReader extends ExecutionDataReader {
 		this.remoteCommandVisitor = visitor;
 	}
 
+	/**
+	 * Returns the generation of the last delta dump response read.
+	 *
+	 * @return generation of the last delta dump or <code>-1</code> if no delta
+	 *         dump response has been read
+	 */
+	public long getDeltaGeneration() {
+		return deltaGeneration;
+	}
+
+	/**
+	 * Returns whether a download header has been read. As the header stops
+	 * {@link #read()} like a {@link RemoteControlWriter#BLOCK_CMDOK} block
+	 * this allows to tell both apart.
+	 *
+	 * @return <code>true</code> if a download header has been read
+	 */
+	public boolean hasDownloadHeader() {
+		return downloadHeader;
+	}
+
+	/**
+	 * Returns the length of the complete file of the last download header.
+	 *
+	 * @return file length or <code>-1</code> if the file is not available
+	 */
+	public long getDownloadLength() {
+		return downloadLength;
+	}
+
+	/**
+	 * Returns the CRC32 checksum of the complete file of the last download
+	 * header.
+	 *
+	 * @return file checksum
+	 */
+	public long getDownloadChecksum() {
+		return downloadChecksum;
+	}
+
+	/**
+	 * Returns the offset the content of the last download header starts at.
+	 *
+	 * @return content offset
+	 */
+	public long getDownloadOffset() {
+		return downloadOffset;
+	}
+
 	private void readDumpCommand() throws IOException {
 		if (remoteCommandVisitor == null) {
 			throw new IOException("No remote command visitor.");
@@ -74,4 +149,21 @@ public class RemoteControlReader extends ExecutionDataReader {
 		remoteCommandVisitor.visitDumpCommand(dump, reset);
 	}
 
+	private void readDeltaDumpCommand() throws IOException {
+		if (remoteCommandVisitor == null) {
+			throw new IOException("No remote command visitor.");
+		}
+		remoteCommandVisitor.visitDeltaDumpCommand(in.readLong());
+	}
+
+	private void readDownloadCommand() throws IOException {
+		if (remoteCommandVisitor == null) {
+			throw new IOException("No remote command visitor.");
+		}
+		final byte artifact = in.readByte();
+		final long offset = in.readLong();
+		final long checksum = in.readLong();
+		remoteCommandVisitor.visitDownloadCommand(artifact, offset, checksum);
+	}
+
 }
@@ -29,6 +29,18 @@ public class RemoteControlWriter extends ExecutionDataWriter
 	/** Block identifier for dump command */
 	public static final byte BLOCK_CMDDUMP = 0x40;
 
+	/** Block identifier for delta dump command */
+	public static final byte BLOCK_CMDDELTADUMP = 0x41;
+
+	/** Block identifier for the generation of a delta dump response */
+	public static final byte BLOCK_DELTAGENERATION = 0x42;
+
+	/** Block identifier for the framed jar download command */
+	public static final byte BLOCK_CMDDOWNLOAD = 0x43;
+
+	/** Block identifier for the header of a jar download response */
+	public static final byte BLOCK_DOWNLOADHEADER = 0x44;
+
 	// bbzx-jar包
 	public static final byte BLOCK_DOWNBBZX = 0x50;
 	// reportview-jar包
@@ -60,6 +72,43 @@ public class RemoteControlWriter extends ExecutionDataWriter
 		out.writeByte(RemoteControlWriter.BLOCK_CMDOK);
 	}
 
+	/**
+	 * Sends the generation of a delta dump. The generation identifies the
+	 * state of the runtime at the time of the dump and must be passed with the
+	 * next delta dump command.
+	 *
+	 * @param generation
+	 *            generation of the delta dump
+	 * @throws IOException
+	 *             in case of problems with the remote connection
+	 */
+	public void sendDeltaGeneration(final long generation) throws IOException {
+		out.writeByte(RemoteControlWriter.BLOCK_DELTAGENERATION);
+		out.writeLong(generation);
+	}
+
+	/**
+	 * Sends the header of a jar download. The raw content of the file from
+	 * the given offset to its end has to be written directly afterwards.
+	 *
+	 * @param length
+	 *            length of the complete file or <code>-1</code> if the file
+	 *            is not available
+	 * @param checksum
+	 *            CRC32 checksum of the complete file
+	 * @param offset
+	 *            offset the content starts at
+	 * @throws IOException
+	 *             in case of problems with the remote connection
+	 */
+	public void sendDownloadHeader(final long length, final long checksum,
+			final long offset) throws IOException {
+		out.writeByte(RemoteControlWriter.BLOCK_DOWNLOADHEADER);
+		out.writeLong(length);
+		out.writeLong(checksum);
+		out.writeLong(offset);
+	}
+
 	public void visitDumpCommand(final boolean dump, final boolean reset)
 			throws IOException {
 		out.writeByte(RemoteControlWriter.BLOCK_CMDDUMP);
@@ -67,4 +116,18 @@ public class RemoteControlWriter extends ExecutionDataWriter
 		out.writeBoolean(reset);
 	}
 
+	public void visitDeltaDumpCommand(final long generation)
+			throws IOException {
+		out.writeByte(RemoteControlWriter.BLOCK_CMDDELTADUMP);
+		out.writeLong(generation);
+	}
+
+	public void visitDownloadCommand(final byte artifact, final long offset,
+			final long checksum) throws IOException {
+		out.writeByte(RemoteControlWriter.BLOCK_CMDDOWNLOAD);
+		out.writeByte(artifact);
+		out.writeLong(offset);
+		out.writeLong(checksum);
+	}
+
 }
@@ -13,7 +13,6 @@
 package org.jacoco.core.runtime;
 
 import org.jacoco.core.data.ExecutionData;
-import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
 import org.jacoco.core.data.SessionInfo;
@@ -31,9 +30,16 @@ import java.lang.reflect.Field;
 public class RuntimeData {
 
     /**
-     * store for execution data
+     * store for execution data, classes are looked up by their primitive id
+     * without a global lock
      */
-    protected final ExecutionDataStore store;
+    private final ExecutionDataTable store;
+
+    /**
+     * probes already reported by delta dumps, only accessed while all locks of
+     * the store are held
+     */
+    private final DeltaTracker deltas;
 
     private long startTimeStamp;
 
@@ -43,7 +49,8 @@ public class RuntimeData {
      * Creates a new runtime.
      */
     public RuntimeData() {
-        store = new ExecutionDataStore();
+        store = new ExecutionDataTable();
+        deltas = new DeltaTracker();
         sessionId = "<none>";
         startTimeStamp = System.currentTimeMillis();
     }
@@ -82,7 +89,9 @@ public class RuntimeData {
      */
     public final void collect(final IExecutionDataVisitor executionDataVisitor,
                               final ISessionInfoVisitor sessionInfoVisitor, final boolean reset) {
-        synchronized (store) {
+        // 锁住所有分段，收集期间不会有新的类加入，保证快照一致
+        store.lockAll();
+        try {
             final SessionInfo info = new SessionInfo(sessionId, startTimeStamp,
                     System.currentTimeMillis());
             sessionInfoVisitor.visitSessionInfo(info);
@@ -90,6 +99,47 @@ public class RuntimeData {
             if (reset) {
                 reset();
             }
+        } finally {
+            store.unlockAll();
+        }
+    }
+
+    /**
+     * Collects the execution data of all classes which received new hits since
+     * the given generation and writes it to the given
+     * {@link IExecutionDataVisitor} object. If the generation has not been
+     * issued by this runtime, e.g. <code>0</code> for the first request, all
+     * classes with hits are written. Merging the results of subsequent delta
+     * dumps gives the same coverage as a regular dump.
+     *
+     * @param executionDataVisitor handler to write coverage data to
+     * @param sessionInfoVisitor   handler to write session information to
+     * @param generation           generation returned by the previous delta dump
+     * @return the new generation to pass to the next delta dump
+     */
+    public final long collectDelta(
+            final IExecutionDataVisitor executionDataVisitor,
+            final ISessionInfoVisitor sessionInfoVisitor,
+            final long generation) {
+        store.lockAll();
+        try {
+            final long next = deltas.next();
+            final boolean known = deltas.isKnown(generation);
+            final SessionInfo info = new SessionInfo(sessionId, startTimeStamp,
+                    System.currentTimeMillis());
+            sessionInfoVisitor.visitSessionInfo(info);
+            store.accept(new IExecutionDataVisitor() {
+                public void visitClassExecution(final ExecutionData data) {
+                    // 未知的generation按0处理，返回所有有命中的类
+                    final long changed = deltas.update(data);
+                    if (changed != 0 && (!known || changed > generation)) {
+                        executionDataVisitor.visitClassExecution(data);
+                    }
+                }
+            });
+            return next;
+        } finally {
+            store.unlockAll();
         }
     }
 
@@ -97,16 +147,21 @@ public class RuntimeData {
      * Resets all coverage information.
      */
     public final void reset() {
-        synchronized (store) {
+        store.lockAll();
+        try {
             store.reset();
+            deltas.reset();
             startTimeStamp = System.currentTimeMillis();
+        } finally {
+            store.unlockAll();
         }
     }
 
     /**
      * Returns the coverage data for the class with the given identifier. If
      * there is no data available under the given id a new entry is created.
-     * This is a synchronized access to the underlying store.
+     * Existing entries are returned without locking, new entries are created
+     * under a lock which is shared with a fraction of the classes only.
      *
      * @param id         class identifier
      * @param name       VM name of the class
@@ -115,9 +170,7 @@ public class RuntimeData {
      */
     public ExecutionData getExecutionData(final Long id, final String name,
                                           final int probecount) {
-        synchronized (store) {
-            return store.get(id, name, probecount);
-        }
+        return store.get(id.longValue(), name, probecount);
     }
 
     /**
@@ -12,14 +12,24 @@
  *******************************************************************************/
 package org.jacoco.core.tools;
 
+import static java.lang.String.format;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 
-import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.runtime.JarTransfer;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
 
@@ -28,8 +38,19 @@ import org.jacoco.core.runtime.RemoteControlWriter;
  */
 public class ExecDumpClient {
 
+	/** Suffix of the partial file of a jar download */
+	public static final String PART_SUFFIX = ".part";
+
+	/**
+	 * Suffix of the file next to the partial file which holds the checksum of
+	 * the jar the partial file belongs to
+	 */
+	public static final String CHECKSUM_SUFFIX = ".crc";
+
 	private boolean dump;
 	private boolean reset;
+	private boolean delta;
+	private long generation;
 	private int retryCount;
 	private long retryDelay;
 
@@ -65,6 +86,40 @@ public class ExecDumpClient {
 		this.reset = reset;
 	}
 
+	/**
+	 * Specifies whether only the classes which received new hits since the
+	 * last dump of this client should be requested. The execution data of
+	 * subsequent delta dumps has to be merged to get the complete coverage.
+	 * In delta mode the dump and reset settings are not used.
+	 *
+	 * @param delta
+	 *            <code>true</code> if delta dumps should be requested
+	 */
+	public void setDelta(final boolean delta) {
+		this.delta = delta;
+	}
+
+	/**
+	 * Sets the generation the next delta dump is requested for. This allows
+	 * to continue polling with a generation from a previous client instance.
+	 * The initial generation <code>0</code> requests all classes with hits.
+	 *
+	 * @param generation
+	 *            generation returned by a previous delta dump
+	 */
+	public void setGeneration(final long generation) {
+		this.generation = generation;
+	}
+
+	/**
+	 * Returns the generation returned by the last delta dump.
+	 *
+	 * @return generation for the next delta dump
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
 	/**
 	 * Sets the number of retry attempts to connect to the target socket. This
 	 * allows to wait for a certain time until the target agent has initialized.
@@ -126,11 +181,18 @@ public class ExecDumpClient {
 			remoteReader
 					.setExecutionDataVisitor(loader.getExecutionDataStore());
 
-			remoteWriter.visitDumpCommand(dump, reset);
+			if (delta) {
+				remoteWriter.visitDeltaDumpCommand(generation);
+			} else {
+				remoteWriter.visitDumpCommand(dump, reset);
+			}
 
 			if (!remoteReader.read()) {
 				throw new IOException("Socket closed unexpectedly.");
 			}
+			if (delta) {
+				generation = remoteReader.getDeltaGeneration();
+			}
 
 		} finally {
 			socket.close();
@@ -138,32 +200,147 @@ public class ExecDumpClient {
 		return loader;
 	}
 
+	/**
+	 * Downloads the jar of the given download block type from the given
+	 * end-point. The content is written to <code>fileName + ".part"</code>
+	 * first. A download which has been interrupted is resumed at the length of
+	 * this file, by the next retry or by a later call. The CRC32 checksum sent
+	 * by the agent is stored in <code>fileName + ".part.crc"</code> and sent
+	 * when resuming, so the agent starts at the beginning again if the jar
+	 * has changed in between. The complete file is verified with this checksum
+	 * before it is renamed to the given file name.
+	 *
+	 * @param address
+	 *            host name or IP-Address to connect to
+	 * @param port
+	 *            port to connect to
+	 * @param type
+	 *            download block type of {@link RemoteControlWriter}
+	 * @param fileName
+	 *            file to write the jar to
+	 * @return empty container, downloads do not contain execution data
+	 * @throws IOException
+	 *             in case the jar is not available, can not be downloaded or
+	 *             the downloaded file is corrupt
+	 */
 	public ExecFileLoader downloadJar(final InetAddress address, final int port,
-			byte type, String fileName) throws IOException {
-		final ExecFileLoader loader = new ExecFileLoader();
+			final byte type, final String fileName) throws IOException {
+		final File target = new File(fileName);
+		final File part = new File(fileName + PART_SUFFIX);
+		final File checksumFile = new File(part.getPath() + CHECKSUM_SUFFIX);
+		// checksum of the file known from a previous attempt
+		final long[] checksum = { readChecksum(checksumFile) };
+		int count = 0;
+		while (true) {
+			try {
+				download(address, port, type, part, checksumFile, checksum);
+				break;
+			} catch (final FileNotFoundException e) {
+				throw e;
+			} catch (final IOException e) {
+				if (++count > retryCount) {
+					throw e;
+				}
+				onConnectionFailure(e);
+				sleep();
+			}
+		}
+		if (JarTransfer.checksum(part) != checksum[0]) {
+			part.delete();
+			checksumFile.delete();
+			throw new IOException(
+					format("Checksum mismatch of downloaded file %s.", target));
+		}
+		if (target.exists() && !target.delete()
+				|| !part.renameTo(target)) {
+			throw new IOException(format("Can't rename %s to %s.", part,
+					target));
+		}
+		checksumFile.delete();
+		return new ExecFileLoader();
+	}
+
+	private static long readChecksum(final File file) throws IOException {
+		if (!file.isFile()) {
+			return JarTransfer.UNKNOWN_CHECKSUM;
+		}
+		final DataInputStream input = new DataInputStream(
+				new FileInputStream(file));
+		try {
+			return input.readLong();
+		} catch (final EOFException e) {
+			return JarTransfer.UNKNOWN_CHECKSUM;
+		} finally {
+			input.close();
+		}
+	}
+
+	private static void writeChecksum(final File file, final long checksum)
+			throws IOException {
+		final DataOutputStream output = new DataOutputStream(
+				new FileOutputStream(file));
+		try {
+			output.writeLong(checksum);
+		} finally {
+			output.close();
+		}
+	}
+
+	private void download(final InetAddress address, final int port,
+			final byte type, final File part, final File checksumFile,
+			final long[] checksum) throws IOException {
 		final Socket socket = tryConnect(address, port);
 		try {
-			CompactDataInput input = new CompactDataInput(
+			final InputStream input = new BufferedInputStream(
 					socket.getInputStream());
+			final RemoteControlWriter remoteWriter = new RemoteControlWriter(
+					socket.getOutputStream());
 			final RemoteControlReader remoteReader = new RemoteControlReader(
-					socket.getInputStream());
-			socket.getOutputStream().write(type);
-			// 下载jar包文件
-			OutputStream output = new FileOutputStream(fileName);
-			byte[] buffer = new byte[1024];
-			int bytesRead;
-			// 循环读取数据，直到没有数据可读
-			while ((bytesRead = input.read(buffer)) != -1) {
-				output.write(buffer, 0, bytesRead);
+					input);
+			remoteWriter.visitDownloadCommand(type, part.length(),
+					checksum[0]);
+
+			if (!remoteReader.read() || !remoteReader.hasDownloadHeader()) {
+				throw new IOException("Socket closed unexpectedly.");
+			}
+			final long length = remoteReader.getDownloadLength();
+			if (length < 0) {
+				throw new FileNotFoundException(format(
+						"Jar of type %x not available.", Byte.valueOf(type)));
+			}
+			if (checksum[0] != remoteReader.getDownloadChecksum()) {
+				// stored first, so a resumed download detects a changed jar
+				checksum[0] = remoteReader.getDownloadChecksum();
+				writeChecksum(checksumFile, checksum[0]);
+			}
+			final long offset = remoteReader.getDownloadOffset();
+			copy(input, part, offset, length - offset);
+			if (!remoteReader.read()) {
+				throw new IOException("Socket closed unexpectedly.");
 			}
-			// 关闭资源
-			output.flush();
-			output.close();
-			input.close();
 		} finally {
 			socket.close();
 		}
-		return loader;
+	}
+
+	private static void copy(final InputStream input, final File part,
+			final long offset, long remaining) throws IOException {
+		// the agent restarts at 0 if the partial copy does not fit the file
+		final OutputStream output = new FileOutputStream(part, offset > 0);
+		try {
+			final byte[] buffer = new byte[64 * 1024];
+			while (remaining > 0) {
+				final int n = input.read(buffer, 0,
+						(int) Math.min(buffer.length, remaining));
+				if (n == -1) {
+					throw new EOFException("Download incomplete.");
+				}
+				output.write(buffer, 0, n);
+				remaining -= n;
+			}
+		} finally {
+			output.close();
+		}
 	}
 
 	private Socket tryConnect(final InetAddress address, final int port)
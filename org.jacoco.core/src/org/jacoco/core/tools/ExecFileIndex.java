@@ -0,0 +1,519 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static java.lang.String.format;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IncompatibleExecDataVersionException;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Index of the class ids of an *.exec file. For every execution data block it
+ * holds the class id, the offset of the block within the file and its length.
+ * The entries are sorted by class id, so the execution data of a single class
+ * can be read without loading the whole file. Files with multiple blocks for
+ * the same class, e.g. concatenated dumps, have one entry per block.
+ * <p>
+ * The index is built by a single scan over the exec file which does not
+ * decode any probes. It can be stored in a sidecar file next to the exec file
+ * and is rebuilt when the exec file has been modified since.
+ * Files in the compressed format can't be indexed.
+ */
+public final class ExecFileIndex {
+
+	/** File name suffix of the index file next to the exec file. */
+	public static final String FILE_SUFFIX = ".cidx";
+
+	/** Magic number in header for file format identification. */
+	public static final char MAGIC_NUMBER = 0xC0C3;
+
+	/** File format version, will be incremented for each incompatible change. */
+	public static final char FORMAT_VERSION = 0x1001;
+
+	/** Block identifier for file headers. */
+	public static final byte BLOCK_HEADER = 0x01;
+
+	private final long execLength;
+
+	private final long execModified;
+
+	private final List<SessionInfo> sessionInfos;
+
+	private final long[] ids;
+
+	private final long[] offsets;
+
+	private final int[] lengths;
+
+	private ExecFileIndex(final long execLength, final long execModified,
+			final List<SessionInfo> sessionInfos, final long[] ids,
+			final long[] offsets, final int[] lengths) {
+		this.execLength = execLength;
+		this.execModified = execModified;
+		this.sessionInfos = sessionInfos;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.lengths = lengths;
+	}
+
+	/**
+	 * Returns the location of the sidecar index for the given exec file.
+	 *
+	 * @param execfile
+	 *            exec file
+	 * @return index file next to the exec file
+	 */
+	public static File fileFor(final File execfile) {
+		return new File(execfile.getPath() + FILE_SUFFIX);
+	}
+
+	/**
+	 * Checks whether the given exec file can be indexed, i.e. it starts with a
+	 * header of the uncompressed format. Files with an invalid header are
+	 * reported as indexable, the problem is reported when the file is
+	 * scanned.
+	 *
+	 * @param execfile
+	 *            exec file
+	 * @return <code>false</code> if the exec file is compressed
+	 * @throws IOException
+	 *             in case of problems while reading the exec file
+	 */
+	public static boolean isIndexable(final File execfile) throws IOException {
+		final CompactDataInput in = new CompactDataInput(
+				new BufferedInputStream(new FileInputStream(execfile), 8));
+		try {
+			return in.read() != ExecutionDataWriter.BLOCK_HEADER
+					|| in.readChar() != ExecutionDataWriter.MAGIC_NUMBER
+					|| in.readChar() != ExecutionDataWriter.COMPRESSED_FORMAT_VERSION;
+		} catch (final EOFException e) {
+			return true;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the index of the given exec file. A sidecar index is used if it
+	 * is up to date, otherwise the exec file is scanned and the sidecar index
+	 * is written for the next time. A sidecar which can't be written, e.g. in
+	 * a read-only directory, is silently skipped.
+	 *
+	 * @param execfile
+	 *            exec file
+	 * @return index of the exec file
+	 * @throws IOException
+	 *             in case of problems while reading the exec file
+	 */
+	public static ExecFileIndex load(final File execfile) throws IOException {
+		final File indexFile = fileFor(execfile);
+		if (indexFile.isFile()) {
+			try {
+				final ExecFileIndex index = read(indexFile);
+				if (index.isUpToDate(execfile)) {
+					return index;
+				}
+			} catch (final IOException e) {
+				// unreadable sidecar, build a new one
+			}
+		}
+		final ExecFileIndex index = build(execfile);
+		try {
+			index.save(indexFile);
+		} catch (final IOException e) {
+			indexFile.delete();
+		}
+		return index;
+	}
+
+	/**
+	 * Scans the given exec file and creates a new index.
+	 *
+	 * @param execfile
+	 *            exec file
+	 * @return index of the exec file
+	 * @throws IOException
+	 *             in case of problems while reading the exec file
+	 */
+	public static ExecFileIndex build(final File execfile) throws IOException {
+		final long length = execfile.length();
+		final long modified = execfile.lastModified();
+		final PositionInputStream position = new PositionInputStream(
+				new BufferedInputStream(new FileInputStream(execfile)));
+		try {
+			return scan(position, length, modified);
+		} finally {
+			position.close();
+		}
+	}
+
+	private static ExecFileIndex scan(final PositionInputStream position,
+			final long length, final long modified) throws IOException {
+		final CompactDataInput in = new CompactDataInput(position);
+		final List<SessionInfo> sessions = new ArrayList<SessionInfo>();
+		final Entries entries = new Entries();
+		boolean first = true;
+		long offset;
+		int type;
+		while ((type = in.read()) != -1) {
+			offset = position.position - 1;
+			if (first && type != ExecutionDataWriter.BLOCK_HEADER) {
+				throw new IOException("Invalid execution data file.");
+			}
+			first = false;
+			switch ((byte) type) {
+			case ExecutionDataWriter.BLOCK_HEADER:
+				if (in.readChar() != ExecutionDataWriter.MAGIC_NUMBER) {
+					throw new IOException("Invalid execution data file.");
+				}
+				final char version = in.readChar();
+				if (version == ExecutionDataWriter.COMPRESSED_FORMAT_VERSION) {
+					throw new IOException(
+							"Compressed execution data files can't be indexed.");
+				}
+				if (version != ExecutionDataWriter.FORMAT_VERSION) {
+					throw new IncompatibleExecDataVersionException(version);
+				}
+				break;
+			case ExecutionDataWriter.BLOCK_SESSIONINFO:
+				sessions.add(new SessionInfo(in.readUTF(), in.readLong(),
+						in.readLong()));
+				break;
+			case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
+				final long id = in.readLong();
+				skip(in, in.readUnsignedShort());
+				skip(in, (in.readVarInt() + 7) / 8);
+				entries.add(id, offset, (int) (position.position - offset));
+				break;
+			default:
+				throw new IOException(format("Unknown block type %x.",
+						Byte.valueOf((byte) type)));
+			}
+		}
+		if (position.position != length) {
+			throw new IOException(
+					"Execution data file changed while reading.");
+		}
+		return entries.toIndex(length, modified, sessions);
+	}
+
+	private static void skip(final CompactDataInput in, final int n)
+			throws IOException {
+		if (in.skipBytes(n) != n) {
+			throw new EOFException();
+		}
+	}
+
+	/**
+	 * Checks whether this index still describes the given exec file.
+	 *
+	 * @param execfile
+	 *            exec file
+	 * @return <code>true</code> if length and modification time of the exec
+	 *         file did not change since the index has been built
+	 */
+	public boolean isUpToDate(final File execfile) {
+		return execfile.length() == execLength
+				&& execfile.lastModified() == execModified;
+	}
+
+	/**
+	 * Returns the session infos of the exec file in file order.
+	 *
+	 * @return session infos
+	 */
+	public List<SessionInfo> getSessionInfos() {
+		return sessionInfos;
+	}
+
+	/**
+	 * Returns the number of execution data blocks in the exec file.
+	 *
+	 * @return number of entries
+	 */
+	public int getEntryCount() {
+		return ids.length;
+	}
+
+	/**
+	 * Returns the position of the first entry for the given class.
+	 *
+	 * @param id
+	 *            class id
+	 * @return position of the first entry or <code>-1</code> if the exec
+	 *         file contains no data for this class
+	 */
+	int find(final long id) {
+		int low = 0;
+		int high = ids.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (ids[mid] < id) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low < ids.length && ids[low] == id ? low : -1;
+	}
+
+	long getId(final int i) {
+		return ids[i];
+	}
+
+	long getOffset(final int i) {
+		return offsets[i];
+	}
+
+	int getLength(final int i) {
+		return lengths[i];
+	}
+
+	/**
+	 * Writes the content of this index to the given stream.
+	 *
+	 * @param stream
+	 *            stream to write to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void write(final OutputStream stream) throws IOException {
+		final CompactDataOutput out = new CompactDataOutput(stream);
+		out.writeByte(BLOCK_HEADER);
+		out.writeChar(MAGIC_NUMBER);
+		out.writeChar(FORMAT_VERSION);
+		out.writeLong(execLength);
+		out.writeLong(execModified);
+		out.writeVarInt(sessionInfos.size());
+		for (final SessionInfo info : sessionInfos) {
+			out.writeUTF(info.getId());
+			out.writeLong(info.getStartTimeStamp());
+			out.writeLong(info.getDumpTimeStamp());
+		}
+		out.writeVarInt(ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			out.writeLong(ids[i]);
+			out.writeLong(offsets[i]);
+			out.writeVarInt(lengths[i]);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Saves the content of this index to the given file.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the file
+	 */
+	public void save(final File file) throws IOException {
+		final OutputStream stream = new BufferedOutputStream(
+				new FileOutputStream(file));
+		try {
+			write(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Reads an index from the given stream.
+	 *
+	 * @param stream
+	 *            stream to read from
+	 * @return index
+	 * @throws IOException
+	 *             in case of problems while reading from the stream
+	 */
+	public static ExecFileIndex read(final InputStream stream)
+			throws IOException {
+		final CompactDataInput in = new CompactDataInput(stream);
+		if (in.read() != BLOCK_HEADER || in.readChar() != MAGIC_NUMBER) {
+			throw new IOException("Invalid exec index file.");
+		}
+		final char version = in.readChar();
+		if (version != FORMAT_VERSION) {
+			throw new IOException(
+					format("Cannot read exec index version 0x%x.",
+							Integer.valueOf(version)));
+		}
+		final long execLength = in.readLong();
+		final long execModified = in.readLong();
+		final List<SessionInfo> sessions = new ArrayList<SessionInfo>();
+		for (int i = in.readVarInt(); i > 0; i--) {
+			sessions.add(new SessionInfo(in.readUTF(), in.readLong(),
+					in.readLong()));
+		}
+		final int count = in.readVarInt();
+		final long[] ids = new long[count];
+		final long[] offsets = new long[count];
+		final int[] lengths = new int[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = in.readLong();
+			offsets[i] = in.readLong();
+			lengths[i] = in.readVarInt();
+			if (i > 0 && ids[i] < ids[i - 1]) {
+				throw new IOException("Invalid exec index file.");
+			}
+		}
+		return new ExecFileIndex(execLength, execModified,
+				Collections.unmodifiableList(sessions), ids, offsets, lengths);
+	}
+
+	/**
+	 * Reads an index from the given file.
+	 *
+	 * @param file
+	 *            file to read from
+	 * @return index
+	 * @throws IOException
+	 *             in case of problems while reading from the file
+	 */
+	public static ExecFileIndex read(final File file) throws IOException {
+		final InputStream stream = new BufferedInputStream(
+				new FileInputStream(file));
+		try {
+			return read(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Growing primitive arrays for the entries of a scan.
+	 */
+	private static class Entries {
+
+		private long[] ids = new long[64];
+
+		private long[] offsets = new long[64];
+
+		private int[] lengths = new int[64];
+
+		private int size;
+
+		private boolean sorted = true;
+
+		void add(final long id, final long offset, final int length) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				offsets = Arrays.copyOf(offsets, size * 2);
+				lengths = Arrays.copyOf(lengths, size * 2);
+			}
+			if (size > 0 && id < ids[size - 1]) {
+				sorted = false;
+			}
+			ids[size] = id;
+			offsets[size] = offset;
+			lengths[size] = length;
+			size++;
+		}
+
+		ExecFileIndex toIndex(final long length, final long modified,
+				final List<SessionInfo> sessions) {
+			final long[] i = new long[size];
+			final long[] o = new long[size];
+			final int[] l = new int[size];
+			if (sorted) {
+				System.arraycopy(ids, 0, i, 0, size);
+				System.arraycopy(offsets, 0, o, 0, size);
+				System.arraycopy(lengths, 0, l, 0, size);
+			} else {
+				// stable sort by id, blocks of the same class stay in file
+				// order
+				final Integer[] order = new Integer[size];
+				for (int k = 0; k < size; k++) {
+					order[k] = Integer.valueOf(k);
+				}
+				Arrays.sort(order,
+						new Comparator<Integer>() {
+							public int compare(final Integer a,
+									final Integer b) {
+								final long x = ids[a.intValue()];
+								final long y = ids[b.intValue()];
+								return x < y ? -1 : (x == y ? 0 : 1);
+							}
+						});
+				for (int k = 0; k < size; k++) {
+					final int s = order[k].intValue();
+					i[k] = ids[s];
+					o[k] = offsets[s];
+					l[k] = lengths[s];
+				}
+			}
+			return new ExecFileIndex(length, modified,
+					Collections.unmodifiableList(sessions), i, o, l);
+		}
+
+	}
+
+	/**
+	 * Input stream which counts the bytes consumed so far.
+	 */
+	private static class PositionInputStream extends FilterInputStream {
+
+		long position;
+
+		PositionInputStream(final InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = in.read();
+			if (b != -1) {
+				position++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			final int n = in.read(b, off, len);
+			if (n > 0) {
+				position += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			final long skipped = in.skip(n);
+			position += skipped;
+			return skipped;
+		}
+
+	}
+
+}
@@ -19,18 +19,25 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.jacoco.core.data.CompressedExecutionDataWriter;
+import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.data.SessionInfoStore;
-import org.jacoco.core.internal.analysis.Instruction;
-import org.jacoco.core.internal.diff.ClassInfoDto;
-import org.jacoco.core.internal.diff.MethodInfoDto;
 
 /**
  * Convenience utility for loading *.exec files into a
@@ -40,15 +47,6 @@ public class ExecFileLoader {
 
 	private final SessionInfoStore sessionInfos;
 	private final ExecutionDataStore executionData;
-	// 从exce文件解析的method指令数据，合并此exec的数据
-	// 类的方法级指令信息，key为类全称，value为方法签名
-	public static ThreadLocal<Map<String, Map<String, Map<String, Instruction>>>> instrunctionsThreadLocal = new ThreadLocal<>();
-	// diff的代码差异类
-	public static ThreadLocal<Map<String, Map<String, List<MethodInfoDto>>>> classInfo = new ThreadLocal<>();
-
-	public static ThreadLocal<List<ClassInfoDto>> classInfoDto = new ThreadLocal<>();
-
-	public static ThreadLocal<Map<String, boolean[]>> probesMap = new ThreadLocal<>();
 
 	/**
 	 * New instance to combine session infos and execution data from multiple
@@ -93,6 +91,121 @@ public class ExecFileLoader {
 		}
 	}
 
+	/**
+	 * Reads all data from the given files. With more than one thread the
+	 * files are split into consecutive ranges which are read and decoded
+	 * concurrently into separate stores. These stores are then merged
+	 * pairwise in a tree until one is left, which is finally merged into this
+	 * loader. The result is the same as loading the files one after another:
+	 * session infos keep their order and classes with the same id but a
+	 * different name or probe count still fail with an
+	 * {@link IllegalStateException}.
+	 *
+	 * @param files
+	 *            files to read data from
+	 * @param threads
+	 *            number of threads to read files with
+	 * @throws IOException
+	 *             in case of problems while reading from a file
+	 */
+	public void load(final List<File> files, final int threads)
+			throws IOException {
+		final int ranges = Math.min(threads, files.size());
+		if (ranges <= 1) {
+			for (final File file : files) {
+				load(file);
+			}
+			return;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(ranges,
+				new ThreadFactory() {
+					private final AtomicInteger id = new AtomicInteger();
+
+					public Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r,
+								"jacoco-exec-loader-" + id.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			List<Future<ExecFileLoader>> level = new ArrayList<Future<ExecFileLoader>>();
+			for (int i = 0; i < ranges; i++) {
+				final List<File> range = files.subList(
+						i * files.size() / ranges,
+						(i + 1) * files.size() / ranges);
+				level.add(executor.submit(new Callable<ExecFileLoader>() {
+					public ExecFileLoader call() throws IOException {
+						final ExecFileLoader loader = new ExecFileLoader();
+						for (final File file : range) {
+							loader.load(file);
+						}
+						return loader;
+					}
+				}));
+			}
+			while (level.size() > 1) {
+				final List<Future<ExecFileLoader>> next = new ArrayList<Future<ExecFileLoader>>();
+				for (int i = 0; i + 1 < level.size(); i += 2) {
+					final Future<ExecFileLoader> left = level.get(i);
+					final Future<ExecFileLoader> right = level.get(i + 1);
+					next.add(executor.submit(new Callable<ExecFileLoader>() {
+						public ExecFileLoader call() throws Exception {
+							final ExecFileLoader loader = left.get();
+							loader.merge(right.get());
+							return loader;
+						}
+					}));
+				}
+				if (level.size() % 2 == 1) {
+					next.add(level.get(level.size() - 1));
+				}
+				level = next;
+			}
+			merge(get(level.get(0)));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static ExecFileLoader get(final Future<ExecFileLoader> future)
+			throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			// merge tasks wrap the failures of the tasks they wait for
+			Throwable cause = e.getCause();
+			while (cause instanceof ExecutionException) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Adds the content of the given loader, which must not be used
+	 * afterwards.
+	 */
+	private void merge(final ExecFileLoader other) {
+		for (final SessionInfo info : other.sessionInfos.getInfos()) {
+			sessionInfos.visitSessionInfo(info);
+		}
+		for (final ExecutionData data : other.executionData.getContents()) {
+			executionData.put(data);
+		}
+	}
+
 	/**
 	 * Saves the current content into the given output stream.
 	 *
@@ -102,9 +215,28 @@ public class ExecFileLoader {
 	 *             in case of problems while writing to the stream
 	 */
 	public void save(final OutputStream stream) throws IOException {
-		final ExecutionDataWriter dataWriter = new ExecutionDataWriter(stream);
+		save(stream, false);
+	}
+
+	/**
+	 * Saves the current content into the given output stream, optionally in
+	 * the compressed format of {@link CompressedExecutionDataWriter}.
+	 *
+	 * @param stream
+	 *            stream to save content to
+	 * @param compress
+	 *            <code>true</code> to write the compressed format
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final OutputStream stream, final boolean compress)
+			throws IOException {
+		final ExecutionDataWriter dataWriter = compress
+				? new CompressedExecutionDataWriter(stream)
+				: new ExecutionDataWriter(stream);
 		sessionInfos.accept(dataWriter);
 		executionData.accept(dataWriter);
+		dataWriter.flush();
 	}
 
 	/**
@@ -121,6 +253,26 @@ public class ExecFileLoader {
 	 *             in case of problems while writing to the stream
 	 */
 	public void save(final File file, final boolean append) throws IOException {
+		save(file, append, false);
+	}
+
+	/**
+	 * Saves the current content into the given file, optionally in the
+	 * compressed format. Parent directories are created as needed. Also a
+	 * files system lock is acquired to avoid concurrent write access.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @param append
+	 *            <code>true</code> if the content should be appended, otherwise
+	 *            the file is overwritten.
+	 * @param compress
+	 *            <code>true</code> to write the compressed format
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final File file, final boolean append,
+			final boolean compress) throws IOException {
 		final File folder = file.getParentFile();
 		if (folder != null) {
 			folder.mkdirs();
@@ -131,7 +283,7 @@ public class ExecFileLoader {
 		final OutputStream bufferedStream = new BufferedOutputStream(
 				fileStream);
 		try {
-			save(bufferedStream);
+			save(bufferedStream, compress);
 		} finally {
 			bufferedStream.close();
 		}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.internal.data.CompactDataInput;
+
+/**
+ * Random access to the execution data of one or more *.exec files. Unlike
+ * {@link ExecFileLoader} the files are not read into an
+ * {@link org.jacoco.core.data.ExecutionDataStore}: every file is mapped into
+ * memory and the execution data of a single class is decoded on demand with
+ * the help of an {@link ExecFileIndex}. Multiple blocks for the same class,
+ * also from different files, are merged on every request.
+ * <p>
+ * Instances are thread safe once all files have been loaded. The mapped
+ * memory is released by the garbage collector, {@link #close()} only closes
+ * the underlying files.
+ */
+public class MappedExecFileLoader implements Closeable {
+
+	/** Maximum size of a single mapped region of a file. */
+	static final long SEGMENT_SIZE = 1L << 30;
+
+	private final long segmentSize;
+
+	private final SessionInfoStore sessionInfos = new SessionInfoStore();
+
+	private final List<MappedFile> files = new ArrayList<MappedFile>();
+
+	/**
+	 * New loader without any files.
+	 */
+	public MappedExecFileLoader() {
+		this(SEGMENT_SIZE);
+	}
+
+	MappedExecFileLoader(final long segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Maps the given exec file. The index of the file is taken from its
+	 * sidecar file if it is up to date and created otherwise, see
+	 * {@link ExecFileIndex#load(File)}. The session infos of the file are
+	 * added to the session info store immediately.
+	 *
+	 * @param file
+	 *            exec file to map
+	 * @throws IOException
+	 *             in case of problems while reading the file or its index
+	 */
+	public void load(final File file) throws IOException {
+		final ExecFileIndex index = ExecFileIndex.load(file);
+		final FileChannel channel = new RandomAccessFile(file, "r")
+				.getChannel();
+		try {
+			if (!index.isUpToDate(file)) {
+				throw new IOException(
+						"Execution data file changed while reading.");
+			}
+			final long size = channel.size();
+			final int count = (int) ((size + segmentSize - 1) / segmentSize);
+			final MappedByteBuffer[] segments = new MappedByteBuffer[count];
+			for (int i = 0; i < count; i++) {
+				final long start = i * segmentSize;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(segmentSize, size - start));
+			}
+			files.add(new MappedFile(index, channel, segments));
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+		for (final SessionInfo info : index.getSessionInfos()) {
+			sessionInfos.visitSessionInfo(info);
+		}
+	}
+
+	/**
+	 * Returns the session info store with all sessions of the loaded files.
+	 *
+	 * @return session info store
+	 */
+	public SessionInfoStore getSessionInfoStore() {
+		return sessionInfos;
+	}
+
+	/**
+	 * Reads the execution data for the given class from all loaded files.
+	 * Every call decodes the data again and returns a new instance.
+	 *
+	 * @param id
+	 *            class id
+	 * @return merged execution data or <code>null</code> if no file contains
+	 *         data for this class
+	 * @throws IOException
+	 *             in case of problems while reading a file
+	 * @throws IllegalStateException
+	 *             if the blocks for the class are not compatible
+	 */
+	public ExecutionData get(final long id) throws IOException {
+		ExecutionData result = null;
+		for (final MappedFile file : files) {
+			final ExecFileIndex index = file.index;
+			for (int i = index.find(id); i >= 0 && i < index.getEntryCount()
+					&& index.getId(i) == id; i++) {
+				final ExecutionData data = file.read(i);
+				if (result == null) {
+					result = data;
+				} else {
+					result.merge(data);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Closes all loaded files.
+	 *
+	 * @throws IOException
+	 *             in case of problems while closing a file
+	 */
+	public void close() throws IOException {
+		IOException failure = null;
+		for (final MappedFile file : files) {
+			try {
+				file.channel.close();
+			} catch (final IOException e) {
+				failure = e;
+			}
+		}
+		files.clear();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private class MappedFile {
+
+		final ExecFileIndex index;
+
+		final FileChannel channel;
+
+		final MappedByteBuffer[] segments;
+
+		MappedFile(final ExecFileIndex index, final FileChannel channel,
+				final MappedByteBuffer[] segments) {
+			this.index = index;
+			this.channel = channel;
+			this.segments = segments;
+		}
+
+		ExecutionData read(final int i) throws IOException {
+			final long offset = index.getOffset(i);
+			final int length = index.getLength(i);
+			final int segment = (int) (offset / segmentSize);
+			final int start = (int) (offset % segmentSize);
+			final ByteBuffer block;
+			if (start + length <= segments[segment].capacity()) {
+				// duplicates have their own position, the mapping is shared
+				block = segments[segment].duplicate();
+				block.position(start);
+				block.limit(start + length);
+			} else {
+				// blocks across two segments are rare and read from the file
+				block = ByteBuffer.allocate(length);
+				while (block.hasRemaining()) {
+					if (channel.read(block,
+							offset + block.position()) == -1) {
+						throw new EOFException();
+					}
+				}
+				block.flip();
+			}
+			final CompactDataInput in = new CompactDataInput(
+					new ByteBufferInputStream(block));
+			in.readByte();
+			return new ExecutionData(in.readLong(), in.readUTF(),
+					in.readBooleanArray());
+		}
+
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			final int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+	}
+
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import org.jacoco.core.internal.analysis.MethodInstructionIndex;
+import org.jacoco.core.internal.diff.ChangeLineIndex;
+import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.CodeDiffIndex;
+import org.jacoco.core.internal.diff.MethodInfoDto;
+
+/**
+ * Context of a single report job which is shared between the analysis of the
+ * class files and the rendering of the report. It holds the method
+ * instructions and probes of a previous version which are merged into the
+ * current version, and the code diff of an incremental report.
+ * <p>
+ * All content is kept in concurrent maps, so the same context can be used by
+ * multiple analysis or rendering threads. Separate report jobs use separate
+ * contexts and can run in the same JVM.
+ */
+public class MergeContext {
+
+	private final ConcurrentMap<String, Map<String, MethodInstructionIndex>> instructions = new ConcurrentHashMap<String, Map<String, MethodInstructionIndex>>();
+
+	private final ConcurrentMap<String, boolean[]> probes = new ConcurrentHashMap<String, boolean[]>();
+
+	private volatile List<ClassInfoDto> classInfos;
+
+	private volatile CodeDiffIndex diffIndex = new CodeDiffIndex(null);
+
+	private volatile Map<String, ClassInfoDto> classInfoByFile = Collections
+			.emptyMap();
+
+	private volatile Map<String, Map<String, List<MethodInfoDto>>> methodInfos = Collections
+			.emptyMap();
+
+	private volatile Map<String, ChangeLineIndex> changeLines = Collections
+			.emptyMap();
+
+	/**
+	 * Adds the instruction index of a method of the previous version.
+	 *
+	 * @param classname
+	 *            VM name of the class
+	 * @param methodSign
+	 *            signature of the method as used by the merge
+	 * @param index
+	 *            instruction index of the method
+	 */
+	public void addMethod(final String classname, final String methodSign,
+			final MethodInstructionIndex index) {
+		Map<String, MethodInstructionIndex> methods = instructions
+				.get(classname);
+		if (methods == null) {
+			final Map<String, MethodInstructionIndex> created = new ConcurrentHashMap<String, MethodInstructionIndex>();
+			methods = instructions.putIfAbsent(classname, created);
+			if (methods == null) {
+				methods = created;
+			}
+		}
+		methods.put(methodSign, index);
+	}
+
+	/**
+	 * Returns the instruction indexes of all methods of the given class of
+	 * the previous version.
+	 *
+	 * @param classname
+	 *            VM name of the class
+	 * @return method indexes by method signature or <code>null</code> if the
+	 *         class is not contained in the previous version
+	 */
+	public Map<String, MethodInstructionIndex> getMethods(
+			final String classname) {
+		return instructions.get(classname);
+	}
+
+	/**
+	 * Sets the probes of the given class of the previous version.
+	 *
+	 * @param classname
+	 *            VM name of the class
+	 * @param classProbes
+	 *            probes of the class or <code>null</code>
+	 */
+	public void setProbes(final String classname, final boolean[] classProbes) {
+		if (classProbes == null) {
+			probes.remove(classname);
+		} else {
+			probes.put(classname, classProbes);
+		}
+	}
+
+	/**
+	 * Returns the probes of the given class of the previous version.
+	 *
+	 * @param classname
+	 *            VM name of the class
+	 * @return probes or <code>null</code>
+	 */
+	public boolean[] getProbes(final String classname) {
+		return probes.get(classname);
+	}
+
+	/**
+	 * Adds all classes of the given merge index as previous version.
+	 *
+	 * @param index
+	 *            index loaded from a previous merge
+	 */
+	public void addAll(final MergeIndex index) {
+		for (final Map.Entry<String, Map<String, MethodInstructionIndex>> e : index
+				.getInstructions().entrySet()) {
+			for (final Map.Entry<String, MethodInstructionIndex> m : e
+					.getValue().entrySet()) {
+				addMethod(e.getKey(), m.getKey(), m.getValue());
+			}
+		}
+		probes.putAll(index.getProbes());
+	}
+
+	/**
+	 * Checks whether instructions of a previous version are available.
+	 *
+	 * @return <code>true</code> if there is something to merge
+	 */
+	public boolean hasMergeData() {
+		return !instructions.isEmpty();
+	}
+
+	/**
+	 * Sets the changed classes of an incremental report.
+	 *
+	 * @param classInfos
+	 *            changed classes, entries without methods are ignored
+	 */
+	public void setClassInfos(final List<ClassInfoDto> classInfos) {
+		final List<ClassInfoDto> filtered = classInfos.stream()
+				.filter(i -> i.getMethodInfos() != null)
+				.collect(Collectors.toList());
+		final Map<String, ClassInfoDto> byFile = new ConcurrentHashMap<String, ClassInfoDto>();
+		final Map<String, Map<String, List<MethodInfoDto>>> methods = new ConcurrentHashMap<String, Map<String, List<MethodInfoDto>>>();
+		final Map<String, ChangeLineIndex> lines = new ConcurrentHashMap<String, ChangeLineIndex>();
+		for (final ClassInfoDto dto : filtered) {
+			if (byFile.putIfAbsent(dto.getClassFile(), dto) == null) {
+				lines.put(dto.getClassFile(), ChangeLineIndex.of(dto.getLines()));
+			}
+			methods.put(dto.getClassFile(),
+					Collections.unmodifiableMap(dto.getMethodInfos().stream()
+							.collect(Collectors.groupingBy(
+									MethodInfoDto::getMethodName))));
+		}
+		this.diffIndex = new CodeDiffIndex(filtered);
+		this.classInfoByFile = Collections.unmodifiableMap(byFile);
+		this.methodInfos = Collections.unmodifiableMap(methods);
+		this.changeLines = Collections.unmodifiableMap(lines);
+		this.classInfos = Collections.unmodifiableList(filtered);
+	}
+
+	/**
+	 * Returns the changed classes of an incremental report.
+	 *
+	 * @return changed classes or <code>null</code> for a full report
+	 */
+	public List<ClassInfoDto> getClassInfos() {
+		return classInfos;
+	}
+
+	/**
+	 * Returns the lookup index over the changed classes of an incremental
+	 * report.
+	 *
+	 * @return index of the changed classes, empty for a full report
+	 */
+	public CodeDiffIndex getDiffIndex() {
+		return diffIndex;
+	}
+
+	/**
+	 * Checks whether this context describes an incremental report.
+	 *
+	 * @return <code>true</code> if changed classes have been set
+	 */
+	public boolean hasClassInfos() {
+		return classInfos != null;
+	}
+
+	/**
+	 * Returns the changed class with the given class file name.
+	 *
+	 * @param classFile
+	 *            class file name without extension, e.g.
+	 *            <code>org/example/Foo</code>
+	 * @return changed class or <code>null</code>
+	 */
+	public ClassInfoDto getClassInfo(final String classFile) {
+		return classInfoByFile.get(classFile);
+	}
+
+	/**
+	 * Returns the changed lines of the given class.
+	 *
+	 * @param classFile
+	 *            class file name without extension
+	 * @return index of the changed lines, empty if the class has not been
+	 *         changed
+	 */
+	public ChangeLineIndex getChangeLines(final String classFile) {
+		final ChangeLineIndex index = changeLines.get(classFile);
+		return index == null ? ChangeLineIndex.EMPTY : index;
+	}
+
+	/**
+	 * Returns the changed methods of the given class grouped by method name.
+	 *
+	 * @param classFile
+	 *            class file name without extension
+	 * @return changed methods by name or <code>null</code>
+	 */
+	public Map<String, List<MethodInfoDto>> getMethodInfos(
+			final String classFile) {
+		return methodInfos.get(classFile);
+	}
+
+}
@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jacoco.core.internal.analysis.MethodInstructionIndex;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Sidecar index of a merged *.exec file. For every class it holds the class
+ * id, the probes and the {@link MethodInstructionIndex} of every method as
+ * they are required to merge the coverage of this version into a later version
+ * of the class. A subsequent merge can load this index instead of analyzing
+ * the class files of the previous version again.
+ * <p>
+ * Method indexes are stored in fingerprint mode only. Methods may be added by
+ * multiple analysis threads concurrently.
+ * <p>
+ * The header records length and modification time of the exec file the index
+ * has been written for, so a stale index can be detected with
+ * {@link #isUpToDate(File)}. An index built by an incremental analysis only
+ * contains the changed classes and is marked as partial.
+ */
+public class MergeIndex {
+
+	/** File name suffix of the index file next to the exec file. */
+	public static final String FILE_SUFFIX = ".idx";
+
+	/** Magic number in header for file format identification. */
+	public static final char MAGIC_NUMBER = 0xC0C2;
+
+	/** File format version, will be incremented for each incompatible change. */
+	public static final char FORMAT_VERSION = 0x1002;
+
+	/** Block identifier for file headers. */
+	public static final byte BLOCK_HEADER = 0x01;
+
+	/** Block identifier for the index of a single class. */
+	public static final byte BLOCK_CLASS = 0x20;
+
+	private final Map<Long, ClassEntry> classes = new LinkedHashMap<Long, ClassEntry>();
+
+	private long execLength = -1;
+
+	private long execModified = -1;
+
+	private boolean partial;
+
+	private static class ClassEntry {
+
+		final String name;
+
+		boolean[] probes;
+
+		final Map<String, MethodInstructionIndex> methods = new LinkedHashMap<String, MethodInstructionIndex>();
+
+		ClassEntry(final String name, final boolean[] probes) {
+			this.name = name;
+			this.probes = probes;
+		}
+
+	}
+
+	/**
+	 * Returns the index file for the given exec file.
+	 *
+	 * @param execfile
+	 *            exec file
+	 * @return corresponding index file
+	 */
+	public static File fileFor(final File execfile) {
+		return new File(execfile.getPath() + FILE_SUFFIX);
+	}
+
+	/**
+	 * Records length and modification time of the exec file this index
+	 * belongs to. Must be called after the exec file has been written.
+	 *
+	 * @param execfile
+	 *            exec file
+	 */
+	public synchronized void setExecFile(final File execfile) {
+		execLength = execfile.length();
+		execModified = execfile.lastModified();
+	}
+
+	/**
+	 * Checks whether this index still describes the given exec file.
+	 *
+	 * @param execfile
+	 *            exec file
+	 * @return <code>true</code> if length and modification time of the exec
+	 *         file did not change since the index has been written
+	 */
+	public synchronized boolean isUpToDate(final File execfile) {
+		return execfile.length() == execLength
+				&& execfile.lastModified() == execModified;
+	}
+
+	/**
+	 * Marks this index as built from a subset of the classes only, e.g. the
+	 * changed classes of an incremental report.
+	 *
+	 * @param partial
+	 *            <code>true</code> if not all classes have been analyzed
+	 */
+	public synchronized void setPartial(final boolean partial) {
+		this.partial = partial;
+	}
+
+	/**
+	 * Checks whether this index only contains a subset of the classes. A
+	 * partial index can not replace the analysis of the class files.
+	 *
+	 * @return <code>true</code> if not all classes have been analyzed
+	 */
+	public synchronized boolean isPartial() {
+		return partial;
+	}
+
+	/**
+	 * Adds the index of a method.
+	 *
+	 * @param classid
+	 *            id of the class
+	 * @param classname
+	 *            VM name of the class
+	 * @param probes
+	 *            probes of the class, the content is read when the index is
+	 *            written
+	 * @param methodSign
+	 *            signature of the method as used by the merge
+	 * @param index
+	 *            index of the method in fingerprint mode
+	 */
+	public synchronized void addMethod(final long classid, final String classname,
+			final boolean[] probes, final String methodSign,
+			final MethodInstructionIndex index) {
+		getEntry(classid, classname, probes).methods.put(methodSign, index);
+	}
+
+	/**
+	 * Sets the probes of a class which has been added before. This is used for
+	 * classes without execution data where the probes are only created after
+	 * all methods have been added.
+	 *
+	 * @param classid
+	 *            id of the class
+	 * @param probes
+	 *            probes of the class
+	 */
+	public synchronized void setProbes(final long classid,
+			final boolean[] probes) {
+		final ClassEntry entry = classes.get(Long.valueOf(classid));
+		if (entry != null) {
+			entry.probes = probes;
+		}
+	}
+
+	private ClassEntry getEntry(final long classid, final String classname,
+			final boolean[] probes) {
+		final Long key = Long.valueOf(classid);
+		ClassEntry entry = classes.get(key);
+		if (entry == null) {
+			entry = new ClassEntry(classname, probes);
+			classes.put(key, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns the number of classes contained in this index.
+	 *
+	 * @return number of classes
+	 */
+	public synchronized int getClassCount() {
+		return classes.size();
+	}
+
+	/**
+	 * Returns the method indexes of all classes with the VM class name as key.
+	 *
+	 * @return method indexes by class name and method signature
+	 */
+	public synchronized Map<String, Map<String, MethodInstructionIndex>> getInstructions() {
+		final Map<String, Map<String, MethodInstructionIndex>> result = new HashMap<String, Map<String, MethodInstructionIndex>>();
+		for (final ClassEntry entry : classes.values()) {
+			result.put(entry.name, entry.methods);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the probes of all classes with the VM class name as key.
+	 *
+	 * @return probes by class name
+	 */
+	public synchronized Map<String, boolean[]> getProbes() {
+		final Map<String, boolean[]> result = new HashMap<String, boolean[]>();
+		for (final ClassEntry entry : classes.values()) {
+			if (entry.probes != null) {
+				result.put(entry.name, entry.probes);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the content of this index to the given stream.
+	 *
+	 * @param stream
+	 *            stream to write to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public synchronized void write(final OutputStream stream) throws IOException {
+		final CompactDataOutput out = new CompactDataOutput(stream);
+		out.writeByte(BLOCK_HEADER);
+		out.writeChar(MAGIC_NUMBER);
+		out.writeChar(FORMAT_VERSION);
+		out.writeLong(execLength);
+		out.writeLong(execModified);
+		out.writeBoolean(partial);
+		for (final Map.Entry<Long, ClassEntry> e : classes.entrySet()) {
+			final ClassEntry entry = e.getValue();
+			out.writeByte(BLOCK_CLASS);
+			out.writeLong(e.getKey().longValue());
+			out.writeUTF(entry.name);
+			out.writeBoolean(entry.probes != null);
+			if (entry.probes != null) {
+				out.writeBooleanArray(entry.probes);
+			}
+			out.writeVarInt(entry.methods.size());
+			for (final Map.Entry<String, MethodInstructionIndex> m : entry.methods
+					.entrySet()) {
+				out.writeUTF(m.getKey());
+				m.getValue().write(out);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Saves the content of this index to the given file. Parent directories
+	 * are created as needed.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the file
+	 */
+	public void save(final File file) throws IOException {
+		final File folder = file.getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		final OutputStream stream = new BufferedOutputStream(
+				new FileOutputStream(file));
+		try {
+			write(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Reads an index from the given stream and adds its content to this
+	 * index. The exec file attributes and the partial flag are taken from the
+	 * header of the stream.
+	 *
+	 * @param stream
+	 *            stream to read from
+	 * @throws IOException
+	 *             in case of problems while reading from the stream
+	 */
+	public synchronized void read(final InputStream stream) throws IOException {
+		final CompactDataInput in = new CompactDataInput(stream);
+		boolean first = true;
+		int type;
+		while ((type = in.read()) != -1) {
+			if (first) {
+				if (type != BLOCK_HEADER) {
+					throw new IOException("Invalid merge index file.");
+				}
+				if (in.readChar() != MAGIC_NUMBER) {
+					throw new IOException("Invalid merge index file.");
+				}
+				final char version = in.readChar();
+				if (version != FORMAT_VERSION) {
+					throw new IOException(String.format(
+							"Cannot read merge index version 0x%x.",
+							Integer.valueOf(version)));
+				}
+				execLength = in.readLong();
+				execModified = in.readLong();
+				partial = in.readBoolean();
+				first = false;
+				continue;
+			}
+			if (type != BLOCK_CLASS) {
+				throw new IOException(String.format("Unknown block type %x.",
+						Byte.valueOf((byte) type)));
+			}
+			final long classid = in.readLong();
+			final String classname = in.readUTF();
+			final boolean[] probes = in.readBoolean() ? in.readBooleanArray()
+					: null;
+			final ClassEntry entry = getEntry(classid, classname, probes);
+			final int methods = in.readVarInt();
+			for (int i = 0; i < methods; i++) {
+				final String methodSign = in.readUTF();
+				entry.methods.put(methodSign, MethodInstructionIndex.read(in));
+			}
+		}
+	}
+
+	/**
+	 * Reads an index from the given file and adds its content to this index.
+	 *
+	 * @param file
+	 *            file to read from
+	 * @throws IOException
+	 *             in case of problems while reading from the file
+	 */
+	public void load(final File file) throws IOException {
+		final InputStream stream = new BufferedInputStream(
+				new FileInputStream(file));
+		try {
+			read(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+}
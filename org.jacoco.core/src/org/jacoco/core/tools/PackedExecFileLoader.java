@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.jacoco.core.data.CompressedExecutionDataWriter;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.PackedExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+
+/**
+ * Variant of {@link ExecFileLoader} which keeps the probes packed into bits
+ * while loading, merging and saving *.exec files. The probes are merged 64 at
+ * a time and written without converting them back to <code>boolean</code>
+ * arrays. Saved files are identical to the ones of {@link ExecFileLoader}.
+ */
+public class PackedExecFileLoader {
+
+	private final SessionInfoStore sessionInfos;
+	private final PackedExecutionDataStore executionData;
+
+	/**
+	 * New instance to combine session infos and execution data from multiple
+	 * files.
+	 */
+	public PackedExecFileLoader() {
+		sessionInfos = new SessionInfoStore();
+		executionData = new PackedExecutionDataStore();
+	}
+
+	/**
+	 * Reads all data from given input stream.
+	 *
+	 * @param stream
+	 *            Stream to read data from
+	 * @throws IOException
+	 *             in case of problems while reading from the stream
+	 */
+	public void load(final InputStream stream) throws IOException {
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new BufferedInputStream(stream));
+		reader.setPackedExecutionDataVisitor(executionData);
+		reader.setSessionInfoVisitor(sessionInfos);
+		reader.read();
+	}
+
+	/**
+	 * Reads all data from given file.
+	 *
+	 * @param file
+	 *            file to read data from
+	 * @throws IOException
+	 *             in case of problems while reading from the stream
+	 */
+	public void load(final File file) throws IOException {
+		final InputStream stream = new FileInputStream(file);
+		try {
+			load(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Saves the current content into the given output stream.
+	 *
+	 * @param stream
+	 *            stream to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final OutputStream stream) throws IOException {
+		save(stream, false);
+	}
+
+	/**
+	 * Saves the current content into the given output stream, optionally in
+	 * the compressed format of {@link CompressedExecutionDataWriter}.
+	 *
+	 * @param stream
+	 *            stream to save content to
+	 * @param compress
+	 *            <code>true</code> to write the compressed format
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final OutputStream stream, final boolean compress)
+			throws IOException {
+		final ExecutionDataWriter dataWriter = compress
+				? new CompressedExecutionDataWriter(stream)
+				: new ExecutionDataWriter(stream);
+		sessionInfos.accept(dataWriter);
+		executionData.accept(dataWriter);
+		dataWriter.flush();
+	}
+
+	/**
+	 * Saves the current content into the given file. Parent directories are
+	 * created as needed. Also a files system lock is acquired to avoid
+	 * concurrent write access.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @param append
+	 *            <code>true</code> if the content should be appended, otherwise
+	 *            the file is overwritten.
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final File file, final boolean append) throws IOException {
+		save(file, append, false);
+	}
+
+	/**
+	 * Saves the current content into the given file, optionally in the
+	 * compressed format. Parent directories are created as needed. Also a
+	 * files system lock is acquired to avoid concurrent write access.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @param append
+	 *            <code>true</code> if the content should be appended, otherwise
+	 *            the file is overwritten.
+	 * @param compress
+	 *            <code>true</code> to write the compressed format
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final File file, final boolean append,
+			final boolean compress) throws IOException {
+		final File folder = file.getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		final FileOutputStream fileStream = new FileOutputStream(file, append);
+		// Avoid concurrent writes from other processes:
+		fileStream.getChannel().lock();
+		final OutputStream bufferedStream = new BufferedOutputStream(
+				fileStream);
+		try {
+			save(bufferedStream, compress);
+		} finally {
+			bufferedStream.close();
+		}
+	}
+
+	/**
+	 * Copies the content into the given loader. The probes are unpacked.
+	 *
+	 * @param loader
+	 *            loader to add the content to
+	 */
+	public void unpack(final ExecFileLoader loader) {
+		sessionInfos.accept(loader.getSessionInfoStore());
+		executionData.acceptUnpacked(loader.getExecutionDataStore());
+	}
+
+	/**
+	 * Returns the session info store with all loaded sessions.
+	 *
+	 * @return session info store
+	 */
+	public SessionInfoStore getSessionInfoStore() {
+		return sessionInfos;
+	}
+
+	/**
+	 * Returns the execution data store with data for all loaded classes.
+	 *
+	 * @return execution data store
+	 */
+	public PackedExecutionDataStore getExecutionDataStore() {
+		return executionData;
+	}
+
+}
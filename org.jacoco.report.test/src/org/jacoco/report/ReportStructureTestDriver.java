@@ -64,6 +64,8 @@ public class ReportStructureTestDriver {
 
 	private final IPackageCoverage packageCoverage;
 
+	private final List<IClassCoverage> classes;
+
 	private final BundleCoverageImpl bundleCoverage;
 
 	public ReportStructureTestDriver() {
@@ -111,6 +113,8 @@ public class ReportStructureTestDriver {
 						emptySourceInNonEmptyPackage));
 		bundleCoverage = new BundleCoverageImpl("bundle",
 				Arrays.asList(packageCoverage, emptyPackage));
+		classes = Arrays.<IClassCoverage> asList(classCoverage,
+				emptyClassInNonEmptyPackage, emptyClassInEmptyPackage);
 	}
 
 	public void sendNestedGroups(IReportVisitor reportVisitor)
@@ -146,4 +150,13 @@ public class ReportStructureTestDriver {
 		groupVisitor.visitBundle(bundleCoverage, sourceFileLocator);
 	}
 
+	public void sendClasses(IStreamingReportVisitor visitor)
+			throws IOException {
+		visitor.visitInfo(sessions);
+		for (final IClassCoverage c : classes) {
+			visitor.visitCoverage(c);
+		}
+		visitor.visitEnd();
+	}
+
 }
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.tools.MergeContext;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link StreamingCoverageBuilder}.
+ */
+public class StreamingCoverageBuilderTest {
+
+	private StreamingCoverageBuilder builder;
+
+	private List<String> events;
+
+	@Before
+	public void setup() {
+		builder = new StreamingCoverageBuilder(new MergeContext());
+		events = new ArrayList<String>();
+		builder.addVisitor(new IStreamingReportVisitor() {
+			public void visitInfo(final List<SessionInfo> sessionInfos) {
+				events.add("info");
+			}
+
+			public void visitCoverage(final IClassCoverage coverage)
+					throws IOException {
+				if (coverage.getName().equals("Broken")) {
+					throw new IOException("broken");
+				}
+				events.add(coverage.getName());
+			}
+
+			public void visitEnd() {
+				events.add("end");
+			}
+		});
+	}
+
+	@Test
+	public void should_pass_classes_to_visitors() throws IOException {
+		builder.visitCoverage(new ClassCoverageImpl("Foo", 1, false));
+		builder.visitCoverage(new ClassCoverageImpl("Bar", 2, false));
+		builder.visitInfo(Collections.<SessionInfo> emptyList());
+		builder.visitEnd();
+
+		assertEquals("[Foo, Bar, info, end]", events.toString());
+		assertEquals(2, builder.getClassCount());
+		assertTrue(builder.getClasses().isEmpty());
+		assertTrue(builder.getBundle("bundle").getPackages().isEmpty());
+	}
+
+	@Test
+	public void should_pass_same_class_only_once() {
+		builder.visitCoverage(new ClassCoverageImpl("Foo", 1, false));
+		builder.visitCoverage(new ClassCoverageImpl("Foo", 1, false));
+
+		assertEquals("[Foo]", events.toString());
+		assertEquals(1, builder.getClassCount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_fail_for_different_class_with_same_name() {
+		builder.visitCoverage(new ClassCoverageImpl("Foo", 1, false));
+		builder.visitCoverage(new ClassCoverageImpl("Foo", 2, false));
+	}
+
+	@Test
+	public void should_keep_no_match_classes() {
+		final ClassCoverageImpl nomatch = new ClassCoverageImpl("Foo", 1,
+				true);
+		builder.visitCoverage(nomatch);
+		builder.visitCoverage(new ClassCoverageImpl("Bar", 2, false));
+
+		assertEquals(1, builder.getNoMatchClasses().size());
+		assertSame(nomatch, builder.getNoMatchClasses().iterator().next());
+	}
+
+	@Test
+	public void should_throw_unchecked_exception_for_visitor_problems() {
+		try {
+			builder.visitCoverage(new ClassCoverageImpl("Broken", 1, false));
+			fail("exception expected");
+		} catch (final UncheckedIOException e) {
+			assertEquals("broken", e.getCause().getMessage());
+		}
+	}
+
+}
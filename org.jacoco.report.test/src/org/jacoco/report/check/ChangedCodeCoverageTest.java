@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.check;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+import org.jacoco.core.internal.diff.ChangeLine;
+import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.MethodInfoDto;
+import org.jacoco.core.tools.MergeContext;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ChangedCodeCoverage}.
+ */
+public class ChangedCodeCoverageTest {
+
+	private ClassCoverageImpl coverage;
+
+	private MethodCoverageImpl method;
+
+	@Before
+	public void setup() {
+		method = new MethodCoverageImpl("foo", "()V", null);
+		method.increment(CounterImpl.getInstance(2, 0),
+				CounterImpl.COUNTER_0_0, 10);
+		method.increment(CounterImpl.getInstance(1, 3),
+				CounterImpl.getInstance(1, 1), 11);
+		method.increment(CounterImpl.getInstance(0, 2),
+				CounterImpl.COUNTER_0_0, 13);
+		method.incrementMethodCounter();
+		final MethodCoverageImpl other = new MethodCoverageImpl("bar", "()V",
+				null);
+		other.increment(CounterImpl.getInstance(5, 0), CounterImpl.COUNTER_0_0,
+				20);
+		other.incrementMethodCounter();
+		coverage = new ClassCoverageImpl("org/example/Foo", 42, false);
+		coverage.setSourceFileName("Foo.java");
+		coverage.addMethod(method);
+		coverage.addMethod(other);
+	}
+
+	@Test
+	public void reduce_should_return_null_for_unchanged_class() {
+		final ChangedCodeCoverage changed = new ChangedCodeCoverage(
+				createDiff("org/example/Bar", "foo", 10, 10));
+
+		assertNull(changed.reduce(coverage));
+	}
+
+	@Test
+	public void reduce_should_keep_changed_methods_only() {
+		final ChangedCodeCoverage changed = new ChangedCodeCoverage(
+				createDiff("org/example/Foo", "foo", 0, -1));
+
+		final IClassCoverage c = changed.reduce(coverage);
+
+		assertEquals(42, c.getId());
+		assertEquals("Foo.java", c.getSourceFileName());
+		assertEquals(1, c.getMethods().size());
+		assertSame(method, c.getMethods().iterator().next());
+		assertEquals(CounterImpl.getInstance(3, 5), c.getInstructionCounter());
+	}
+
+	@Test
+	public void reduce_should_keep_changed_lines_only() {
+		final ChangedCodeCoverage changed = new ChangedCodeCoverage(
+				createDiff("org/example/Foo", "foo", 11, 12));
+
+		final IClassCoverage c = changed.reduce(coverage);
+
+		final IMethodCoverage m = c.getMethods().iterator().next();
+		assertEquals(CounterImpl.getInstance(1, 3), m.getInstructionCounter());
+		assertEquals(CounterImpl.getInstance(1, 1), m.getBranchCounter());
+		assertEquals(CounterImpl.COUNTER_0_1, m.getMethodCounter());
+		assertEquals(11, m.getFirstLine());
+		assertEquals(11, m.getLastLine());
+		assertEquals(ICounter.EMPTY, m.getLine(10).getStatus());
+	}
+
+	@Test
+	public void reduce_should_drop_methods_without_changed_code() {
+		final ChangedCodeCoverage changed = new ChangedCodeCoverage(
+				createDiff("org/example/Foo", "foo", 12, 12));
+
+		assertNull(changed.reduce(coverage));
+	}
+
+	@Test
+	public void reduce_should_create_bundle_of_changed_code() {
+		final ChangedCodeCoverage changed = new ChangedCodeCoverage(
+				createDiff("org/example/Foo", "foo", 13, 20));
+		final ClassCoverageImpl unchanged = new ClassCoverageImpl(
+				"org/example/Bar", 43, false);
+		unchanged.addMethod(method);
+		final CoverageBuilder builder = new CoverageBuilder();
+		builder.visitCoverage(coverage);
+		builder.visitCoverage(unchanged);
+
+		final IBundleCoverage bundle = changed
+				.reduce(builder.getBundle("bundle"));
+
+		assertEquals("bundle", bundle.getName());
+		assertEquals(CounterImpl.getInstance(0, 2),
+				bundle.getInstructionCounter());
+		assertEquals(1, bundle.getClassCounter().getTotalCount());
+	}
+
+	/**
+	 * Creates a diff with a single changed method and the given range of
+	 * changed lines. No lines are added for an empty range.
+	 */
+	static MergeContext createDiff(final String classFile,
+			final String methodName, final int startLine, final int endLine) {
+		final MethodInfoDto m = new MethodInfoDto();
+		m.setMethodName(methodName);
+		final ClassInfoDto c = new ClassInfoDto();
+		c.setClassFile(classFile);
+		c.setMethodInfos(Collections.singletonList(m));
+		if (startLine <= endLine) {
+			final ChangeLine line = new ChangeLine();
+			line.setType("replace");
+			line.setStartLineNum(Integer.valueOf(startLine));
+			line.setEndLineNum(Integer.valueOf(endLine));
+			c.setLines(Collections.singletonList(line));
+		}
+		final MergeContext context = new MergeContext();
+		context.setClassInfos(Collections.singletonList(c));
+		return context;
+	}
+
+}
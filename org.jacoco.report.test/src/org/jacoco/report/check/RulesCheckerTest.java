@@ -17,6 +17,7 @@ import static org.junit.Assert.assertEquals;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.jacoco.core.analysis.ICounter.CounterValue;
@@ -96,6 +97,66 @@ public class RulesCheckerTest implements IViolationsOutput {
 				messages);
 	}
 
+	@Test
+	public void testSetMergeContext() throws IOException {
+		Rule rule = new Rule();
+		Limit limit = rule.createLimit();
+		limit.setValue(CounterValue.MISSEDCOUNT.name());
+		limit.setMaximum("3");
+		checker.setRules(Arrays.asList(rule));
+		checker.setMergeContext(
+				ChangedCodeCoverageTest.createDiff("org/jacoco/example/FooClass",
+						"fooMethod", 4, 4));
+		driver.sendGroup(checker.createVisitor(this));
+		assertEquals(Arrays.asList(
+				"Rule violated for bundle bundle: instructions missed count is 4, but expected maximum is 3"),
+				messages);
+	}
+
+	@Test
+	public void testSetMergeContextWithoutChangedClasses()
+			throws IOException {
+		Rule rule = new Rule();
+		Limit limit = rule.createLimit();
+		limit.setValue(CounterValue.MISSEDCOUNT.name());
+		limit.setMaximum("3");
+		checker.setRules(Arrays.asList(rule));
+		checker.setMergeContext(ChangedCodeCoverageTest
+				.createDiff("org/jacoco/example/Other", "fooMethod", 4, 4));
+		driver.sendGroup(checker.createVisitor(this));
+		assertEquals(Collections.emptyList(), messages);
+	}
+
+	@Test
+	public void testCreateStreamingVisitor() throws IOException {
+		Rule rule = new Rule();
+		Limit limit = rule.createLimit();
+		limit.setValue(CounterValue.MISSEDCOUNT.name());
+		limit.setMaximum("5");
+		checker.setRules(Arrays.asList(rule));
+		driver.sendClasses(checker.createStreamingVisitor(this, "bundle"));
+		assertEquals(Arrays.asList(
+				"Rule violated for bundle bundle: instructions missed count is 10, but expected maximum is 5"),
+				messages);
+	}
+
+	@Test
+	public void testCreateStreamingVisitorWithMergeContext()
+			throws IOException {
+		Rule rule = new Rule();
+		rule.setElement(ElementType.METHOD);
+		Limit limit = rule.createLimit();
+		limit.setMinimum("0.6");
+		checker.setRules(Arrays.asList(rule));
+		checker.setMergeContext(
+				ChangedCodeCoverageTest.createDiff("org/jacoco/example/FooClass",
+						"fooMethod", 4, 4));
+		driver.sendClasses(checker.createStreamingVisitor(this, "bundle"));
+		assertEquals(Arrays.asList(
+				"Rule violated for method org.jacoco.example.FooClass.fooMethod(): instructions covered ratio is 0.5, but expected minimum is 0.6"),
+				messages);
+	}
+
 	public void onViolation(ICoverageNode node, Rule rule, Limit limit,
 			String message) {
 		messages.add(message);
@@ -23,6 +23,7 @@ import java.util.List;
 
 import org.jacoco.report.ILanguageNames;
 import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.IStreamingReportVisitor;
 import org.jacoco.report.MemoryOutput;
 import org.jacoco.report.ReportStructureTestDriver;
 import org.junit.After;
@@ -92,6 +93,18 @@ public class CSVFormatterTest {
 		assertEquals(2, lines.size());
 	}
 
+	@Test
+	public void testStreamingStructure() throws IOException {
+		final IStreamingReportVisitor streaming = formatter
+				.createStreamingVisitor(output, "bundle");
+		driver.sendClasses(streaming);
+		final List<String> lines = getLines();
+		assertEquals(HEADER, lines.get(0));
+		assertEquals("bundle,org.jacoco.example,FooClass,10,15,1,2,0,3,1,2,0,1",
+				lines.get(1));
+		assertEquals(2, lines.size());
+	}
+
 	@Test
 	public void testSetEncoding() throws Exception {
 		formatter.setOutputEncoding("UTF-16");
@@ -12,16 +12,42 @@
  *******************************************************************************/
 package org.jacoco.report.html;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.analysis.BundleCoverageImpl;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+import org.jacoco.core.internal.analysis.PackageCoverageImpl;
+import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
+import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.MethodInfoDto;
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.ILanguageNames;
+import org.jacoco.report.IMultiReportOutput;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
 import org.jacoco.report.MemoryMultiReportOutput;
 import org.jacoco.report.ReportStructureTestDriver;
 import org.junit.After;
@@ -98,6 +124,144 @@ public class HTMLFormatterTest {
 		output.assertNoFile("empty/Empty.java.html");
 	}
 
+	@Test
+	public void testStructureWithThreads() throws IOException {
+		formatter.setThreads(4);
+		driver.sendNestedGroups(formatter.createVisitor(output));
+		output.assertFile("index.html");
+		output.assertFile("group1/group/bundle/index.html");
+		output.assertFile("bundle/org.jacoco.example/index.html");
+		output.assertFile("bundle/org.jacoco.example/FooClass.java.html");
+		output.assertNoFile("bundle/empty/index.html");
+	}
+
+	@Test
+	public void testStructureWithChangedCodeOnly() throws IOException {
+		formatter.setMergeContext(createDiff("org/jacoco/example/FooClass"));
+		formatter.setChangedCodeOnly(true);
+		driver.sendBundle(formatter.createVisitor(output));
+		output.assertFile("index.html");
+		output.assertFile("changes.html");
+		output.assertFile("org.jacoco.example/index.html");
+		output.assertFile("org.jacoco.example/FooClass.html");
+		output.assertFile("org.jacoco.example/FooClass.java.html");
+		output.assertNoFile("org.jacoco.example/Empty.html");
+	}
+
+	@Test
+	public void testChangedCodeOnlySkipsUnchangedPackages()
+			throws IOException {
+		formatter.setMergeContext(createDiff("org/jacoco/other/Bar"));
+		formatter.setChangedCodeOnly(true);
+		driver.sendBundle(formatter.createVisitor(output));
+		output.assertFile("index.html");
+		output.assertFile("changes.html");
+		output.assertNoFile("org.jacoco.example/index.html");
+		output.assertNoFile("org.jacoco.example/FooClass.html");
+	}
+
+	@Test
+	public void testChangedCodeOnlyWithoutDiff() throws IOException {
+		formatter.setMergeContext(new MergeContext());
+		formatter.setChangedCodeOnly(true);
+		driver.sendBundle(formatter.createVisitor(output));
+		output.assertFile("org.jacoco.example/FooClass.html");
+		output.assertNoFile("changes.html");
+	}
+
+	private static MergeContext createDiff(final String classFile) {
+		final MethodInfoDto m = new MethodInfoDto();
+		m.setMethodName("fooMethod");
+		final ClassInfoDto c = new ClassInfoDto();
+		c.setClassFile(classFile);
+		c.setMethodInfos(Collections.singletonList(m));
+		final MergeContext context = new MergeContext();
+		context.setClassInfos(Collections.singletonList(c));
+		return context;
+	}
+
+	@Test
+	public void testThreadsCreateIdenticalReport() throws IOException {
+		final byte[] expected = renderManyPackages(1);
+		final byte[] actual = renderManyPackages(3);
+		assertArrayEquals(expected, actual);
+		output.close();
+	}
+
+	/**
+	 * Renders a bundle with many packages and records all files with their
+	 * content in creation order.
+	 */
+	private byte[] renderManyPackages(final int threads) throws IOException {
+		final List<IPackageCoverage> packages = new ArrayList<IPackageCoverage>();
+		final List<ExecutionData> data = new ArrayList<ExecutionData>();
+		for (int p = 0; p < 20; p++) {
+			final String packageName = "org/example/p" + p;
+			final List<IClassCoverage> classes = new ArrayList<IClassCoverage>();
+			final List<ISourceFileCoverage> sources = new ArrayList<ISourceFileCoverage>();
+			for (int c = 0; c < 5; c++) {
+				final String className = packageName + "/Class" + c;
+				final long id = p * 100 + c;
+				final MethodCoverageImpl m = new MethodCoverageImpl("run",
+						"()V", null);
+				m.increment(CounterImpl.getInstance(c, 5 - c),
+						CounterImpl.getInstance(1, c % 2), 1 + c);
+				m.incrementMethodCounter();
+				final ClassCoverageImpl cc = new ClassCoverageImpl(className,
+						id, false);
+				cc.setSourceFileName("Class" + c + ".java");
+				cc.addMethod(m);
+				classes.add(cc);
+				final SourceFileCoverageImpl sc = new SourceFileCoverageImpl(
+						"Class" + c + ".java", packageName);
+				sc.increment(cc);
+				sources.add(sc);
+				data.add(new ExecutionData(id, className, new boolean[] {
+						c % 2 == 0 }));
+			}
+			packages.add(new PackageCoverageImpl(packageName, classes,
+					sources));
+		}
+		final ISourceFileLocator locator = new ISourceFileLocator() {
+			public Reader getSourceFile(final String packageName,
+					final String fileName) throws IOException {
+				return new StringReader("class A {\n\tint x;\n}\n"
+						+ packageName + "\n" + fileName + "\n");
+			}
+
+			public int getTabWidth() {
+				return 4;
+			}
+		};
+
+		final ByteArrayOutputStream recording = new ByteArrayOutputStream();
+		final IMultiReportOutput out = new IMultiReportOutput() {
+			public OutputStream createFile(final String path)
+					throws IOException {
+				recording.write(("\n### " + path + "\n").getBytes("UTF-8"));
+				return new FilterOutputStream(recording) {
+					@Override
+					public void close() {
+					}
+				};
+			}
+
+			public void close() {
+			}
+		};
+		final HTMLFormatter f = new HTMLFormatter();
+		f.setLocale(Locale.ENGLISH);
+		f.setThreads(threads);
+		final IReportVisitor visitor = f.createVisitor(out);
+		visitor.visitInfo(
+				Collections.singletonList(new SessionInfo("session", 1, 2)),
+				data);
+		visitor.visitBundle(new BundleCoverageImpl("bundle", packages),
+				locator);
+		visitor.visitEnd();
+		return recording.toByteArray();
+	}
+
 	@Test
 	public void testDefaultEncoding() throws Exception {
 		driver.sendBundle(formatter.createVisitor(output));
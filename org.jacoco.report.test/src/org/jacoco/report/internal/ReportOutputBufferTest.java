@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.jacoco.report.MemoryMultiReportOutput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ReportOutputBuffer}.
+ */
+public class ReportOutputBufferTest {
+
+	private ReportOutputBuffer buffer;
+
+	private MemoryMultiReportOutput output;
+
+	@Before
+	public void setup() {
+		buffer = new ReportOutputBuffer();
+		output = new MemoryMultiReportOutput();
+	}
+
+	@After
+	public void teardown() throws IOException {
+		output.close();
+		output.assertAllClosed();
+	}
+
+	@Test
+	public void replay_should_write_files_in_creation_order()
+			throws IOException {
+		final OutputStream b = buffer.createFile("b.html");
+		b.write(new byte[] { 1, 2 });
+		b.close();
+		final OutputStream a = buffer.createFile("a/a.html");
+		a.write(3);
+		a.close();
+		buffer.close();
+		output.assertEmpty();
+
+		final StringBuilder order = new StringBuilder();
+		buffer.replay(new MemoryMultiReportOutput() {
+			@Override
+			public OutputStream createFile(final String path)
+					throws IOException {
+				order.append(path).append(';');
+				return output.createFile(path);
+			}
+		});
+
+		assertArrayEquals(new byte[] { 1, 2 }, output.getFile("b.html"));
+		assertArrayEquals(new byte[] { 3 }, output.getFile("a/a.html"));
+		assertEquals("b.html;a/a.html;", order.toString());
+	}
+
+	@Test
+	public void replay_should_release_content() throws IOException {
+		buffer.createFile("a.html").close();
+		buffer.replay(output);
+		final MemoryMultiReportOutput second = new MemoryMultiReportOutput();
+		buffer.replay(second);
+		output.assertSingleFile("a.html");
+		second.assertEmpty();
+	}
+
+}
@@ -56,6 +56,20 @@ public class ReportOutputFolderTest {
 		assertSame(folder1, folder2);
 	}
 
+	@Test
+	public void testSubfolderWithOutput() throws IOException {
+		final ReportOutputBuffer buffer = new ReportOutputBuffer();
+		final ReportOutputFolder folder = root.subFolder("f1", buffer);
+		assertSame(folder, root.subFolder("f1"));
+		assertEquals("f1/test.html", folder.getLink(root, "test.html"));
+		assertEquals("../index.html", root.getLink(folder, "index.html"));
+
+		folder.createFile("test.html").close();
+		output.assertEmpty();
+		buffer.replay(output);
+		output.assertSingleFile("f1/test.html");
+	}
+
 	@Test
 	public void testFileInSubFolder() throws IOException {
 		root.subFolder("folderA").subFolder("folderB").createFile("test.html")
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.html;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.analysis.BundleCoverageImpl;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+import org.jacoco.core.internal.analysis.PackageCoverageImpl;
+import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
+import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.MethodInfoDto;
+import org.jacoco.core.tools.MergeContext;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ChangedCodeFilter}.
+ */
+public class ChangedCodeFilterTest {
+
+	private MergeContext context;
+
+	private ChangedCodeFilter filter;
+
+	private IBundleCoverage bundle;
+
+	@Before
+	public void setup() {
+		context = new MergeContext();
+		filter = new ChangedCodeFilter(context);
+		bundle = new BundleCoverageImpl("bundle", Arrays.asList(
+				createPackage("a", "Changed", "Same"),
+				createPackage("b", "Other")));
+	}
+
+	private static IPackageCoverage createPackage(final String name,
+			final String... classNames) {
+		final List<IClassCoverage> classes = new ArrayList<IClassCoverage>();
+		final List<ISourceFileCoverage> sources = new ArrayList<ISourceFileCoverage>();
+		int line = 1;
+		for (final String simpleName : classNames) {
+			final ClassCoverageImpl c = new ClassCoverageImpl(
+					name + "/" + simpleName, line, false);
+			c.setSourceFileName(simpleName + ".java");
+			c.addMethod(createMethod("run", line++, 2));
+			c.addMethod(createMethod("other", line++, 3));
+			classes.add(c);
+			final SourceFileCoverageImpl s = new SourceFileCoverageImpl(
+					simpleName + ".java", name);
+			s.increment(c);
+			sources.add(s);
+		}
+		return new PackageCoverageImpl(name, classes, sources);
+	}
+
+	private static MethodCoverageImpl createMethod(final String name,
+			final int line, final int missed) {
+		final MethodCoverageImpl m = new MethodCoverageImpl(name, "()V", null);
+		m.increment(CounterImpl.getInstance(missed, 0),
+				CounterImpl.COUNTER_0_0, line);
+		m.incrementMethodCounter();
+		return m;
+	}
+
+	private void setDiff(final String classFile, final String method) {
+		final MethodInfoDto m = new MethodInfoDto();
+		m.setMethodName(method);
+		final ClassInfoDto c = new ClassInfoDto();
+		c.setClassFile(classFile);
+		c.setMethodInfos(Collections.singletonList(m));
+		context.setClassInfos(Collections.singletonList(c));
+	}
+
+	@Test
+	public void filter_should_return_bundle_without_diff() {
+		assertSame(bundle, filter.filter(bundle));
+	}
+
+	@Test
+	public void filter_should_keep_changed_classes_and_methods_only() {
+		setDiff("a/Changed", "run");
+
+		final IBundleCoverage filtered = filter.filter(bundle);
+
+		assertEquals("bundle", filtered.getName());
+		assertEquals(1, filtered.getPackages().size());
+		final IPackageCoverage p = filtered.getPackages().iterator().next();
+		assertEquals("a", p.getName());
+		assertEquals(1, p.getClasses().size());
+		final IClassCoverage c = p.getClasses().iterator().next();
+		assertEquals("a/Changed", c.getName());
+		assertEquals("Changed.java", c.getSourceFileName());
+		assertEquals(1, c.getMethods().size());
+		assertEquals("run", c.getMethods().iterator().next().getName());
+
+		assertEquals(CounterImpl.getInstance(2, 0),
+				filtered.getInstructionCounter());
+		assertEquals(CounterImpl.getInstance(1, 0),
+				filtered.getMethodCounter());
+		assertEquals(CounterImpl.getInstance(1, 0),
+				filtered.getClassCounter());
+
+		assertEquals(1, p.getSourceFiles().size());
+		final ISourceFileCoverage s = p.getSourceFiles().iterator().next();
+		assertEquals("Changed.java", s.getName());
+		assertEquals(1, s.getFirstLine());
+		assertEquals(1, s.getLastLine());
+	}
+
+	@Test
+	public void filter_should_remove_class_without_changed_methods() {
+		setDiff("a/Changed", "unknown");
+
+		assertEquals(0, filter.filter(bundle).getPackages().size());
+	}
+
+	@Test
+	public void wrap_should_filter_bundles_of_groups() throws IOException {
+		setDiff("b/Other", "other");
+		final List<IBundleCoverage> bundles = new ArrayList<IBundleCoverage>();
+		final IReportGroupVisitor recorder = new IReportGroupVisitor() {
+			public void visitBundle(final IBundleCoverage b,
+					final ISourceFileLocator locator) {
+				bundles.add(b);
+			}
+
+			public IReportGroupVisitor visitGroup(final String name) {
+				return this;
+			}
+		};
+		final IReportVisitor visitor = filter.wrap(new IReportVisitor() {
+			public void visitInfo(final List<SessionInfo> sessionInfos,
+					final Collection<ExecutionData> executionData) {
+			}
+
+			public void visitBundle(final IBundleCoverage b,
+					final ISourceFileLocator locator) throws IOException {
+				recorder.visitBundle(b, locator);
+			}
+
+			public IReportGroupVisitor visitGroup(final String name) {
+				return recorder;
+			}
+
+			public void visitEnd() {
+			}
+		});
+
+		visitor.visitBundle(bundle, null);
+		visitor.visitGroup("group").visitGroup("nested").visitBundle(bundle,
+				null);
+
+		assertEquals(2, bundles.size());
+		for (final IBundleCoverage b : bundles) {
+			assertEquals(CounterImpl.getInstance(3, 0),
+					b.getInstructionCounter());
+		}
+	}
+
+}
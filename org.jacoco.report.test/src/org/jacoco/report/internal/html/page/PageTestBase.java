@@ -15,6 +15,7 @@ package org.jacoco.report.internal.html.page;
 import java.io.IOException;
 import java.util.Locale;
 
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.ILanguageNames;
 import org.jacoco.report.JavaNames;
 import org.jacoco.report.MemoryMultiReportOutput;
@@ -92,6 +93,18 @@ public abstract class PageTestBase {
 				return Locale.ENGLISH;
 			}
 
+			public MergeContext getMergeContext() {
+				return null;
+			}
+
+			public int getThreads() {
+				return 1;
+			}
+
+			public boolean isChangedCodeOnly() {
+				return false;
+			}
+
 		};
 		support = new HTMLSupport();
 	}
@@ -16,11 +16,18 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayOutputStream;
 import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Locale;
 
 import org.jacoco.core.analysis.ICoverageNode.ElementType;
 import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
 import org.jacoco.core.internal.analysis.SourceNodeImpl;
+import org.jacoco.core.internal.diff.ChangeLine;
+import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.MethodInfoDto;
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.internal.html.HTMLElement;
 import org.jacoco.report.internal.html.HTMLSupport;
 import org.jacoco.report.internal.html.resources.Styles;
@@ -142,6 +149,112 @@ public class SourceHighlighterTest {
 				htmlSupport.findStr(doc, "//pre/span/@title"));
 	}
 
+	@Test
+	public void testHighlightChangedLines() throws Exception {
+		final ChangeLine change = new ChangeLine();
+		change.setType("insert");
+		change.setStartLineNum(Integer.valueOf(2));
+		change.setEndLineNum(Integer.valueOf(3));
+		final ClassInfoDto classInfo = new ClassInfoDto();
+		classInfo.setClassFile("org/example/Foo");
+		classInfo.setMethodInfos(Collections.<MethodInfoDto> emptyList());
+		classInfo.setLines(Collections.singletonList(change));
+		final MergeContext context = new MergeContext();
+		context.setClassInfos(Collections.singletonList(classInfo));
+		final SourceFileCoverageImpl file = new SourceFileCoverageImpl(
+				"Foo.java", "org/example");
+		file.increment(CounterImpl.COUNTER_1_0, CounterImpl.COUNTER_0_0, 1);
+		file.increment(CounterImpl.COUNTER_1_0, CounterImpl.COUNTER_0_0, 2);
+		file.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 4);
+
+		new SourceHighlighter(Locale.US, context).render(parent, file,
+				new StringReader("A\nB\nC\nD"));
+		final Document doc = parseDoc();
+
+		assertEquals(Styles.NOT_COVERED,
+				htmlSupport.findStr(doc, "//pre/span[text() = 'A']/@class"));
+		assertEquals(Styles.NOT_COVERED + " insert",
+				htmlSupport.findStr(doc, "//pre/span[text() = 'B']/@class"));
+		assertEquals(Styles.FULLY_COVERED,
+				htmlSupport.findStr(doc, "//pre/span[text() = 'D']/@class"));
+	}
+
+	@Test
+	public void testCollapsedChangedLines() throws Exception {
+		final MergeContext context = new MergeContext();
+		context.setClassInfos(Collections.singletonList(classInfo(
+				change("insert", 10, 10), change("replace", 18, 18))));
+		final SourceFileCoverageImpl file = new SourceFileCoverageImpl(
+				"Foo.java", "org/example");
+		file.increment(CounterImpl.COUNTER_1_0, CounterImpl.COUNTER_0_0, 10);
+		final StringBuilder src = new StringBuilder();
+		for (int i = 1; i <= 25; i++) {
+			src.append("L").append(i).append('\n');
+		}
+		final SourceHighlighter hl = new SourceHighlighter(Locale.US, context);
+		hl.setCollapsed(true);
+		hl.render(parent, file, new StringReader(src.toString()));
+		final Document doc = parseDoc();
+		assertEquals("2", htmlSupport.findStr(doc, "count(//pre)"));
+		assertEquals("source lang-java linenums:7",
+				htmlSupport.findStr(doc, "//pre[1]/@class"));
+		assertEquals("L7\nL8\nL9\nL10\nL11\nL12\nL13\n",
+				htmlSupport.findStr(doc, "//pre[1]"));
+		assertEquals("source lang-java linenums:15",
+				htmlSupport.findStr(doc, "//pre[2]/@class"));
+		assertEquals("L15\nL16\nL17\nL18\nL19\nL20\nL21\n",
+				htmlSupport.findStr(doc, "//pre[2]"));
+		assertEquals("Lines 1 to 6 not changed.",
+				htmlSupport.findStr(doc, "//p[1]"));
+		assertEquals("Lines 14 to 14 not changed.",
+				htmlSupport.findStr(doc, "//p[2]"));
+		assertEquals(Styles.NOT_COVERED + " insert",
+				htmlSupport.findStr(doc, "//pre/span[text() = 'L10']/@class"));
+	}
+
+	@Test
+	public void testCollapsedMergesNearbyChanges() throws Exception {
+		final MergeContext context = new MergeContext();
+		context.setClassInfos(Collections.singletonList(classInfo(
+				change("insert", 2, 2), change("insert", 9, 9))));
+		final SourceHighlighter hl = new SourceHighlighter(Locale.US, context);
+		hl.setCollapsed(true);
+		hl.render(parent, new SourceFileCoverageImpl("Foo.java", "org/example"),
+				new StringReader("1\n2\n3\n4\n5\n6\n7\n8\n9\n"));
+		final Document doc = parseDoc();
+		assertEquals("1", htmlSupport.findStr(doc, "count(//pre)"));
+		assertEquals("source lang-java linenums:1",
+				htmlSupport.findStr(doc, "//pre/@class"));
+		assertEquals("0", htmlSupport.findStr(doc, "count(//p)"));
+	}
+
+	@Test
+	public void testCollapsedWithoutChangedLines() throws Exception {
+		sourceHighlighter.setCollapsed(true);
+		sourceHighlighter.render(parent, source, new StringReader("A\nB"));
+		final Document doc = parseDoc();
+		assertEquals("source lang-java linenums",
+				htmlSupport.findStr(doc, "//pre/@class"));
+		assertEquals("A\nB\n", htmlSupport.findStr(doc, "//pre"));
+	}
+
+	private static ChangeLine change(final String type, final int start,
+			final int end) {
+		final ChangeLine change = new ChangeLine();
+		change.setType(type);
+		change.setStartLineNum(Integer.valueOf(start));
+		change.setEndLineNum(Integer.valueOf(end));
+		return change;
+	}
+
+	private static ClassInfoDto classInfo(final ChangeLine... lines) {
+		final ClassInfoDto classInfo = new ClassInfoDto();
+		classInfo.setClassFile("org/example/Foo");
+		classInfo.setMethodInfos(Collections.<MethodInfoDto> emptyList());
+		classInfo.setLines(Arrays.asList(lines));
+		return classInfo;
+	}
+
 	private Document parseDoc() throws Exception {
 		html.close();
 		return htmlSupport.parse(buffer);
@@ -21,9 +21,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
 import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.IStreamingReportVisitor;
 import org.jacoco.report.MemoryOutput;
 import org.jacoco.report.ReportStructureTestDriver;
 import org.jacoco.report.internal.xml.XMLSupport;
@@ -202,6 +207,94 @@ public class XMLFormatterTest {
 				"count(report/package[@name='empty']/sourcefile/*)");
 	}
 
+	@Test
+	public void testStreamingStructure() throws Exception {
+		final IStreamingReportVisitor visitor = formatter
+				.createStreamingVisitor(output, "bundle");
+		driver.sendClasses(visitor);
+		assertPathMatches("bundle", "/report/@name");
+
+		assertPathMatches("2", "count(/report/package)");
+		assertPathMatches("empty", "/report/package[1]/@name");
+		assertPathMatches("org/jacoco/example", "/report/package[2]/@name");
+		assertPathMatches("3", "count(/report/package/class)");
+		assertPathMatches("org/jacoco/example/FooClass",
+				"/report/package[2]/class[1]/@name");
+		assertPathMatches("FooClass.java",
+				"/report/package[2]/class[1]/@sourcefilename");
+		assertPathMatches("fooMethod",
+				"/report/package[2]/class[1]/method/@name");
+		assertPathMatches("()V", "/report/package[2]/class[1]/method/@desc");
+		assertPathMatches("1", "/report/package[2]/class[1]/method/@line");
+		assertPathMatches("3",
+				"/report/package[2]/class[1]/method/counter[@type='LINE']/@covered");
+
+		assertPathMatches("10", "report/counter[@type='INSTRUCTION']/@missed");
+		assertPathMatches("15", "report/counter[@type='INSTRUCTION']/@covered");
+		assertPathMatches("1", "report/counter[@type='BRANCH']/@missed");
+		assertPathMatches("2", "report/counter[@type='BRANCH']/@covered");
+		assertPathMatches("1", "report/counter[@type='COMPLEXITY']/@missed");
+		assertPathMatches("2", "report/counter[@type='COMPLEXITY']/@covered");
+		assertPathMatches("0", "report/counter[@type='LINE']/@missed");
+		assertPathMatches("3", "report/counter[@type='LINE']/@covered");
+		assertPathMatches("1", "report/counter[@type='METHOD']/@covered");
+		assertPathMatches("1", "report/counter[@type='CLASS']/@covered");
+		assertPathMatches("15",
+				"report/package[2]/counter[@type='INSTRUCTION']/@covered");
+
+		assertPathMatches("2",
+				"count(report/package[@name='org/jacoco/example']/sourcefile)");
+		assertPathMatches("3", "count(report/package/sourcefile/line)");
+		assertPathMatches("2",
+				"report/package/sourcefile[@name='FooClass.java']/line[2]/@nr");
+		assertPathMatches("2",
+				"report/package/sourcefile[@name='FooClass.java']/line[2]/@cb");
+		assertPathMatches("4",
+				"report/package/sourcefile[@name='FooClass.java']/line[3]/@nr");
+		assertPathMatches("4",
+				"report/package/sourcefile[@name='FooClass.java']/line[3]/@mi");
+		assertPathMatches("0", "count(/report/package[@name='empty']/counter)");
+		assertPathMatches("0", "count(report/package[@name='empty']/class/*)");
+	}
+
+	@Test
+	public void testStreamingMergesLinesOfSourceFile() throws Exception {
+		infos.add(new SessionInfo("session-1", 12345, 67890));
+		final IStreamingReportVisitor visitor = formatter
+				.createStreamingVisitor(output, "bundle");
+		visitor.visitCoverage(createClass("p/Foo", 1, 2));
+		visitor.visitCoverage(createClass("p/Foo$1", 2, 3));
+		visitor.visitInfo(infos);
+		visitor.visitEnd();
+
+		assertPathMatches("session-1", "/report/sessioninfo/@id");
+		assertPathMatches("2", "count(/report/package/class)");
+		assertPathMatches("1", "count(/report/package/sourcefile)");
+		assertPathMatches("3", "count(/report/package/sourcefile/line)");
+		assertPathMatches("2",
+				"/report/package/sourcefile/line[@nr='2']/@ci");
+		assertPathMatches("3",
+				"/report/package/sourcefile/counter[@type='LINE']/@covered");
+		assertPathMatches("3",
+				"/report/package/counter[@type='LINE']/@covered");
+		assertPathMatches("4", "/report/counter[@type='INSTRUCTION']/@covered");
+		assertPathMatches("2", "/report/counter[@type='CLASS']/@covered");
+	}
+
+	private static IClassCoverage createClass(final String name,
+			final int... lines) {
+		final MethodCoverageImpl m = new MethodCoverageImpl("run", "()V", null);
+		for (final int line : lines) {
+			m.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0,
+					line);
+		}
+		m.incrementMethodCounter();
+		final ClassCoverageImpl c = new ClassCoverageImpl(name, 0, false);
+		c.setSourceFileName("Foo.java");
+		c.addMethod(m);
+		return c;
+	}
+
 	@Test
 	public void testDefaultEncoding() throws Exception {
 		final IReportVisitor visitor = formatter.createVisitor(output);
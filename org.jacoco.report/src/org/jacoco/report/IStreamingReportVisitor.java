@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.data.SessionInfo;
+
+/**
+ * Interface for report writers which receive the coverage data class by class
+ * while the classes are analyzed instead of a complete bundle. The coverage
+ * data is typically emitted by a {@link StreamingCoverageBuilder}.
+ */
+public interface IStreamingReportVisitor {
+
+	/**
+	 * Sets the global session information of the report. This method has to
+	 * be called before {@link #visitEnd()}.
+	 *
+	 * @param sessionInfos
+	 *            list of chronological ordered {@link SessionInfo} objects
+	 *            where execution data has been collected for this report.
+	 * @throws IOException
+	 *             in case of IO problems with the report writer
+	 */
+	void visitInfo(List<SessionInfo> sessionInfos) throws IOException;
+
+	/**
+	 * Emits the coverage of a single class. The coverage object must not be
+	 * referenced by the visitor after this method returns.
+	 *
+	 * @param coverage
+	 *            coverage data of a class
+	 * @throws IOException
+	 *             in case of IO problems with the report writer
+	 */
+	void visitCoverage(IClassCoverage coverage) throws IOException;
+
+	/**
+	 * Has to be called after all classes have been emitted.
+	 *
+	 * @throws IOException
+	 *             in case of IO problems with the report writer
+	 */
+	void visitEnd() throws IOException;
+
+}
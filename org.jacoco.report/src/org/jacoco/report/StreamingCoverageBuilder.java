@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.tools.MergeContext;
+
+/**
+ * {@link CoverageBuilder} which passes every analyzed class directly to
+ * {@link IStreamingReportVisitor} instances instead of keeping it. Only the
+ * ids of the classes and the classes with non-matching execution data are
+ * retained, so {@link #getClasses()}, {@link #getSourceFiles()} and
+ * {@link #getBundle(String)} return empty results.
+ */
+public class StreamingCoverageBuilder extends CoverageBuilder {
+
+	private final List<IStreamingReportVisitor> visitors = new ArrayList<IStreamingReportVisitor>();
+
+	private final Map<String, Long> ids = new HashMap<String, Long>();
+
+	private final List<IClassCoverage> noMatchClasses = new ArrayList<IClassCoverage>();
+
+	/**
+	 * Create a new builder which uses the given context.
+	 *
+	 * @param mergeContext
+	 *            context of the report job
+	 */
+	public StreamingCoverageBuilder(final MergeContext mergeContext) {
+		super(mergeContext);
+	}
+
+	/**
+	 * Adds a visitor which receives all classes analyzed afterwards.
+	 *
+	 * @param visitor
+	 *            visitor to add
+	 */
+	public void addVisitor(final IStreamingReportVisitor visitor) {
+		visitors.add(visitor);
+	}
+
+	/**
+	 * Returns the number of distinct classes emitted so far.
+	 *
+	 * @return number of classes
+	 */
+	public int getClassCount() {
+		return ids.size();
+	}
+
+	@Override
+	public Collection<IClassCoverage> getNoMatchClasses() {
+		return new ArrayList<IClassCoverage>(noMatchClasses);
+	}
+
+	/**
+	 * Passes the session information to all visitors.
+	 *
+	 * @param sessionInfos
+	 *            list of chronological ordered {@link SessionInfo} objects
+	 * @throws IOException
+	 *             in case of IO problems with the report writers
+	 */
+	public void visitInfo(final List<SessionInfo> sessionInfos)
+			throws IOException {
+		for (final IStreamingReportVisitor v : visitors) {
+			v.visitInfo(sessionInfos);
+		}
+	}
+
+	/**
+	 * Completes the reports of all visitors.
+	 *
+	 * @throws IOException
+	 *             in case of IO problems with the report writers
+	 */
+	public void visitEnd() throws IOException {
+		for (final IStreamingReportVisitor v : visitors) {
+			v.visitEnd();
+		}
+	}
+
+	// === ICoverageVisitor ===
+
+	/**
+	 * Passes the given class to all visitors. IO problems of the report
+	 * writers are thrown as {@link UncheckedIOException}, which the
+	 * {@link org.jacoco.core.analysis.Analyzer} reports as analysis error.
+	 */
+	@Override
+	public void visitCoverage(final IClassCoverage coverage) {
+		final String name = coverage.getName();
+		final Long dup = ids.put(name, Long.valueOf(coverage.getId()));
+		if (dup != null) {
+			if (dup.longValue() != coverage.getId()) {
+				throw new IllegalStateException(
+						"Can't add different class with same name: " + name);
+			}
+			return;
+		}
+		if (coverage.isNoMatch()) {
+			noMatchClasses.add(coverage);
+		}
+		try {
+			for (final IStreamingReportVisitor v : visitors) {
+				v.visitCoverage(coverage);
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
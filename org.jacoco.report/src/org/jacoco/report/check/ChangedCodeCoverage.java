@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.check;
+
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+import org.jacoco.core.internal.diff.ChangeLineIndex;
+import org.jacoco.core.internal.diff.CodeDiffIndex;
+import org.jacoco.core.tools.MergeContext;
+
+/**
+ * Restricts coverage data to the changed code of the diff of a
+ * {@link MergeContext}. Classes are reduced to the changed methods and, if the
+ * diff contains changed lines for the class, the methods to the changed lines.
+ * Changed methods and classes are looked up in the {@link CodeDiffIndex},
+ * changed lines with a binary search in the {@link ChangeLineIndex} of the
+ * class, so the costs depend on the size of the changed code only.
+ */
+final class ChangedCodeCoverage {
+
+	private final MergeContext context;
+
+	ChangedCodeCoverage(final MergeContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * Reduces all classes of the given bundle.
+	 *
+	 * @param bundle
+	 *            bundle to reduce
+	 * @return bundle with the changed code only
+	 */
+	IBundleCoverage reduce(final IBundleCoverage bundle) {
+		final CoverageBuilder builder = new CoverageBuilder();
+		for (final IPackageCoverage p : bundle.getPackages()) {
+			for (final IClassCoverage c : p.getClasses()) {
+				final IClassCoverage reduced = reduce(c);
+				if (reduced != null) {
+					builder.visitCoverage(reduced);
+				}
+			}
+		}
+		return builder.getBundle(bundle.getName());
+	}
+
+	/**
+	 * Reduces the given class to its changed methods and lines.
+	 *
+	 * @param coverage
+	 *            class to reduce
+	 * @return reduced class or <code>null</code> if the class contains no
+	 *         changed code
+	 */
+	IClassCoverage reduce(final IClassCoverage coverage) {
+		final CodeDiffIndex.ClassEntry entry = context.getDiffIndex()
+				.getClassEntry(coverage.getName());
+		if (entry == null) {
+			return null;
+		}
+		final ChangeLineIndex lines = context
+				.getChangeLines(coverage.getName());
+		final ClassCoverageImpl result = new ClassCoverageImpl(
+				coverage.getName(), coverage.getId(), coverage.isNoMatch());
+		result.setSignature(coverage.getSignature());
+		result.setSuperName(coverage.getSuperName());
+		result.setInterfaces(coverage.getInterfaceNames());
+		result.setSourceFileName(coverage.getSourceFileName());
+		for (final IMethodCoverage m : coverage.getMethods()) {
+			if (!entry.containsMethod(m.getName(), m.getDesc())) {
+				continue;
+			}
+			if (lines.isEmpty()
+					|| m.getFirstLine() == ISourceNode.UNKNOWN_LINE) {
+				// 没有变更行信息时整个变更方法参与检查
+				result.addMethod(m);
+				continue;
+			}
+			final IMethodCoverage changed = reduce(m, lines);
+			if (changed != null) {
+				result.addMethod(changed);
+			}
+		}
+		return result.getMethods().isEmpty() ? null : result;
+	}
+
+	private static IMethodCoverage reduce(final IMethodCoverage method,
+			final ChangeLineIndex lines) {
+		final MethodCoverageImpl result = new MethodCoverageImpl(
+				method.getName(), method.getDesc(), method.getSignature());
+		final int last = method.getLastLine();
+		for (int nr = method.getFirstLine(); nr <= last; nr++) {
+			final ILine line = method.getLine(nr);
+			if (line.getStatus() != ICounter.EMPTY && lines.contains(nr)) {
+				result.increment(line.getInstructionCounter(),
+						line.getBranchCounter(), nr);
+			}
+		}
+		// 只改了注释或空行的方法没有可检查的代码
+		if (result.getInstructionCounter().getTotalCount() == 0) {
+			return null;
+		}
+		result.incrementMethodCounter();
+		return result;
+	}
+
+}
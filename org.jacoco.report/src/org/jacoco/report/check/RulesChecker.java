@@ -17,13 +17,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.ILanguageNames;
 import org.jacoco.report.IReportGroupVisitor;
 import org.jacoco.report.IReportVisitor;
 import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.IStreamingReportVisitor;
 import org.jacoco.report.JavaNames;
 
 /**
@@ -34,6 +38,7 @@ public class RulesChecker {
 
 	private List<Rule> rules;
 	private ILanguageNames languageNames;
+	private MergeContext mergeContext;
 
 	/**
 	 * New formatter instance.
@@ -64,6 +69,25 @@ public class RulesChecker {
 		this.languageNames = languageNames;
 	}
 
+	/**
+	 * Sets the context with the code diff of an incremental check. If the
+	 * context contains a diff, the limits are evaluated on the changed code
+	 * only: classes are reduced to their changed methods and methods to their
+	 * changed lines, unchanged classes are ignored.
+	 *
+	 * @param mergeContext
+	 *            context with the changed classes or <code>null</code>
+	 */
+	public void setMergeContext(final MergeContext mergeContext) {
+		this.mergeContext = mergeContext;
+	}
+
+	private ChangedCodeCoverage getChangedCode() {
+		return mergeContext != null && mergeContext.hasClassInfos()
+				? new ChangedCodeCoverage(mergeContext)
+				: null;
+	}
+
 	/**
 	 * Creates a new visitor to process the configured checks.
 	 *
@@ -74,6 +98,7 @@ public class RulesChecker {
 	public IReportVisitor createVisitor(final IViolationsOutput output) {
 		final BundleChecker bundleChecker = new BundleChecker(rules,
 				languageNames, output);
+		final ChangedCodeCoverage changedCode = getChangedCode();
 		return new IReportVisitor() {
 
 			public IReportGroupVisitor visitGroup(final String name)
@@ -83,7 +108,8 @@ public class RulesChecker {
 
 			public void visitBundle(final IBundleCoverage bundle,
 					final ISourceFileLocator locator) throws IOException {
-				bundleChecker.checkBundle(bundle);
+				bundleChecker.checkBundle(changedCode == null ? bundle
+						: changedCode.reduce(bundle));
 			}
 
 			public void visitInfo(final List<SessionInfo> sessionInfos,
@@ -96,4 +122,43 @@ public class RulesChecker {
 		};
 	}
 
+	/**
+	 * Creates a new visitor to process the configured checks for the classes
+	 * emitted during analysis, typically by a
+	 * {@link org.jacoco.report.StreamingCoverageBuilder}. With a diff set by
+	 * {@link #setMergeContext(MergeContext)} only the changed code of each
+	 * class is kept until the rules are checked with
+	 * {@link IStreamingReportVisitor#visitEnd()}.
+	 *
+	 * @param output
+	 *            call-back to report rule violations to
+	 * @param name
+	 *            name of the checked bundle
+	 * @return visitor to emit the classes to
+	 */
+	public IStreamingReportVisitor createStreamingVisitor(
+			final IViolationsOutput output, final String name) {
+		final BundleChecker bundleChecker = new BundleChecker(rules,
+				languageNames, output);
+		final ChangedCodeCoverage changedCode = getChangedCode();
+		final CoverageBuilder builder = new CoverageBuilder();
+		return new IStreamingReportVisitor() {
+
+			public void visitInfo(final List<SessionInfo> sessionInfos) {
+			}
+
+			public void visitCoverage(final IClassCoverage coverage) {
+				final IClassCoverage c = changedCode == null ? coverage
+						: changedCode.reduce(coverage);
+				if (c != null) {
+					builder.visitCoverage(c);
+				}
+			}
+
+			public void visitEnd() {
+				bundleChecker.checkBundle(builder.getBundle(name));
+			}
+		};
+	}
+
 }
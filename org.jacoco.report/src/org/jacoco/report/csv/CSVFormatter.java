@@ -18,10 +18,12 @@ import java.io.OutputStreamWriter;
 import java.util.Collection;
 import java.util.List;
 
+import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.SessionInfo;
 import org.jacoco.report.ILanguageNames;
 import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.IStreamingReportVisitor;
 import org.jacoco.report.JavaNames;
 
 /**
@@ -97,4 +99,43 @@ public class CSVFormatter {
 		return new Visitor();
 	}
 
+	/**
+	 * Creates a new visitor to write a report to the given stream while the
+	 * classes are analyzed. Every class is written as a row immediately, so
+	 * the rows appear in the order of analysis.
+	 *
+	 * @param output
+	 *            output stream to write the report to
+	 * @param name
+	 *            name of the bundle written to the group column
+	 * @return visitor to emit the classes to
+	 * @throws IOException
+	 *             in case of problems with the output stream
+	 */
+	public IStreamingReportVisitor createStreamingVisitor(
+			final OutputStream output, final String name) throws IOException {
+		final DelimitedWriter writer = new DelimitedWriter(
+				new OutputStreamWriter(output, outputEncoding));
+		final ClassRowWriter rowWriter = new ClassRowWriter(writer,
+				languageNames);
+		return new IStreamingReportVisitor() {
+
+			public void visitInfo(final List<SessionInfo> sessionInfos) {
+				// Info not used for CSV report
+			}
+
+			public void visitCoverage(final IClassCoverage coverage)
+					throws IOException {
+				if (coverage.containsCode()) {
+					rowWriter.writeRow(name, coverage.getPackageName(),
+							coverage);
+				}
+			}
+
+			public void visitEnd() throws IOException {
+				writer.close();
+			}
+		};
+	}
+
 }
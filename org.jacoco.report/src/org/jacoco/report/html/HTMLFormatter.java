@@ -21,6 +21,7 @@ import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.ILanguageNames;
 import org.jacoco.report.IMultiReportOutput;
 import org.jacoco.report.IReportGroupVisitor;
@@ -28,6 +29,7 @@ import org.jacoco.report.IReportVisitor;
 import org.jacoco.report.ISourceFileLocator;
 import org.jacoco.report.JavaNames;
 import org.jacoco.report.internal.ReportOutputFolder;
+import org.jacoco.report.internal.html.ChangedCodeFilter;
 import org.jacoco.report.internal.html.HTMLGroupVisitor;
 import org.jacoco.report.internal.html.IHTMLReportContext;
 import org.jacoco.report.internal.html.ILinkable;
@@ -63,9 +65,15 @@ public class HTMLFormatter implements IHTMLReportContext {
 
 	private SessionsPage sessionsPage;
 
-	private Table table;
+	private final ThreadLocal<Table> table = new ThreadLocal<Table>();
 
-	private Table table_;
+	private final ThreadLocal<Table> table_ = new ThreadLocal<Table>();
+
+	private MergeContext mergeContext;
+
+	private int threads = 1;
+
+	private boolean changedCodeOnly;
 
 	/**
 	 * New instance with default settings.
@@ -115,6 +123,50 @@ public class HTMLFormatter implements IHTMLReportContext {
 		this.outputEncoding = outputEncoding;
 	}
 
+	/**
+	 * Sets the merge and diff context of the report job. The changed classes
+	 * of an incremental report are highlighted in the source pages and their
+	 * authors and commit messages are listed in the tables. By default no
+	 * context is set.
+	 *
+	 * @param mergeContext
+	 *            context of the report job
+	 */
+	public void setMergeContext(final MergeContext mergeContext) {
+		this.mergeContext = mergeContext;
+	}
+
+	/**
+	 * Sets the number of threads used to render the packages of a bundle.
+	 * With more than one thread every package with its class and source pages
+	 * is rendered as a separate task into memory, the pages are written to the
+	 * output in the original order. The report is identical to the one
+	 * created with a single thread. The default is <code>1</code>.
+	 *
+	 * @param threads
+	 *            number of rendering threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Restricts the report to the changed classes and methods of the code
+	 * diff of the merge context. Pages are only written for the matched
+	 * classes, all counters only contain the matched methods, source pages
+	 * show the changed lines with a few lines of context and every bundle
+	 * gets a flat summary of its changed classes. Without a code diff in the
+	 * merge context a complete report is created. Default is
+	 * <code>false</code>.
+	 *
+	 * @param changedCodeOnly
+	 *            <code>true</code> to report changed code only
+	 * @see #setMergeContext(MergeContext)
+	 */
+	public void setChangedCodeOnly(final boolean changedCodeOnly) {
+		this.changedCodeOnly = changedCodeOnly;
+	}
+
 	// === IHTMLReportContext ===
 
 	public ILanguageNames getLanguageNames() {
@@ -126,18 +178,23 @@ public class HTMLFormatter implements IHTMLReportContext {
 	}
 
 	public Table getTable() {
-		if (table == null) {
-			table = createTable();
+		// tables keep sort state while rendering, one instance per thread
+		Table t = table.get();
+		if (t == null) {
+			t = createTable();
+			table.set(t);
 		}
-		return table;
+		return t;
 	}
 
 	@Override
 	public Table getTable(boolean flag) {
-		if (table_ == null) {
-			table_ = createTable(flag);
+		Table t = table_.get();
+		if (t == null) {
+			t = createTable(flag);
+			table_.set(t);
 		}
-		return table_;
+		return t;
 	}
 
 	private Table createTable() {
@@ -160,6 +217,7 @@ public class HTMLFormatter implements IHTMLReportContext {
 
 	private Table createTable(boolean addSvnMessage) {
 		final Table t = new Table();
+		t.setMergeContext(mergeContext);
 		t.add("Element", null, new LabelColumn(), false);
 		t.add("Missed Instructions", Styles.BAR,
 				new BarColumn(CounterEntity.INSTRUCTION, locale), true);
@@ -190,6 +248,10 @@ public class HTMLFormatter implements IHTMLReportContext {
 				false);
 	}
 
+	public MergeContext getMergeContext() {
+		return mergeContext;
+	}
+
 	public String getFooterText() {
 		return footerText;
 	}
@@ -210,6 +272,15 @@ public class HTMLFormatter implements IHTMLReportContext {
 		return locale;
 	}
 
+	public int getThreads() {
+		return threads;
+	}
+
+	public boolean isChangedCodeOnly() {
+		return changedCodeOnly && mergeContext != null
+				&& mergeContext.hasClassInfos();
+	}
+
 	/**
 	 * Creates a new visitor to write a report to the given output.
 	 *
@@ -225,7 +296,7 @@ public class HTMLFormatter implements IHTMLReportContext {
 		resources = new Resources(root);
 		resources.copyResources();
 		index = new ElementIndex(root);
-		return new IReportVisitor() {
+		final IReportVisitor visitor = new IReportVisitor() {
 
 			private List<SessionInfo> sessionInfos;
 			private Collection<ExecutionData> executionData;
@@ -269,5 +340,9 @@ public class HTMLFormatter implements IHTMLReportContext {
 				output.close();
 			}
 		};
+		if (changedCodeOnly && mergeContext != null) {
+			return new ChangedCodeFilter(mergeContext).wrap(visitor);
+		}
+		return visitor;
 	}
 }
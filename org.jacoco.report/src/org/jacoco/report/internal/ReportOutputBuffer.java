@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.report.IMultiReportOutput;
+
+/**
+ * In-memory {@link IMultiReportOutput} which records the created files in
+ * their creation order. The recorded files can be written to another output
+ * later on, which allows rendering parts of a report concurrently while the
+ * final output still receives all files in the sequential order.
+ */
+public class ReportOutputBuffer implements IMultiReportOutput {
+
+	private final List<String> paths = new ArrayList<String>();
+
+	private final List<ByteArrayOutputStream> contents = new ArrayList<ByteArrayOutputStream>();
+
+	public OutputStream createFile(final String path) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		paths.add(path);
+		contents.add(out);
+		return out;
+	}
+
+	public void close() throws IOException {
+		// nothing to do
+	}
+
+	/**
+	 * Writes all recorded files in their creation order to the given output
+	 * and releases the buffered content.
+	 *
+	 * @param output
+	 *            output to write the files to
+	 * @throws IOException
+	 *             if writing to the output fails
+	 */
+	public void replay(final IMultiReportOutput output) throws IOException {
+		for (int i = 0; i < paths.size(); i++) {
+			final OutputStream out = output.createFile(paths.get(i));
+			contents.get(i).writeTo(out);
+			contents.set(i, null);
+			out.close();
+		}
+		paths.clear();
+		contents.clear();
+	}
+
+}
@@ -22,6 +22,7 @@ import org.jacoco.report.IMultiReportOutput;
 /**
  * Logical representation of a folder in the output structure. This utility
  * ensures valid and unique file names and helps to create relative links.
+ * Instances can be used by multiple threads concurrently.
  */
 public class ReportOutputFolder {
 
@@ -67,7 +68,7 @@ public class ReportOutputFolder {
 	 *            name of the sub-folder
 	 * @return handle for output into the sub-folder
 	 */
-	public ReportOutputFolder subFolder(final String name) {
+	public synchronized ReportOutputFolder subFolder(final String name) {
 		final String normalizedName = normalize(name);
 		ReportOutputFolder folder = subFolders.get(normalizedName);
 		if (folder != null) {
@@ -79,6 +80,27 @@ public class ReportOutputFolder {
 		return folder;
 	}
 
+	/**
+	 * Creates a sub-folder with the given name whose files are written to the
+	 * given output instead of the output of this folder. File names and links
+	 * are the same as for {@link #subFolder(String)}, the new instance replaces
+	 * a previously cached sub-folder with the same name.
+	 *
+	 * @param name
+	 *            name of the sub-folder
+	 * @param output
+	 *            output for the files of the sub-folder
+	 * @return handle for output into the sub-folder
+	 */
+	public synchronized ReportOutputFolder subFolder(final String name,
+			final IMultiReportOutput output) {
+		final String normalizedName = normalize(name);
+		final ReportOutputFolder folder = new ReportOutputFolder(output, this,
+				path + normalizedName + "/");
+		subFolders.put(normalizedName, folder);
+		return folder;
+	}
+
 	/**
 	 * Creates a new file in this folder with the given local name.
 	 *
@@ -92,6 +114,15 @@ public class ReportOutputFolder {
 		return output.createFile(path + normalize(name));
 	}
 
+	/**
+	 * Returns the output the files of this folder are written to.
+	 *
+	 * @return output for generated files
+	 */
+	public IMultiReportOutput getOutput() {
+		return output;
+	}
+
 	/**
 	 * Returns a link relative to a given base to a resource within this folder.
 	 *
@@ -120,7 +151,7 @@ public class ReportOutputFolder {
 		return folder.parent == null ? false : isAncestorOf(folder.parent);
 	}
 
-	private String normalize(final String name) {
+	private synchronized String normalize(final String name) {
 		return fileNames.getFileName(name);
 	}
 
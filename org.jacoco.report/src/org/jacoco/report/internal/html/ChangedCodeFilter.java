@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.html;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.analysis.BundleCoverageImpl;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.PackageCoverageImpl;
+import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
+import org.jacoco.core.internal.diff.CodeDiffIndex;
+import org.jacoco.core.tools.MergeContext;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+
+/**
+ * Reduces bundles to the classes and methods matched by the code diff of a
+ * {@link MergeContext}. All counters of the reduced bundle, its packages,
+ * classes and source files only contain the matched methods. Packages without
+ * matched classes are removed, so the size of a report created from the
+ * reduced bundle depends on the size of the diff only.
+ */
+public final class ChangedCodeFilter {
+
+	private final MergeContext context;
+
+	/**
+	 * Creates a filter for the code diff of the given context.
+	 *
+	 * @param context
+	 *            context with the changed classes
+	 */
+	public ChangedCodeFilter(final MergeContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * Returns a visitor which passes the reduced bundles to the given visitor.
+	 * Bundles are passed unchanged if the context does not contain a diff.
+	 *
+	 * @param visitor
+	 *            visitor to delegate to
+	 * @return filtering visitor
+	 */
+	public IReportVisitor wrap(final IReportVisitor visitor) {
+		return new IReportVisitor() {
+
+			public void visitInfo(final List<SessionInfo> sessionInfos,
+					final Collection<ExecutionData> executionData)
+					throws IOException {
+				visitor.visitInfo(sessionInfos, executionData);
+			}
+
+			public void visitBundle(final IBundleCoverage bundle,
+					final ISourceFileLocator locator) throws IOException {
+				visitor.visitBundle(filter(bundle), locator);
+			}
+
+			public IReportGroupVisitor visitGroup(final String name)
+					throws IOException {
+				return wrap(visitor.visitGroup(name));
+			}
+
+			public void visitEnd() throws IOException {
+				visitor.visitEnd();
+			}
+		};
+	}
+
+	private IReportGroupVisitor wrap(final IReportGroupVisitor visitor) {
+		return new IReportGroupVisitor() {
+
+			public void visitBundle(final IBundleCoverage bundle,
+					final ISourceFileLocator locator) throws IOException {
+				visitor.visitBundle(filter(bundle), locator);
+			}
+
+			public IReportGroupVisitor visitGroup(final String name)
+					throws IOException {
+				return wrap(visitor.visitGroup(name));
+			}
+		};
+	}
+
+	/**
+	 * Reduces the given bundle to the classes and methods of the diff.
+	 *
+	 * @param bundle
+	 *            bundle to reduce
+	 * @return reduced bundle or the given bundle if the context does not
+	 *         contain a diff
+	 */
+	public IBundleCoverage filter(final IBundleCoverage bundle) {
+		if (!context.hasClassInfos()) {
+			return bundle;
+		}
+		final CodeDiffIndex index = context.getDiffIndex();
+		final List<IPackageCoverage> packages = new ArrayList<IPackageCoverage>();
+		for (final IPackageCoverage p : bundle.getPackages()) {
+			final IPackageCoverage filtered = filter(p, index);
+			if (filtered != null) {
+				packages.add(filtered);
+			}
+		}
+		return new BundleCoverageImpl(bundle.getName(), packages);
+	}
+
+	private static IPackageCoverage filter(final IPackageCoverage p,
+			final CodeDiffIndex index) {
+		final List<IClassCoverage> classes = new ArrayList<IClassCoverage>();
+		for (final IClassCoverage c : p.getClasses()) {
+			final IClassCoverage filtered = filter(c, index);
+			if (filtered != null) {
+				classes.add(filtered);
+			}
+		}
+		if (classes.isEmpty()) {
+			return null;
+		}
+		// keep the order of the source files, only the kept classes are added
+		final Map<String, SourceFileCoverageImpl> sources = new LinkedHashMap<String, SourceFileCoverageImpl>();
+		for (final ISourceFileCoverage s : p.getSourceFiles()) {
+			sources.put(s.getName(),
+					new SourceFileCoverageImpl(s.getName(), p.getName()));
+		}
+		for (final IClassCoverage c : classes) {
+			final SourceFileCoverageImpl source = sources
+					.get(c.getSourceFileName());
+			if (source != null) {
+				source.increment(c);
+			}
+		}
+		final List<ISourceFileCoverage> sourceFiles = new ArrayList<ISourceFileCoverage>();
+		for (final SourceFileCoverageImpl s : sources.values()) {
+			if (s.containsCode()) {
+				sourceFiles.add(s);
+			}
+		}
+		return new PackageCoverageImpl(p.getName(), classes, sourceFiles);
+	}
+
+	private static IClassCoverage filter(final IClassCoverage c,
+			final CodeDiffIndex index) {
+		final CodeDiffIndex.ClassEntry entry = index
+				.getClassEntry(c.getName());
+		if (entry == null) {
+			return null;
+		}
+		final ClassCoverageImpl filtered = new ClassCoverageImpl(c.getName(),
+				c.getId(), c.isNoMatch());
+		filtered.setSignature(c.getSignature());
+		filtered.setSuperName(c.getSuperName());
+		filtered.setInterfaces(c.getInterfaceNames());
+		filtered.setSourceFileName(c.getSourceFileName());
+		for (final IMethodCoverage m : c.getMethods()) {
+			if (entry.containsMethod(m.getName(), m.getDesc())) {
+				filtered.addMethod(m);
+			}
+		}
+		return filtered.getMethods().isEmpty() ? null : filtered;
+	}
+
+}
@@ -14,6 +14,7 @@ package org.jacoco.report.internal.html;
 
 import java.util.Locale;
 
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.ILanguageNames;
 import org.jacoco.report.internal.html.index.IIndexUpdate;
 import org.jacoco.report.internal.html.resources.Resources;
@@ -82,4 +83,29 @@ public interface IHTMLReportContext {
 	 */
 	Locale getLocale();
 
+	/**
+	 * Returns the merge and diff context of the report job.
+	 *
+	 * @return context or <code>null</code> for a full report
+	 */
+	MergeContext getMergeContext();
+
+	/**
+	 * Returns the number of threads used to render the packages of a bundle.
+	 * With more than one thread {@link #getTable()} must return a separate
+	 * instance for every thread.
+	 *
+	 * @return number of rendering threads
+	 */
+	int getThreads();
+
+	/**
+	 * Checks whether only the classes and methods of the code diff are
+	 * reported. In this mode source pages only show the changed lines with
+	 * some context and every bundle gets a summary of its changed classes.
+	 *
+	 * @return <code>true</code> if only changed code is reported
+	 */
+	boolean isChangedCodeOnly();
+
 }
@@ -13,11 +13,22 @@
 package org.jacoco.report.internal.html.page;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.ICoverageNode;
 import org.jacoco.core.analysis.IPackageCoverage;
 import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.internal.ReportOutputBuffer;
 import org.jacoco.report.internal.ReportOutputFolder;
 import org.jacoco.report.internal.html.HTMLElement;
 import org.jacoco.report.internal.html.IHTMLReportContext;
@@ -32,6 +43,8 @@ public class BundlePage extends TablePage<ICoverageNode> {
 
 	private IBundleCoverage bundle;
 
+	private final ChangeSummaryPage summaryPage;
+
 	/**
 	 * Creates a new visitor in the given context.
 	 *
@@ -52,29 +65,139 @@ public class BundlePage extends TablePage<ICoverageNode> {
 		super(bundle.getPlainCopy(), parent, folder, context);
 		this.bundle = bundle;
 		this.locator = locator;
+		summaryPage = context.isChangedCodeOnly()
+				? new ChangeSummaryPage(getNode(), this, folder, context)
+				: null;
 	}
 
 	@Override
 	public void render() throws IOException {
 		renderPackages();
+		if (summaryPage != null) {
+			summaryPage.render();
+		}
 		super.render();
 		// Don't keep the bundle structure in memory
 		bundle = null;
 	}
 
 	private void renderPackages() throws IOException {
+		if (context.getThreads() > 1) {
+			renderPackagesParallel();
+			return;
+		}
 		for (final IPackageCoverage p : bundle.getPackages()) {
 			if (!p.containsCode()) {
 				continue;
 			}
-			final String packagename = p.getName();
-			final String foldername = packagename.length() == 0 ? "default"
-					: packagename.replace('/', '.');
 			final PackagePage page = new PackagePage(p, this, locator,
-					folder.subFolder(foldername), context);
+					folder.subFolder(getFolderName(p)), context);
 			page.render();
-			addItem(page);
+			addPackage(page);
+		}
+	}
+
+	/**
+	 * Renders every package with its class and source pages as a task on a
+	 * pool into a {@link ReportOutputBuffer}. The buffers are written to the
+	 * output in the original package order, at most four times the number of
+	 * threads packages are held in memory at the same time.
+	 */
+	private void renderPackagesParallel() throws IOException {
+		final int threads = context.getThreads();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					private final AtomicInteger id = new AtomicInteger();
+
+					public Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r,
+								"jacoco-report-" + id.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			final int limit = threads * 4;
+			final Deque<RenderedPackage> inflight = new ArrayDeque<RenderedPackage>();
+			for (final IPackageCoverage p : bundle.getPackages()) {
+				if (!p.containsCode()) {
+					continue;
+				}
+				final ReportOutputBuffer buffer = new ReportOutputBuffer();
+				final PackagePage page = new PackagePage(p, this, locator,
+						folder.subFolder(getFolderName(p), buffer), context);
+				inflight.add(new RenderedPackage(page, buffer,
+						executor.submit(new Callable<Void>() {
+							public Void call() throws IOException {
+								page.render();
+								return null;
+							}
+						})));
+				while (inflight.size() >= limit) {
+					writePackage(inflight.poll());
+				}
+			}
+			while (!inflight.isEmpty()) {
+				writePackage(inflight.poll());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void writePackage(final RenderedPackage rendered)
+			throws IOException {
+		try {
+			rendered.future.get();
+		} catch (final InterruptedException e) {
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+		rendered.buffer.replay(folder.getOutput());
+		addPackage(rendered.page);
+	}
+
+	private void addPackage(final PackagePage page) {
+		addItem(page);
+		if (summaryPage != null) {
+			for (final ClassPage c : page.getClassPages()) {
+				summaryPage.addClass(c);
+			}
+		}
+	}
+
+	private static String getFolderName(final IPackageCoverage p) {
+		final String packagename = p.getName();
+		return packagename.length() == 0 ? "default"
+				: packagename.replace('/', '.');
+	}
+
+	private static class RenderedPackage {
+
+		final PackagePage page;
+
+		final ReportOutputBuffer buffer;
+
+		final Future<Void> future;
+
+		RenderedPackage(final PackagePage page,
+				final ReportOutputBuffer buffer, final Future<Void> future) {
+			this.page = page;
+			this.buffer = buffer;
+			this.future = future;
 		}
+
 	}
 
 	@Override
@@ -95,6 +218,9 @@ public class BundlePage extends TablePage<ICoverageNode> {
 			body.p().text(
 					"None of the analyzed classes contain code relevant for code coverage.");
 		} else {
+			if (summaryPage != null) {
+				body.p().a(summaryPage, folder);
+			}
 			super.content(body);
 		}
 	}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.html.page;
+
+import java.io.IOException;
+
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.report.internal.ReportOutputFolder;
+import org.jacoco.report.internal.html.HTMLElement;
+import org.jacoco.report.internal.html.IHTMLReportContext;
+import org.jacoco.report.internal.html.table.ITableItem;
+
+/**
+ * Compact summary of a bundle in changed code only mode. The page contains a
+ * single table with the changed classes of all packages of the bundle.
+ */
+public class ChangeSummaryPage extends TablePage<ICoverageNode> {
+
+	/**
+	 * Creates a new summary page.
+	 *
+	 * @param node
+	 *            coverage data of the bundle
+	 * @param parent
+	 *            bundle page
+	 * @param folder
+	 *            base folder of the bundle
+	 * @param context
+	 *            settings context
+	 */
+	public ChangeSummaryPage(final ICoverageNode node, final ReportPage parent,
+			final ReportOutputFolder folder, final IHTMLReportContext context) {
+		super(node, parent, folder, context);
+	}
+
+	/**
+	 * Adds the given class page to the summary. The class is listed with its
+	 * qualified name.
+	 *
+	 * @param page
+	 *            rendered class page
+	 */
+	public void addClass(final ClassPage page) {
+		final String label = context.getLanguageNames()
+				.getQualifiedClassName(page.getNode().getName());
+		addItem(new ITableItem() {
+			public String getLink(final ReportOutputFolder base) {
+				return page.getLink(base);
+			}
+
+			public String getLinkLabel() {
+				return label;
+			}
+
+			public String getLinkStyle() {
+				return page.getLinkStyle();
+			}
+
+			public ICoverageNode getNode() {
+				return page.getNode();
+			}
+		});
+	}
+
+	@Override
+	protected String getOnload() {
+		return "initialSort(['breadcrumb', 'coveragetable'])";
+	}
+
+	@Override
+	protected String getFileName() {
+		return "changes.html";
+	}
+
+	@Override
+	public String getLinkLabel() {
+		return "Changed classes";
+	}
+
+	@Override
+	protected void content(final HTMLElement body) throws IOException {
+		if (getNode().getClassCounter().getTotalCount() == 0) {
+			body.p().text("None of the changed classes contain code.");
+		} else {
+			super.content(body);
+		}
+	}
+
+}
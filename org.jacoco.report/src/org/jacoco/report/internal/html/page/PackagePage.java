@@ -13,6 +13,8 @@
 package org.jacoco.report.internal.html.page;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.analysis.IPackageCoverage;
@@ -32,6 +34,8 @@ public class PackagePage extends TablePage<IPackageCoverage> {
 	private final PackageSourcePage packageSourcePage;
 	private final boolean sourceCoverageExists;
 
+	private final List<ClassPage> classPages = new ArrayList<ClassPage>();
+
 	/**
 	 * Creates a new visitor in the given context.
 	 *
@@ -75,9 +79,21 @@ public class PackagePage extends TablePage<IPackageCoverage> {
 					folder, context);
 			page.render();
 			addItem(page);
+			if (context.isChangedCodeOnly()) {
+				classPages.add(page);
+			}
 		}
 	}
 
+	/**
+	 * Returns the rendered class pages in changed code only mode.
+	 *
+	 * @return rendered class pages, empty for a complete report
+	 */
+	List<ClassPage> getClassPages() {
+		return classPages;
+	}
+
 	@Override
 	protected String getOnload() {
 		return "initialSort(['breadcrumb', 'coveragetable'])";
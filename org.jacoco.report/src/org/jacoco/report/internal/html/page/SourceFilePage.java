@@ -60,7 +60,9 @@ public class SourceFilePage extends NodePage<ISourceNode> {
 
 	@Override
 	protected void content(final HTMLElement body) throws IOException {
-		final SourceHighlighter hl = new SourceHighlighter(context.getLocale());
+		final SourceHighlighter hl = new SourceHighlighter(context.getLocale(),
+				context.getMergeContext());
+		hl.setCollapsed(context.isChangedCodeOnly());
 		hl.render(body, getNode(), sourceReader);
 		sourceReader.close();
 	}
@@ -15,18 +15,13 @@ package org.jacoco.report.internal.html.page;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Optional;
 import org.jacoco.core.analysis.ICounter;
 import org.jacoco.core.analysis.ILine;
 import org.jacoco.core.analysis.ISourceNode;
 import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
-import org.jacoco.core.internal.diff.ChangeLine;
-import org.jacoco.core.internal.diff.ClassInfoDto;
-import org.jacoco.core.internal.diff.MethodInfoDto;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.internal.diff.ChangeLineIndex;
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.internal.html.HTMLElement;
 import org.jacoco.report.internal.html.resources.Styles;
 
@@ -35,17 +30,36 @@ import org.jacoco.report.internal.html.resources.Styles;
  */
 final class SourceHighlighter {
 
+    /** Number of unchanged lines shown before and after every change */
+    static final int CONTEXT_LINES = 3;
+
     private final Locale locale;
 
+    private final MergeContext mergeContext;
+
     private String lang;
 
+    private boolean collapsed;
+
     /**
      * Creates a new highlighter with default settings.
      *
      * @param locale locale for tooltip rendering
      */
     public SourceHighlighter(final Locale locale) {
+        this(locale, null);
+    }
+
+    /**
+     * Creates a new highlighter which marks the changed lines of the given
+     * context.
+     *
+     * @param locale       locale for tooltip rendering
+     * @param mergeContext context with the changed classes or <code>null</code>
+     */
+    public SourceHighlighter(final Locale locale, final MergeContext mergeContext) {
         this.locale = locale;
+        this.mergeContext = mergeContext;
         lang = "java";
     }
 
@@ -59,6 +73,19 @@ final class SourceHighlighter {
         this.lang = lang;
     }
 
+    /**
+     * Specifies whether only the changed lines of the source file are shown.
+     * Every range of changed lines is rendered with {@value #CONTEXT_LINES}
+     * lines of context as a separate block, the other lines are skipped.
+     * Files without changed lines are always rendered completely. Default is
+     * <code>false</code>.
+     *
+     * @param collapsed <code>true</code> to show changed lines only
+     */
+    public void setCollapsed(final boolean collapsed) {
+        this.collapsed = collapsed;
+    }
+
     /**
      * Highlights the given source file.
      *
@@ -69,33 +96,73 @@ final class SourceHighlighter {
      */
     public void render(final HTMLElement parent, final ISourceNode source,
                        final Reader contents) throws IOException {
-        final HTMLElement pre = parent.pre(Styles.SOURCE + " lang-" + lang + " linenums");
         final BufferedReader lineBuffer = new BufferedReader(contents);
         String line;
-        List<ChangeLine> changeLineList = null;
-        if (source instanceof SourceFileCoverageImpl && ExecFileLoader.classInfoDto.get() != null) {
+        ChangeLineIndex changeLines = ChangeLineIndex.EMPTY;
+        if (source instanceof SourceFileCoverageImpl && mergeContext != null && mergeContext.hasClassInfos()) {
             final String packageName=((SourceFileCoverageImpl) source).getPackageName();
             final String className =source.getName();
             final String classNameInner=packageName+ "/"+className.replace(".java","");
-            List<ClassInfoDto> dtoList = ExecFileLoader.classInfoDto.get();
-            Optional<ClassInfoDto> classInfoDto = dtoList.stream().filter(i -> i.getClassFile().equals(classNameInner)).findAny();
-            if (classInfoDto.isPresent()) {
-                changeLineList = classInfoDto.get().getLines();
-            }
+            // 变更行已按文件预先编译成有序区间，每行只需二分查找
+            changeLines = mergeContext.getChangeLines(classNameInner);
         }
+        if (collapsed && !changeLines.isEmpty()) {
+            renderHunks(parent, source, lineBuffer, changeLines);
+            return;
+        }
+        final HTMLElement pre = parent.pre(Styles.SOURCE + " lang-" + lang + " linenums");
         int nr = 0;
         while ((line = lineBuffer.readLine()) != null) {
             nr++;
-            renderCodeLine(pre, line, source.getLine(nr), nr, changeLineList);
+            renderCodeLine(pre, line, source.getLine(nr), nr, changeLines);
+        }
+    }
+
+    /**
+     * Renders every range of changed lines with its context as a separate
+     * block which is numbered from its first line. Lines after the last block
+     * are not read.
+     */
+    private void renderHunks(final HTMLElement parent, final ISourceNode source,
+                             final BufferedReader lineBuffer, final ChangeLineIndex changeLines) throws IOException {
+        final int count = changeLines.getRangeCount();
+        int range = 0;
+        int nr = 0;
+        String line = null;
+        while (range < count) {
+            final int first = Math.max(nr + 1, changeLines.getRangeStart(range) - CONTEXT_LINES);
+            int last = changeLines.getRangeEnd(range) + CONTEXT_LINES;
+            range++;
+            // 上下文相连或重叠的变更区间合并为一段
+            while (range < count && changeLines.getRangeStart(range) - CONTEXT_LINES <= last + 1) {
+                last = Math.max(last, changeLines.getRangeEnd(range) + CONTEXT_LINES);
+                range++;
+            }
+            final int skipped = nr + 1;
+            while (nr < first - 1 && (line = lineBuffer.readLine()) != null) {
+                nr++;
+            }
+            if (nr < first - 1) {
+                return;
+            }
+            if (skipped < first) {
+                parent.p().text(String.format(locale, "Lines %d to %d not changed.",
+                        Integer.valueOf(skipped), Integer.valueOf(first - 1)));
+            }
+            final HTMLElement pre = parent.pre(Styles.SOURCE + " lang-" + lang + " linenums:" + first);
+            while (nr < last && (line = lineBuffer.readLine()) != null) {
+                nr++;
+                renderCodeLine(pre, line, source.getLine(nr), nr, changeLines);
+            }
         }
     }
 
-    private void renderCodeLine(final HTMLElement pre, final String linesrc, final ILine line, final int lineNr, List<ChangeLine> changeLineList) throws IOException {
-        highlight(pre, line, lineNr, changeLineList).text(linesrc);
+    private void renderCodeLine(final HTMLElement pre, final String linesrc, final ILine line, final int lineNr, final ChangeLineIndex changeLines) throws IOException {
+        highlight(pre, line, lineNr, changeLines).text(linesrc);
         pre.text("\n");
     }
 
-    HTMLElement highlight(final HTMLElement pre, final ILine line, final int lineNr, List<ChangeLine> changeLineList) throws IOException {
+    HTMLElement highlight(final HTMLElement pre, final ILine line, final int lineNr, final ChangeLineIndex changeLines) throws IOException {
         String style;
         switch (line.getStatus()) {
             case ICounter.NOT_COVERED:
@@ -113,11 +180,8 @@ final class SourceHighlighter {
 
         final String lineId = "L" + Integer.toString(lineNr);
         final ICounter branches = line.getBranchCounter();
-        if (changeLineList != null && changeLineList.size() > 0) {
-            Optional<ChangeLine> chageLine = changeLineList.stream().filter(i -> i.getStartLineNum() <= lineNr && i.getEndLineNum() >= lineNr).findAny();
-            if (chageLine.isPresent()) {
-                style += " " + chageLine.get().getType();
-            }
+        if (changeLines.contains(lineNr)) {
+            style += " " + changeLines.getType(lineNr);
         }
         switch (branches.getStatus()) {
             case ICounter.NOT_COVERED:
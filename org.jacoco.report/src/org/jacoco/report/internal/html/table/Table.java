@@ -18,7 +18,7 @@ import java.util.*;
 import org.jacoco.core.analysis.ICoverageNode;
 import org.jacoco.core.internal.diff.ClassInfoDto;
 import org.jacoco.core.internal.diff.MethodInfoDto;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.MergeContext;
 import org.jacoco.report.internal.ReportOutputFolder;
 import org.jacoco.report.internal.html.HTMLElement;
 import org.jacoco.report.internal.html.resources.Resources;
@@ -33,6 +33,9 @@ public class Table {
 
     private Comparator<ITableItem> defaultComparator;
 
+    // 增量信息，用于渲染修改人和提交信息列
+    private MergeContext mergeContext;
+
     /**
      * Create a new table without any columns yet.
      */
@@ -40,6 +43,16 @@ public class Table {
         this.columns = new ArrayList<Table.Column>();
     }
 
+    /**
+     * Sets the context which provides the authors and commit messages of
+     * changed methods.
+     *
+     * @param mergeContext context of the report job or <code>null</code>
+     */
+    public void setMergeContext(final MergeContext mergeContext) {
+        this.mergeContext = mergeContext;
+    }
+
     /**
      * Adds a new column with the given properties to the table.
      *
@@ -113,7 +126,7 @@ public class Table {
         for (final ITableItem item : items) {
             final HTMLElement tr = tbody.tr();
             for (final Column c : columns) {
-                c.body(tr, idx, item, resources, base, total);
+                c.body(tr, idx, item, resources, base, total, mergeContext);
             }
             idx++;
         }
@@ -173,15 +186,14 @@ public class Table {
 
         void body(final HTMLElement tr, final int idx, final ITableItem item,
                   final Resources resources, final ReportOutputFolder base,
-                  final ICoverageNode total) throws IOException {
+                  final ICoverageNode total, final MergeContext mergeContext) throws IOException {
             if (visible) {
                 final HTMLElement td = tr.td(style);
                 td.attr("id", idprefix + String.valueOf(index.getPosition(idx)));
                 if (this.header.equals("修改人") || this.header.equals("提交信息")) {
-                    if (ExecFileLoader.classInfo.get() != null) {
-                        Map<String, Map<String, List<MethodInfoDto>>> classInfoDtos = ExecFileLoader.classInfo.get();
-                        if (classInfoDtos.containsKey(total.getName())) {
-                            Map<String, List<MethodInfoDto>> method = classInfoDtos.get(total.getName());
+                    if (mergeContext != null && mergeContext.hasClassInfos()) {
+                        Map<String, List<MethodInfoDto>> method = mergeContext.getMethodInfos(total.getName());
+                        if (method != null) {
                             if (method.containsKey(item.getNode().getName())) {
                                 String text = this.header.equals("修改人") ? method.get(item.getNode().getName()).get(0).getAuthor() : method.get(item.getNode().getName()).get(0).getCommitMessage();
                                 text = text == null ? "未知，请联系平台管理员！" : text;
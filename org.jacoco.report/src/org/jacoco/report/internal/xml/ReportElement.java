@@ -118,8 +118,24 @@ public class ReportElement extends XMLElement {
 	 */
 	public ReportElement classElement(final IClassCoverage coverage)
 			throws IOException {
-		final ReportElement element = namedElement("class", coverage.getName());
-		element.attr("sourcefilename", coverage.getSourceFileName());
+		return classElement(coverage.getName(), coverage.getSourceFileName());
+	}
+
+	/**
+	 * Creates a 'class' element.
+	 *
+	 * @param name
+	 *            VM name of the class
+	 * @param sourcefilename
+	 *            name of the source file or <code>null</code>
+	 * @return 'class' element
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public ReportElement classElement(final String name,
+			final String sourcefilename) throws IOException {
+		final ReportElement element = namedElement("class", name);
+		element.attr("sourcefilename", sourcefilename);
 		return element;
 	}
 
@@ -134,10 +150,27 @@ public class ReportElement extends XMLElement {
 	 */
 	public ReportElement method(final IMethodCoverage coverage)
 			throws IOException {
-		final ReportElement element = namedElement("method",
-				coverage.getName());
-		element.attr("desc", coverage.getDesc());
-		final int line = coverage.getFirstLine();
+		return method(coverage.getName(), coverage.getDesc(),
+				coverage.getFirstLine());
+	}
+
+	/**
+	 * Creates a 'method' element.
+	 *
+	 * @param name
+	 *            name of the method
+	 * @param desc
+	 *            method descriptor
+	 * @param line
+	 *            first line of the method or -1
+	 * @return 'method' element
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public ReportElement method(final String name, final String desc,
+			final int line) throws IOException {
+		final ReportElement element = namedElement("method", name);
+		element.attr("desc", desc);
 		if (line != -1) {
 			element.attr("line", line);
 		}
@@ -75,7 +75,7 @@ public final class XMLCoverageWriter {
 		writeCounters(m, element);
 	}
 
-	private static void writeSourceFile(final ISourceFileCoverage s,
+	static void writeSourceFile(final ISourceFileCoverage s,
 			final ReportElement parent) throws IOException {
 		final ReportElement element = parent.sourcefile(s.getName());
 		writeLines(s, element);
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jacoco.core.analysis.CoverageNodeImpl;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.ElementType;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
+import org.jacoco.core.internal.analysis.SourceNodeImpl;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.jacoco.report.IStreamingReportVisitor;
+
+/**
+ * Writes the XML report from classes emitted during analysis. Every class is
+ * appended as a compact record to a temporary file, only the positions of the
+ * records are kept in memory per package. When the report is completed the
+ * packages are written in alphabetical order: the class elements of a package
+ * are written while its records are read back and the lines are merged into
+ * the source files of this package only. Package and bundle counters are
+ * summed up on the way, so at no time more than the lines of a single package
+ * are held in memory.
+ */
+public class XMLStreamingVisitor implements IStreamingReportVisitor {
+
+	private final OutputStream output;
+
+	private final String encoding;
+
+	private final String name;
+
+	private final File spillFile;
+
+	private final RandomAccessFile spill;
+
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+	private final Map<String, PackageRecords> packages = new TreeMap<String, PackageRecords>();
+
+	private long position;
+
+	private List<SessionInfo> sessionInfos = Collections.emptyList();
+
+	/**
+	 * Creates a new visitor which writes the report to the given stream.
+	 *
+	 * @param output
+	 *            output stream to write the report to
+	 * @param encoding
+	 *            character encoding of the report
+	 * @param name
+	 *            name of the bundle
+	 * @throws IOException
+	 *             if the temporary file can't be created
+	 */
+	public XMLStreamingVisitor(final OutputStream output,
+			final String encoding, final String name) throws IOException {
+		this.output = output;
+		this.encoding = encoding;
+		this.name = name;
+		this.spillFile = File.createTempFile("jacoco-", ".xml.tmp");
+		this.spillFile.deleteOnExit();
+		this.spill = new RandomAccessFile(spillFile, "rw");
+	}
+
+	public void visitInfo(final List<SessionInfo> sessionInfos) {
+		this.sessionInfos = sessionInfos;
+	}
+
+	public void visitCoverage(final IClassCoverage coverage)
+			throws IOException {
+		buffer.reset();
+		final CompactDataOutput out = new CompactDataOutput(buffer);
+		out.writeUTF(coverage.getName());
+		final String sourceFileName = coverage.getSourceFileName();
+		out.writeBoolean(sourceFileName != null);
+		if (sourceFileName != null) {
+			out.writeUTF(sourceFileName);
+		}
+		out.writeVarInt(coverage.getMethods().size());
+		for (final IMethodCoverage m : coverage.getMethods()) {
+			out.writeUTF(m.getName());
+			out.writeUTF(m.getDesc());
+			out.writeVarInt(m.getFirstLine() + 1);
+			writeCounters(out, m);
+		}
+		writeCounters(out, coverage);
+		writeLines(out, coverage);
+		out.flush();
+
+		final String packageName = coverage.getPackageName();
+		PackageRecords records = packages.get(packageName);
+		if (records == null) {
+			records = new PackageRecords(packageName);
+			packages.put(packageName, records);
+		}
+		records.add(position, buffer.size());
+		spill.write(buffer.toByteArray());
+		position += buffer.size();
+	}
+
+	public void visitEnd() throws IOException {
+		try {
+			final ReportElement report = new ReportElement(name, output,
+					encoding);
+			for (final SessionInfo i : sessionInfos) {
+				report.sessioninfo(i);
+			}
+			final CoverageNodeImpl bundle = new CoverageNodeImpl(
+					ElementType.BUNDLE, name);
+			for (final PackageRecords p : packages.values()) {
+				bundle.increment(writePackage(p, report));
+			}
+			XMLCoverageWriter.writeCounters(bundle, report);
+			report.close();
+		} finally {
+			spill.close();
+			spillFile.delete();
+		}
+	}
+
+	private ICoverageNode writePackage(final PackageRecords records,
+			final ReportElement parent) throws IOException {
+		final ReportElement element = parent.packageElement(records.name);
+		final CoverageNodeImpl total = new CoverageNodeImpl(
+				ElementType.PACKAGE, records.name);
+		final Map<String, SourceFileCoverageImpl> sourceFiles = new LinkedHashMap<String, SourceFileCoverageImpl>();
+		for (int i = 0; i < records.count; i++) {
+			final StoredClass c = readClass(records.offsets[i],
+					records.lengths[i]);
+			writeClass(c, element);
+			if (c.sourceFileName == null) {
+				total.increment(c);
+				continue;
+			}
+			SourceFileCoverageImpl s = sourceFiles.get(c.sourceFileName);
+			if (s == null) {
+				s = new SourceFileCoverageImpl(c.sourceFileName,
+						records.name);
+				sourceFiles.put(c.sourceFileName, s);
+			}
+			s.increment(c);
+		}
+		for (final SourceFileCoverageImpl s : sourceFiles.values()) {
+			XMLCoverageWriter.writeSourceFile(s, element);
+			total.increment(s);
+		}
+		XMLCoverageWriter.writeCounters(total, element);
+		return total;
+	}
+
+	private static void writeClass(final StoredClass c,
+			final ReportElement parent) throws IOException {
+		final ReportElement element = parent.classElement(c.getName(),
+				c.sourceFileName);
+		for (final StoredMethod m : c.methods) {
+			final ReportElement method = element.method(m.getName(), m.desc,
+					m.line);
+			XMLCoverageWriter.writeCounters(m, method);
+		}
+		XMLCoverageWriter.writeCounters(c, element);
+	}
+
+	private StoredClass readClass(final long offset, final int length)
+			throws IOException {
+		final byte[] bytes = new byte[length];
+		spill.seek(offset);
+		spill.readFully(bytes);
+		final CompactDataInput in = new CompactDataInput(
+				new ByteArrayInputStream(bytes));
+		final StoredClass c = new StoredClass(in.readUTF());
+		if (in.readBoolean()) {
+			c.sourceFileName = in.readUTF();
+		}
+		final int methodCount = in.readVarInt();
+		for (int i = 0; i < methodCount; i++) {
+			final StoredMethod m = new StoredMethod(in.readUTF(),
+					in.readUTF(), in.readVarInt() - 1);
+			m.setCounters(readCounters(in));
+			c.methods.add(m);
+		}
+		final CounterImpl[] counters = readCounters(in);
+		int nr = 0;
+		for (int i = in.readVarInt(); i > 0; i--) {
+			nr += in.readVarInt();
+			c.increment(readCounter(in), readCounter(in), nr);
+		}
+		c.setCounters(counters);
+		return c;
+	}
+
+	private static void writeCounters(final CompactDataOutput out,
+			final ICoverageNode node) throws IOException {
+		writeCounter(out, node.getInstructionCounter());
+		writeCounter(out, node.getBranchCounter());
+		writeCounter(out, node.getLineCounter());
+		writeCounter(out, node.getComplexityCounter());
+		writeCounter(out, node.getMethodCounter());
+		writeCounter(out, node.getClassCounter());
+	}
+
+	private static CounterImpl[] readCounters(final CompactDataInput in)
+			throws IOException {
+		final CounterImpl[] counters = new CounterImpl[6];
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = readCounter(in);
+		}
+		return counters;
+	}
+
+	private static void writeCounter(final CompactDataOutput out,
+			final ICounter counter) throws IOException {
+		out.writeVarInt(counter.getMissedCount());
+		out.writeVarInt(counter.getCoveredCount());
+	}
+
+	private static CounterImpl readCounter(final CompactDataInput in)
+			throws IOException {
+		final int missed = in.readVarInt();
+		return CounterImpl.getInstance(missed, in.readVarInt());
+	}
+
+	/**
+	 * Lines are written as count followed by the line number difference to
+	 * the previous line and the instruction and branch counters.
+	 */
+	private static void writeLines(final CompactDataOutput out,
+			final ISourceNode node) throws IOException {
+		final int first = node.getFirstLine();
+		if (first == ISourceNode.UNKNOWN_LINE) {
+			out.writeVarInt(0);
+			return;
+		}
+		final int last = node.getLastLine();
+		int count = 0;
+		for (int nr = first; nr <= last; nr++) {
+			if (node.getLine(nr).getStatus() != ICounter.EMPTY) {
+				count++;
+			}
+		}
+		out.writeVarInt(count);
+		int previous = 0;
+		for (int nr = first; nr <= last; nr++) {
+			final ILine line = node.getLine(nr);
+			if (line.getStatus() != ICounter.EMPTY) {
+				out.writeVarInt(nr - previous);
+				writeCounter(out, line.getInstructionCounter());
+				writeCounter(out, line.getBranchCounter());
+				previous = nr;
+			}
+		}
+	}
+
+	private static class PackageRecords {
+
+		final String name;
+
+		long[] offsets = new long[8];
+
+		int[] lengths = new int[8];
+
+		int count;
+
+		PackageRecords(final String name) {
+			this.name = name;
+		}
+
+		void add(final long offset, final int length) {
+			if (count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, count * 2);
+				lengths = Arrays.copyOf(lengths, count * 2);
+			}
+			offsets[count] = offset;
+			lengths[count] = length;
+			count++;
+		}
+
+	}
+
+	private static class StoredClass extends SourceNodeImpl {
+
+		String sourceFileName;
+
+		final List<StoredMethod> methods = new ArrayList<StoredMethod>();
+
+		StoredClass(final String name) {
+			super(ElementType.CLASS, name);
+		}
+
+		void setCounters(final CounterImpl[] counters) {
+			instructionCounter = counters[0];
+			branchCounter = counters[1];
+			lineCounter = counters[2];
+			complexityCounter = counters[3];
+			methodCounter = counters[4];
+			classCounter = counters[5];
+		}
+
+	}
+
+	private static class StoredMethod extends CoverageNodeImpl {
+
+		final String desc;
+
+		final int line;
+
+		StoredMethod(final String name, final String desc, final int line) {
+			super(ElementType.METHOD, name);
+			this.desc = desc;
+			this.line = line;
+		}
+
+		void setCounters(final CounterImpl[] counters) {
+			instructionCounter = counters[0];
+			branchCounter = counters[1];
+			lineCounter = counters[2];
+			complexityCounter = counters[3];
+			methodCounter = counters[4];
+			classCounter = counters[5];
+		}
+
+	}
+
+}
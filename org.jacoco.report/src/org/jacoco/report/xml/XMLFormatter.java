@@ -23,9 +23,11 @@ import org.jacoco.core.data.SessionInfo;
 import org.jacoco.report.IReportGroupVisitor;
 import org.jacoco.report.IReportVisitor;
 import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.IStreamingReportVisitor;
 import org.jacoco.report.internal.xml.ReportElement;
 import org.jacoco.report.internal.xml.XMLCoverageWriter;
 import org.jacoco.report.internal.xml.XMLGroupVisitor;
+import org.jacoco.report.internal.xml.XMLStreamingVisitor;
 
 /**
  * Report formatter that creates a single XML file for a coverage session
@@ -98,4 +100,23 @@ public class XMLFormatter {
 		return new RootVisitor();
 	}
 
+	/**
+	 * Creates a new visitor to write a report to the given stream while the
+	 * classes are analyzed. The classes are buffered in a temporary file and
+	 * the report is written with {@link IStreamingReportVisitor#visitEnd()},
+	 * see {@link XMLStreamingVisitor}. Packages are sorted by name.
+	 *
+	 * @param output
+	 *            output stream to write the report to
+	 * @param name
+	 *            name of the bundle
+	 * @return visitor to emit the classes to
+	 * @throws IOException
+	 *             in case of problems with the temporary file
+	 */
+	public IStreamingReportVisitor createStreamingVisitor(
+			final OutputStream output, final String name) throws IOException {
+		return new XMLStreamingVisitor(output, outputEncoding, name);
+	}
+
 }